@@ -0,0 +1,74 @@
+package org.hl7.davinci.pr.api.utils;
+
+import jakarta.persistence.Tuple;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.utils.BenchmarkData;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Parameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FHIR JSON parsing of search requests and serialisation of search responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FhirUtilsBenchmark {
+
+  @Param({"1", "100", "1000"})
+  public int claimCount;
+
+  private String searchByClaimRequest;
+  private Parameters searchResponse;
+  private String searchResponseJson;
+
+  @Setup
+  public void setup() {
+    searchByClaimRequest = TestUtils.getSampleSearchByClaimRequestBody();
+
+    List<Tuple> tuples = BenchmarkData.claimOrPatientTuples(claimCount);
+    searchResponse = ApiUtils.generateSearchByClaimOrPatientResponse(TestDataUtils.PROVIDER_TIN_1,
+        tuples.stream().map(tuple -> tuple.get(0, ClaimQuery.class)).toList(),
+        tuples.stream().map(tuple -> tuple.get(1, Patient.class)).distinct().toList(),
+        tuples.stream().map(tuple -> tuple.get(2, Payer.class)).distinct().toList(),
+        tuples.stream().map(tuple -> tuple.get(3, Payment.class)).toList(),
+        tuples.stream().map(tuple -> tuple.get(4, Remittance.class)).toList());
+    searchResponseJson = FhirUtils.convertToJSON(searchResponse);
+  }
+
+  @Benchmark
+  public IBaseResource parseSearchRequest() {
+    return FhirUtils.parseResource(searchByClaimRequest);
+  }
+
+  @Benchmark
+  public IBaseResource parseSearchResponse() {
+    return FhirUtils.parseResource(searchResponseJson);
+  }
+
+  @Benchmark
+  public String convertSearchResponseToJSON() {
+    return FhirUtils.convertToJSON(searchResponse);
+  }
+}
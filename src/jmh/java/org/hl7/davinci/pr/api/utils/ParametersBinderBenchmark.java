@@ -0,0 +1,45 @@
+package org.hl7.davinci.pr.api.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.service.ClaimSearchRequest;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.hl7.fhir.r4.model.Parameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding of a search request body into its typed request, by the streaming binder and by the HAPI FHIR parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParametersBinderBenchmark {
+
+  private String searchByClaimRequest;
+
+  @Setup
+  public void setup() {
+    searchByClaimRequest = TestUtils.getSampleSearchByClaimRequestBody();
+  }
+
+  @Benchmark
+  public ClaimSearchRequest bindSearchRequest() {
+    return ValidationUtils.validateSearchByClaimRequest(ParametersBinder.parse(searchByClaimRequest));
+  }
+
+  @Benchmark
+  public ClaimSearchRequest parseAndValidateSearchRequest() {
+    return ValidationUtils.validateSearchByClaimRequest((Parameters) FhirUtils.parseResource(searchByClaimRequest));
+  }
+}
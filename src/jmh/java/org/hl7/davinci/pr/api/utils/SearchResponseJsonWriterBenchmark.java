@@ -0,0 +1,73 @@
+package org.hl7.davinci.pr.api.utils;
+
+import jakarta.persistence.Tuple;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.service.SearchResponse;
+import org.hl7.davinci.pr.utils.BenchmarkData;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing a search response to the response stream, through the HAPI FHIR Parameters resource or directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResponseJsonWriterBenchmark {
+
+  @Param({"1", "100", "1000"})
+  public int claimCount;
+
+  @Param({"true", "false"})
+  public boolean prettyPrint;
+
+  private SearchResponse searchResponse;
+
+  @Setup
+  public void setup() {
+    List<Tuple> tuples = BenchmarkData.claimOrPatientTuples(claimCount);
+    searchResponse = new SearchResponse(false, TestDataUtils.PROVIDER_TIN_1,
+        tuples.stream().map(tuple -> tuple.get(0, ClaimQuery.class)).toList(),
+        tuples.stream().map(tuple -> tuple.get(1, Patient.class)).distinct().toList(),
+        tuples.stream().map(tuple -> tuple.get(2, Payer.class)).distinct().toList(),
+        tuples.stream().map(tuple -> tuple.get(3, Payment.class)).toList(),
+        tuples.stream().map(tuple -> tuple.get(4, Remittance.class)).toList(),
+        null);
+  }
+
+  @Benchmark
+  public void writeThroughParameters() throws IOException {
+    Writer writer = new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+    FhirUtils.writeJSON(searchResponse.toParameters(), prettyPrint, writer);
+    writer.flush();
+  }
+
+  @Benchmark
+  public void writeDirectly() throws IOException {
+    SearchResponseJsonWriter.write(searchResponse, prettyPrint, OutputStream.nullOutputStream());
+  }
+}
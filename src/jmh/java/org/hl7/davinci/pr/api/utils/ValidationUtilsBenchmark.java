@@ -0,0 +1,53 @@
+package org.hl7.davinci.pr.api.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Request validation that runs on every search call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationUtilsBenchmark {
+
+  public String tin = "123456789";
+  public String dateOfService = "2015-02-07T13:28:17-05:00";
+  public String dateOfBirth = "1990-04-03";
+
+  @Benchmark
+  public void validateTin() {
+    ValidationUtils.validateTin(tin);
+  }
+
+  @Benchmark
+  public void validateDateOfServiceFormat() {
+    ValidationUtils.validateDateOfServiceFormat(dateOfService);
+  }
+
+  @Benchmark
+  public void validateDateOfBirthFormat() {
+    ValidationUtils.validateDateOfBirthFormat(dateOfBirth);
+  }
+
+  @Benchmark
+  public void validateInvalidTin(Blackhole blackhole) {
+    try {
+      ValidationUtils.validateTin("12345678X");
+    } catch (IllegalArgumentException e) {
+      blackhole.consume(e);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.hl7.davinci.pr.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.PostableRemittanceApplication;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Search by patient against an in-memory H2 database holding one patient with many claims.
+ * Compares the read-only projection of {@link ClaimQueryDao} with the previous multiselect of managed entities.
+ * Run it with the gc profiler to compare the allocated bytes per search (gc.alloc.rate.norm).
+ * The first and last page of a keyset paged search should take about the same time, whatever the number of claims.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClaimQueryDaoBenchmark {
+
+  // The entity graph the search used to load, one managed instance per joined row
+  private static final String ENTITY_SEARCH_BY_PATIENT = """
+      select c, p, pa, pm, r from ClaimQuery c
+      left join c.patient p left join c.payer pa left join c.payment pm left join pm.remittance r
+      where c.providerTin = :tin and c.subscriberPatientId = :patientId and p.dateOfBirth = :dateOfBirth""";
+
+  private static final int PAGE_SIZE = 50;
+
+  @Param({"10000", "50000"})
+  public int rowCount;
+
+  private ConfigurableApplicationContext context;
+  private ClaimQueryDao claimQueryDao;
+  private EntityManager entityManager;
+  private TransactionTemplate transactionTemplate;
+  private Date dateOfBirth;
+  private KeysetPage lastPage;
+
+  @Setup(Level.Trial)
+  public void setup() throws ParseException {
+    context = new SpringApplicationBuilder(PostableRemittanceApplication.class)
+        .web(WebApplicationType.NONE)
+        .profiles("test")
+        .properties("spring.jpa.show-sql=false", "logging.level.ROOT=WARN")
+        .run();
+    claimQueryDao = context.getBean(ClaimQueryDao.class);
+    entityManager = context.getBean(EntityManager.class);
+    transactionTemplate = context.getBean(TransactionTemplate.class);
+    dateOfBirth = TestDataUtils.dateFormatter.parse(TestDataUtils.PATIENT_DOB);
+    seed();
+    Integer lastClaimId = entityManager.createQuery("select max(c.id) from ClaimQuery c", Integer.class).getSingleResult();
+    lastPage = KeysetPage.of(PAGE_SIZE, KeysetPage.continuationToken(lastClaimId - PAGE_SIZE, KeysetPage.queryHash()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<ClaimSearchRow> projection() {
+    return claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, dateOfBirth, null, null,
+        TestDataUtils.PATIENT_ID_1, null, null, null, null, KeysetPage.UNPAGED);
+  }
+
+  @Benchmark
+  public List<ClaimSearchRow> firstPage() {
+    return claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, dateOfBirth, null, null,
+        TestDataUtils.PATIENT_ID_1, null, null, null, null, KeysetPage.of(PAGE_SIZE, null));
+  }
+
+  @Benchmark
+  public List<ClaimSearchRow> lastPage() {
+    return claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, dateOfBirth, null, null,
+        TestDataUtils.PATIENT_ID_1, null, null, null, null, lastPage);
+  }
+
+  @Benchmark
+  public List<Tuple> managedEntities() {
+    // Read-write transaction, the entities are snapshotted for dirty-checking and flushed on commit
+    return transactionTemplate.execute(status -> entityManager.createQuery(ENTITY_SEARCH_BY_PATIENT, Tuple.class)
+        .setParameter("tin", TestDataUtils.PROVIDER_TIN_1)
+        .setParameter("patientId", TestDataUtils.PATIENT_ID_1)
+        .setParameter("dateOfBirth", dateOfBirth)
+        .getResultList());
+  }
+
+  private void seed() throws ParseException {
+    Date dateOfService = TestDataUtils.dateFormatter.parse(TestDataUtils.DATE_OF_SERVICE);
+    Date paymentIssueDate = TestDataUtils.dateFormatter.parse(TestDataUtils.PAYMENT_ISSUE_DATE);
+    Patient patient = context.getBean(PatientRepository.class).save(Patient.builder()
+        .firstName(TestDataUtils.PATIENT_FIRST_NAME_1).lastName(TestDataUtils.PATIENT_LAST_NAME_1)
+        .dateOfBirth(dateOfBirth).build());
+    Payer payer = context.getBean(PayerRepository.class).save(Payer.builder()
+        .payerIdentity(TestDataUtils.PAYER_ID_VAL_1).payerName(TestDataUtils.PAYER_NAME_1).build());
+
+    List<ClaimQuery> claimQueries = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      claimQueries.add(ClaimQuery.builder()
+          .dcnIcn("dcn_icn_" + i)
+          .providerTin(TestDataUtils.PROVIDER_TIN_1)
+          .providerClaimID("provider_claimid_" + i)
+          .providerNPI(TestDataUtils.PROVIDER_NPI_1)
+          .payerClaimId("payer_claim_id_" + i)
+          .subscriberPatientId(TestDataUtils.PATIENT_ID_1)
+          .receivedDate(dateOfService)
+          .dateOfService(dateOfService)
+          .claimChargeAmount(TestDataUtils.CLAIM_CHARGE_AMOUNT)
+          .patient(patient)
+          .payer(payer)
+          .build());
+    }
+    claimQueries = context.getBean(ClaimQueryRepository.class).saveAll(claimQueries);
+
+    List<Payment> payments = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      Remittance remittance = Remittance.builder()
+          .claimQuery(claimQueries.get(i))
+          .remittanceAdviceId("rem_adviceid_" + i)
+          .remittanceAdviceType(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF)
+          .remittanceAdviceDate(paymentIssueDate)
+          .remittanceAdviceFileSize(TestDataUtils.REMITTANCE_ADVICE_FILE_SIZE)
+          .build();
+      payments.add(Payment.builder()
+          .claimQuery(claimQueries.get(i))
+          .paymentNumber("PAYMENT_NUMBER_" + i)
+          .payment_issue_dt(paymentIssueDate)
+          .amount(TestDataUtils.PAYMENT_AMOUNT)
+          .remittance(remittance)
+          .build());
+    }
+    context.getBean(PaymentRepository.class).saveAll(payments);
+  }
+}
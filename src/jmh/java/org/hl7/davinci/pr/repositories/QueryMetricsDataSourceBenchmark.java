@@ -0,0 +1,88 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * The overhead of {@link QueryMetricsDataSource} on a search-sized query, a prepared statement with two parameters
+ * reading every column of 50 rows from an in-memory H2 database. {@code metrics=none} uses the H2 connection as it
+ * is, the other variants wrap it with the sample rate in the name. One connection is reused, so the measurement
+ * holds the query and the proxies but no pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryMetricsDataSourceBenchmark {
+
+  private static final int ROWS = 50;
+  private static final String SELECT = "select id, provider_tin, provider_claimid, payer_claimid, received_dt"
+      + " from claim_query where provider_tin = ? and id > ? order by id";
+
+  @Param({"none", "sampled-0.1", "sampled-1.0"})
+  public String metrics;
+
+  private SingleConnectionDataSource target;
+  private DataSource dataSource;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    target = new SingleConnectionDataSource("jdbc:h2:mem:query-metrics-benchmark", "sa", "", true);
+    try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("create table claim_query (id int primary key, provider_tin varchar(9),"
+          + " provider_claimid varchar(20), payer_claimid varchar(20), received_dt date)");
+      statement.execute("insert into claim_query select x, '123456789', 'CLAIM' || x, 'PAYER' || x, current_date"
+          + " from system_range(1, " + ROWS + ")");
+    }
+    dataSource = "none".equals(metrics) ? target : new QueryMetricsDataSource(target, new QueryMetrics(
+        new SimpleMeterRegistry(), Double.parseDouble(metrics.substring("sampled-".length())),
+        Duration.ofMinutes(1), 500));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    target.destroy();
+  }
+
+  @Benchmark
+  public void query(Blackhole blackhole) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(SELECT)) {
+      statement.setString(1, "123456789");
+      statement.setInt(2, 0);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          blackhole.consume(resultSet.getInt(1));
+          blackhole.consume(resultSet.getString(2));
+          blackhole.consume(resultSet.getString(3));
+          blackhole.consume(resultSet.getString(4));
+          blackhole.consume(resultSet.getDate(5));
+        }
+      }
+    }
+  }
+}
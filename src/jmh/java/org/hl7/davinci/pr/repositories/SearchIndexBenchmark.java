@@ -0,0 +1,208 @@
+package org.hl7.davinci.pr.repositories;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.utils.SyntheticDataGenerator;
+import org.hl7.davinci.pr.utils.SyntheticDataSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The four search shapes of {@link ClaimQueryDaoImpl} on a PostgreSQL database migrated by Flyway and seeded by the
+ * {@link SyntheticDataGenerator} with a million claims, skewed over 1000 TINs, with their payments and remittances.
+ * With {@code indexes=baseline} the indexes of the V20261020 and V20261021 migrations are dropped in a transaction
+ * that is rolled back after the trial, so both variants run on the same data. The plan of every search is printed
+ * at the start of the trial. Use a database of its own, the seed is committed and kept for later runs:
+ * {@code DB_HOST=... DB_PORT=... DB_NAME=... DB_USERNAME=... DB_PASSWORD=... mvn -Pjmh verify -Djmh.includes=SearchIndexBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+  private static final SyntheticDataSpec SPEC = SyntheticDataSpec.builder().prefix("BENCH").claims(1_000_000)
+      .tins(1000).patients(100_000).payers(100).build();
+  // A TIN in the middle of the distribution, with about 3000 claims
+  private static final int TIN_INDEX = 42;
+
+  // Indexes of V20261020__search_composite_idx.sql and V20261021__foreign_key_idx.sql, less the one V20261022 drops
+  private static final List<String> NEW_INDEXES = List.of(
+      "claim_tin_payer_claim_id_idx", "claim_tin_dos_idx", "paymt_issue_dt_claim_idx",
+      "remit_advice_id_idx", "claim_patient_id_idx", "claim_payer_id_idx", "claim_provider_id_idx",
+      "paymt_remittance_id_idx", "remit_claim_id_idx", "subscr_patient_id_idx", "subscr_payer_id_idx");
+
+  // The joins of the ClaimQueryDaoImpl searches
+  private static final String SELECT = "select c.id, c.provider_claimid, p.first_name, py.payer_name, pm.payment_number,"
+      + " r.remittance_adviceid from claim_query c"
+      + " left join patient p on p.id = c.patient_id"
+      + " left join payer py on py.id = c.payer_id"
+      + " left join payment pm on pm.claim_id = c.id"
+      + " left join remittance r on r.id = pm.remittance_id";
+  private static final String SEARCH_BY_CLAIM = SELECT
+      + " where c.provider_tin = ? and c.provider_claimid = ? and c.dos_dt between ? and ? order by c.id, pm.id";
+  private static final String SEARCH_BY_PATIENT = SELECT
+      + " where c.provider_tin = ? and c.subscriber_patient_id = ? and c.dos_dt between ? and ? order by c.id, pm.id";
+  private static final String SEARCH_BY_PAYMENT = SELECT
+      + " where c.provider_tin = ? and pm.payment_issue_dt between ? and ? and lower(pm.payment_number) like ?"
+      + " order by c.id, pm.id";
+  private static final String FIND_BY_REMITTANCE = SELECT + " where r.remittance_adviceid = ?";
+
+  @Param({"baseline", "composite"})
+  public String indexes;
+
+  private Connection connection;
+  private Date rangeStart;
+  private Date rangeEnd;
+  // A claim, patient, payment and remittance of the TIN, see searchValues()
+  private String tin;
+  private String providerClaimId;
+  private String patientId;
+  private String paymentNumberPattern;
+  private String remittanceAdviceId;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    if (System.getenv("DB_HOST") == null) {
+      throw new IllegalStateException("SearchIndexBenchmark needs a PostgreSQL database, set the DB_* variables");
+    }
+    String url = String.format("jdbc:postgresql://%s:%s/%s?currentSchema=postable_remittance",
+        System.getenv("DB_HOST"), System.getenv("DB_PORT"), System.getenv("DB_NAME"));
+    connection = DriverManager.getConnection(url, System.getenv("DB_USERNAME"), System.getenv("DB_PASSWORD"));
+    rangeStart = Date.valueOf("2023-01-01");
+    rangeEnd = Date.valueOf("2024-12-31");
+    SyntheticDataGenerator generator = new SyntheticDataGenerator(SPEC);
+    seed(generator);
+    searchValues(generator);
+    connection.setAutoCommit(false);
+    if ("baseline".equals(indexes)) {
+      try (Statement statement = connection.createStatement()) {
+        for (String index : NEW_INDEXES) {
+          statement.execute("drop index if exists " + index);
+        }
+      }
+    }
+    explain(SEARCH_BY_CLAIM, tin, providerClaimId, rangeStart, rangeEnd);
+    explain(SEARCH_BY_PATIENT, tin, patientId, rangeStart, rangeEnd);
+    explain(SEARCH_BY_PAYMENT, tin, rangeStart, rangeEnd, paymentNumberPattern);
+    explain(FIND_BY_REMITTANCE, remittanceAdviceId);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws SQLException {
+    // restores the dropped indexes
+    connection.rollback();
+    connection.close();
+  }
+
+  @Benchmark
+  public int searchByClaim() throws SQLException {
+    return query(SEARCH_BY_CLAIM, tin, providerClaimId, rangeStart, rangeEnd);
+  }
+
+  @Benchmark
+  public int searchByPatient() throws SQLException {
+    return query(SEARCH_BY_PATIENT, tin, patientId, rangeStart, rangeEnd);
+  }
+
+  @Benchmark
+  public int searchByPayment() throws SQLException {
+    return query(SEARCH_BY_PAYMENT, tin, rangeStart, rangeEnd, paymentNumberPattern);
+  }
+
+  @Benchmark
+  public int findByRemittance() throws SQLException {
+    return query(FIND_BY_REMITTANCE, remittanceAdviceId);
+  }
+
+  private int query(String sql, Object... parameters) throws SQLException {
+    try (PreparedStatement statement = prepare(sql, parameters); ResultSet rs = statement.executeQuery()) {
+      int rows = 0;
+      while (rs.next()) {
+        rows++;
+      }
+      return rows;
+    }
+  }
+
+  private void explain(String sql, Object... parameters) throws SQLException {
+    StringBuilder plan = new StringBuilder(String.format("%n%s plan of: %s%n", indexes, sql));
+    try (PreparedStatement statement = prepare("explain " + sql, parameters); ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        plan.append(rs.getString(1)).append(System.lineSeparator());
+      }
+    }
+    System.out.println(plan);
+  }
+
+  private PreparedStatement prepare(String sql, Object... parameters) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(sql);
+    for (int i = 0; i < parameters.length; i++) {
+      statement.setObject(i + 1, parameters[i]);
+    }
+    return statement;
+  }
+
+  /**
+   * Loads the dataset once, later runs reuse it.
+   */
+  private void seed(SyntheticDataGenerator generator) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      try (ResultSet rs = statement.executeQuery(
+          "select count(*) from claim_query where provider_claimid like '" + SPEC.getPrefix() + "-PCN-%'")) {
+        rs.next();
+        if (rs.getLong(1) >= SPEC.getClaims()) {
+          return;
+        }
+      }
+      generator.load(connection);
+      statement.execute("analyze");
+    }
+  }
+
+  /**
+   * Takes the search values from the first claim of the TIN with a remittance, both inside the date range.
+   */
+  private void searchValues(SyntheticDataGenerator generator) {
+    LocalDate start = rangeStart.toLocalDate();
+    LocalDate end = rangeEnd.toLocalDate();
+    for (int i = 0; i < SPEC.getClaims(); i++) {
+      SyntheticDataGenerator.ClaimRow claim = generator.claim(i);
+      if (claim.tinIndex() != TIN_INDEX || claim.dateOfService().isBefore(start)) {
+        continue;
+      }
+      for (SyntheticDataGenerator.PaymentRow payment : claim.payments()) {
+        if (payment.remittance() != null && !payment.issueDate().isAfter(end)) {
+          tin = claim.providerTin();
+          providerClaimId = claim.providerClaimId();
+          patientId = claim.subscriberPatientId();
+          paymentNumberPattern = "%" + payment.paymentNumber().toLowerCase() + "%";
+          remittanceAdviceId = payment.remittance().remittanceAdviceId();
+          return;
+        }
+      }
+    }
+    throw new IllegalStateException("No claim of TIN index " + TIN_INDEX + " with a remittance in the date range");
+  }
+}
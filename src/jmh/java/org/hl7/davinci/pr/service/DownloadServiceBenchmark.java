@@ -0,0 +1,65 @@
+package org.hl7.davinci.pr.service;
+
+import com.itextpdf.text.DocumentException;
+import jakarta.persistence.Tuple;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.utils.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Remittance document rendering, without the database query and the gzip step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadServiceBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int claimCount;
+
+    private DownloadService downloadService;
+    private List<Tuple> tuples;
+    private ClaimQuery claimQueryFirst;
+    private Payer payerFirst;
+    private Payment paymentFirst;
+
+    @Setup
+    public void setup() {
+        downloadService = new DownloadService();
+        tuples = BenchmarkData.claimOrPatientTuples(claimCount);
+        claimQueryFirst = tuples.get(0).get(0, ClaimQuery.class);
+        payerFirst = tuples.get(0).get(2, Payer.class);
+        paymentFirst = tuples.get(0).get(3, Payment.class);
+    }
+
+    @Benchmark
+    public String build835Text() throws IOException {
+        return downloadService.build835Text(paymentFirst, payerFirst, claimQueryFirst, tuples);
+    }
+
+    @Benchmark
+    public int buildPdf() throws DocumentException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        downloadService.buildPdf(payerFirst, claimQueryFirst, paymentFirst, tuples, outputStream);
+        return outputStream.size();
+    }
+}
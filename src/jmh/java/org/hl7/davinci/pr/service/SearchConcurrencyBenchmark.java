@@ -0,0 +1,124 @@
+package org.hl7.davinci.pr.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.PostableRemittanceApplication;
+import org.hl7.davinci.pr.api.utils.ApiUtils;
+import org.hl7.davinci.pr.api.utils.SearchResponseJsonWriter;
+import org.hl7.davinci.pr.api.utils.ValidationUtils;
+import org.hl7.davinci.pr.repositories.ClaimQueryRepository;
+import org.hl7.davinci.pr.repositories.PatientRepository;
+import org.hl7.davinci.pr.repositories.PayerRepository;
+import org.hl7.davinci.pr.repositories.PaymentRepository;
+import org.hl7.davinci.pr.repositories.ProviderRepository;
+import org.hl7.davinci.pr.repositories.RemittanceRepository;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.fhir.r4.model.Parameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of 1000 concurrent searches by patient on platform threads versus virtual threads.
+ * The platform pool has the size of the default Tomcat pool. Every search also waits {@code ioWaitMillis},
+ * standing in for the network round trips to PostgreSQL and the client that the in-memory H2 database does not have.
+ * One operation is the whole batch of searches, from submitting the first to the end of the last.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchConcurrencyBenchmark {
+
+  private static final int CONCURRENT_SEARCHES = 1000;
+  private static final int TOMCAT_MAX_THREADS = 200;
+
+  @Param({"platform", "virtual"})
+  public String threadMode;
+
+  @Param({"0", "10"})
+  public int ioWaitMillis;
+
+  private ConfigurableApplicationContext context;
+  private SearchService searchService;
+  private ExecutorService executor;
+  private Parameters requestResource;
+
+  @Setup(Level.Trial)
+  public void setup() throws ParseException {
+    context = new SpringApplicationBuilder(PostableRemittanceApplication.class)
+        .web(WebApplicationType.NONE)
+        .profiles("test")
+        .properties("spring.jpa.show-sql=false", "logging.level.ROOT=WARN",
+            "spring.datasource.hikari.maximum-pool-size=20")
+        .run();
+    searchService = context.getBean(SearchService.class);
+    TestDataUtils.builder()
+        .claimQueryRepo(context.getBean(ClaimQueryRepository.class))
+        .patientRepo(context.getBean(PatientRepository.class))
+        .paymentRepo(context.getBean(PaymentRepository.class))
+        .remittanceRepo(context.getBean(RemittanceRepository.class))
+        .providerRepo(context.getBean(ProviderRepository.class))
+        .payerRepo(context.getBean(PayerRepository.class))
+        .build()
+        .allDataPopulated(true, true, true, true, true, true);
+    requestResource = ApiUtils.generateSearchByPatientRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        TestDataUtils.DATE_OF_SERVICE, TestDataUtils.DATE_OF_SERVICE_END, TestDataUtils.PAYER_ID_VAL_1,
+        TestDataUtils.PAYER_NAME_1, TestDataUtils.PATIENT_ID_1, TestDataUtils.PATIENT_DOB,
+        TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1);
+    executor = threadMode.equals("virtual")
+        ? Executors.newVirtualThreadPerTaskExecutor()
+        : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executor.shutdownNow();
+    context.close();
+  }
+
+  @Benchmark
+  public int concurrentSearches() throws Exception {
+    List<Future<String>> responses = new ArrayList<>(CONCURRENT_SEARCHES);
+    for (int i = 0; i < CONCURRENT_SEARCHES; i++) {
+      // HAPI getters can lazily initialize fields, every request gets its own resource like a parsed request body
+      Parameters request = requestResource.copy();
+      responses.add(executor.submit(() -> {
+        if (ioWaitMillis > 0) {
+          Thread.sleep(ioWaitMillis);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        SearchResponseJsonWriter.write(searchService.searchByPatient(ValidationUtils.validateSearchByPatientRequest(request)),
+            false, body);
+        return body.toString(StandardCharsets.UTF_8);
+      }));
+    }
+    int length = 0;
+    for (Future<String> response : responses) {
+      length += response.get().length();
+    }
+    return length;
+  }
+}
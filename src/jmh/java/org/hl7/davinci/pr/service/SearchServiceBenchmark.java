@@ -0,0 +1,70 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hl7.davinci.pr.api.utils.ApiUtils;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.utils.BenchmarkData;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.fhir.r4.model.Parameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search response assembly: de-duplicating the DAO rows and building the FHIR Parameters from them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchServiceBenchmark {
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  public int rowCount;
+
+  private List<ClaimSearchRow> rows;
+  private List<ClaimQuery> claimQueries;
+  private List<Patient> patients;
+  private List<Payer> payers;
+  private List<Payment> payments;
+  private List<Remittance> remittances;
+
+  @Setup
+  public void setup() {
+    rows = BenchmarkData.claimSearchRows(rowCount);
+
+    SearchResultAggregator aggregator = SearchResultAggregator.ofClaimRows(rows);
+    claimQueries = aggregator.claimQueries();
+    patients = aggregator.patients();
+    payers = aggregator.payers();
+    payments = aggregator.payments();
+    remittances = aggregator.remittances();
+  }
+
+  @Benchmark
+  public SearchResultAggregator aggregateClaimRows() {
+    return SearchResultAggregator.ofClaimRows(rows);
+  }
+
+  @Benchmark
+  public Parameters generateSearchByClaimOrPatientResponse() {
+    return ApiUtils.generateSearchByClaimOrPatientResponse(TestDataUtils.PROVIDER_TIN_1, claimQueries, patients, payers,
+        payments, remittances);
+  }
+}
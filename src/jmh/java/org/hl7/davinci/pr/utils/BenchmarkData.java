@@ -0,0 +1,73 @@
+package org.hl7.davinci.pr.utils;
+
+import jakarta.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.experimental.UtilityClass;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+
+/**
+ * Deterministic search results for the JMH benchmarks, shaped like the rows returned by the ClaimQueryDao.
+ */
+@UtilityClass
+public class BenchmarkData {
+
+  // Rows share payers and patients the way a provider's claims do, claims, payments and remittances are unique
+  public static final int PAYER_COUNT = 10;
+  public static final int CLAIMS_PER_PATIENT = 4;
+
+  /**
+   * Generates the tuples of ClaimQuery, Patient, Payer, Payment, Remittance in the order of the claimQueryDao.
+   *
+   * @param size the number of tuples
+   * @return the tuples
+   */
+  public List<Tuple> claimOrPatientTuples(int size) {
+    List<Payer> payers = new ArrayList<>(PAYER_COUNT);
+    for (int i = 0; i < PAYER_COUNT; i++) {
+      Payer payer = TestUtils.getSamplePayer("payer_" + i, "PAYER_NAME_" + i);
+      payer.setId(i);
+      payers.add(payer);
+    }
+    List<Tuple> tuples = new ArrayList<>(size);
+    Patient patient = null;
+    for (int i = 0; i < size; i++) {
+      if (i % CLAIMS_PER_PATIENT == 0) {
+        patient = TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1 + i);
+        patient.setId(i);
+      }
+      ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, "provider_claimid_" + i);
+      claimQuery.setId(i);
+      claimQuery.setPayerClaimId("payer_claim_id_" + i);
+      claimQuery.setDateOfService(claimQuery.getReceivedDate());
+      claimQuery.setClaimChargeAmount(TestDataUtils.CLAIM_CHARGE_AMOUNT + i);
+      Remittance remittance = TestUtils.getSampleRemittance("rem_adviceid_" + i);
+      remittance.setId(i);
+      Payment payment = TestUtils.getSamplePayment("PAYMENT_NUMBER_" + i);
+      payment.setId(i);
+      payment.setRemittance(remittance);
+      tuples.add(TestUtils.generateSampleFindByClaimOrPatientDaoTuple(claimQuery, patient, payers.get(i % PAYER_COUNT),
+          payment, remittance));
+    }
+    return tuples;
+  }
+
+  /**
+   * Generates the same results as {@link #claimOrPatientTuples(int)} as rows of the search by claim and patient queries.
+   *
+   * @param size the number of rows
+   * @return the rows
+   */
+  public List<ClaimSearchRow> claimSearchRows(int size) {
+    return claimOrPatientTuples(size).stream()
+        .map(tuple -> TestUtils.generateSampleFindByClaimOrPatientDaoRow(tuple.get(0, ClaimQuery.class),
+            tuple.get(1, Patient.class), tuple.get(2, Payer.class), tuple.get(3, Payment.class),
+            tuple.get(4, Remittance.class)))
+        .toList();
+  }
+}
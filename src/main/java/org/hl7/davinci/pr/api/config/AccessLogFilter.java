@@ -0,0 +1,261 @@
+package org.hl7.davinci.pr.api.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+/**
+ * Logs one structured line per request to the {@code org.hl7.davinci.pr.access} logger, which logback-spring.xml
+ * writes asynchronously: method, endpoint pattern, status, latency, request and response bytes, and the TIN hash and
+ * result count the controllers add with {@link #annotate(String, Integer)}.
+ * The TIN is logged as a keyed hash, stable across instances when {@code pr.access-log.tin-hash-key} is set.
+ * A share of the requests, {@code pr.access-log.payload-sample-rate}, also logs the first
+ * {@code pr.access-log.payload-max-bytes} bytes of the request and response bodies. The bodies hold PHI, so sampling
+ * is off by default. Nothing is wrapped or allocated while the logger is disabled.
+ */
+@Slf4j(topic = AccessLogFilter.ACCESS_LOGGER)
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+  public static final String ACCESS_LOGGER = "org.hl7.davinci.pr.access";
+  static final String TIN_ATTRIBUTE = AccessLogFilter.class.getName() + ".tin";
+  static final String RESULTS_ATTRIBUTE = AccessLogFilter.class.getName() + ".results";
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  // hex characters of the TIN hash
+  private static final int TIN_HASH_LENGTH = 16;
+  private static final int RANDOM_KEY_BYTES = 32;
+
+  private final double payloadSampleRate;
+  private final int payloadMaxBytes;
+  // cloned per hash, as a Mac is not thread safe
+  private final Mac tinHashPrototype;
+
+  public AccessLogFilter(@Value("${pr.access-log.payload-sample-rate:0}") double payloadSampleRate,
+      @Value("${pr.access-log.payload-max-bytes:2048}") int payloadMaxBytes,
+      @Value("${pr.access-log.tin-hash-key:}") String tinHashKey) throws GeneralSecurityException {
+    this.payloadSampleRate = payloadSampleRate;
+    this.payloadMaxBytes = payloadMaxBytes;
+    byte[] key;
+    if (tinHashKey.isEmpty()) {
+      //hashes can only be compared within the lifetime of the instance
+      key = new byte[RANDOM_KEY_BYTES];
+      new SecureRandom().nextBytes(key);
+    } else {
+      key = tinHashKey.getBytes(StandardCharsets.UTF_8);
+    }
+    tinHashPrototype = Mac.getInstance(HMAC_ALGORITHM);
+    tinHashPrototype.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+  }
+
+  /**
+   * Adds the TIN and the number of results of the current request to its access log line.
+   *
+   * @param tin the provider TIN of the request, logged as a hash, or null
+   * @param results the number of results of the response, or null
+   */
+  public static void annotate(String tin, Integer results) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (!log.isInfoEnabled() || attributes == null) {
+      return;
+    }
+    if (tin != null) {
+      attributes.setAttribute(TIN_ATTRIBUTE, tin, RequestAttributes.SCOPE_REQUEST);
+    }
+    if (results != null) {
+      attributes.setAttribute(RESULTS_ATTRIBUTE, results, RequestAttributes.SCOPE_REQUEST);
+    }
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    if (!log.isInfoEnabled()) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    long start = System.nanoTime();
+    boolean samplePayload = payloadSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < payloadSampleRate;
+    HttpServletRequest loggedRequest = samplePayload ? new ContentCachingRequestWrapper(request, payloadMaxBytes) : request;
+    CountingResponseWrapper loggedResponse = new CountingResponseWrapper(response, samplePayload ? payloadMaxBytes : 0);
+    try {
+      filterChain.doFilter(loggedRequest, loggedResponse);
+    } finally {
+      if (loggedRequest.isAsyncStarted()) {
+        //downloads complete on a rendering thread
+        loggedRequest.getAsyncContext().addListener(new AsyncListener() {
+          @Override
+          public void onComplete(AsyncEvent event) {
+            logRequest(loggedRequest, loggedResponse, start, samplePayload);
+          }
+
+          @Override
+          public void onTimeout(AsyncEvent event) {
+          }
+
+          @Override
+          public void onError(AsyncEvent event) {
+          }
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {
+          }
+        });
+      } else {
+        logRequest(loggedRequest, loggedResponse, start, samplePayload);
+      }
+    }
+  }
+
+  private void logRequest(HttpServletRequest request, CountingResponseWrapper response, long start,
+      boolean samplePayload) {
+    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String endpoint = (pattern != null) ? pattern.toString() : request.getRequestURI();
+    Object tin = request.getAttribute(TIN_ATTRIBUTE);
+    String tinHash = (tin != null) ? hashTin(tin.toString()) : null;
+    Object results = request.getAttribute(RESULTS_ATTRIBUTE);
+    long requestBytes = Math.max(0, request.getContentLengthLong());
+    long responseBytes = response.getByteCount();
+    if (samplePayload) {
+      log.info("method={} endpoint={} status={} latencyMs={} requestBytes={} responseBytes={} tinHash={} results={}"
+              + " requestPayload=\"{}\" responsePayload=\"{}\"",
+          request.getMethod(), endpoint, response.getStatus(), latencyMillis, requestBytes, responseBytes, tinHash,
+          results, escape(((ContentCachingRequestWrapper) request).getContentAsByteArray()),
+          escape(response.getPayload()));
+    } else {
+      log.info("method={} endpoint={} status={} latencyMs={} requestBytes={} responseBytes={} tinHash={} results={}",
+          request.getMethod(), endpoint, response.getStatus(), latencyMillis, requestBytes, responseBytes, tinHash,
+          results);
+    }
+  }
+
+  String hashTin(String tin) {
+    try {
+      Mac mac = (Mac) tinHashPrototype.clone();
+      byte[] hash = mac.doFinal(tin.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash).substring(0, TIN_HASH_LENGTH);
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the payload on one line, with quotes escaped
+   */
+  private static String escape(byte[] payload) {
+    return new String(payload, StandardCharsets.UTF_8).replace("\\", "\\\\").replace("\"", "\\\"")
+        .replace("\r", "\\r").replace("\n", "\\n");
+  }
+
+  /**
+   * Counts the bytes written to the output stream and keeps the first of them when payloads are sampled.
+   * Bytes written through the writer are taken from the Content-Length header.
+   */
+  static class CountingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final int payloadMaxBytes;
+    private ByteArrayOutputStream payload;
+    private CountingOutputStream outputStream;
+
+    CountingResponseWrapper(HttpServletResponse response, int payloadMaxBytes) {
+      super(response);
+      this.payloadMaxBytes = payloadMaxBytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        if (payloadMaxBytes > 0) {
+          payload = new ByteArrayOutputStream(payloadMaxBytes);
+        }
+        outputStream = new CountingOutputStream(super.getOutputStream());
+      }
+      return outputStream;
+    }
+
+    long getByteCount() {
+      if (outputStream != null && outputStream.count > 0) {
+        return outputStream.count;
+      }
+      String contentLength = getHeader(HttpHeaders.CONTENT_LENGTH);
+      return (contentLength != null) ? Long.parseLong(contentLength) : 0;
+    }
+
+    byte[] getPayload() {
+      return (payload != null) ? payload.toByteArray() : new byte[0];
+    }
+
+    private class CountingOutputStream extends ServletOutputStream {
+
+      private final ServletOutputStream target;
+      private long count;
+
+      CountingOutputStream(ServletOutputStream target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        target.write(b);
+        if (payload != null && payload.size() < payloadMaxBytes) {
+          payload.write(b);
+        }
+        count++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        target.write(b, off, len);
+        if (payload != null && payload.size() < payloadMaxBytes) {
+          payload.write(b, off, Math.min(len, payloadMaxBytes - payload.size()));
+        }
+        count += len;
+      }
+
+      @Override
+      public void flush() throws IOException {
+        target.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        target.close();
+      }
+
+      @Override
+      public boolean isReady() {
+        return target.isReady();
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        target.setWriteListener(writeListener);
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.hl7.davinci.pr.api.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.api.utils.FhirUtils;
+import org.hl7.davinci.pr.api.utils.SearchResponseJsonWriter;
+import org.hl7.davinci.pr.service.OperationMetrics;
+import org.hl7.davinci.pr.service.SearchResponse;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Reads and writes FHIR resources as JSON with the pooled parsers of {@link FhirUtils}.
+ * Resources are encoded straight into the response stream, so large responses never exist as one String.
+ * A {@link SearchResponse} is written as the JSON of its Parameters resource by {@link SearchResponseJsonWriter}.
+ * The {@code _pretty} request parameter selects indented or compact JSON, the configured default applies without it.
+ * Responses of the $operations are recorded in the encode stage and response payload {@link OperationMetrics}.
+ */
+public class FhirResourceHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+  public static final MediaType APPLICATION_FHIR_JSON = MediaType.parseMediaType(ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON);
+
+  private final boolean prettyPrintByDefault;
+  private final OperationMetrics operationMetrics;
+
+  /**
+   * @param prettyPrintByDefault whether JSON is indented when the request has no _pretty parameter
+   * @param operationMetrics the metrics the encoding of $operation responses is recorded in
+   */
+  public FhirResourceHttpMessageConverter(boolean prettyPrintByDefault, OperationMetrics operationMetrics) {
+    super(StandardCharsets.UTF_8, APPLICATION_FHIR_JSON, MediaType.APPLICATION_JSON);
+    this.prettyPrintByDefault = prettyPrintByDefault;
+    this.operationMetrics = operationMetrics;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return IBaseResource.class.isAssignableFrom(clazz) || SearchResponse.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return IBaseResource.class.isAssignableFrom(clazz) && super.canRead(clazz, mediaType);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+      throws IOException {
+    try {
+      return FhirUtils.parseResource(StreamUtils.copyToString(inputMessage.getBody(), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object body, HttpOutputMessage outputMessage) throws IOException {
+    HttpServletRequest request = currentRequest();
+    long start = System.nanoTime();
+    CountingOutputStream out = new CountingOutputStream(outputMessage.getBody());
+    if (body instanceof SearchResponse searchResponse) {
+      SearchResponseJsonWriter.write(searchResponse, isPrettyPrint(request), out);
+    } else {
+      Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      FhirUtils.writeJSON((IBaseResource) body, isPrettyPrint(request), writer);
+      writer.flush();
+    }
+    String operation = (request != null)
+        ? OperationMetrics.operation((String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)) : null;
+    if (operation != null) {
+      //includes writing to the client, as encoding and writing happen in the same calls
+      operationMetrics.recordStage(operation, OperationMetrics.STAGE_ENCODE, System.nanoTime() - start);
+      operationMetrics.recordPayload(operation, OperationMetrics.DIRECTION_RESPONSE, out.count);
+    }
+  }
+
+  private static HttpServletRequest currentRequest() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    return (requestAttributes instanceof ServletRequestAttributes servletRequestAttributes)
+        ? servletRequestAttributes.getRequest() : null;
+  }
+
+  /**
+   * @return the _pretty parameter of the current request, or the default if it is missing or not a boolean
+   */
+  private boolean isPrettyPrint(HttpServletRequest request) {
+    if (request != null) {
+      String pretty = request.getParameter(ApiConstants.PRETTY);
+      if ("true".equalsIgnoreCase(pretty)) {
+        return true;
+      } else if ("false".equalsIgnoreCase(pretty)) {
+        return false;
+      }
+    }
+    return prettyPrintByDefault;
+  }
+
+  /**
+   * Counts the bytes of an encoded response.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      //FilterOutputStream would write the array one byte at a time
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
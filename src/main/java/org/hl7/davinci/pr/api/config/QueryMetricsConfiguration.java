@@ -0,0 +1,53 @@
+package org.hl7.davinci.pr.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.hl7.davinci.pr.repositories.QueryMetrics;
+import org.hl7.davinci.pr.repositories.QueryMetricsDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Wraps the data source in a {@link QueryMetricsDataSource}, so every JDBC statement is recorded by fingerprint in
+ * the {@code pr.db.query*} metrics. On by default, {@code pr.db.query-metrics.enabled=false} turns it off.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pr.db.query-metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryMetricsConfiguration {
+
+  // the data source of JPA, JDBC and Flyway, from Spring Boot or ReadReplicaConfiguration
+  private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+  /**
+   * Static, as bean post processors are created before the other beans. The meter registry and the settings are
+   * looked up once the data source is created.
+   *
+   * @param meterRegistry the registry of the metrics
+   * @param environment the environment with the pr.db.query-metrics settings
+   * @return the post processor wrapping the data source
+   */
+  @Bean
+  public static BeanPostProcessor queryMetricsDataSourcePostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+      ObjectProvider<Environment> environment) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!DATA_SOURCE_BEAN_NAME.equals(beanName) || !(bean instanceof DataSource dataSource)
+            || bean instanceof QueryMetricsDataSource) {
+          return bean;
+        }
+        Environment env = environment.getObject();
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry.getObject(),
+            env.getProperty("pr.db.query-metrics.sample-rate", Double.class, 0.1),
+            env.getProperty("pr.db.query-metrics.slow-query-threshold", Duration.class, Duration.ofMillis(500)),
+            env.getProperty("pr.db.query-metrics.max-fingerprints", Integer.class, 500));
+        return new QueryMetricsDataSource(dataSource, queryMetrics);
+      }
+    };
+  }
+}
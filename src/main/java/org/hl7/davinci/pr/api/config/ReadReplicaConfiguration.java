@@ -0,0 +1,92 @@
+package org.hl7.davinci.pr.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.hl7.davinci.pr.repositories.ReadReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Routes the read-only transactions to the read replicas of {@code pr.datasource.routing.replicas} when
+ * {@code pr.datasource.routing.enabled} is set, see {@link ReadReplicaRoutingDataSource}.
+ * Replaces the data source of Spring Boot, the primary is still configured by {@code spring.datasource}.
+ * Every target gets a Hikari pool with the {@code spring.datasource.hikari} settings, named after the target in the
+ * {@code hikaricp.*} metrics. The replica pools wait at most {@code pr.datasource.routing.replica-connection-timeout}
+ * for a connection instead of the Hikari {@code connectionTimeout}, as a replica is only marked unhealthy, and its
+ * reads sent to the primary, once getting a connection has failed.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pr.datasource.routing.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+  private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+  private static final String REPLICAS_PREFIX = "pr.datasource.routing.replicas";
+  private static final String REPLICA_POOL_PREFIX = "replica-";
+
+  /**
+   * Connection settings of a read replica
+   */
+  public record Replica(String url, String username, String password) {
+  }
+
+  @Bean
+  public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+      Environment environment, MeterRegistry meterRegistry,
+      @Value("${pr.datasource.routing.health-check-interval:10s}") Duration healthCheckInterval,
+      @Value("${pr.datasource.routing.validation-timeout:2s}") Duration validationTimeout,
+      @Value("${pr.datasource.routing.replica-connection-timeout:2s}") Duration replicaConnectionTimeout) {
+    Binder binder = Binder.get(environment);
+    MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+    HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    binder.bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+    primary.setPoolName(ReadReplicaRoutingDataSource.PRIMARY);
+    primary.setMetricsTrackerFactory(metricsTrackerFactory);
+
+    List<Replica> replicaSettings = binder.bind(REPLICAS_PREFIX, Bindable.listOf(Replica.class)).orElse(List.of());
+    if (replicaSettings.isEmpty()) {
+      throw new IllegalArgumentException("pr.datasource.routing.enabled needs at least one of " + REPLICAS_PREFIX);
+    }
+    List<DataSource> replicas = new ArrayList<>();
+    for (int i = 0; i < replicaSettings.size(); i++) {
+      Replica settings = replicaSettings.get(i);
+      HikariDataSource replica = new HikariDataSource();
+      binder.bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+      replica.setPoolName(REPLICA_POOL_PREFIX + i);
+      replica.setJdbcUrl(settings.url());
+      replica.setUsername(settings.username());
+      replica.setPassword(settings.password());
+      replica.setReadOnly(true);
+      replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+      //Hikari requires the validation timeout of its connections to be below the connection timeout
+      replica.setValidationTimeout(Math.min(replica.getValidationTimeout(), replicaConnectionTimeout.toMillis()));
+      replica.setMetricsTrackerFactory(metricsTrackerFactory);
+      replicas.add(replica);
+    }
+    return new ReadReplicaRoutingDataSource(primary, replicas, healthCheckInterval, validationTimeout, meterRegistry);
+  }
+
+  /**
+   * @param routingDataSource the routing data source
+   * @return the data source of JPA, JDBC and Flyway, which gets the connection of the routing data source at the
+   * first statement, once the transaction has begun
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+}
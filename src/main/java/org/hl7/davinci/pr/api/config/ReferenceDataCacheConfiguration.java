@@ -0,0 +1,20 @@
+package org.hl7.davinci.pr.api.config;
+
+import org.hl7.davinci.pr.repositories.ReferenceDataCache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the caches of the {@link ReferenceDataCache} as a cache manager, so the actuator caches endpoint lists
+ * them under {@value ReferenceDataCache#CACHE_MANAGER} and can clear them. Caching annotations are not enabled,
+ * the caches are only read by the searches.
+ */
+@Configuration
+public class ReferenceDataCacheConfiguration {
+
+  @Bean(ReferenceDataCache.CACHE_MANAGER)
+  public CacheManager referenceDataCacheManager(ReferenceDataCache referenceDataCache) {
+    return referenceDataCache.cacheManager();
+  }
+}
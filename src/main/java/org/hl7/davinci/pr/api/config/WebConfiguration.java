@@ -0,0 +1,32 @@
+package org.hl7.davinci.pr.api.config;
+
+import java.util.List;
+import org.hl7.davinci.pr.service.OperationMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+  /**
+   * Whether FHIR JSON responses are indented when the request has no _pretty parameter
+   */
+  @Value("${pr.fhir.pretty-print:true}")
+  private boolean prettyPrint;
+
+  @Autowired
+  private OperationMetrics operationMetrics;
+
+  /**
+   * Registers the FHIR resource converter ahead of Jackson, which cannot serialize HAPI resources.
+   *
+   * @param converters the converters configured by Spring Boot
+   */
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(0, new FhirResourceHttpMessageConverter(prettyPrint, operationMetrics));
+  }
+}
@@ -7,17 +7,31 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.davinci.pr.api.utils.ApiConstants;
 import org.hl7.davinci.pr.api.utils.FhirUtils;
+import org.hl7.davinci.pr.api.utils.ParametersBinder;
 import org.hl7.davinci.pr.api.utils.ValidationUtils;
+import org.hl7.davinci.pr.service.DocumentRenderingExecutor;
+import org.hl7.davinci.pr.service.DocumentSource;
+import org.hl7.davinci.pr.service.DownloadRequest;
 import org.hl7.davinci.pr.service.DownloadService;
+import org.hl7.davinci.pr.service.OperationMetrics;
+import org.hl7.davinci.pr.service.OperationMetrics.Outcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Binary;
-import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
 import org.hl7.fhir.r4.model.Parameters;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -27,6 +41,7 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 @Slf4j
 @CrossOrigin
@@ -35,15 +50,36 @@ import org.springframework.web.bind.annotation.RestController;
 public class DownloadController {
 
   public static final String DOWNLOAD_REMITTANCE_ENDPOINT = "/$downloadRemittance";
+  public static final String RENDERING_BUSY_MESSAGE = "Endpoint %s is busy rendering other documents, please retry later.";
+  //runs the task of a request answered without rendering, on a thread of its own as a servlet thread must not run it
+  private static final AsyncTaskExecutor ANSWER_EXECUTOR = task -> Thread.ofVirtual().name("download-answer").start(task);
 
   @Autowired
   private DownloadService downloadService;
 
+  @Autowired
+  private DocumentRenderingExecutor renderingExecutor;
+
+  @Autowired
+  private OperationMetrics operationMetrics;
+
+  /**
+   * When enabled the Binary resource is streamed into the servlet response instead of being built in memory
+   */
+  @Value("${pr.download.streaming.enabled:false}")
+  private boolean streamingEnabled;
+
   /**
-   * Download remittance by providing remittance advice id
+   * Download remittance by providing remittance advice id.
+   * The request is validated on the servlet thread. The document is queried and rendered by a task Spring MVC runs on the
+   * {@link DocumentRenderingExecutor} once asynchronous processing has started, so neither the servlet thread nor an
+   * MVC async thread waits for it. In streaming mode the task writes the document into the response itself, failures
+   * before the first byte is sent are answered with an OperationOutcome.
    *
    * @param httpEntity the HTTP entity containing the request body
-   * @return a ResponseEntity with the response body, status, and headers
+   * @param response the servlet response
+   * @return a task completing with the ResponseEntity with the response resource, status, and headers,
+   *     or with null once the document has been streamed
    */
   @Operation(
       tags = {ApiConstants.OPEN_API_DOWNLOAD_REMITTANCE_ENDPOINT},
@@ -52,42 +88,152 @@ public class DownloadController {
   @PostMapping(
       path = DOWNLOAD_REMITTANCE_ENDPOINT,
       consumes = {MediaType.APPLICATION_JSON_VALUE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON})
-  public ResponseEntity<String> downloadRemittance(
-      @RequestBody(required = true, content = @Content(schema = @Schema(example = DOWNLOAD_REMITTANCE_EXAMPLE))) HttpEntity<String> httpEntity) {
-
-    String responseBody = "";
-    HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+  public WebAsyncTask<Object> downloadRemittance(
+      @RequestBody(required = true, content = @Content(schema = @Schema(example = DOWNLOAD_REMITTANCE_EXAMPLE))) HttpEntity<String> httpEntity,
+      HttpServletResponse response) {
 
+    long start = System.nanoTime();
+    String remittanceAdviceId;
+    String remittanceAdviceType;
     try {
       String body = (httpEntity.getBody() == null)?"":httpEntity.getBody();
-      Parameters requestResource = (Parameters) FhirUtils.parseResource(body);
-      ValidationUtils.validateDownloadRemittanceAdviceRequest(requestResource);
-
-      String remittanceAdviceId = requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER).getValue().toString();
-      //optional, so either null or should have a value and it should be validated by now
-      String remittanceAdviceType = (requestResource.hasParameter(ApiConstants.REMITTANCE_ADVICE_TYPE))?requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_TYPE).getValue().toString():null;
-
-      Binary binaryResource = downloadService.downloadDocument(remittanceAdviceId, remittanceAdviceType);
-      //no remittance advice has been found
-      if(binaryResource == null) {
-        responseBody = FhirUtils.convertToJSON(
-                FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
-                        String.format(RESULTS_NOT_FOUND_MESSAGE, DOWNLOAD_REMITTANCE_ENDPOINT)));
-        httpStatus = HttpStatus.NOT_FOUND;
-      } else {
-        responseBody = FhirUtils.convertToJSON(binaryResource);
-        httpStatus = HttpStatus.OK;
+      Parameters requestResource = ParametersBinder.parse(body);
+      DownloadRequest downloadRequest = ValidationUtils.validateDownloadRemittanceAdviceRequest(requestResource);
+
+      remittanceAdviceId = downloadRequest.remittanceAdviceId();
+      //optional, so either null or validated by now
+      remittanceAdviceType = downloadRequest.remittanceAdviceType();
+      operationMetrics.recordStage(OperationMetrics.DOWNLOAD_REMITTANCE, OperationMetrics.STAGE_PARSE, System.nanoTime() - start);
+      operationMetrics.recordPayload(OperationMetrics.DOWNLOAD_REMITTANCE, OperationMetrics.DIRECTION_REQUEST, body.length());
+    } catch (Exception e) {
+      ResponseEntity<IBaseResource> invalidResponse = invalidResponse(e, start);
+      return new WebAsyncTask<>(null, ANSWER_EXECUTOR, () -> invalidResponse);
+    }
+
+    if (streamingEnabled) {
+      //set on the servlet thread, a failure response replaces them
+      response.setContentType(ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON);
+      response.setHeader(HttpHeaders.LOCATION, DOWNLOAD_REMITTANCE_ENDPOINT);
+      return renderingTask(remittanceAdviceId, start, () -> stream(remittanceAdviceId, remittanceAdviceType, response, start));
+    }
+    return renderingTask(remittanceAdviceId, start, () -> download(remittanceAdviceId, remittanceAdviceType, start));
+  }
+
+  /**
+   * Wraps the rendering of one request in a task run on the {@link DocumentRenderingExecutor}. If its queue is full
+   * the task is run by the {@link #ANSWER_EXECUTOR} instead and answers with the busy response.
+   */
+  private WebAsyncTask<Object> renderingTask(String remittanceAdviceId, long start, Callable<ResponseEntity<IBaseResource>> rendering) {
+    AtomicBoolean rejected = new AtomicBoolean();
+    AsyncTaskExecutor executor = task -> {
+      try {
+        renderingExecutor.submit(Executors.callable(task));
+      } catch (RejectedExecutionException e) {
+        rejected.set(true);
+        ANSWER_EXECUTOR.execute(task);
       }
+    };
+    return new WebAsyncTask<>(null, executor, () -> rejected.get() ? busyResponse(remittanceAdviceId, start) : rendering.call());
+  }
 
+  /**
+   * Queries and renders the document, runs on a rendering thread.
+   *
+   * @return the response
+   */
+  private ResponseEntity<IBaseResource> download(String remittanceAdviceId, String remittanceAdviceType, long start) {
+    Binary binaryResource;
+    try {
+      binaryResource = downloadService.downloadDocument(remittanceAdviceId, remittanceAdviceType);
     } catch (Exception e) {
-      OperationOutcome error = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
-      responseBody = FhirUtils.convertToJSON(error);
-      log.error(String.format("POST Endpoint %s failed with response: %s", DOWNLOAD_REMITTANCE_ENDPOINT, responseBody));
+      return errorResponse(e, start);
+    }
+    //no remittance advice has been found
+    if (binaryResource == null) {
+      return notFoundResponse(start);
     }
-    log.info(String.format("POST Endpoint %s returned with response: %s", DOWNLOAD_REMITTANCE_ENDPOINT, responseBody));
+    recordRequest(Outcome.FOUND, start);
+    return buildResponse(HttpStatus.OK, binaryResource);
+  }
+
+  /**
+   * Queries the document and streams it into the response, runs on a rendering thread.
+   *
+   * @return the response to send instead of the document, null once the document has been streamed
+   */
+  private ResponseEntity<IBaseResource> stream(String remittanceAdviceId, String remittanceAdviceType, HttpServletResponse response,
+      long start) {
+    try {
+      DocumentSource documentSource = downloadService.prepareDocument(remittanceAdviceId, remittanceAdviceType);
+      if (documentSource == null) {
+        return notFoundResponse(start);
+      }
+      OutputStream outputStream = response.getOutputStream();
+      downloadService.streamDocument(remittanceAdviceId, remittanceAdviceType, documentSource, outputStream);
+      outputStream.flush();
+      recordRequest(Outcome.FOUND, start);
+      return null;
+    } catch (Exception e) {
+      if (response.isCommitted()) {
+        //part of the document has been streamed, nothing more can be sent to the client
+        recordRequest(Outcome.ERROR, start);
+        log.error(String.format("POST Endpoint %s failed while streaming the response", DOWNLOAD_REMITTANCE_ENDPOINT), e);
+        return null;
+      }
+      //drop the start of the document still in the buffer
+      response.resetBuffer();
+      return errorResponse(e, start);
+    }
+  }
+
+  private ResponseEntity<IBaseResource> notFoundResponse(long start) {
+    recordRequest(Outcome.NOT_FOUND, start);
+    return buildResponse(HttpStatus.NOT_FOUND, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
+        String.format(RESULTS_NOT_FOUND_MESSAGE, DOWNLOAD_REMITTANCE_ENDPOINT)));
+  }
+
+  private ResponseEntity<IBaseResource> busyResponse(String remittanceAdviceId, long start) {
+    log.warn(String.format("POST Endpoint %s rejected remittance advice %s, the rendering queue is full", DOWNLOAD_REMITTANCE_ENDPOINT, remittanceAdviceId));
+    recordRequest(Outcome.ERROR, start);
+    IBaseResource responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.TRANSIENT,
+        String.format(RENDERING_BUSY_MESSAGE, DOWNLOAD_REMITTANCE_ENDPOINT));
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(renderingExecutor.getRetryAfterSeconds()))
+        .body(responseResource);
+  }
+
+  /**
+   * Answers a request that failed validation.
+   */
+  private ResponseEntity<IBaseResource> invalidResponse(Exception e, long start) {
+    recordRequest(Outcome.INVALID, start);
+    log.error(String.format("POST Endpoint %s failed with error: %s", DOWNLOAD_REMITTANCE_ENDPOINT, e.getMessage()));
+    return buildResponse(HttpStatus.BAD_REQUEST, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage()));
+  }
+
+  /**
+   * Answers a valid request the document could not be queried or rendered for.
+   */
+  private ResponseEntity<IBaseResource> errorResponse(Exception e, long start) {
+    recordRequest(Outcome.ERROR, start);
+    log.error(String.format("POST Endpoint %s failed with error: %s", DOWNLOAD_REMITTANCE_ENDPOINT, e.getMessage()), e);
+    return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR,
+        FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.EXCEPTION, e.getMessage()));
+  }
+
+  /**
+   * Records a request from its start until its document is rendered, the non-streaming response is encoded afterwards.
+   */
+  private void recordRequest(Outcome outcome, long start) {
+    operationMetrics.recordRequest(OperationMetrics.DOWNLOAD_REMITTANCE, outcome, System.nanoTime() - start);
+  }
+
+  private static ResponseEntity<IBaseResource> buildResponse(HttpStatus httpStatus, IBaseResource responseResource) {
     return ResponseEntity.status(httpStatus).contentType(MediaType.APPLICATION_JSON)
         .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON)
         .header(HttpHeaders.LOCATION, DOWNLOAD_REMITTANCE_ENDPOINT)
-        .body(responseBody);
+        .body(responseResource);
   }
-}
\ No newline at end of file
+
+}
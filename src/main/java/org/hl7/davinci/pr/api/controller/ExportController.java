@@ -0,0 +1,196 @@
+package org.hl7.davinci.pr.api.controller;
+
+import static org.hl7.davinci.pr.api.utils.ApiConstants.EXPORT_EXAMPLE;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.davinci.pr.api.config.AccessLogFilter;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.api.utils.FhirUtils;
+import org.hl7.davinci.pr.api.utils.ParametersBinder;
+import org.hl7.davinci.pr.api.utils.ValidationUtils;
+import org.hl7.davinci.pr.domain.ExportJob;
+import org.hl7.davinci.pr.service.ExportService;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Period;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Asynchronous export of all payments and remittances of a TIN, following the FHIR Bulk Data kick-off, status and file requests.
+ */
+@Slf4j
+@CrossOrigin
+@RestController
+@RequestMapping("")
+public class ExportController {
+
+  public static final String EXPORT_ENDPOINT = "/$export";
+  public static final String EXPORT_STATUS_ENDPOINT = "/$export-status";
+  public static final String EXPORT_FILE_ENDPOINT = "/$export-file";
+  public static final String EXPORT_BUSY_MESSAGE = "Endpoint %s has too many exports queued, please retry later.";
+  public static final String EXPORT_NOT_FOUND_MESSAGE = "Export %s does not exist.";
+  public static final String EXPORT_FILE_NOT_FOUND_MESSAGE = "Export %s has no output file %d.";
+  public static final String EXPORT_FAILED_MESSAGE = "Export %s failed: %s";
+  public static final String EXPORT_PROGRESS = "%s: %d of %s rows exported";
+
+  private final ExportService exportService;
+
+  public ExportController(ExportService exportService) {
+    this.exportService = exportService;
+  }
+
+  /**
+   * Export kick-off endpoint that validates the request and queues the export job.
+   *
+   * @param httpEntity the HTTP entity containing the request body
+   * @return 202 Accepted with the status URL of the job in the Content-Location header,
+   *     429 with Retry-After if the export queue is full or 400 with an OperationOutcome if the request is invalid
+   */
+  @Operation(
+      tags = {ApiConstants.OPEN_API_EXPORT_ENDPOINT},
+      summary = ApiConstants.OPEN_API_DESCRIPTION_EXPORT_ENDPOINT
+  )
+  @PostMapping(
+      path = EXPORT_ENDPOINT,
+      consumes = {MediaType.APPLICATION_JSON_VALUE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON})
+  public ResponseEntity<Object> export(
+      @RequestBody(required = true, content = @Content(schema = @Schema(example = EXPORT_EXAMPLE))) HttpEntity<String> httpEntity) {
+    ExportJob job;
+    try {
+      String body = (httpEntity.getBody() == null) ? "" : httpEntity.getBody();
+      Parameters requestResource = ParametersBinder.parse(body);
+      ValidationUtils.validateExportRequest(requestResource);
+      String tin = requestResource.getParameter(ApiConstants.TIN).getValue().toString();
+      AccessLogFilter.annotate(tin, null);
+      Period period = (Period) requestResource.getParameter(ApiConstants.PAYMENT_ISSUE_DATE).getValue();
+      job = exportService.kickOff(tin, period.getStart(), period.getEnd(),
+          ServletUriComponentsBuilder.fromCurrentRequest().toUriString());
+    } catch (RejectedExecutionException e) {
+      log.warn(String.format("POST Endpoint %s rejected an export, the export queue is full", EXPORT_ENDPOINT));
+      return fhirResponse(HttpStatus.TOO_MANY_REQUESTS, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.TRANSIENT,
+          String.format(EXPORT_BUSY_MESSAGE, EXPORT_ENDPOINT)), exportService.getRetryAfterSeconds());
+    } catch (Exception e) {
+      log.error(String.format("POST Endpoint %s failed with error: %s", EXPORT_ENDPOINT, e.getMessage()));
+      return fhirResponse(HttpStatus.BAD_REQUEST, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage()), null);
+    }
+    log.info(String.format("POST Endpoint %s queued export %s", EXPORT_ENDPOINT, job.getId()));
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .header(HttpHeaders.CONTENT_LOCATION, ServletUriComponentsBuilder.fromCurrentContextPath()
+            .path(EXPORT_STATUS_ENDPOINT + "/{jobId}").buildAndExpand(job.getId()).toUriString())
+        .build();
+  }
+
+  /**
+   * Export status endpoint.
+   *
+   * @param jobId the id of the export job
+   * @return 202 Accepted with the X-Progress and Retry-After headers while the job is queued or running,
+   *     200 with the JSON manifest of the output files when it is completed, 500 with an OperationOutcome if it failed
+   *     and 404 if the job does not exist
+   */
+  @Operation(
+      tags = {ApiConstants.OPEN_API_EXPORT_ENDPOINT},
+      summary = ApiConstants.OPEN_API_DESCRIPTION_EXPORT_STATUS_ENDPOINT
+  )
+  @GetMapping(path = EXPORT_STATUS_ENDPOINT + "/{jobId}")
+  public ResponseEntity<Object> exportStatus(@PathVariable("jobId") String jobId) {
+    ExportJob job = exportService.findJob(jobId).orElse(null);
+    if (job == null) {
+      return fhirResponse(HttpStatus.NOT_FOUND, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.NOTFOUND,
+          String.format(EXPORT_NOT_FOUND_MESSAGE, jobId)), null);
+    }
+    return switch (job.getStatus()) {
+      case QUEUED, RUNNING -> ResponseEntity.status(HttpStatus.ACCEPTED)
+          .header(ApiConstants.PROGRESS_HEADER, String.format(EXPORT_PROGRESS, job.getStatus(), job.getRowCount(),
+              (job.getTotalCount() == null) ? "?" : job.getTotalCount()))
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(exportService.getRetryAfterSeconds()))
+          .build();
+      case FAILED -> fhirResponse(HttpStatus.INTERNAL_SERVER_ERROR, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR,
+          IssueType.EXCEPTION, String.format(EXPORT_FAILED_MESSAGE, jobId, job.getErrorMessage())), null);
+      case COMPLETED -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(buildManifest(job));
+    };
+  }
+
+  /**
+   * Export file endpoint, the file is sent as it is stored, gzipped.
+   *
+   * @param jobId the id of the export job
+   * @param fileIndex the index of the output file in the manifest
+   * @return the NDJSON file with Content-Encoding gzip, or 404 if the job is not completed or has no such file
+   */
+  @Operation(
+      tags = {ApiConstants.OPEN_API_EXPORT_ENDPOINT},
+      summary = ApiConstants.OPEN_API_DESCRIPTION_EXPORT_FILE_ENDPOINT
+  )
+  @GetMapping(path = EXPORT_FILE_ENDPOINT + "/{jobId}/{fileIndex}")
+  public ResponseEntity<Object> exportFile(@PathVariable("jobId") String jobId, @PathVariable("fileIndex") int fileIndex) {
+    ExportJob job = exportService.findJob(jobId).orElse(null);
+    Path file = (job == null || fileIndex < 0 || fileIndex >= job.getFileRowCounts().size()) ? null
+        : exportService.getOutputFile(job, fileIndex);
+    if (file == null || !Files.isRegularFile(file)) {
+      return fhirResponse(HttpStatus.NOT_FOUND, FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.NOTFOUND,
+          String.format(EXPORT_FILE_NOT_FOUND_MESSAGE, jobId, fileIndex)), null);
+    }
+    Resource resource = new FileSystemResource(file);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_NDJSON))
+        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+        .body(resource);
+  }
+
+  /**
+   * @return the Bulk Data manifest, listing one output entry per file with its row count
+   */
+  private static Map<String, Object> buildManifest(ExportJob job) {
+    List<Map<String, Object>> output = new ArrayList<>();
+    for (int i = 0; i < job.getFileRowCounts().size(); i++) {
+      Map<String, Object> file = new LinkedHashMap<>();
+      file.put("type", ExportService.OUTPUT_TYPE);
+      file.put("url", ServletUriComponentsBuilder.fromCurrentContextPath()
+          .path(EXPORT_FILE_ENDPOINT + "/{jobId}/{fileIndex}").buildAndExpand(job.getId(), i).toUriString());
+      file.put("count", job.getFileRowCounts().get(i));
+      output.add(file);
+    }
+    Map<String, Object> manifest = new LinkedHashMap<>();
+    manifest.put("transactionTime", job.getCreatedDate().toInstant().toString());
+    manifest.put("request", job.getRequestUrl());
+    manifest.put("requiresAccessToken", false);
+    manifest.put("output", output);
+    manifest.put("error", List.of());
+    return manifest;
+  }
+
+  private static ResponseEntity<Object> fhirResponse(HttpStatus httpStatus, Object responseResource, Long retryAfterSeconds) {
+    ResponseEntity.BodyBuilder builder = ResponseEntity.status(httpStatus).contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON);
+    if (retryAfterSeconds != null) {
+      builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+    return builder.body(responseResource);
+  }
+}
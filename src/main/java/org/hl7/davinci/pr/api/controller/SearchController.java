@@ -9,14 +9,23 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import lombok.extern.slf4j.Slf4j;
+import org.hl7.davinci.pr.api.config.AccessLogFilter;
 import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.api.utils.ApiUtils;
 import org.hl7.davinci.pr.api.utils.FhirUtils;
+import org.hl7.davinci.pr.api.utils.ParametersBinder;
 import org.hl7.davinci.pr.api.utils.ValidationUtils;
+import org.hl7.davinci.pr.service.ClaimSearchRequest;
+import org.hl7.davinci.pr.service.OperationMetrics;
+import org.hl7.davinci.pr.service.OperationMetrics.Outcome;
+import org.hl7.davinci.pr.service.PatientSearchRequest;
+import org.hl7.davinci.pr.service.PaymentSearchRequest;
+import org.hl7.davinci.pr.service.SearchResponse;
 import org.hl7.davinci.pr.service.SearchService;
-import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
 import org.hl7.fhir.r4.model.Parameters;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -25,7 +34,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @Slf4j
 @CrossOrigin
@@ -34,20 +45,32 @@ import org.springframework.web.bind.annotation.RestController;
 public class SearchController {
 
   private final SearchService searchService;
+  private final OperationMetrics operationMetrics;
+  /**
+   * When enabled search responses are written by {@link org.hl7.davinci.pr.api.utils.SearchResponseJsonWriter}
+   * instead of being built as HAPI FHIR resources.
+   */
+  private final boolean streamingEnabled;
   public static final String SEARCH_BY_CLAIM_ENDPOINT = "/$searchByClaim";
   public static final String SEARCH_BY_PATIENT_ENDPOINT = "/$searchByPatient";
   public static final String SEARCH_BY_PAYMENT_ENDPOINT = "/$searchByPayment";
   public static final String RESULTS_NOT_FOUND_MESSAGE = "POST Endpoint %s is unable to find any records.";
 
-  public SearchController(SearchService searchService) {
+  public SearchController(SearchService searchService, OperationMetrics operationMetrics,
+      @Value("${pr.search.streaming.enabled:true}") boolean streamingEnabled) {
     this.searchService = searchService;
+    this.operationMetrics = operationMetrics;
+    this.streamingEnabled = streamingEnabled;
   }
 
   /**
    * Search by claim endpoint that validates and processes the search request.
    *
    * @param httpEntity the HTTP entity containing the request body
-   * @return a ResponseEntity with the response body, status, and headers
+   * @param count the optional number of claims per page, overrides the _count parameter of the body
+   * @param continuation the optional continuation token of a next link, overrides the _continuation parameter of the body
+   * @return a ResponseEntity with the response resource or search response, status, and headers, both are encoded by
+   *     {@link org.hl7.davinci.pr.api.config.FhirResourceHttpMessageConverter}
    */
   @Operation(
       tags = {ApiConstants.OPEN_API_TAG_SEARCH_BY_CLAIM_ENDPOINT},
@@ -56,49 +79,63 @@ public class SearchController {
   @PostMapping(
       path = SEARCH_BY_CLAIM_ENDPOINT,
       consumes = {MediaType.APPLICATION_JSON_VALUE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON})
-  public ResponseEntity<String> searchByClaim(
-      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_CLAIM_EXAMPLE))) HttpEntity<String> httpEntity) {
+  public ResponseEntity<Object> searchByClaim(
+      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_CLAIM_EXAMPLE))) HttpEntity<String> httpEntity,
+      @RequestParam(name = ApiConstants.COUNT, required = false) String count,
+      @RequestParam(name = ApiConstants.CONTINUATION, required = false) String continuation) {
 
-    String responseBody = "";
+    long start = System.nanoTime();
+    Object responseResource;
     HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+    Outcome outcome = Outcome.INVALID;
+    HttpHeaders pagingHeaders = new HttpHeaders();
 
     try {
       // Validate and parse the request
-      Parameters requestResource = (Parameters) FhirUtils.parseResource(httpEntity.getBody());
-      ValidationUtils.validateSearchByClaimRequest(requestResource);
-      String requestBody = FhirUtils.convertToJSON(requestResource);
-      log.info(String.format("POST Endpoint %s is called with request: %s", SEARCH_BY_CLAIM_ENDPOINT, requestBody));
+      Parameters requestResource = parseSearchRequest(httpEntity, count, continuation);
+      ClaimSearchRequest searchRequest = ValidationUtils.validateSearchByClaimRequest(requestResource);
+      AccessLogFilter.annotate(searchRequest.filters().tin(), null);
+      recordParsed(OperationMetrics.SEARCH_BY_CLAIM, start, httpEntity);
+      outcome = Outcome.ERROR;
 
       // Search
-      Parameters responseResource = this.searchService.searchByClaim(requestResource);
+      SearchResponse searchResult = this.searchService.searchByClaim(searchRequest);
 
-      if (responseResource == null || responseResource.isEmpty()) {
+      if (searchResult == null || searchResult.isEmpty()) {
         // Unable to find any records
-        responseBody = FhirUtils.convertToJSON(
-            FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
-                String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_CLAIM_ENDPOINT)));
+        responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
+            String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_CLAIM_ENDPOINT));
         httpStatus = HttpStatus.NOT_FOUND;
+        outcome = Outcome.NOT_FOUND;
       } else {
-        responseBody = FhirUtils.convertToJSON(responseResource);
+        searchResult = resolveNextLink(searchResult, pagingHeaders);
+        int results = searchResult.resultCount();
+        AccessLogFilter.annotate(null, results);
+        operationMetrics.recordResults(OperationMetrics.SEARCH_BY_CLAIM, results);
+        responseResource = streamingEnabled ? searchResult : searchResult.toParameters();
         httpStatus = HttpStatus.OK;
+        outcome = Outcome.FOUND;
       }
     } catch (Exception e) {
-      OperationOutcome error = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
-      responseBody = FhirUtils.convertToJSON(error);
-      log.error(String.format("POST Endpoint %s failed with response: %s", SEARCH_BY_CLAIM_ENDPOINT, responseBody));
+      responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
+      log.error(String.format("POST Endpoint %s failed with error: %s", SEARCH_BY_CLAIM_ENDPOINT, e.getMessage()));
     }
-    log.info(String.format("POST Endpoint %s returned with response: %s", SEARCH_BY_CLAIM_ENDPOINT, responseBody));
+    operationMetrics.recordRequest(OperationMetrics.SEARCH_BY_CLAIM, outcome, System.nanoTime() - start);
     return ResponseEntity.status(httpStatus).contentType(MediaType.APPLICATION_JSON)
+        .headers(pagingHeaders)
         .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON)
         .header(HttpHeaders.LOCATION, SEARCH_BY_CLAIM_ENDPOINT)
-        .body(responseBody);
+        .body(responseResource);
   }
 
   /**
    * Search by patient endpoint that validates and processes the search request.
    *
    * @param httpEntity the HTTP entity containing the request body
-   * @return a ResponseEntity with the response body, status, and headers
+   * @param count the optional number of claims per page, overrides the _count parameter of the body
+   * @param continuation the optional continuation token of a next link, overrides the _continuation parameter of the body
+   * @return a ResponseEntity with the response resource or search response, status, and headers, both are encoded by
+   *     {@link org.hl7.davinci.pr.api.config.FhirResourceHttpMessageConverter}
    */
   @Operation(
       tags = {ApiConstants.OPEN_API_TAG_SEARCH_BY_PATIENT_ENDPOINT},
@@ -107,49 +144,63 @@ public class SearchController {
   @PostMapping(
       path = SEARCH_BY_PATIENT_ENDPOINT,
       consumes = {MediaType.APPLICATION_JSON_VALUE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON})
-  public ResponseEntity<String> searchByPatient(
-      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_PATIENT_EXAMPLE))) HttpEntity<String> httpEntity) {
+  public ResponseEntity<Object> searchByPatient(
+      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_PATIENT_EXAMPLE))) HttpEntity<String> httpEntity,
+      @RequestParam(name = ApiConstants.COUNT, required = false) String count,
+      @RequestParam(name = ApiConstants.CONTINUATION, required = false) String continuation) {
 
-    String responseBody = "";
+    long start = System.nanoTime();
+    Object responseResource;
     HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+    Outcome outcome = Outcome.INVALID;
+    HttpHeaders pagingHeaders = new HttpHeaders();
 
     try {
       // Validate and parse the request
-      Parameters requestResource = (Parameters) FhirUtils.parseResource(httpEntity.getBody());
-      ValidationUtils.validateSearchByPatientRequest(requestResource);
-      String requestBody = FhirUtils.convertToJSON(requestResource);
-      log.info(String.format("POST Endpoint %s is called with request: %s", SEARCH_BY_PATIENT_ENDPOINT, requestBody));
+      Parameters requestResource = parseSearchRequest(httpEntity, count, continuation);
+      PatientSearchRequest searchRequest = ValidationUtils.validateSearchByPatientRequest(requestResource);
+      AccessLogFilter.annotate(searchRequest.filters().tin(), null);
+      recordParsed(OperationMetrics.SEARCH_BY_PATIENT, start, httpEntity);
+      outcome = Outcome.ERROR;
 
       // Search
-      Parameters responseResource = this.searchService.searchByPatient(requestResource);
+      SearchResponse searchResult = this.searchService.searchByPatient(searchRequest);
 
-      if (responseResource == null || responseResource.isEmpty()) {
+      if (searchResult == null || searchResult.isEmpty()) {
         // Unable to find any records
-        responseBody = FhirUtils.convertToJSON(
-            FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
-                String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_PATIENT_ENDPOINT)));
+        responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
+            String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_PATIENT_ENDPOINT));
         httpStatus = HttpStatus.NOT_FOUND;
+        outcome = Outcome.NOT_FOUND;
       } else {
-        responseBody = FhirUtils.convertToJSON(responseResource);
+        searchResult = resolveNextLink(searchResult, pagingHeaders);
+        int results = searchResult.resultCount();
+        AccessLogFilter.annotate(null, results);
+        operationMetrics.recordResults(OperationMetrics.SEARCH_BY_PATIENT, results);
+        responseResource = streamingEnabled ? searchResult : searchResult.toParameters();
         httpStatus = HttpStatus.OK;
+        outcome = Outcome.FOUND;
       }
     } catch (Exception e) {
-      OperationOutcome error = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
-      responseBody = FhirUtils.convertToJSON(error);
-      log.error(String.format("POST Endpoint %s failed with response: %s", SEARCH_BY_PATIENT_ENDPOINT, responseBody));
+      responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
+      log.error(String.format("POST Endpoint %s failed with error: %s", SEARCH_BY_PATIENT_ENDPOINT, e.getMessage()));
     }
-    log.info(String.format("POST Endpoint %s returned with response: %s", SEARCH_BY_PATIENT_ENDPOINT, responseBody));
+    operationMetrics.recordRequest(OperationMetrics.SEARCH_BY_PATIENT, outcome, System.nanoTime() - start);
     return ResponseEntity.status(httpStatus).contentType(MediaType.APPLICATION_JSON)
+        .headers(pagingHeaders)
         .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON)
         .header(HttpHeaders.LOCATION, SEARCH_BY_PATIENT_ENDPOINT)
-        .body(responseBody);
+        .body(responseResource);
   }
 
   /**
    * Search by payment endpoint that validates and processes the search request.
    *
    * @param httpEntity the HTTP entity containing the request body
-   * @return a ResponseEntity with the response body, status, and headers
+   * @param count the optional number of claims per page, overrides the _count parameter of the body
+   * @param continuation the optional continuation token of a next link, overrides the _continuation parameter of the body
+   * @return a ResponseEntity with the response resource or search response, status, and headers, both are encoded by
+   *     {@link org.hl7.davinci.pr.api.config.FhirResourceHttpMessageConverter}
    */
   @Operation(
       tags = {ApiConstants.OPEN_API_TAG_SEARCH_BY_PAYMENT_ENDPOINT},
@@ -158,41 +209,88 @@ public class SearchController {
   @PostMapping(
       path = SEARCH_BY_PAYMENT_ENDPOINT,
       consumes = {MediaType.APPLICATION_JSON_VALUE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON})
-  public ResponseEntity<String> searchByPayment(
-      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_PAYMENT_EXAMPLE))) HttpEntity<String> httpEntity) {
+  public ResponseEntity<Object> searchByPayment(
+      @RequestBody(required = true, content = @Content(schema = @Schema(example = SEARCH_BY_PAYMENT_EXAMPLE))) HttpEntity<String> httpEntity,
+      @RequestParam(name = ApiConstants.COUNT, required = false) String count,
+      @RequestParam(name = ApiConstants.CONTINUATION, required = false) String continuation) {
 
-    String responseBody = "";
+    long start = System.nanoTime();
+    Object responseResource;
     HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+    Outcome outcome = Outcome.INVALID;
+    HttpHeaders pagingHeaders = new HttpHeaders();
 
     try {
       // Validate and parse the request
-      Parameters requestResource = (Parameters) FhirUtils.parseResource(httpEntity.getBody());
-      ValidationUtils.validateSearchByPaymentRequest(requestResource);
-      String requestBody = FhirUtils.convertToJSON(requestResource);
-      log.info(String.format("POST Endpoint %s is called with request: %s", SEARCH_BY_PAYMENT_ENDPOINT, requestBody));
+      Parameters requestResource = parseSearchRequest(httpEntity, count, continuation);
+      PaymentSearchRequest searchRequest = ValidationUtils.validateSearchByPaymentRequest(requestResource);
+      AccessLogFilter.annotate(searchRequest.filters().tin(), null);
+      recordParsed(OperationMetrics.SEARCH_BY_PAYMENT, start, httpEntity);
+      outcome = Outcome.ERROR;
 
       // Search
-      Parameters responseResource = this.searchService.searchByPayment(requestResource);
+      SearchResponse searchResult = this.searchService.searchByPayment(searchRequest);
 
-      if (responseResource == null || responseResource.isEmpty()) {
+      if (searchResult == null || searchResult.isEmpty()) {
         // Unable to find any records
-        responseBody = FhirUtils.convertToJSON(
-            FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
-                String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_PAYMENT_ENDPOINT)));
+        responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID,
+            String.format(RESULTS_NOT_FOUND_MESSAGE, SEARCH_BY_PAYMENT_ENDPOINT));
         httpStatus = HttpStatus.NOT_FOUND;
+        outcome = Outcome.NOT_FOUND;
       } else {
-        responseBody = FhirUtils.convertToJSON(responseResource);
+        searchResult = resolveNextLink(searchResult, pagingHeaders);
+        int results = searchResult.resultCount();
+        AccessLogFilter.annotate(null, results);
+        operationMetrics.recordResults(OperationMetrics.SEARCH_BY_PAYMENT, results);
+        responseResource = streamingEnabled ? searchResult : searchResult.toParameters();
         httpStatus = HttpStatus.OK;
+        outcome = Outcome.FOUND;
       }
     } catch (Exception e) {
-      OperationOutcome error = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
-      responseBody = FhirUtils.convertToJSON(error);
-      log.error(String.format("POST Endpoint %s failed with response: %s", SEARCH_BY_PAYMENT_ENDPOINT, responseBody));
+      responseResource = FhirUtils.generateErrorOutcome(IssueSeverity.ERROR, IssueType.INVALID, e.getMessage());
+      log.error(String.format("POST Endpoint %s failed with error: %s", SEARCH_BY_PAYMENT_ENDPOINT, e.getMessage()));
     }
-    log.info(String.format("POST Endpoint %s returned with response: %s", SEARCH_BY_PAYMENT_ENDPOINT, responseBody));
+    operationMetrics.recordRequest(OperationMetrics.SEARCH_BY_PAYMENT, outcome, System.nanoTime() - start);
     return ResponseEntity.status(httpStatus).contentType(MediaType.APPLICATION_JSON)
+        .headers(pagingHeaders)
         .header(HttpHeaders.CONTENT_TYPE, ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON)
         .header(HttpHeaders.LOCATION, SEARCH_BY_PAYMENT_ENDPOINT)
-        .body(responseBody);
+        .body(responseResource);
+  }
+
+  /**
+   * Binds the search request and applies the paging parameters of the query string.
+   */
+  private static Parameters parseSearchRequest(HttpEntity<String> httpEntity, String count, String continuation) {
+    Parameters requestResource = ParametersBinder.parse(httpEntity.getBody());
+    if (requestResource != null) {
+      ApiUtils.applyPagingParameters(requestResource, count, continuation);
+    }
+    return requestResource;
+  }
+
+  /**
+   * Resolves the url of the next link of a paged search response against the request URL
+   * and also returns it in a Link header.
+   */
+  private static SearchResponse resolveNextLink(SearchResponse searchResult, HttpHeaders pagingHeaders) {
+    if (searchResult.nextLink() == null) {
+      return searchResult;
+    }
+    String nextUrl = ServletUriComponentsBuilder.fromCurrentRequestUri()
+        .replaceQuery(searchResult.nextLink().substring(1))
+        .build().toUriString();
+    pagingHeaders.add(HttpHeaders.LINK, "<" + nextUrl + ">; rel=\"" + ApiConstants.LINK_RELATION_NEXT + "\"");
+    return searchResult.withNextLink(nextUrl);
+  }
+
+  /**
+   * Records the time spent parsing and validating a valid request and its size.
+   */
+  private void recordParsed(String operation, long start, HttpEntity<String> httpEntity) {
+    operationMetrics.recordStage(operation, OperationMetrics.STAGE_PARSE, System.nanoTime() - start);
+    long contentLength = httpEntity.getHeaders().getContentLength();
+    operationMetrics.recordPayload(operation, OperationMetrics.DIRECTION_REQUEST,
+        (contentLength >= 0) ? contentLength : httpEntity.getBody().length());
   }
-}
\ No newline at end of file
+}
@@ -15,9 +15,16 @@ public class ApiConstants {
   public static final String OPEN_API_DESCRIPTION_SEARCH_BY_PAYMENT_ENDPOINT = "This operation is used to search for a postable remittance by providing payment information.";
   public static final String OPEN_API_DOWNLOAD_REMITTANCE_ENDPOINT = "Download Remittance Advice";
   public static final String OPEN_API_DESCRIPTION_DOWNLOAD_REMITTANCE_ENDPOINT = "This operation is used to download a previously sent postable remittance.";
+  public static final String OPEN_API_EXPORT_ENDPOINT = "Bulk Export";
+  public static final String OPEN_API_DESCRIPTION_EXPORT_ENDPOINT = "This operation is used to start an asynchronous export of all payments and remittances of a TIN.";
+  public static final String OPEN_API_DESCRIPTION_EXPORT_STATUS_ENDPOINT = "This operation is used to poll the progress of an export and get its manifest when it is completed.";
+  public static final String OPEN_API_DESCRIPTION_EXPORT_FILE_ENDPOINT = "This operation is used to download a gzipped NDJSON output file of a completed export.";
 
   // Controller constants
   public static final String CONTENT_TYPE_APPLICATION_FHIR_JSON = "application/fhir+json; charset=utf-8";
+  public static final String PRETTY = "_pretty";
+  public static final String CONTENT_TYPE_APPLICATION_FHIR_NDJSON = "application/fhir+ndjson";
+  public static final String PROGRESS_HEADER = "X-Progress";
   public static final String SEARCH_BY_CLAIM_PATIENT_RESPONSE_META_PROFILE_URL = "http://hl7.org/fhir/us/davinci-pr/StructureDefinition/searchResultParameters";
   public static final String SEARCH_RESPONSE_RESOURCE_ID = "SearchResult";
   public static final String SEARCH_BY_PAYMENT_RESPONSE_META_PROFILE_URL = "http://hl7.org/fhir/us/davinci-pr/StructureDefinition/searchByPaymentResultParameters";
@@ -58,6 +65,18 @@ public class ApiConstants {
   public static final String REMITTANCE_ADVICE_DATE = "RemittanceAdviceDate";
   public static final String REMITTANCE_ADVICE_FILE_SIZE = "RemittanceAdviceFileSize";
 
+  // Claim parameters of one batch search by claim
+  public static final int SEARCH_MAX_CLAIMS = 1000;
+
+  // Paging Constants
+  public static final String COUNT = "_count";
+  public static final String CONTINUATION = "_continuation";
+  public static final int SEARCH_MAX_COUNT = 1000;
+  public static final String LINK = "link";
+  public static final String LINK_RELATION = "relation";
+  public static final String LINK_URL = "url";
+  public static final String LINK_RELATION_NEXT = "next";
+
   public static final String REMITTANCE_ADVICE_TYPE_PDF = "PDF";
   public static final String REMITTANCE_ADVICE_TYPE_835 = "835";
 
@@ -235,4 +254,22 @@ public class ApiConstants {
               }
           ]
       }""";
+
+  public static final String EXPORT_EXAMPLE = """
+      {
+          "resourceType": "Parameters",
+          "parameter": [
+              {
+                  "name": "TIN",
+                  "valueString": "123456789"
+              },
+              {
+                  "name": "PaymentIssueDate",
+                  "valuePeriod": {
+                      "start": "2023-09-01",
+                      "end": "2023-09-30"
+                  }
+              }
+          ]
+      }""";
 }
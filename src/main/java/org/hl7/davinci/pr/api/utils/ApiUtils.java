@@ -1,9 +1,7 @@
 package org.hl7.davinci.pr.api.utils;
 
-import java.text.SimpleDateFormat;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import lombok.experimental.UtilityClass;
 import org.hl7.davinci.pr.domain.ClaimQuery;
 import org.hl7.davinci.pr.domain.Patient;
@@ -19,12 +17,11 @@ import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
 import org.hl7.fhir.r4.model.Period;
 import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.UriType;
 
 @UtilityClass
 public class ApiUtils {
 
-  public final static SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
-
   /**
    * Generates a FHIR Parameters resource that can be used to search for a claim by provider claim ID.
    *
@@ -256,7 +253,7 @@ public class ApiUtils {
       remittanceComponent.addPart().setName(ApiConstants.REMITTANCE_ADVICE_DATE)
               .setValue(FhirUtils.generateDateType(remittance.getRemittanceAdviceDate()));
       remittanceComponent.addPart().setName(ApiConstants.REMITTANCE_ADVICE_FILE_SIZE)
-              .setValue(new IntegerType(remittance.getRemittanceAdviceFileSize()));
+              .setValue(new IntegerType().setValue(remittance.getRemittanceAdviceFileSize()));
       // Add remittance to the paymentComponent
       paymentComponent.addPart(remittanceComponent);
 
@@ -428,7 +425,7 @@ public class ApiUtils {
       remittanceComponent.addPart().setName(ApiConstants.REMITTANCE_ADVICE_DATE)
               .setValue(FhirUtils.generateDateType(remittance.getRemittanceAdviceDate()));
       remittanceComponent.addPart().setName(ApiConstants.REMITTANCE_ADVICE_FILE_SIZE)
-              .setValue(new IntegerType(remittance.getRemittanceAdviceFileSize()));
+              .setValue(new IntegerType().setValue(remittance.getRemittanceAdviceFileSize()));
       // Add the remittance to the payment
       paymentComponent.addPart(remittanceComponent);
 
@@ -438,4 +435,51 @@ public class ApiUtils {
 
     return outputParameters;
   }
+
+  /**
+   * Sets the paging parameters of a search request from the query string of the request URL.
+   * They replace the ones of the request body, so the URL of a next link continues a search posted with the same body.
+   *
+   * @param requestResource the search request
+   * @param count the number of claims per page, null to keep the one of the request body
+   * @param continuation the continuation token, null to keep the one of the request body
+   */
+  public void applyPagingParameters(Parameters requestResource, String count, String continuation) {
+    if (count != null) {
+      requestResource.getParameter().removeIf(parameter -> ApiConstants.COUNT.equals(parameter.getName()));
+      requestResource.addParameter(ApiConstants.COUNT, new StringType(count));
+    }
+    if (continuation != null) {
+      requestResource.getParameter().removeIf(parameter -> ApiConstants.CONTINUATION.equals(parameter.getName()));
+      requestResource.addParameter(ApiConstants.CONTINUATION, new StringType(continuation));
+    }
+  }
+
+  /**
+   * Builds the url of the next page of a search, same as the link of a FHIR searchset Bundle.
+   * The url is relative to the search URL and only holds the paging query parameters.
+   *
+   * @param count the number of claims per page
+   * @param continuation the continuation token of the next page
+   * @return the relative url of the next page
+   */
+  public String nextLinkUrl(int count, String continuation) {
+    return "?" + ApiConstants.COUNT + "=" + count + "&" + ApiConstants.CONTINUATION + "=" + continuation;
+  }
+
+  /**
+   * Adds a link to the next page of a search response.
+   *
+   * @param responseResource the search response
+   * @param url the url of the next page
+   */
+  public void addNextLink(Parameters responseResource, String url) {
+    ParametersParameterComponent linkComponent = new ParametersParameterComponent();
+    linkComponent.setName(ApiConstants.LINK);
+    linkComponent.addPart().setName(ApiConstants.LINK_RELATION)
+        .setValue(new StringType(ApiConstants.LINK_RELATION_NEXT));
+    linkComponent.addPart().setName(ApiConstants.LINK_URL)
+        .setValue(new UriType(url));
+    responseResource.addParameter(linkComponent);
+  }
 }
@@ -1,8 +1,5 @@
 package org.hl7.davinci.pr.api.utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Locale;
-
 public abstract class DataConstants {
 
     public static final String ZERO_DOLLARS = "$0.00";
@@ -41,6 +38,7 @@ public abstract class DataConstants {
     public static final String PDF_LABEL_CHECK_NUMBER = "Check Number: ";
     public static final String PDF_LABEL_SUMMARY_OF_BENEFITS = "SUMMARY OF BENEFITS";
     public static final String PDF_EOB_FILE_NAME = "EOB-sample.pdf";
+    public static final String X12_835_FILE_NAME = "835-sample.txt";
     public static final String PDF_LABEL_PATIENT = "Patient: ";
     public static final String PDF_LABEL_PATIENT_ID = "Patient ID: ";
     public static final String PDF_LABEL_PAID = "Paid: ";
@@ -63,6 +61,4 @@ public abstract class DataConstants {
     public static final String FAKE_PROVIDER_ADDRESS_CITY = "BELFAST";
     public static final String FAKE_PROVIDER_ADDRESS_STATE = "ME";
     public static final String FAKE_PROVIDER_ADDRESS_ZIPCODE = "049150000";
-
-    public final static SimpleDateFormat dateFormatter835 = new SimpleDateFormat("yyyyMMdd", Locale.ENGLISH);
  }
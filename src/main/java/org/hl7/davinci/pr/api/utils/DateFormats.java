@@ -0,0 +1,63 @@
+package org.hl7.davinci.pr.api.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe rendering of dates with an immutable {@link DateTimeFormatter}, shared by all request threads.
+ * Recently rendered dates are kept in a small cache indexed by their time, so the hot dates of the responses, e.g. the
+ * issue date of a payment shared by its claims, are rendered without allocating.
+ * A cache slot holds one date, a date rendered into an occupied slot replaces it.
+ */
+public class DateFormats {
+
+  /**
+   * FHIR date of the search responses, in UTC.
+   */
+  public static final DateFormats FHIR_DATE = new DateFormats(FhirUtils.DATE_TYPE_FORMAT, ZoneOffset.UTC);
+  /**
+   * Date of the PDF remittance documents, in the time zone of the server.
+   */
+  public static final DateFormats DOCUMENT_DATE = new DateFormats("yyyy-MM-dd", ZoneId.systemDefault());
+  /**
+   * Date of the X12 835 remittance documents, in the time zone of the server.
+   */
+  public static final DateFormats X12_DATE = new DateFormats("yyyyMMdd", ZoneId.systemDefault());
+  // a power of two, so the slot of a date is a mask of its hash
+  private static final int CACHE_SLOTS = 1024;
+
+  private final DateTimeFormatter formatter;
+  private final AtomicReferenceArray<Rendered> cache = new AtomicReferenceArray<>(CACHE_SLOTS);
+
+  /**
+   * @param pattern the {@link DateTimeFormatter} pattern
+   * @param zone the time zone the dates are rendered in
+   */
+  public DateFormats(String pattern, ZoneId zone) {
+    this.formatter = DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH).withZone(zone);
+  }
+
+  /**
+   * @param date the date to render
+   * @return the date rendered with the pattern of this format
+   */
+  public String format(Date date) {
+    long time = date.getTime();
+    int slot = Long.hashCode(time * 0x9E3779B97F4A7C15L) & (CACHE_SLOTS - 1);
+    Rendered rendered = cache.get(slot);
+    if (rendered != null && rendered.time == time) {
+      return rendered.text;
+    }
+    String text = formatter.format(Instant.ofEpochMilli(time));
+    cache.set(slot, new Rendered(time, text));
+    return text;
+  }
+
+  private record Rendered(long time, String text) {
+  }
+}
@@ -0,0 +1,61 @@
+package org.hl7.davinci.pr.api.utils;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of HAPI FHIR JSON parsers sharing one configuration.
+ * A parser is not thread-safe, so it is borrowed for one call and handed back afterward.
+ * A parser is only created when none is idle, and at most {@code maxIdle} parsers are kept.
+ */
+public class FhirJsonParserPool {
+
+  private final FhirContext fhirContext;
+  private final boolean prettyPrint;
+  private final BlockingQueue<IParser> idleParsers;
+
+  /**
+   * @param fhirContext the context the parsers are created from
+   * @param prettyPrint whether encoded resources are indented
+   * @param maxIdle the number of parsers kept for reuse
+   */
+  public FhirJsonParserPool(FhirContext fhirContext, boolean prettyPrint, int maxIdle) {
+    this.fhirContext = fhirContext;
+    this.prettyPrint = prettyPrint;
+    this.idleParsers = new ArrayBlockingQueue<>(maxIdle);
+  }
+
+  /**
+   * Callback run with a borrowed parser.
+   *
+   * @param <T> the result type
+   */
+  @FunctionalInterface
+  public interface ParserCallback<T> {
+
+    T apply(IParser parser) throws IOException;
+  }
+
+  /**
+   * Runs the callback with a parser of this pool, which must not be kept after the callback returns.
+   *
+   * @param callback the parsing or encoding to run
+   * @return the result of the callback
+   * @throws IOException if the callback fails to read or write
+   */
+  public <T> T withParser(ParserCallback<T> callback) throws IOException {
+    IParser parser = idleParsers.poll();
+    if (parser == null) {
+      parser = fhirContext.newJsonParser().setPrettyPrint(prettyPrint);
+    }
+    try {
+      return callback.apply(parser);
+    } finally {
+      //dropped if the pool is full
+      idleParsers.offer(parser);
+    }
+  }
+}
@@ -3,8 +3,9 @@ package org.hl7.davinci.pr.api.utils;
 import static org.hl7.davinci.pr.PostableRemittanceApplication.getFhirContext;
 
 import ca.uhn.fhir.parser.DataFormatException;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Date;
 import java.util.UUID;
 import lombok.experimental.UtilityClass;
@@ -24,19 +25,60 @@ public class FhirUtils {
   public static final String RESOURCE_EMPTY_EXCEPTION = "FHIR Resource is empty";
   public static final String DATE_TYPE_FORMAT = "yyyy-MM-dd";
   public static final String MALFORMED_BODY = "Malformed body";
+  // Parsers kept per output mode, enough for the request threads busy with FHIR JSON at the same time
+  private static final int PARSER_POOL_MAX_IDLE = 64;
+  private static final FhirJsonParserPool PRETTY_PARSERS = new FhirJsonParserPool(getFhirContext(), true, PARSER_POOL_MAX_IDLE);
+  private static final FhirJsonParserPool COMPACT_PARSERS = new FhirJsonParserPool(getFhirContext(), false, PARSER_POOL_MAX_IDLE);
 
   /**
-   * Convert a FHIR resource into JSON.
+   * Convert a FHIR resource into pretty printed JSON.
    *
    * @param resource - the resource to convert to JSON.
    * @return String - the JSON.
    */
   public String convertToJSON(IBaseResource resource) {
-    if (!resource.isEmpty()) {
-      return getFhirContext().newJsonParser().setPrettyPrint(true).encodeResourceToString(resource);
-    } else {
+    return convertToJSON(resource, true);
+  }
+
+  /**
+   * Convert a FHIR resource into JSON.
+   *
+   * @param resource - the resource to convert to JSON.
+   * @param prettyPrint - whether the JSON is indented, compact otherwise.
+   * @return String - the JSON.
+   */
+  public String convertToJSON(IBaseResource resource, boolean prettyPrint) {
+    if (resource.isEmpty()) {
+      throw new IllegalArgumentException(RESOURCE_EMPTY_EXCEPTION);
+    }
+    try {
+      return parsers(prettyPrint).withParser(parser -> parser.encodeResourceToString(resource));
+    } catch (IOException e) {
+      // encoding to a String does not do any I/O
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes a FHIR resource as JSON, without building the whole JSON in memory first.
+   *
+   * @param resource - the resource to write.
+   * @param prettyPrint - whether the JSON is indented, compact otherwise.
+   * @param writer - the target, it is not flushed or closed.
+   * @throws IOException if the writer fails
+   */
+  public void writeJSON(IBaseResource resource, boolean prettyPrint, Writer writer) throws IOException {
+    if (resource.isEmpty()) {
       throw new IllegalArgumentException(RESOURCE_EMPTY_EXCEPTION);
     }
+    parsers(prettyPrint).withParser(parser -> {
+      parser.encodeResourceToWriter(resource, writer);
+      return null;
+    });
+  }
+
+  private static FhirJsonParserPool parsers(boolean prettyPrint) {
+    return prettyPrint ? PRETTY_PARSERS : COMPACT_PARSERS;
   }
 
   /**
@@ -48,9 +90,12 @@ public class FhirUtils {
    */
   public IBaseResource parseResource(String resourceString) {
     try {
-      return getFhirContext().newJsonParser().parseResource(resourceString);
+      return COMPACT_PARSERS.withParser(parser -> parser.parseResource(resourceString));
     } catch (DataFormatException e) {
       throw new IllegalArgumentException(RESOURCE_PARSING_EXCEPTION + MALFORMED_BODY);
+    } catch (IOException e) {
+      // parsing a String does not do any I/O
+      throw new UncheckedIOException(e);
     }
   }
 
@@ -97,8 +142,7 @@ public class FhirUtils {
    * @return the DateType representation of the given date in the format specified by DATE_TYPE_FORMAT
    */
   public DateType generateDateType(Date date) {
-    return new DateType(
-        date.toInstant().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern(DATE_TYPE_FORMAT)));
+    return new DateType(DateFormats.FHIR_DATE.format(date));
   }
 
   /**
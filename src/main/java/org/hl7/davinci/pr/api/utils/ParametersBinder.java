@@ -0,0 +1,209 @@
+package org.hl7.davinci.pr.api.utils;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import lombok.experimental.UtilityClass;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Money;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.PrimitiveType;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.Type;
+
+/**
+ * Binds the JSON body of an operation request into its {@link Parameters} resource in one streaming pass.
+ * The binder reads the subset of FHIR JSON the operations of this server are called with: named parameters and parts
+ * with a string, code, date, dateTime, integer, Period or Money value. The values are set through the HAPI FHIR types,
+ * so they are parsed exactly like HAPI FHIR does.
+ * Any other body, e.g. with an id, extensions, another value type or malformed JSON, is parsed by
+ * {@link FhirUtils#parseResource(String)}, which reports its errors.
+ */
+@UtilityClass
+public class ParametersBinder {
+
+  private static final String RESOURCE_TYPE = "resourceType";
+  private static final String PARAMETER = "parameter";
+  private static final String NAME = "name";
+  private static final String PART = "part";
+  private static final String PERIOD_START = "start";
+  private static final String PERIOD_END = "end";
+  private static final String MONEY_VALUE = "value";
+  private static final String MONEY_CURRENCY = "currency";
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * @param body the JSON body of the request
+   * @return the Parameters resource of the body
+   * @throws IllegalArgumentException if the body is not a FHIR resource
+   * @throws ClassCastException if the body is a FHIR resource other than Parameters
+   */
+  public Parameters parse(String body) {
+    if (body != null) {
+      try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+        Parameters parameters = readParameters(parser);
+        if (parameters != null && parser.nextToken() == null) {
+          return parameters;
+        }
+      } catch (IOException | IllegalArgumentException | DataFormatException e) {
+        // not a body the binder reads
+      }
+    }
+    return (Parameters) FhirUtils.parseResource(body);
+  }
+
+  /**
+   * @return the Parameters resource, null if the body is not in the subset read by the binder
+   */
+  private static Parameters readParameters(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return null;
+    }
+    Parameters parameters = new Parameters();
+    boolean typed = false;
+    boolean hasParameters = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      if (RESOURCE_TYPE.equals(field) && !typed && token == JsonToken.VALUE_STRING
+          && "Parameters".equals(parser.getText())) {
+        typed = true;
+      } else if (PARAMETER.equals(field) && !hasParameters && token == JsonToken.START_ARRAY) {
+        hasParameters = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          ParametersParameterComponent parameter = readParameter(parser);
+          if (parameter == null) {
+            return null;
+          }
+          parameters.addParameter(parameter);
+        }
+      } else {
+        return null;
+      }
+    }
+    return typed ? parameters : null;
+  }
+
+  /**
+   * Reads a parameter or a part, the parser is at its start.
+   *
+   * @return the parameter, null if it is not in the subset read by the binder
+   */
+  private static ParametersParameterComponent readParameter(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      return null;
+    }
+    ParametersParameterComponent parameter = new ParametersParameterComponent();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      if (NAME.equals(field)) {
+        String name = textValue(parser);
+        if (name == null || parameter.hasName()) {
+          return null;
+        }
+        parameter.setName(name);
+      } else if (PART.equals(field)) {
+        if (token != JsonToken.START_ARRAY || parameter.hasPart()) {
+          return null;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          ParametersParameterComponent part = readParameter(parser);
+          if (part == null) {
+            return null;
+          }
+          parameter.addPart(part);
+        }
+      } else {
+        Type value = readValue(field, parser);
+        if (value == null || parameter.hasValue()) {
+          return null;
+        }
+        parameter.setValue(value);
+      }
+    }
+    return parameter.hasName() ? parameter : null;
+  }
+
+  /**
+   * @return the value of a value[x] field, null if the field is not in the subset read by the binder
+   */
+  private static Type readValue(String field, JsonParser parser) throws IOException {
+    return switch (field) {
+      case "valueString" -> primitiveValue(new StringType(), textValue(parser));
+      case "valueCode" -> primitiveValue(new CodeType(), textValue(parser));
+      case "valueDate" -> primitiveValue(new DateType(), textValue(parser));
+      case "valueDateTime" -> primitiveValue(new DateTimeType(), textValue(parser));
+      case "valueInteger" -> primitiveValue(new IntegerType(),
+          (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) ? parser.getText() : null);
+      case "valuePeriod" -> readPeriod(parser);
+      case "valueMoney" -> readMoney(parser);
+      default -> null;
+    };
+  }
+
+  private static Period readPeriod(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      return null;
+    }
+    Period period = new Period();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      parser.nextToken();
+      String text = textValue(parser);
+      if (PERIOD_START.equals(field) && text != null && !period.hasStart()) {
+        period.getStartElement().setValueAsString(text);
+      } else if (PERIOD_END.equals(field) && text != null && !period.hasEnd()) {
+        period.getEndElement().setValueAsString(text);
+      } else {
+        return null;
+      }
+    }
+    return period;
+  }
+
+  private static Money readMoney(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      return null;
+    }
+    Money money = new Money();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      if (MONEY_VALUE.equals(field) && token.isNumeric() && !money.hasValue()) {
+        money.getValueElement().setValueAsString(parser.getText());
+      } else if (MONEY_CURRENCY.equals(field) && textValue(parser) != null && !money.hasCurrency()) {
+        money.setCurrency(parser.getText());
+      } else {
+        return null;
+      }
+    }
+    return money;
+  }
+
+  private static Type primitiveValue(PrimitiveType<?> value, String text) {
+    if (text == null) {
+      return null;
+    }
+    value.setValueAsString(text);
+    return value;
+  }
+
+  /**
+   * @return the text of a string value, null for any other value and for empty or padded text, which HAPI FHIR reports
+   */
+  private static String textValue(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.VALUE_STRING) {
+      return null;
+    }
+    String text = parser.getText();
+    return (text.isEmpty() || !text.equals(text.strip())) ? null : text;
+  }
+}
@@ -0,0 +1,221 @@
+package org.hl7.davinci.pr.api.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.Separators;
+import com.fasterxml.jackson.core.util.Separators.Spacing;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import lombok.experimental.UtilityClass;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.service.SearchResponse;
+import org.hl7.fhir.r4.model.DecimalType;
+import org.springframework.util.StringUtils;
+
+/**
+ * Writes a search response as the FHIR JSON of its Parameters resource straight from the entities of the result,
+ * without building the HAPI FHIR resource.
+ * The JSON is the same as the one HAPI FHIR encodes from {@link SearchResponse#toParameters()}, compact or with the
+ * indentation of HAPI FHIR, which the conformance tests of this writer check.
+ * The parameters are written in the order of {@link ApiUtils} and blank values are left out like HAPI FHIR does.
+ */
+@UtilityClass
+public class SearchResponseJsonWriter {
+
+  private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+      // the caller owns the response stream
+      .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+      .build();
+  // the layout of HAPI FHIR: two spaces per level, "name": value, objects of an array opened on the line of the array
+  private static final DefaultPrettyPrinter PRETTY_PRINTER = new DefaultPrettyPrinter()
+      .withSeparators(Separators.createDefaultInstance().withObjectFieldValueSpacing(Spacing.AFTER))
+      .withObjectIndenter(new DefaultIndenter("  ", "\n"));
+
+  /**
+   * @param response the search response
+   * @param prettyPrint whether the JSON is indented
+   * @param out the stream the UTF-8 JSON is written to, flushed but not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(SearchResponse response, boolean prettyPrint, OutputStream out) throws IOException {
+    // a character generator like HAPI FHIR, the UTF-8 generator would escape characters outside the BMP
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+      if (prettyPrint) {
+        generator.setPrettyPrinter(PRETTY_PRINTER.createInstance());
+      }
+      generator.writeStartObject();
+      generator.writeStringField("resourceType", "Parameters");
+      generator.writeStringField("id", ApiConstants.SEARCH_RESPONSE_RESOURCE_ID);
+      generator.writeObjectFieldStart("meta");
+      generator.writeArrayFieldStart("profile");
+      generator.writeString(response.byPayment() ? ApiConstants.SEARCH_BY_PAYMENT_RESPONSE_META_PROFILE_URL
+          : ApiConstants.SEARCH_BY_CLAIM_PATIENT_RESPONSE_META_PROFILE_URL);
+      generator.writeEndArray();
+      generator.writeEndObject();
+
+      generator.writeArrayFieldStart("parameter");
+      writeString(generator, ApiConstants.TIN, response.tin());
+      for (Payer payer : response.payers()) {
+        startParts(generator, ApiConstants.PAYER);
+        writeString(generator, ApiConstants.PAYER_ID, payer.getPayerIdentity());
+        writeString(generator, ApiConstants.PAYER_NAME, payer.getPayerName());
+        endParts(generator);
+      }
+      if (response.byPayment()) {
+        writePayments(generator, response);
+      } else {
+        writeClaimsAndPatients(generator, response);
+      }
+      if (response.nextLink() != null) {
+        startParts(generator, ApiConstants.LINK);
+        writeString(generator, ApiConstants.LINK_RELATION, ApiConstants.LINK_RELATION_NEXT);
+        writeValue(generator, ApiConstants.LINK_URL, "valueUri", response.nextLink());
+        endParts(generator);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Writes the claims with their payment and remittance, then the patients, paired like
+   * {@link ApiUtils#generateSearchByClaimOrPatientResponse}.
+   */
+  private static void writeClaimsAndPatients(JsonGenerator generator, SearchResponse response) throws IOException {
+    Iterator<Payment> paymentIterator = response.payments().iterator();
+    Iterator<Remittance> remittanceIterator = response.remittances().iterator();
+    Payment payment = null;
+    Remittance remittance = null;
+    String subscriberPatientId = null;
+    for (ClaimQuery claimQuery : response.claimQueries()) {
+      if (paymentIterator.hasNext()) {
+        payment = paymentIterator.next();
+      }
+      if (remittanceIterator.hasNext()) {
+        remittance = remittanceIterator.next();
+      }
+      startParts(generator, ApiConstants.CLAIM);
+      writeString(generator, ApiConstants.PROVIDER_CLAIM_ID, claimQuery.getProviderClaimID());
+      writeDate(generator, ApiConstants.CLAIM_RECEIVED_DATE, claimQuery.getReceivedDate());
+      writeString(generator, ApiConstants.PROVIDER_ID, claimQuery.getProviderNPI());
+      writeString(generator, ApiConstants.PAYER_CLAIM_ID, claimQuery.getPayerClaimId());
+      subscriberPatientId = claimQuery.getSubscriberPatientId();
+
+      startParts(generator, ApiConstants.PAYMENT_INFO);
+      writeDate(generator, ApiConstants.PAYMENT_DATE, payment.getPayment_issue_dt());
+      writeString(generator, ApiConstants.PAYMENT_NUMBER, payment.getPaymentNumber());
+      writeAmount(generator, payment.getAmount());
+      writeRemittance(generator, remittance);
+      endParts(generator);
+      endParts(generator);
+    }
+
+    for (Patient patient : response.patients()) {
+      startParts(generator, ApiConstants.PATIENT);
+      writeDate(generator, ApiConstants.DATE_OF_BIRTH, patient.getDateOfBirth());
+      // Patient id is the subscriber_patient_id associated with claim_query
+      writeString(generator, ApiConstants.PATIENT_ID, subscriberPatientId);
+      writeString(generator, ApiConstants.PATIENT_FIRST_NAME, patient.getFirstName());
+      writeString(generator, ApiConstants.PATIENT_LAST_NAME, patient.getLastName());
+      endParts(generator);
+    }
+  }
+
+  /**
+   * Writes the payments with their remittance, paired like {@link ApiUtils#generateSearchByPaymentResponse}.
+   */
+  private static void writePayments(JsonGenerator generator, SearchResponse response) throws IOException {
+    Iterator<Remittance> remittanceIterator = response.remittances().iterator();
+    Remittance remittance = null;
+    for (Payment payment : response.payments()) {
+      if (remittanceIterator.hasNext()) {
+        remittance = remittanceIterator.next();
+      }
+      startParts(generator, ApiConstants.PAYMENT_INFO);
+      writeDate(generator, ApiConstants.PAYMENT_ISSUE_DATE, payment.getPayment_issue_dt());
+      writeString(generator, ApiConstants.PAYMENT_NUMBER, payment.getPaymentNumber());
+      writeAmount(generator, payment.getAmount());
+      writeRemittance(generator, remittance);
+      endParts(generator);
+    }
+  }
+
+  private static void writeRemittance(JsonGenerator generator, Remittance remittance) throws IOException {
+    startParts(generator, ApiConstants.REMITTANCE);
+    writeString(generator, ApiConstants.REMITTANCE_ADVICE_IDENTIFIER, remittance.getRemittanceAdviceId());
+    writeValue(generator, ApiConstants.REMITTANCE_ADVICE_TYPE, "valueCode", remittance.getRemittanceAdviceType());
+    writeDate(generator, ApiConstants.REMITTANCE_ADVICE_DATE, remittance.getRemittanceAdviceDate());
+    startParameter(generator, ApiConstants.REMITTANCE_ADVICE_FILE_SIZE);
+    if (remittance.getRemittanceAdviceFileSize() != null) {
+      generator.writeNumberField("valueInteger", remittance.getRemittanceAdviceFileSize());
+    }
+    endParameter(generator);
+    endParts(generator);
+  }
+
+  private static void writeAmount(JsonGenerator generator, Float amount) throws IOException {
+    startParameter(generator, ApiConstants.PAYMENT_AMOUNT);
+    generator.writeObjectFieldStart("valueMoney");
+    // the decimal of HAPI FHIR, an amount is stored as float and widened to double on the way
+    generator.writeFieldName("value");
+    generator.writeNumber(new DecimalType(amount).getValueAsString());
+    generator.writeStringField("currency", ApiConstants.PAYMENT_CURRENCY);
+    generator.writeEndObject();
+    endParameter(generator);
+  }
+
+  private static void writeString(JsonGenerator generator, String name, String value) throws IOException {
+    writeValue(generator, name, "valueString", value);
+  }
+
+  private static void writeDate(JsonGenerator generator, String name, Date value) throws IOException {
+    writeValue(generator, name, "valueDate", DateFormats.FHIR_DATE.format(value));
+  }
+
+  /**
+   * Writes a parameter with a primitive value, the value is left out if it is blank.
+   */
+  private static void writeValue(JsonGenerator generator, String name, String valueField, String value)
+      throws IOException {
+    startParameter(generator, name);
+    if (StringUtils.hasText(value)) {
+      generator.writeStringField(valueField, value);
+    }
+    endParameter(generator);
+  }
+
+  private static void startParameter(JsonGenerator generator, String name) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("name", name);
+  }
+
+  private static void endParameter(JsonGenerator generator) throws IOException {
+    generator.writeEndObject();
+  }
+
+  /**
+   * Starts a parameter holding parts.
+   */
+  private static void startParts(JsonGenerator generator, String name) throws IOException {
+    startParameter(generator, name);
+    generator.writeArrayFieldStart("part");
+  }
+
+  private static void endParts(JsonGenerator generator) throws IOException {
+    generator.writeEndArray();
+    endParameter(generator);
+  }
+}
@@ -3,15 +3,25 @@ package org.hl7.davinci.pr.api.utils;
 import static org.hl7.davinci.pr.api.utils.ApiConstants.REMITTANCE_ADVICE_TYPE_835;
 import static org.hl7.davinci.pr.api.utils.ApiConstants.REMITTANCE_ADVICE_TYPE_PDF;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 import lombok.experimental.UtilityClass;
+import org.hl7.davinci.pr.repositories.ClaimLookup;
+import org.hl7.davinci.pr.repositories.KeysetPage;
+import org.hl7.davinci.pr.repositories.PaymentNumberMatch;
+import org.hl7.davinci.pr.service.ClaimSearchRequest;
+import org.hl7.davinci.pr.service.DownloadRequest;
+import org.hl7.davinci.pr.service.PatientSearchRequest;
+import org.hl7.davinci.pr.service.PaymentSearchRequest;
+import org.hl7.davinci.pr.service.SearchFilters;
 import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Money;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
 import org.hl7.fhir.r4.model.Period;
-import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.r4.model.Type;
 import org.springframework.util.StringUtils;
 
@@ -23,26 +33,38 @@ public class ValidationUtils {
   public static final String TIN_VALIDATION_REGEX = "\\d{9}";
   // Date Validation Regex from https://hl7.org/fhir/R4/datatypes.html#date
   public static final String DATE_FORMAT_VALIDATION_REGEX = "([0-9]([0-9]([0-9][1-9]|[1-9]0)|[1-9]00)|[1-9]000)(-(0[1-9]|1[0-2])(-(0[1-9]|[1-2][0-9]|3[0-1]))?)?";
+  // Compiled once, String.matches would compile the regex on every call
+  private static final Pattern DATE_OF_SERVICE_PATTERN = Pattern.compile(DATE_OF_SERVICE_VALIDATION_REGEX);
+  private static final Pattern TIN_PATTERN = Pattern.compile(TIN_VALIDATION_REGEX);
+  private static final Pattern DATE_FORMAT_PATTERN = Pattern.compile(DATE_FORMAT_VALIDATION_REGEX);
 
   // Validation Messages
   public final String DATE_OF_SERVICE_VALIDATION_MESSAGE = "Invalid Date Format. Date %s must be in the format YYYY, YYYY-MM, YYYY-MM-DD or YYYY-MM-DDThh:mm:ss+zz:zz, e.g. 2018, 1973-06, 1905-08-23, 2015-02-07T13:28:17-05:00 or 2017-01-01T00:00:00.000Z";
   public final String DATE_OF_BIRTH_VALIDATION_MESSAGE = "Invalid Date Format. Date %s must be in the format YYYY, YYYY-MM, or YYYY-MM-DD, e.g. 2018, 1973-06, or 1905-08-23. There SHALL be no time zone.";
   public final String PERIOD_VALIDATION_MESSAGE = "The date %s must be before date %s";
+  public final String PERIOD_TYPE_MESSAGE = "%s must be a period.";
   public final String TIN_VALUE_VALIDATION_MESSAGE = "TIN %s must be exactly 9 digits long.";
   public final String TIN_REQUIRED_MESSAGE = "TIN is required.";
   public final String CLAIM_REQUIRED_MESSAGE = "Claim is required.";
+  public final String CLAIM_LIMIT_MESSAGE = "%d Claim parameters were sent, a search accepts at most %d.";
   public final String PROVIDER_CLAIM_ID_REQUIRED_MESSAGE = "ProviderClaimId is required.";
+  public final String CLAIM_CHARGE_AMOUNT_VALIDATION_MESSAGE = "ClaimChargeAmount %s must be a number.";
   public final String PATIENT_REQUIRED_MESSAGE = "Patient is required.";
   public final String PATIENT_ID_REQUIRED_MESSAGE = "PatientId is required.";
   public final String DATE_OF_BIRTH_REQUIRED_MESSAGE = "Date of Birth is required.";
   public final String PAYMENT_REQUIRED_MESSAGE = "PaymentInfo is required.";
   public final String PAYMENT_ISSUE_DATE_REQUIRED_MESSAGE = "PaymentIssueDate is required.";
+  public final String PAYMENT_ISSUE_DATE_PERIOD_MESSAGE = "PaymentIssueDate must be a period with a start and an end date.";
   public final String PAYMENT_NUMBER_REQUIRED_MESSAGE = "PaymentNumber is required.";
+  public final String PAYMENT_NUMBER_EMPTY_MATCH_MESSAGE = "PaymentNumber %s has no characters to match.";
+  public final String PAYMENT_AMOUNT_VALIDATION_MESSAGE = "%s must be an amount of money.";
   public final String REMITTANCE_ADVICE_ID_REQUIRED_MESSAGE = "Remittance Advice Identifier is required.";
   private static final String REMITTANCE_ADVICE_TYPE_REQUIRED_MESSAGE = "Remittance Advice Type is required.";
   private static final String REMITTANCE_ADVICE_TYPE_FORMAT_MESSAGE = "Remittance Advice Type should be either PDF or 835.";
   public final String REQUEST_PARAMETERS_EMPTY_MESSAGE = "Request parameters should not be empty.";
   public final String REMITTANCE_ADVICE_REQUEST_PARAMETERS_EMPTY_MESSAGE = "Download Remittance Advice Parameters should not be empty.";
+  public final String COUNT_VALIDATION_MESSAGE = "_count %s must be a number between 1 and %d.";
+  public final String CONTINUATION_WITHOUT_COUNT_MESSAGE = "_continuation requires _count.";
 
 
   /**
@@ -52,9 +74,7 @@ public class ValidationUtils {
    * @throws IllegalArgumentException if the date string does not match the expected format
    */
   public void validateDateOfServiceFormat(String date) {
-    if (StringUtils.hasText(date) && !date.matches(DATE_OF_SERVICE_VALIDATION_REGEX)) {
-      throw new IllegalArgumentException(String.format(DATE_OF_SERVICE_VALIDATION_MESSAGE, date));
-    }
+    throwIfInvalid(dateOfServiceError(date));
   }
 
   /**
@@ -64,9 +84,7 @@ public class ValidationUtils {
    * @throws IllegalArgumentException if the date string does not match the expected format
    */
   public void validateDateOfBirthFormat(String date) {
-    if (StringUtils.hasText(date) && !date.matches(DATE_FORMAT_VALIDATION_REGEX)) {
-      throw new IllegalArgumentException(String.format(DATE_OF_BIRTH_VALIDATION_MESSAGE, date));
-    }
+    throwIfInvalid(dateOfBirthError(date));
   }
 
   /**
@@ -77,9 +95,7 @@ public class ValidationUtils {
    * @
    */
   public void validatePeriod(Period period) {
-    if (period.getStart() != null && period.getEnd() != null && !period.getStart().before(period.getEnd())) {
-      throw new IllegalArgumentException(String.format(PERIOD_VALIDATION_MESSAGE, period.getStart(), period.getEnd()));
-    }
+    throwIfInvalid(periodOrderError(period));
   }
 
   /**
@@ -89,13 +105,7 @@ public class ValidationUtils {
    * @throws IllegalArgumentException if the TIN is empty or in the incorrect format
    */
   public void validateTin(String tin) {
-    if (StringUtils.hasText(tin)) {
-      if (!tin.matches(TIN_VALIDATION_REGEX)) {
-        throw new IllegalArgumentException(String.format(TIN_VALUE_VALIDATION_MESSAGE, tin));
-      }
-    } else {
-      throw new IllegalArgumentException(TIN_REQUIRED_MESSAGE);
-    }
+    throwIfInvalid(tinError(tin));
   }
 
   /**
@@ -105,9 +115,7 @@ public class ValidationUtils {
    * @throws IllegalArgumentException if the provider claim ID is empty
    */
   public void validateProviderClaimId(String providerClaimId) {
-    if (!StringUtils.hasText(providerClaimId)) {
-      throw new IllegalArgumentException(PROVIDER_CLAIM_ID_REQUIRED_MESSAGE);
-    }
+    throwIfInvalid(providerClaimIdError(providerClaimId));
   }
 
   /**
@@ -117,21 +125,21 @@ public class ValidationUtils {
    * @throws IllegalArgumentException if the patientID is empty
    */
   public void validatePatientId(String patientId) {
-    if (!StringUtils.hasText(patientId)) {
-      throw new IllegalArgumentException(PATIENT_ID_REQUIRED_MESSAGE);
-    }
+    throwIfInvalid(patientIdError(patientId));
   }
 
   /**
-   * Validates the patient ID.
+   * Validates the payment number, which is matched as described by {@link PaymentNumberMatch}.
+   * A value in double quotes or ending with {@code *} selects the exact or prefix match. Before the match modes such a
+   * value was searched for as it is, so {@code "A1"} used to find only payment numbers containing the quotes and
+   * {@code A1*} only those containing the asterisk. A quoted value or a trailing asterisk can no longer be searched for
+   * literally.
    *
    * @param paymentNumber the payment number to be validated
-   * @throws IllegalArgumentException if the payment number is empty
+   * @throws IllegalArgumentException if the payment number is empty, or empty without the quotes or asterisk of its match
    */
   public void validatePaymentNumber(String paymentNumber) {
-    if (!StringUtils.hasText(paymentNumber)) {
-      throw new IllegalArgumentException(PAYMENT_NUMBER_REQUIRED_MESSAGE);
-    }
+    throwIfInvalid(paymentNumberError(paymentNumber));
   }
 
   /**
@@ -146,6 +154,23 @@ public class ValidationUtils {
     }
   }
 
+  /**
+   * Validates the optional paging parameters of a search request.
+   *
+   * @param requestResource the search request
+   * @return the page to search for, {@link KeysetPage#UNPAGED} if there is no _count
+   * @throws IllegalArgumentException if _count is not a number in range or the continuation token is not valid
+   */
+  public KeysetPage validatePaging(Parameters requestResource) {
+    SearchParameters parameters = new SearchParameters();
+    for (ParametersParameterComponent parameter : requestResource.getParameter()) {
+      parameters.read(parameter);
+    }
+    KeysetPage page = parameters.page();
+    parameters.throwIfInvalid();
+    return page;
+  }
+
   private static void validateParameter(ParametersParameterComponent parameterComponent) {
     if(parameterComponent.getName() == null || parameterComponent.getValue() == null ) {
       throw new IllegalArgumentException(FhirUtils.MALFORMED_BODY);
@@ -171,157 +196,454 @@ public class ValidationUtils {
    * Validates a FHIR Parameters resource for downloading a remittance advice.
    *
    * @param requestResource the FHIR Parameters resource to be validated
+   * @return the download request read from the parameters
    */
-  public void validateDownloadRemittanceAdviceRequest(Parameters requestResource) {
+  public DownloadRequest validateDownloadRemittanceAdviceRequest(Parameters requestResource) {
     if (requestResource.isEmpty()) {
       throw new IllegalArgumentException(REMITTANCE_ADVICE_REQUEST_PARAMETERS_EMPTY_MESSAGE);
     }
     // Validate required RemittanceAdviceIdentifier.
+    String remittanceAdviceId;
     if (requestResource.hasParameter(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER)) {
       ParametersParameterComponent param = requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER);
       validateParameter(param);
-      validateRemittanceAdviceId(param.getValue().toString() );
+      remittanceAdviceId = param.getValue().toString();
+      validateRemittanceAdviceId(remittanceAdviceId);
     } else {
       throw new IllegalArgumentException(REMITTANCE_ADVICE_ID_REQUIRED_MESSAGE);
     }
 
     // Validate RemittanceAdviceType is present and it has the right value
+    String remittanceAdviceType = null;
     if (requestResource.hasParameter(ApiConstants.REMITTANCE_ADVICE_TYPE)) {
       validateParameter(requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_TYPE));
-      String remittanceAdviceType =  requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_TYPE).getValue().toString();
+      remittanceAdviceType =  requestResource.getParameter(ApiConstants.REMITTANCE_ADVICE_TYPE).getValue().toString();
       validateRemittanceAdviceType(remittanceAdviceType);
     }
+    return new DownloadRequest(remittanceAdviceId, remittanceAdviceType);
   }
 
   /**
-   * Validates following fields for SearchByClaimRequest endpoint:
+   * Validates following fields for SearchByClaimRequest endpoint and reads them in one pass over the parameters:
    * - TIN
-   * - Claim: Provider Claim ID
+   * - Claim: Provider Claim ID of every Claim, at most {@link ApiConstants#SEARCH_MAX_CLAIMS} of them
+   * - Claim: Claim Charge Amount
    * - Period: Date of Service Start
    * - Period: Date of Service End
+   * - Paging: _count and _continuation
    *
-   * @throws IllegalArgumentException if any of the fields are invalid
+   * @param requestResource the {@link Parameters} object to validate
+   * @return the search request read from the parameters
+   * @throws IllegalArgumentException with the messages of all invalid fields
    */
-  public void validateSearchByClaimRequest(Parameters requestResource) throws IllegalArgumentException {
-    if (requestResource == null || requestResource.isEmpty()) {
-      throw new IllegalArgumentException(REQUEST_PARAMETERS_EMPTY_MESSAGE);
-    }
-    // Validate required TIN
-    if (requestResource.hasParameter(ApiConstants.TIN)) {
-      validateTin(requestResource.getParameter(ApiConstants.TIN).getValue().toString());
-    } else {
-      throw new IllegalArgumentException(TIN_REQUIRED_MESSAGE);
-    }
-    // Validate required ProviderClaimId from CLAIM
-    if (requestResource.hasParameter(ApiConstants.CLAIM)) {
-      requestResource.getParameter(ApiConstants.CLAIM).getPart().stream()
-          .filter(part -> part.getName().equals(ApiConstants.PROVIDER_CLAIM_ID))
-          .findAny()
-          .ifPresentOrElse(component -> validateProviderClaimId(component.getValue().toString()),
-              () -> {
-                throw new IllegalArgumentException(PROVIDER_CLAIM_ID_REQUIRED_MESSAGE);
-              });
-    } else {
-      throw new IllegalArgumentException(CLAIM_REQUIRED_MESSAGE);
+  public ClaimSearchRequest validateSearchByClaimRequest(Parameters requestResource) throws IllegalArgumentException {
+    requireParameters(requestResource);
+    SearchParameters parameters = new SearchParameters();
+    // Claim parameters are repeated for a batch search
+    List<ParametersParameterComponent> claimParameters = new ArrayList<>();
+    ParametersParameterComponent patientIdParameter = null;
+    for (ParametersParameterComponent parameter : requestResource.getParameter()) {
+      if (parameters.read(parameter)) {
+        continue;
+      }
+      if (ApiConstants.CLAIM.equals(parameter.getName())) {
+        claimParameters.add(parameter);
+      } else if (ApiConstants.PATIENT_ID.equals(parameter.getName()) && patientIdParameter == null) {
+        patientIdParameter = parameter;
+      }
     }
+    SearchFilters filters = parameters.filters();
 
-    // Validate Date of Service format and range
-    if (requestResource.hasParameter(ApiConstants.DATE_OF_SERVICE)) {
-      Period period = (Period) requestResource.getParameter(ApiConstants.DATE_OF_SERVICE).getValue();
-      validateDateOfServiceFormat(period.getStartElement().asStringValue());
-      validateDateOfServiceFormat(period.getEndElement().asStringValue());
-      validatePeriod(period);
+    // Validate required ProviderClaimId of every CLAIM
+    List<ClaimLookup> claimLookups = new ArrayList<>(claimParameters.size());
+    if (claimParameters.isEmpty()) {
+      parameters.errors.add(CLAIM_REQUIRED_MESSAGE);
+    } else if (claimParameters.size() > ApiConstants.SEARCH_MAX_CLAIMS) {
+      parameters.errors.add(String.format(CLAIM_LIMIT_MESSAGE, claimParameters.size(), ApiConstants.SEARCH_MAX_CLAIMS));
+    } else {
+      for (ParametersParameterComponent claimParameter : claimParameters) {
+        claimLookups.add(readClaimLookup(claimParameter, parameters.errors));
+      }
     }
+    parameters.throwIfInvalid();
+    return new ClaimSearchRequest(filters, claimLookups, stringValue(patientIdParameter));
   }
 
   /**
-   * Validates following fields for the SearchByPatientRequest endpoint:
+   * Validates following fields for the SearchByPatientRequest endpoint and reads them in one pass over the parameters:
    * - TIN
    * - Patient: PatientID
    * - Patient: DateOfBirth
+   * - Period: Date of Service Start and End
+   * - Paging: _count and _continuation
    *
    * @param requestResource the {@link Parameters} object to validate
-   * @throws IllegalArgumentException if any of the fields are invalid
+   * @return the search request read from the parameters
+   * @throws IllegalArgumentException with the messages of all invalid fields
    */
-  public void validateSearchByPatientRequest(Parameters requestResource) throws IllegalArgumentException {
-    if (requestResource == null || requestResource.isEmpty()) {
-      throw new IllegalArgumentException(REQUEST_PARAMETERS_EMPTY_MESSAGE);
-    }
-    // Validate required TIN
-    if (requestResource.hasParameter(ApiConstants.TIN)) {
-      validateTin(requestResource.getParameter(ApiConstants.TIN).getValue().toString());
-    } else {
-      throw new IllegalArgumentException(TIN_REQUIRED_MESSAGE);
+  public PatientSearchRequest validateSearchByPatientRequest(Parameters requestResource) throws IllegalArgumentException {
+    requireParameters(requestResource);
+    SearchParameters parameters = new SearchParameters();
+    ParametersParameterComponent patientParameter = null;
+    for (ParametersParameterComponent parameter : requestResource.getParameter()) {
+      if (!parameters.read(parameter) && ApiConstants.PATIENT.equals(parameter.getName()) && patientParameter == null) {
+        patientParameter = parameter;
+      }
     }
+    SearchFilters filters = parameters.filters();
+
     // Validate required PatientID and DateOfBirth from Patient
-    if (requestResource.hasParameter(ApiConstants.PATIENT)) {
-      List<ParametersParameterComponent> patientParameter = requestResource.getParameter(ApiConstants.PATIENT)
-          .getPart();
-      Map<String, Type> patientObject = new HashMap<>();
-      for (ParametersParameterComponent patientComponent : patientParameter) {
-        patientObject.put(patientComponent.getName(), patientComponent.getValue());
+    String patientId = null;
+    ParametersParameterComponent dateOfBirthPart = null;
+    String patientFirstName = null;
+    String patientLastName = null;
+    if (patientParameter == null) {
+      parameters.errors.add(PATIENT_REQUIRED_MESSAGE);
+    } else {
+      for (ParametersParameterComponent part : patientParameter.getPart()) {
+        String name = String.valueOf(part.getName());
+        switch (name) {
+          case ApiConstants.PATIENT_ID -> patientId = stringValue(part);
+          case ApiConstants.DATE_OF_BIRTH -> dateOfBirthPart = part;
+          case ApiConstants.PATIENT_FIRST_NAME -> patientFirstName = stringValue(part);
+          case ApiConstants.PATIENT_LAST_NAME -> patientLastName = stringValue(part);
+          default -> {
+          }
+        }
       }
-      // Required PatientID
-      if (patientObject.containsKey(ApiConstants.PATIENT_ID)) {
-        validatePatientId(new StringType().castToString(patientObject.get(ApiConstants.PATIENT_ID)).asStringValue());
+      addError(parameters.errors, patientIdError(patientId));
+      if (dateOfBirthPart == null || stringValue(dateOfBirthPart) == null) {
+        parameters.errors.add(DATE_OF_BIRTH_REQUIRED_MESSAGE);
+      } else if (!(dateOfBirthPart.getValue() instanceof DateType)) {
+        parameters.errors.add(String.format(DATE_OF_BIRTH_VALIDATION_MESSAGE, stringValue(dateOfBirthPart)));
       } else {
-        throw new IllegalArgumentException(PATIENT_ID_REQUIRED_MESSAGE);
+        addError(parameters.errors, dateOfBirthError(stringValue(dateOfBirthPart)));
       }
-      // Required DateOfBirth
-      if (patientObject.containsKey(ApiConstants.DATE_OF_BIRTH)) {
-        validateDateOfBirthFormat(
-            new DateType().castToDate(patientObject.get(ApiConstants.DATE_OF_BIRTH)).asStringValue());
-      } else {
-        throw new IllegalArgumentException(DATE_OF_BIRTH_REQUIRED_MESSAGE);
+    }
+    parameters.throwIfInvalid();
+    return new PatientSearchRequest(filters, patientId, ((DateType) dateOfBirthPart.getValue()).getValue(),
+        patientFirstName, patientLastName);
+  }
+
+  /**
+   * Validates following fields for the SearchByPaymentRequest endpoint and reads them in one pass over the parameters:
+   * - TIN
+   * - PaymentInfo: PaymentIssueDate period
+   * - PaymentInfo: PaymentNumber
+   * - PaymentInfo: PaymentAmount low and high
+   * - Period: Date of Service Start and End
+   * - Paging: _count and _continuation
+   *
+   * @param requestResource the {@link Parameters} object to validate
+   * @return the search request read from the parameters
+   * @throws IllegalArgumentException with the messages of all invalid fields
+   */
+  public PaymentSearchRequest validateSearchByPaymentRequest(Parameters requestResource) throws IllegalArgumentException {
+    requireParameters(requestResource);
+    SearchParameters parameters = new SearchParameters();
+    ParametersParameterComponent paymentParameter = null;
+    for (ParametersParameterComponent parameter : requestResource.getParameter()) {
+      if (!parameters.read(parameter) && ApiConstants.PAYMENT_INFO.equals(parameter.getName()) && paymentParameter == null) {
+        paymentParameter = parameter;
       }
+    }
+    SearchFilters filters = parameters.filters();
+
+    // Validate required PaymentIssueDate and PaymentNumber from Payment
+    Period paymentIssueDate = null;
+    String paymentNumber = null;
+    Float paymentAmountLow = null;
+    Float paymentAmountHigh = null;
+    if (paymentParameter == null) {
+      parameters.errors.add(PAYMENT_REQUIRED_MESSAGE);
     } else {
-      throw new IllegalArgumentException(PATIENT_REQUIRED_MESSAGE);
+      ParametersParameterComponent paymentIssueDatePart = null;
+      for (ParametersParameterComponent part : paymentParameter.getPart()) {
+        String name = String.valueOf(part.getName());
+        switch (name) {
+          case ApiConstants.PAYMENT_ISSUE_DATE -> paymentIssueDatePart = part;
+          case ApiConstants.PAYMENT_NUMBER -> paymentNumber = stringValue(part);
+          case ApiConstants.PAYMENT_AMOUNT -> {
+            for (ParametersParameterComponent amount : part.getPart()) {
+              if (ApiConstants.PAYMENT_AMOUNT_LOW.equals(amount.getName())) {
+                paymentAmountLow = moneyValue(amount, parameters.errors);
+              } else if (ApiConstants.PAYMENT_AMOUNT_HIGH.equals(amount.getName())) {
+                paymentAmountHigh = moneyValue(amount, parameters.errors);
+              }
+            }
+          }
+          default -> {
+          }
+        }
+      }
+      // Required PaymentIssueDate range
+      if (paymentIssueDatePart == null) {
+        parameters.errors.add(PAYMENT_ISSUE_DATE_REQUIRED_MESSAGE);
+      } else if (paymentIssueDatePart.getValue() instanceof Period period) {
+        addPeriodErrors(period, parameters.errors);
+        paymentIssueDate = period;
+      } else {
+        parameters.errors.add(PAYMENT_ISSUE_DATE_PERIOD_MESSAGE);
+      }
+      // Required PaymentNumber
+      addError(parameters.errors, paymentNumberError(paymentNumber));
+    }
+    parameters.throwIfInvalid();
+    return new PaymentSearchRequest(filters, paymentNumber, paymentIssueDate.getStart(), paymentIssueDate.getEnd(),
+        paymentAmountLow, paymentAmountHigh);
+  }
+
+  /**
+   * The parameters shared by the searches, collected in the single pass over a search request together with the
+   * errors of all of its parameters.
+   */
+  private static final class SearchParameters {
+
+    private final Set<String> errors = new LinkedHashSet<>();
+    private ParametersParameterComponent tin;
+    private ParametersParameterComponent dateOfService;
+    private ParametersParameterComponent payerId;
+    private ParametersParameterComponent payerName;
+    private ParametersParameterComponent count;
+    private ParametersParameterComponent continuation;
+
+    /**
+     * @param parameter a parameter of the request, the first of the parameters of a name is kept
+     * @return true if the parameter is one of the shared parameters
+     */
+    boolean read(ParametersParameterComponent parameter) {
+      String name = String.valueOf(parameter.getName());
+      switch (name) {
+        case ApiConstants.TIN -> tin = (tin == null) ? parameter : tin;
+        case ApiConstants.DATE_OF_SERVICE -> dateOfService = (dateOfService == null) ? parameter : dateOfService;
+        case ApiConstants.PAYER_ID -> payerId = (payerId == null) ? parameter : payerId;
+        case ApiConstants.PAYER_NAME -> payerName = (payerName == null) ? parameter : payerName;
+        case ApiConstants.COUNT -> count = (count == null) ? parameter : count;
+        case ApiConstants.CONTINUATION -> continuation = (continuation == null) ? parameter : continuation;
+        default -> {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Validates the TIN, the paging parameters and the DateOfService period.
+     *
+     * @return the shared filters, only complete if there are no errors
+     */
+    SearchFilters filters() {
+      String tinValue = stringValue(tin);
+      addError(errors, tinError(tinValue));
+      KeysetPage page = page();
+      Period dateOfServicePeriod = new Period(); // Empty period by default
+      if (dateOfService != null) {
+        if (dateOfService.getValue() instanceof Period period) {
+          addPeriodErrors(period, errors);
+          dateOfServicePeriod = period;
+        } else {
+          errors.add(String.format(PERIOD_TYPE_MESSAGE, ApiConstants.DATE_OF_SERVICE));
+        }
+      }
+      return new SearchFilters(tinValue, dateOfServicePeriod.getStart(), dateOfServicePeriod.getEnd(),
+          stringValue(payerId), stringValue(payerName), page);
+    }
+
+    /**
+     * @return the page of the paging parameters, null if they are not valid
+     */
+    KeysetPage page() {
+      Integer countValue = null;
+      if (count != null) {
+        String value = stringValue(count);
+        if (value == null) {
+          errors.add(FhirUtils.MALFORMED_BODY);
+        } else {
+          try {
+            countValue = Integer.parseInt(value);
+          } catch (NumberFormatException e) {
+            countValue = 0;
+          }
+          if (countValue < 1 || countValue > ApiConstants.SEARCH_MAX_COUNT) {
+            errors.add(String.format(COUNT_VALIDATION_MESSAGE, value, ApiConstants.SEARCH_MAX_COUNT));
+            return null;
+          }
+        }
+      }
+      String continuationValue = null;
+      if (continuation != null) {
+        continuationValue = stringValue(continuation);
+        if (count == null) {
+          errors.add(CONTINUATION_WITHOUT_COUNT_MESSAGE);
+          return null;
+        } else if (continuationValue == null) {
+          errors.add(FhirUtils.MALFORMED_BODY);
+          return null;
+        }
+      }
+      try {
+        return KeysetPage.of(countValue, continuationValue);
+      } catch (IllegalArgumentException e) {
+        errors.add(e.getMessage());
+        return null;
+      }
+    }
+
+    void throwIfInvalid() {
+      if (!errors.isEmpty()) {
+        throw new IllegalArgumentException(String.join(" ", errors));
+      }
+    }
+  }
+
+  /**
+   * @param claimParameter one Claim parameter of the request
+   * @param errors the errors of the request
+   * @return the provider claim id and the optional claim filters of the parameter
+   */
+  private static ClaimLookup readClaimLookup(ParametersParameterComponent claimParameter, Set<String> errors) {
+    String providerClaimId = null;
+    String providerId = null;
+    String payerClaimId = null;
+    Float claimChargeAmount = null;
+    for (ParametersParameterComponent part : claimParameter.getPart()) {
+      String name = String.valueOf(part.getName());
+      switch (name) {
+        case ApiConstants.PROVIDER_CLAIM_ID -> providerClaimId = stringValue(part);
+        case ApiConstants.PROVIDER_ID -> providerId = stringValue(part);
+        case ApiConstants.PAYER_CLAIM_ID -> payerClaimId = stringValue(part);
+        case ApiConstants.CLAIM_CHARGE_AMOUNT -> {
+          String value = stringValue(part);
+          try {
+            claimChargeAmount = (value == null) ? null : Float.parseFloat(value);
+          } catch (NumberFormatException e) {
+            errors.add(String.format(CLAIM_CHARGE_AMOUNT_VALIDATION_MESSAGE, value));
+          }
+        }
+        default -> {
+        }
+      }
+    }
+    addError(errors, providerClaimIdError(providerClaimId));
+    return new ClaimLookup(providerClaimId, providerId, payerClaimId, claimChargeAmount);
+  }
+
+  private static void requireParameters(Parameters requestResource) {
+    if (requestResource == null || requestResource.isEmpty()) {
+      throw new IllegalArgumentException(REQUEST_PARAMETERS_EMPTY_MESSAGE);
+    }
+  }
+
+  /**
+   * @return the value of a primitive parameter, null if the parameter or its value is missing
+   */
+  private static String stringValue(ParametersParameterComponent parameter) {
+    Type value = (parameter != null) ? parameter.getValue() : null;
+    return (value != null && value.isPrimitive()) ? value.primitiveValue() : null;
+  }
+
+  private static Float moneyValue(ParametersParameterComponent parameter, Set<String> errors) {
+    if (parameter.getValue() instanceof Money money && money.hasValue()) {
+      return money.getValue().floatValue();
     }
+    errors.add(String.format(PAYMENT_AMOUNT_VALIDATION_MESSAGE, parameter.getName()));
+    return null;
   }
 
   /**
-   * Validates following fields for the SearchByPaymentRequest endpoint:
+   * Adds the errors of the format of the start and end dates, or else of their order.
+   */
+  private static void addPeriodErrors(Period period, Set<String> errors) {
+    String startError = dateOfServiceError(period.getStartElement().asStringValue());
+    String endError = dateOfServiceError(period.getEndElement().asStringValue());
+    addError(errors, startError);
+    addError(errors, endError);
+    if (startError == null && endError == null) {
+      addError(errors, periodOrderError(period));
+    }
+  }
+
+  private static void addError(Set<String> errors, String error) {
+    if (error != null) {
+      errors.add(error);
+    }
+  }
+
+  private static void throwIfInvalid(String error) {
+    if (error != null) {
+      throw new IllegalArgumentException(error);
+    }
+  }
+
+  private static String dateOfServiceError(String date) {
+    return (StringUtils.hasText(date) && !DATE_OF_SERVICE_PATTERN.matcher(date).matches())
+        ? String.format(DATE_OF_SERVICE_VALIDATION_MESSAGE, date) : null;
+  }
+
+  private static String dateOfBirthError(String date) {
+    return (StringUtils.hasText(date) && !DATE_FORMAT_PATTERN.matcher(date).matches())
+        ? String.format(DATE_OF_BIRTH_VALIDATION_MESSAGE, date) : null;
+  }
+
+  private static String periodOrderError(Period period) {
+    return (period.getStart() != null && period.getEnd() != null && !period.getStart().before(period.getEnd()))
+        ? String.format(PERIOD_VALIDATION_MESSAGE, period.getStart(), period.getEnd()) : null;
+  }
+
+  private static String tinError(String tin) {
+    if (!StringUtils.hasText(tin)) {
+      return TIN_REQUIRED_MESSAGE;
+    }
+    return TIN_PATTERN.matcher(tin).matches() ? null : String.format(TIN_VALUE_VALIDATION_MESSAGE, tin);
+  }
+
+  private static String providerClaimIdError(String providerClaimId) {
+    return StringUtils.hasText(providerClaimId) ? null : PROVIDER_CLAIM_ID_REQUIRED_MESSAGE;
+  }
+
+  private static String patientIdError(String patientId) {
+    return StringUtils.hasText(patientId) ? null : PATIENT_ID_REQUIRED_MESSAGE;
+  }
+
+  private static String paymentNumberError(String paymentNumber) {
+    if (!StringUtils.hasText(paymentNumber)) {
+      return PAYMENT_NUMBER_REQUIRED_MESSAGE;
+    }
+    return PaymentNumberMatch.of(paymentNumber).value().isEmpty()
+        ? String.format(PAYMENT_NUMBER_EMPTY_MATCH_MESSAGE, paymentNumber) : null;
+  }
+
+  /**
+   * Validates following fields for the Export endpoint:
    * - TIN
+   * - PaymentIssueDate: period with start and end
    *
    * @param requestResource the {@link Parameters} object to validate
    * @throws IllegalArgumentException if any of the fields are invalid
    */
-  public void validateSearchByPaymentRequest(Parameters requestResource) throws IllegalArgumentException {
+  public void validateExportRequest(Parameters requestResource) throws IllegalArgumentException {
     if (requestResource == null || requestResource.isEmpty()) {
       throw new IllegalArgumentException(REQUEST_PARAMETERS_EMPTY_MESSAGE);
     }
     // Validate required TIN
     if (requestResource.hasParameter(ApiConstants.TIN)) {
+      validateParameter(requestResource.getParameter(ApiConstants.TIN));
       validateTin(requestResource.getParameter(ApiConstants.TIN).getValue().toString());
     } else {
       throw new IllegalArgumentException(TIN_REQUIRED_MESSAGE);
     }
-    // Validate required PaymentIssueDate and PaymentNumber from Payment
-    if (requestResource.hasParameter(ApiConstants.PAYMENT_INFO)) {
-      List<ParametersParameterComponent> paymentParameter = requestResource.getParameter(ApiConstants.PAYMENT_INFO)
-          .getPart();
-      Map<String, Type> paymentObject = new HashMap<>();
-      for (ParametersParameterComponent paymentComponent : paymentParameter) {
-        paymentObject.put(paymentComponent.getName(), paymentComponent.getValue());
-      }
-      // Required PaymentIssueDate range
-      if (paymentObject.containsKey(ApiConstants.PAYMENT_ISSUE_DATE)) {
-        Period period = (Period) paymentObject.get(ApiConstants.PAYMENT_ISSUE_DATE);
-        validateDateOfServiceFormat(period.getStartElement().asStringValue());
-        validateDateOfServiceFormat(period.getEndElement().asStringValue());
-        validatePeriod(period);
-      } else {
-        throw new IllegalArgumentException(PAYMENT_ISSUE_DATE_REQUIRED_MESSAGE);
-      }
-      // Required PaymentNumber
-      if (paymentObject.containsKey(ApiConstants.PAYMENT_NUMBER)) {
-        validatePaymentNumber(
-            new StringType().castToString(paymentObject.get(ApiConstants.PAYMENT_NUMBER)).asStringValue());
-      } else {
-        throw new IllegalArgumentException(PAYMENT_NUMBER_REQUIRED_MESSAGE);
+    // Required PaymentIssueDate range, an export is bounded on both ends
+    if (requestResource.hasParameter(ApiConstants.PAYMENT_ISSUE_DATE)) {
+      ParametersParameterComponent param = requestResource.getParameter(ApiConstants.PAYMENT_ISSUE_DATE);
+      validateParameter(param);
+      if (!(param.getValue() instanceof Period period) || !period.hasStart() || !period.hasEnd()) {
+        throw new IllegalArgumentException(PAYMENT_ISSUE_DATE_PERIOD_MESSAGE);
       }
+      validateDateOfServiceFormat(period.getStartElement().asStringValue());
+      validateDateOfServiceFormat(period.getEndElement().asStringValue());
+      validatePeriod(period);
     } else {
-      throw new IllegalArgumentException(PAYMENT_REQUIRED_MESSAGE);
+      throw new IllegalArgumentException(PAYMENT_ISSUE_DATE_REQUIRED_MESSAGE);
     }
   }
 }
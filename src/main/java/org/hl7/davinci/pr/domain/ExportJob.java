@@ -0,0 +1,91 @@
+package org.hl7.davinci.pr.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Asynchronous export of the payments and remittances of a TIN.
+ * The job is checkpointed after every completed output file, so it can resume after a restart.
+ * */
+@Entity
+@Table(name = "export_job")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class ExportJob extends AuditableEntity {
+
+    @Id
+    @Column(name = "id", nullable = false, length = 36)
+    private String id;
+
+    @Column(name="provider_tin")
+    String providerTin;
+
+    /**
+     * Start of the payment issue date range
+     */
+    @Column(name="since_dt")
+    Date since;
+
+    /**
+     * End of the payment issue date range, inclusive
+     */
+    @Column(name="until_dt")
+    Date until;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name="status", length = 32)
+    ExportJobStatus status;
+
+    /**
+     * URL of the kick-off request, returned in the manifest
+     */
+    @Column(name="request_url", length = 2048)
+    String requestUrl;
+
+    @Column(name="created_dt")
+    Date createdDate;
+
+    @Column(name="updated_dt")
+    Date updatedDate;
+
+    /**
+     * Last claim of the completed output files, a resumed job continues after it
+     */
+    @Column(name="last_claim_id")
+    Integer lastClaimId;
+
+    /**
+     * Rows in the completed output files
+     */
+    @Column(name="row_count")
+    Long rowCount;
+
+    /**
+     * Rows matching the job when it started
+     */
+    @Column(name="total_count")
+    Long totalCount;
+
+    @Column(name="error_message", length = 2048)
+    String errorMessage;
+
+    /**
+     * Number of rows of every completed output file, the list index is the file index
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "export_job_file", joinColumns = @JoinColumn(name = "job_id"))
+    @OrderColumn(name = "file_index")
+    @Column(name = "row_count")
+    @Builder.Default
+    @ToString.Exclude
+    List<Integer> fileRowCounts = new ArrayList<>();
+
+}
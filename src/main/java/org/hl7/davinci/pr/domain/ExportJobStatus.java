@@ -0,0 +1,23 @@
+package org.hl7.davinci.pr.domain;
+
+/**
+ * Lifecycle of an {@link ExportJob}.
+ */
+public enum ExportJobStatus {
+    /**
+     * Accepted and waiting for an export thread
+     */
+    QUEUED,
+    /**
+     * Writing output files
+     */
+    RUNNING,
+    /**
+     * All output files are written
+     */
+    COMPLETED,
+    /**
+     * Stopped with an error, the error message of the job tells why
+     */
+    FAILED
+}
@@ -10,6 +10,7 @@ import java.util.List;
  * Patient class represents Patient FHIR resource that can be looked up.
  * */
 @Entity
+@EntityListeners(ReferenceDataListener.class)
 @Table(name = "patient")
 @Getter
 @Setter
@@ -9,6 +9,7 @@ import java.util.List;
  * Payer class represents Payer.
  * */
 @Entity
+@EntityListeners(ReferenceDataListener.class)
 @Table(name = "payer")
 @Getter
 @Setter
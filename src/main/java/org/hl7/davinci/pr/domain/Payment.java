@@ -9,6 +9,7 @@ import java.util.Date;
  * Payment class, associated with the Claim.
  * */
 @Entity
+@EntityListeners(RemittanceDocumentListener.class)
 @Table(name = "payment")
 @Getter
 @Setter
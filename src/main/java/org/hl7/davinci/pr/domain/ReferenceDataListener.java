@@ -0,0 +1,38 @@
+package org.hl7.davinci.pr.domain;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.hl7.davinci.pr.repositories.ReferenceDataCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Entity listener for {@link Payer} and {@link Patient} evicting them from the {@link ReferenceDataCache} once the
+ * change is committed.
+ * A new payer also evicts the cached payer lookups, since it may match them.
+ * Changes made outside of JPA, e.g. plain SQL scripts, are not seen here.
+ * */
+public class ReferenceDataListener {
+
+    //resolved lazily, the listener is created while the entity manager factory is being built
+    @Autowired
+    private ObjectProvider<ReferenceDataCache> referenceDataCacheProvider;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void entityChanged(Object entity) {
+        ReferenceDataCache referenceDataCache = (referenceDataCacheProvider == null) ? null : referenceDataCacheProvider.getIfAvailable();
+        if (referenceDataCache == null) {
+            return;
+        }
+        if (entity instanceof Payer payer) {
+            Integer id = payer.getId();
+            AfterCommit.run(() -> referenceDataCache.invalidatePayer(id));
+        } else if (entity instanceof Patient patient) {
+            Integer id = patient.getId();
+            AfterCommit.run(() -> referenceDataCache.invalidatePatient(id));
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.util.Date;
  * Remittance class, associated with the Claim.
  * */
 @Entity
+@EntityListeners(RemittanceDocumentListener.class)
 @Table(name = "remittance")
 @Getter
 @Setter
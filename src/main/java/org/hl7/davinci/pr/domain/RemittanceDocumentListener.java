@@ -0,0 +1,56 @@
+package org.hl7.davinci.pr.domain;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.hl7.davinci.pr.service.RemittanceDocumentCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Entity listener for {@link Payment} and {@link Remittance} evicting the cached remittance documents built from them
+ * once the change is committed.
+ * Changes made outside of JPA, e.g. plain SQL scripts, are not seen here.
+ * */
+public class RemittanceDocumentListener {
+
+    //resolved lazily, the listener is created while the entity manager factory is being built
+    @Autowired
+    private ObjectProvider<RemittanceDocumentCache> documentCacheProvider;
+
+    @PostPersist
+    public void entityCreated(Object entity) {
+        RemittanceDocumentCache documentCache = getDocumentCache();
+        if (documentCache != null) {
+            String remittanceAdviceId = getRemittanceAdviceId(entity);
+            AfterCommit.run(() -> documentCache.invalidate(remittanceAdviceId));
+        }
+    }
+
+    /**
+     * Updates may move a payment to another remittance or change the remittance advice id itself,
+     * so the previous key is unknown here. They are rare, hence the whole cache is dropped.
+     */
+    @PostUpdate
+    @PostRemove
+    public void entityChanged(Object entity) {
+        RemittanceDocumentCache documentCache = getDocumentCache();
+        if (documentCache != null) {
+            AfterCommit.run(documentCache::invalidateAll);
+        }
+    }
+
+    private RemittanceDocumentCache getDocumentCache() {
+        return (documentCacheProvider == null) ? null : documentCacheProvider.getIfAvailable();
+    }
+
+    private static String getRemittanceAdviceId(Object entity) {
+        if (entity instanceof Remittance remittance) {
+            return remittance.getRemittanceAdviceId();
+        }
+        if (entity instanceof Payment payment && payment.getRemittance() != null) {
+            return payment.getRemittance().getRemittanceAdviceId();
+        }
+        return null;
+    }
+}
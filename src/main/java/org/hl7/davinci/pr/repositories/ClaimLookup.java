@@ -0,0 +1,14 @@
+package org.hl7.davinci.pr.repositories;
+
+/**
+ * One claim of a batch search by claim: the provider claim id and the optional claim filters that narrow it down.
+ */
+public record ClaimLookup(String providerClaimId, String providerId, String payerClaimId, Float claimChargeAmount) {
+
+    /**
+     * @return true if only the provider claim id is set, so the claim can be looked up together with others in one IN list
+     */
+    public boolean isProviderClaimIdOnly() {
+        return providerId == null && payerClaimId == null && claimChargeAmount == null;
+    }
+}
@@ -3,25 +3,70 @@ package org.hl7.davinci.pr.repositories;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
-import jakarta.persistence.criteria.*;
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.HibernateHints;
 import org.hl7.davinci.pr.domain.*;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-
+import java.util.function.Function;
+
+/**
+ * Search queries over the denormalized claim_query table.
+ * All of them are read-only, so they run in read-only transactions without flushing or dirty-checking.
+ * Search rows are ordered by claim id, paged searches first seek the ids of the page's claims and then load their rows.
+ * The queries are JPQL with bind parameters, built once per combination of filters by the {@link SearchQueryPlanCache},
+ * so Hibernate reuses their SQL translation and the database their prepared statements.
+ * Payer filters are resolved to payer ids by the {@link ReferenceDataCache} before the query, and the search rows
+ * select the ids of their patient and payer only, their columns are filled in from the cache. So the searches never
+ * join the payer table and only the search by patient joins the patient table, for its filters. That search selects
+ * the patient columns it matched, so the response cannot show a cached patient that differs from them.
+ */
 @Repository
+@Transactional(readOnly = true)
 public class ClaimQueryDaoImpl implements ClaimQueryDao {
 
-    public static final String PATIENT_JOIN = "PATIENT";
-    public static final String CLAIM_QUERY_JOIN = "CLAIM_QUERY";
-    public static final String PAYER_JOIN = "PAYER";
-    public static final String PAYMENT_JOIN = "PAYMENT";
-    public static final String REMITTANCE_JOIN = "REMITTANCE";
-    public static final Character WILD_CARD_CHAR = '%';
+    static final String FIND_BY_CLAIM = "findByClaim";
+    static final String FIND_BY_CLAIMS = "findByClaims";
+    static final String FIND_BY_PATIENT = "findByPatient";
+    static final String FIND_BY_PAYMENT = "findByPayment";
+    static final String FIND_BY_REMITTANCE = "findByRemittance";
+    //always needs to have a patient or a payer, 0 to * -> left joins for payment and remittance
+    private static final String FROM = " from ClaimQuery c";
+    private static final String JOIN_PATIENT = " left join c.patient pa";
+    private static final String JOIN_PAYER = " left join c.payer py";
+    private static final String JOIN_PAYMENT_REMITTANCE = " left join c.payment pm left join pm.remittance r";
+    //the columns of the reference data constructors of ClaimSearchRow and PaymentSearchRow, in their order,
+    //c.patient.id and c.payer.id are the foreign key columns of claim_query
+    private static final String SELECT_CLAIM_SEARCH_ROW = "select new " + ClaimSearchRow.class.getName() + "("
+            + "c.id, c.providerClaimID, c.receivedDate, c.providerNPI, c.payerClaimId, c.subscriberPatientId,"
+            + " c.patient.id, c.payer.id,"
+            + " pm.id, pm.paymentNumber, pm.payment_issue_dt, pm.amount,"
+            + " r.id, r.remittanceAdviceId, r.remittanceAdviceType, r.remittanceAdviceDate, r.remittanceAdviceFileSize)";
+    private static final String SELECT_PATIENT_SEARCH_ROW = "select new " + ClaimSearchRow.class.getName() + "("
+            + "c.id, c.providerClaimID, c.receivedDate, c.providerNPI, c.payerClaimId, c.subscriberPatientId,"
+            + " pa.id, pa.firstName, pa.lastName, pa.dateOfBirth, c.payer.id,"
+            + " pm.id, pm.paymentNumber, pm.payment_issue_dt, pm.amount,"
+            + " r.id, r.remittanceAdviceId, r.remittanceAdviceType, r.remittanceAdviceDate, r.remittanceAdviceFileSize)";
+    private static final String SELECT_PAYMENT_SEARCH_ROW = "select new " + PaymentSearchRow.class.getName() + "("
+            + "c.id, c.payer.id,"
+            + " pm.id, pm.paymentNumber, pm.payment_issue_dt, pm.amount,"
+            + " r.id, r.remittanceAdviceId, r.remittanceAdviceType, r.remittanceAdviceDate, r.remittanceAdviceFileSize)";
+    private static final String FIND_BY_REMITTANCE_JPQL = "select c, pa, py, pm, r" + FROM + JOIN_PATIENT + JOIN_PAYER + JOIN_PAYMENT_REMITTANCE
+            + " where r.remittanceAdviceId = :remittanceAdviceId";
+    private static final String AFTER_CLAIM_ID = "afterClaimId";
+    private static final String CLAIM_IDS = "claimIds";
+
     @Autowired
     private EntityManager entityManager;
+    @Autowired
+    private SearchQueryPlanCache plans;
+    @Autowired
+    private ReferenceDataCache referenceData;
 
     /**
      * @param tin              - required
@@ -33,52 +78,31 @@ public class ClaimQueryDaoImpl implements ClaimQueryDao {
      * @param payerName
      * @param patientFirstName
      * @param patientLastName
-     * @return {@link List<Tuple>} with {@link Tuple} of entities in the order: {@link ClaimQuery},
-     * * {@link org.hl7.davinci.pr.domain.Patient}, {@link org.hl7.davinci.pr.domain.Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
+     * @param page             - claims of the page, {@link KeysetPage#UNPAGED} for all of them
+     * @return {@link List} of {@link ClaimSearchRow} with the claim, patient, payer, payment and remittance columns
      * * <p>
      * * If there are no claims found for the provided values no records will be returned
      */
     @Override
-    public List<Tuple> findByPatient(String tin, Date patientDob, Date dosStart, Date dosEnd, String patientId, String payerIdentity, String payerName, String patientFirstName, String patientLastName) {
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Tuple> tupleQuery = criteriaBuilder.createTupleQuery();
-
-        Root<ClaimQuery> rootClaim = tupleQuery.from(ClaimQuery.class);
-
-        Specification<ClaimQuery> specification = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            Map<String, Selection<?>> selectionMap = buildSelection(root, true, true);
-            List<Selection<?>> selections = new ArrayList<>(selectionMap.values());
-            //all common fields are built here
-            buildCommonCriteria(tin, dosStart, dosEnd, payerIdentity, payerName, root, query, cb, predicates, selectionMap);
-
-            //required params
-            RepoUtils.addEqualFilter(ClaimQuery_.SUBSCRIBER_PATIENT_ID, patientId, root, null, cb, predicates, true);
-            Join<Object, Object> patientJoin = (Join<Object, Object>) selectionMap.get(PATIENT_JOIN);
-
-            RepoUtils.addEqualFilter(Patient_.DATE_OF_BIRTH, patientDob, null, patientJoin, cb, predicates, true);
-            RepoUtils.addEqualFilter(Patient_.FIRST_NAME, patientFirstName, null, patientJoin, cb, predicates, false);
-            RepoUtils.addEqualFilter(Patient_.LAST_NAME, patientLastName, null, patientJoin, cb, predicates, false);
-
-            query.where(predicates.toArray(new Predicate[0]));
-            query.multiselect(selections);
-            return query.getRestriction();
-        };
-
-        Predicate predicate = specification.toPredicate(rootClaim, tupleQuery, criteriaBuilder);
-        tupleQuery.where(predicate);
-
-        TypedQuery<Tuple> typedQuery = entityManager.createQuery(tupleQuery);
-        //Tuple will have all joined entities in the order they are added
-        List<Tuple> result = typedQuery.getResultList();
-        return result;
+    public List<ClaimSearchRow> findByPatient(String tin, Date patientDob, Date dosStart, Date dosEnd, String patientId, String payerIdentity, String payerName, String patientFirstName, String patientLastName, KeysetPage page) {
+        List<Integer> payerIds = referenceData.payerIds(payerIdentity, payerName);
+        if (payerIds != null && payerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SearchQuery query = commonCriteria(FIND_BY_PATIENT, true, tin, dosStart, dosEnd, payerIds)
+                //required params
+                .required("c.subscriberPatientId = :patientId", "patientId", patientId)
+                .required("pa.dateOfBirth = :patientDob", "patientDob", patientDob)
+                .optional("pa.firstName = :patientFirstName", "patientFirstName", patientFirstName)
+                .optional("pa.lastName = :patientLastName", "patientLastName", patientLastName);
+        return withReferenceData(findRows(ClaimSearchRow.class, SELECT_PATIENT_SEARCH_ROW, query, page), false);
     }
 
     /**
      * Find payment
      *
      * @param tin                   - required
-     * @param paymentNumber         - required
+     * @param paymentNumber         - required, matched as described by {@link PaymentNumberMatch}
      * @param paymentIssueDateStart - required
      * @param paymentIssueDateEnd   - required
      * @param dosStart
@@ -87,50 +111,42 @@ public class ClaimQueryDaoImpl implements ClaimQueryDao {
      * @param payerName
      * @param paymentAmountLow
      * @param paymentAmountHigh
-     * @return {@link List<Tuple>} with {@link Tuple} of entities in the order: {@link ClaimQuery}, {@link org.hl7.davinci.pr.domain.Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
+     * @param page                  - claims of the page, {@link KeysetPage#UNPAGED} for all of them
+     * @return {@link List} of {@link PaymentSearchRow} with the payer, payment and remittance columns
      * If no payment found based on required values, we'll return null for payment, but will include claim, payer and remittance
      */
     @Override
-    public List<Tuple> findByPayment(String tin, String paymentNumber, Date paymentIssueDateStart, Date paymentIssueDateEnd,
-                                     Date dosStart, Date dosEnd, String payerIdentity, String payerName, Float paymentAmountLow, Float paymentAmountHigh) {
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Tuple> tupleQuery = criteriaBuilder.createTupleQuery();
-
-        Root<ClaimQuery> rootClaim = tupleQuery.from(ClaimQuery.class);
-
-        Specification<ClaimQuery> specification = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            Map<String, Selection<?>> selectionMap = buildSelection(root, false, true);
-            List<Selection<?>> selections = new ArrayList<>(selectionMap.values());
-            //all common fields are built here
-            buildCommonCriteria(tin, dosStart, dosEnd, payerIdentity, payerName, root, query, cb, predicates, selectionMap);
-
-            //payment specific params
-            Join<Object, Object> paymentJoin = (Join<Object, Object>) selectionMap.get(PAYMENT_JOIN);
-
-            //required
-            Predicate predicateIssueDtPred = cb.between(paymentJoin.get(Payment_.PAYMENT_ISSUE_DT), paymentIssueDateStart, paymentIssueDateEnd);
-            predicates.add(predicateIssueDtPred);
-            //add wildcard char and lowercase it for paymentnumber
-            String paymentNumberForSearch = WILD_CARD_CHAR + paymentNumber.trim().toLowerCase() + WILD_CARD_CHAR;
-            Predicate paymNumPred = cb.like(cb.lower(paymentJoin.get(Payment_.PAYMENT_NUMBER)), paymentNumberForSearch);
-            predicates.add(paymNumPred);
-
-            //optional
-            if (paymentAmountLow != null && paymentAmountHigh != null) {
-                Predicate paymAmtPred = cb.between(paymentJoin.get(Payment_.AMOUNT), paymentAmountLow, paymentAmountHigh);
-                predicates.add(paymAmtPred);
-            }
-            query.where(predicates.toArray(new Predicate[0]));
-            query.multiselect(selections);
-            return query.getRestriction();
-        };
-        Predicate predicate = specification.toPredicate(rootClaim, tupleQuery, criteriaBuilder);
-        tupleQuery.where(predicate);
-
-        TypedQuery<Tuple> typedQuery = entityManager.createQuery(tupleQuery);
-        //Tuple will have all joined entities in the order they are added
-        List<Tuple> result = typedQuery.getResultList();
+    public List<PaymentSearchRow> findByPayment(String tin, String paymentNumber, Date paymentIssueDateStart, Date paymentIssueDateEnd,
+                                                Date dosStart, Date dosEnd, String payerIdentity, String payerName, Float paymentAmountLow, Float paymentAmountHigh,
+                                                KeysetPage page) {
+        List<Integer> payerIds = referenceData.payerIds(payerIdentity, payerName);
+        if (payerIds != null && payerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PaymentNumberMatch paymentNumberMatch = PaymentNumberMatch.of(paymentNumber);
+        SearchQuery query = commonCriteria(FIND_BY_PAYMENT, false, tin, dosStart, dosEnd, payerIds)
+                //required
+                .required("pm.payment_issue_dt between :paymentIssueDateStart and :paymentIssueDateEnd",
+                        "paymentIssueDateStart", paymentIssueDateStart, "paymentIssueDateEnd", paymentIssueDateEnd)
+                //exact, prefix or contains match depending on the form of the payment number
+                .required((paymentNumberMatch.mode() == PaymentNumberMatch.Mode.EXACT)
+                                ? "lower(pm.paymentNumber) = :paymentNumber"
+                                : "lower(pm.paymentNumber) like :paymentNumber escape :paymentNumberEscape",
+                        "paymentNumber", paymentNumberMatch.parameterValue())
+                .variant(paymentNumberMatch.mode());
+        if (paymentNumberMatch.mode() != PaymentNumberMatch.Mode.EXACT) {
+            //a backslash starts an escape sequence in HQL string literals, so the escape character is bound
+            query.parameter("paymentNumberEscape", PaymentNumberMatch.ESCAPE_CHAR);
+        }
+        //optional
+        query.optional("pm.amount between :paymentAmountLow and :paymentAmountHigh",
+                "paymentAmountLow", paymentAmountLow, "paymentAmountHigh", paymentAmountHigh);
+        List<PaymentSearchRow> rows = findRows(PaymentSearchRow.class, SELECT_PAYMENT_SEARCH_ROW, query, page);
+        Map<Integer, Payer> payers = referenceData.payers(ids(rows, PaymentSearchRow::payerId));
+        List<PaymentSearchRow> result = new ArrayList<>(rows.size());
+        for (PaymentSearchRow row : rows) {
+            result.add(row.withPayer(reference(payers, row.payerId(), "Payer", row.claimId())));
+        }
         return result;
     }
 
@@ -143,32 +159,11 @@ public class ClaimQueryDaoImpl implements ClaimQueryDao {
      */
     @Override
     public List<Tuple> findByRemittance(String remittanceAdviceId) {
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Tuple> tupleQuery = criteriaBuilder.createTupleQuery();
-        Root<ClaimQuery> rootClaim = tupleQuery.from(ClaimQuery.class);
-
-        Specification<ClaimQuery> specification = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            Map<String, Selection<?>> selectionMap = buildSelection(root, true, false);
-            List<Selection<?>> selections = new ArrayList<>(selectionMap.values());
-            Join<Object, Object> remittanceJoin = (Join<Object, Object>) selectionMap.get(REMITTANCE_JOIN);
-
-            //required
-            Predicate remittanceAdviceIdPred = cb.equal(remittanceJoin.get(Remittance_.REMITTANCE_ADVICE_ID), remittanceAdviceId);
-            predicates.add(remittanceAdviceIdPred);
-
-            query.where(predicates.toArray(new Predicate[0]));
-            query.multiselect(selections);
-            return query.getRestriction();
-        };
-
-        Predicate predicate = specification.toPredicate(rootClaim, tupleQuery, criteriaBuilder);
-        tupleQuery.where(predicate);
-
-        TypedQuery<Tuple> typedQuery = entityManager.createQuery(tupleQuery);
-        //Tuple will have all joined entities in the order they are added
-        List<Tuple> result = typedQuery.getResultList();
-        return result;
+        String jpql = plans.get(FIND_BY_REMITTANCE, FIND_BY_REMITTANCE, () -> FIND_BY_REMITTANCE_JPQL);
+        //Tuple will have all joined entities in the order they are selected
+        return readOnly(entityManager.createQuery(jpql, Tuple.class))
+                .setParameter("remittanceAdviceId", remittanceAdviceId)
+                .getResultList();
     }
 
 
@@ -183,99 +178,276 @@ public class ClaimQueryDaoImpl implements ClaimQueryDao {
      * @param payerClaimId      - claim ID generated by payer
      * @param providerId        - claim ID generated by payer
      * @param claimChargeAmount
-     * @return {@link List<Tuple>} with {@link Tuple} of entities in the order: {@link ClaimQuery},
-     * {@link org.hl7.davinci.pr.domain.Patient}, {@link org.hl7.davinci.pr.domain.Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
+     * @param page              - claims of the page, {@link KeysetPage#UNPAGED} for all of them
+     * @return {@link List} of {@link ClaimSearchRow} with the claim, patient, payer, payment and remittance columns
      *
      * If there are no claims found for the provided values no records will be returned
      **/
     @Override
-    public List<Tuple> findByClaim(String tin, String providerClaimId, Date dosStart, Date dosEnd,
-                                   String patientId, String payerIdentity, String payerName,
-                                   String payerClaimId, String providerId, Float claimChargeAmount) {
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Tuple> tupleQuery = criteriaBuilder.createTupleQuery();
-
-        Root<ClaimQuery> rootClaim = tupleQuery.from(ClaimQuery.class);
-
-        Specification<ClaimQuery> specification = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            Map<String, Selection<?>> selectionMap = buildSelection(root, true, true);
-            List<Selection<?>> selections = new ArrayList<>(selectionMap.values());
-
-            buildCommonCriteria(tin, dosStart, dosEnd, payerIdentity, payerName, root, query, cb, predicates, selectionMap);
-
-            //claim specific
-            //required
-            Predicate providerClaimIdPred = cb.equal(root.get(ClaimQuery_.PROVIDER_CLAIM_ID), providerClaimId);
-            predicates.add(providerClaimIdPred);
-            //optional parameters
-            RepoUtils.addEqualFilter(ClaimQuery_.SUBSCRIBER_PATIENT_ID, patientId, root, null, cb, predicates, false);
-            RepoUtils.addEqualFilter(ClaimQuery_.PROVIDER_NP_I, providerId, root, null, cb, predicates, false);
-            RepoUtils.addEqualFilter(ClaimQuery_.PAYER_CLAIM_ID, payerClaimId, root, null, cb, predicates, false);
-            RepoUtils.addEqualFilter(ClaimQuery_.CLAIM_CHARGE_AMOUNT, claimChargeAmount, root, null, cb, predicates, false);
-
-            query.where(predicates.toArray(new Predicate[0]));
-            query.multiselect(selections);
-            return query.getRestriction();
-        };
-
-        Predicate predicate = specification.toPredicate(rootClaim, tupleQuery, criteriaBuilder);
-        tupleQuery.where(predicate);
-
-        TypedQuery<Tuple> typedQuery = entityManager.createQuery(tupleQuery);
-        //Tuple will have all joined entities in the order they are added
-        List<Tuple> result = typedQuery.getResultList();
-        return result;
+    public List<ClaimSearchRow> findByClaim(String tin, String providerClaimId, Date dosStart, Date dosEnd,
+                                            String patientId, String payerIdentity, String payerName,
+                                            String payerClaimId, String providerId, Float claimChargeAmount, KeysetPage page) {
+        List<Integer> payerIds = referenceData.payerIds(payerIdentity, payerName);
+        if (payerIds != null && payerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SearchQuery query = commonCriteria(FIND_BY_CLAIM, false, tin, dosStart, dosEnd, payerIds)
+                //claim specific
+                //required
+                .required("c.providerClaimID = :providerClaimId", "providerClaimId", providerClaimId)
+                //optional parameters
+                .optional("c.subscriberPatientId = :patientId", "patientId", patientId)
+                .optional("c.providerNPI = :providerId", "providerId", providerId)
+                .optional("c.payerClaimId = :payerClaimId", "payerClaimId", payerClaimId)
+                .optional("c.claimChargeAmount = :claimChargeAmount", "claimChargeAmount", claimChargeAmount);
+        return withReferenceData(findRows(ClaimSearchRow.class, SELECT_CLAIM_SEARCH_ROW, query, page), true);
     }
 
-    private static void buildCommonCriteria(String tin, Date dosStart, Date dosEnd,
-                                            String payerIdentity,
-                                            String payerName,
-                                            Root<ClaimQuery> root, CriteriaQuery<?> query,
-                                            CriteriaBuilder cb,
-                                            List<Predicate> predicates,
-                                            Map<String, Selection<?>> selectionMap) {
-        //same params across all searches
-        //claim_query fields
-        RepoUtils.addEqualFilter(ClaimQuery_.PROVIDER_TIN, tin, root, null, cb, predicates, true);
-        //TBD might change if it's a range
-        Join<Object, Object> payerJoin = (Join<Object, Object>) selectionMap.get(PAYER_JOIN);
-
-        //optional on payer
-        RepoUtils.addEqualFilter(Payer_.PAYER_NAME, payerName, null, payerJoin, cb, predicates, false);
-        RepoUtils.addEqualFilter(Payer_.PAYER_IDENTITY, payerIdentity, null, payerJoin, cb, predicates, false);
-
-        if (dosStart != null && dosEnd != null) {
-            Predicate predicateDos = cb.between(root.get(ClaimQuery_.DATE_OF_SERVICE), dosStart, dosEnd);
-            predicates.add(predicateDos);
+    /**
+     * Batch search by claim, all claims are matched by one query instead of one search per claim.
+     * Claims looked up by their provider claim id alone are matched with one IN list, a claim with more filters
+     * adds its own conjunction, so a claim only matches its own filters.
+     *
+     * @param tin           - provider practice tin - required
+     * @param claimLookups  - the claims, each with a provider claim id - required
+     * @param dosStart      - date of Service Start
+     * @param dosEnd        - date of Service End
+     * @param patientId     - subscriber/patientID assigned by payer
+     * @param payerIdentity
+     * @param payerName
+     * @param page          - claims of the page, {@link KeysetPage#UNPAGED} for all of them
+     * @return {@link List} of {@link ClaimSearchRow} of all claims found, ordered by claim id
+     **/
+    @Override
+    public List<ClaimSearchRow> findByClaims(String tin, List<ClaimLookup> claimLookups, Date dosStart, Date dosEnd,
+                                             String patientId, String payerIdentity, String payerName, KeysetPage page) {
+        List<Integer> payerIds = referenceData.payerIds(payerIdentity, payerName);
+        if (payerIds != null && payerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SearchQuery query = commonCriteria(FIND_BY_CLAIMS, false, tin, dosStart, dosEnd, payerIds)
+                .optional("c.subscriberPatientId = :patientId", "patientId", patientId);
+
+        //the key holds the filters of each claim in order, the parameters are numbered by claim
+        StringBuilder key = new StringBuilder();
+        StringJoiner claimConditions = new StringJoiner(" or ", "(", ")");
+        List<String> providerClaimIds = new ArrayList<>();
+        for (int i = 0; i < claimLookups.size(); i++) {
+            ClaimLookup claimLookup = claimLookups.get(i);
+            if (claimLookup.isProviderClaimIdOnly()) {
+                providerClaimIds.add(claimLookup.providerClaimId());
+                continue;
+            }
+            StringJoiner lookupConditions = new StringJoiner(" and ", "(", ")");
+            key.append('(');
+            lookupCondition(query, key, lookupConditions, "c.providerClaimID", "providerClaimId" + i, claimLookup.providerClaimId(), true);
+            lookupCondition(query, key, lookupConditions, "c.providerNPI", "providerId" + i, claimLookup.providerId(), false);
+            lookupCondition(query, key, lookupConditions, "c.payerClaimId", "payerClaimId" + i, claimLookup.payerClaimId(), false);
+            lookupCondition(query, key, lookupConditions, "c.claimChargeAmount", "claimChargeAmount" + i, claimLookup.claimChargeAmount(), false);
+            key.append(')');
+            claimConditions.add(lookupConditions.toString());
         }
+        if (!providerClaimIds.isEmpty()) {
+            key.append("in");
+            claimConditions.add("c.providerClaimID in :providerClaimIds");
+            query.parameter("providerClaimIds", providerClaimIds);
+        }
+        query.condition(key, claimConditions.toString());
+        return withReferenceData(findRows(ClaimSearchRow.class, SELECT_CLAIM_SEARCH_ROW, query, page), true);
     }
 
-    private static Map<String, Selection<?>> buildSelection(Root<ClaimQuery> root, boolean includePatient, boolean isOptionalRemittance) {
-        //we need data returned from those no matter if they are searched by
-        //always needs to have a patient or a payer, so inner join for them
-        Map<String, Selection<?>> selectionMap = new LinkedHashMap<>();
-        selectionMap.put(CLAIM_QUERY_JOIN, root);
+    private static void lookupCondition(SearchQuery query, StringBuilder key, StringJoiner conditions, String path,
+                                        String parameter, Object value, boolean required) {
+        boolean present = required || value != null;
+        key.append(present ? '1' : '0');
+        if (present) {
+            conditions.add(path + " = :" + parameter);
+            query.parameter(parameter, value);
+        }
+    }
 
-        if (includePatient) {
-            Join<Object, Object> patientJoin = root.join(ClaimQuery_.PATIENT, JoinType.LEFT);
-            selectionMap.put(PATIENT_JOIN, patientJoin);
+    /**
+     * Runs a search, ordered by claim id so pages are stable.
+     * For a paged search the ids of up to {@code page.count() + 1} matching claims after the page position are read first,
+     * which an index on the filter columns and the id can serve without visiting earlier claims.
+     * The extra claim tells the caller there is a next page, see {@link KeysetPage#pageEnd}.
+     */
+    private <T> List<T> findRows(Class<T> rowType, String select, SearchQuery query, KeysetPage page) {
+        List<Integer> claimIds = null;
+        if (page.isPaged()) {
+            boolean afterClaim = page.afterClaimId() != null;
+            String idJpql = plans.get(query.finder, query.planKey(afterClaim ? "ids-after" : "ids"),
+                    () -> "select distinct c.id" + query.from() + query.where()
+                            + (afterClaim ? " and c.id > :" + AFTER_CLAIM_ID : "") + " order by c.id");
+            TypedQuery<Integer> idQuery = query.bind(readOnly(entityManager.createQuery(idJpql, Integer.class)));
+            if (afterClaim) {
+                idQuery.setParameter(AFTER_CLAIM_ID, page.afterClaimId());
+            }
+            claimIds = idQuery.setMaxResults(page.count() + 1).getResultList();
+            if (claimIds.isEmpty()) {
+                return Collections.emptyList();
+            }
         }
-        Join<Object, Object> payerJoin = root.join(ClaimQuery_.PAYER, JoinType.LEFT);
-        //if there is payer it should have identity so inner join
 
-        //0 to * -> left joins for payment and remittance
-        Join<Object, Object> paymentJoin = root.join(ClaimQuery_.PAYMENT, JoinType.LEFT);
+        boolean paged = claimIds != null;
+        String rowJpql = plans.get(query.finder, query.planKey(paged ? "page" : "rows"),
+                () -> select + query.from() + query.where() + (paged ? " and c.id in :" + CLAIM_IDS : "")
+                        + " order by c.id, pm.id");
+        TypedQuery<T> rowQuery = query.bind(readOnly(entityManager.createQuery(rowJpql, rowType)));
+        if (paged) {
+            rowQuery.setParameter(CLAIM_IDS, claimIds);
+        }
+        return rowQuery.getResultList();
+    }
 
-        JoinType remitJoinType = JoinType.LEFT; //(isOptionalRemittance)?JoinType.LEFT:JoinType.INNER;
-        Join<Object, Object> remittanceJoin = paymentJoin.join(Payment_.REMITTANCE, remitJoinType);
+    private static SearchQuery commonCriteria(String finder, boolean includePatient, String tin, Date dosStart, Date dosEnd,
+                                              List<Integer> payerIds) {
+        //same params across all searches
+        return new SearchQuery(finder, includePatient)
+                //claim_query fields
+                .required("c.providerTin = :tin", "tin", tin)
+                //optional on payer, the ids of the payers with the payer identity and name
+                .optional("c.payer.id in :payerIds", "payerIds", payerIds)
+                .optional("c.dateOfService between :dosStart and :dosEnd", "dosStart", dosStart, "dosEnd", dosEnd);
+    }
 
-        selectionMap.put(PAYER_JOIN, payerJoin);
-        selectionMap.put(PAYMENT_JOIN, paymentJoin);
-        selectionMap.put(REMITTANCE_JOIN, remittanceJoin);
+    /**
+     * Fills in the payer columns of the rows from the {@link ReferenceDataCache}, and the patient columns too unless
+     * the query selected them.
+     */
+    private List<ClaimSearchRow> withReferenceData(List<ClaimSearchRow> rows, boolean cachedPatients) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        Map<Integer, Patient> patients = cachedPatients ? referenceData.patients(ids(rows, ClaimSearchRow::patientId)) : null;
+        Map<Integer, Payer> payers = referenceData.payers(ids(rows, ClaimSearchRow::payerId));
+        List<ClaimSearchRow> result = new ArrayList<>(rows.size());
+        for (ClaimSearchRow row : rows) {
+            Patient patient = cachedPatients ? reference(patients, row.patientId(), "Patient", row.claimId()) : row.toPatient();
+            result.add(row.withReferenceData(patient, reference(payers, row.payerId(), "Payer", row.claimId())));
+        }
+        return result;
+    }
 
-        return selectionMap;
+    /**
+     * @return the cached payer or patient of the id, null if the id is null
+     * @throws IllegalStateException if it was not found, i.e. it was deleted after the search query read the row
+     */
+    private static <T> T reference(Map<Integer, T> cached, Integer id, String type, Integer claimId) {
+        if (id == null) {
+            return null;
+        }
+        T value = cached.get(id);
+        if (value == null) {
+            throw new IllegalStateException(String.format("%s %d of claim %d not found", type, id, claimId));
+        }
+        return value;
     }
 
+    /**
+     * @return the distinct non-null ids of the rows
+     */
+    private static <T> Set<Integer> ids(List<T> rows, Function<T, Integer> id) {
+        Set<Integer> ids = new HashSet<>();
+        for (T row : rows) {
+            Integer value = id.apply(row);
+            if (value != null) {
+                ids.add(value);
+            }
+        }
+        return ids;
+    }
 
+    /**
+     * Marks the query read-only, so loaded entities are neither snapshotted nor flushed before it runs.
+     */
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> typedQuery) {
+        return typedQuery.setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    /**
+     * The conditions of a search and the values of their parameters. The plan key records which of the conditions
+     * are present, so the JPQL of a plan key is always the same and only the parameter values differ.
+     */
+    private static final class SearchQuery {
+
+        private final String finder;
+        private final boolean includePatient;
+        private final StringBuilder key;
+        private final List<String> conditions = new ArrayList<>();
+        private final Map<String, Object> parameters = new HashMap<>();
+
+        SearchQuery(String finder, boolean includePatient) {
+            this.finder = finder;
+            this.includePatient = includePatient;
+            this.key = new StringBuilder(finder).append(':');
+        }
+
+        //if required always add it, if not required only add if there is a value passed
+        SearchQuery required(String condition, String parameter, Object value) {
+            add(true, condition);
+            return parameter(parameter, value);
+        }
+
+        SearchQuery required(String condition, String lowParameter, Object low, String highParameter, Object high) {
+            add(true, condition);
+            return parameter(lowParameter, low).parameter(highParameter, high);
+        }
+
+        SearchQuery optional(String condition, String parameter, Object value) {
+            return (add(value != null, condition)) ? parameter(parameter, value) : this;
+        }
+
+        SearchQuery optional(String condition, String lowParameter, Object low, String highParameter, Object high) {
+            return (add(low != null && high != null, condition)) ? parameter(lowParameter, low).parameter(highParameter, high) : this;
+        }
+
+        /**
+         * Adds a value that changes the JPQL of the conditions added before to the plan key.
+         */
+        SearchQuery variant(Enum<?> value) {
+            key.append(value.ordinal());
+            return this;
+        }
+
+        /**
+         * Adds a condition built by the caller, with the plan key part it is built from.
+         */
+        SearchQuery condition(CharSequence keyPart, String condition) {
+            key.append('[').append(keyPart).append(']');
+            conditions.add(condition);
+            return this;
+        }
+
+        SearchQuery parameter(String parameter, Object value) {
+            parameters.put(parameter, value);
+            return this;
+        }
+
+        String planKey(String variant) {
+            return key + "|" + variant;
+        }
+
+        String from() {
+            return FROM + (includePatient ? JOIN_PATIENT : "") + JOIN_PAYMENT_REMITTANCE;
+        }
+
+        String where() {
+            return " where " + String.join(" and ", conditions);
+        }
+
+        <T> TypedQuery<T> bind(TypedQuery<T> typedQuery) {
+            parameters.forEach(typedQuery::setParameter);
+            return typedQuery;
+        }
+
+        private boolean add(boolean present, String condition) {
+            key.append(present ? '1' : '0');
+            if (present) {
+                conditions.add(condition);
+            }
+            return present;
+        }
+    }
 }
@@ -0,0 +1,238 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process cache bounded by a time to live and a number of entries, the least recently used entry is evicted
+ * when it is full. Expired entries are dropped when they are read.
+ * Loads racing with an invalidation pass the generation they started at to {@link #put}, so they do not store
+ * values read before the invalidation.
+ */
+final class ExpiringCache<K, V> {
+
+    private final String name;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    //guards the entries, a lock rather than a monitor so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    //access ordered, so the first entry is always the least recently used one
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75F, true);
+    //bumped on every invalidation
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ExpiringCache(String name, long ttlNanos, int maxEntries) {
+        this.name = name;
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the value of the key, null if it is not cached or expired
+     */
+    V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return the generation to pass to {@link #put} for a value loaded from now on
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a loaded value, unless the cache was invalidated since the load started.
+     *
+     * @param generation the {@link #generation()} before the value was loaded
+     */
+    void put(K key, V value, long generation) {
+        lock.lock();
+        try {
+            if (generation != this.generation.get() || maxEntries <= 0) {
+                return;
+            }
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+            puts.increment();
+            Iterator<Entry<V>> leastRecentlyUsed = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidateAll() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a view of this cache as a Spring {@link Cache}, so cache managers can list and clear it
+     */
+    Cache asSpringCache() {
+        return new SpringCache();
+    }
+
+    /**
+     * Registers the cache.gets, cache.puts, cache.evictions and cache.size meters of the cache, the meters
+     * Spring Boot registers for the caches of its cache managers.
+     */
+    void bindTo(MeterRegistry meterRegistry, String cacheManager) {
+        new CacheMeterBinder<>(this, name, Tags.of("cache.manager", cacheManager)) {
+
+            @Override
+            protected Long size() {
+                return (long) ExpiringCache.this.size();
+            }
+
+            @Override
+            protected long hitCount() {
+                return hits.sum();
+            }
+
+            @Override
+            protected Long missCount() {
+                return misses.sum();
+            }
+
+            @Override
+            protected Long evictionCount() {
+                return evictions.sum();
+            }
+
+            @Override
+            protected long putCount() {
+                return puts.sum();
+            }
+
+            @Override
+            protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+                //no metrics besides the common ones
+            }
+        }.bindTo(meterRegistry);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    /**
+     * Keys and values are not checked, the cache is only used through {@link ReferenceDataCache} with the right types.
+     */
+    @SuppressWarnings("unchecked")
+    private final class SpringCache extends AbstractValueAdaptingCache {
+
+        private SpringCache() {
+            super(false);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return ExpiringCache.this;
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            return ExpiringCache.this.get((K) key);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            V value = ExpiringCache.this.get((K) key);
+            if (value != null) {
+                return (T) value;
+            }
+            long loadGeneration = generation();
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (loaded != null) {
+                ExpiringCache.this.put((K) key, (V) loaded, loadGeneration);
+            }
+            return loaded;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            if (value != null) {
+                ExpiringCache.this.put((K) key, (V) value, generation());
+            }
+        }
+
+        @Override
+        public void evict(Object key) {
+            ExpiringCache.this.invalidate((K) key);
+        }
+
+        @Override
+        public void clear() {
+            ExpiringCache.this.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.hl7.davinci.pr.repositories;
+
+import org.hl7.davinci.pr.domain.ExportJob;
+import org.hl7.davinci.pr.domain.ExportJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The reads of the export jobs run in read-write transactions, so with {@link ReadReplicaRoutingDataSource} they go
+ * to the primary: the jobs are polled right after they were written, before a replica may have them.
+ */
+public interface ExportJobRepository extends JpaRepository<ExportJob, String> {
+
+    @Override
+    @Transactional
+    Optional<ExportJob> findById(String id);
+
+    @Transactional
+    List<ExportJob> findByStatusInOrderByCreatedDate(Collection<ExportJobStatus> statuses);
+}
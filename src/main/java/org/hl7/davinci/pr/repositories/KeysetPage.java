@@ -0,0 +1,126 @@
+package org.hl7.davinci.pr.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Keyset (seek) position of a search page: the claims with an id greater than {@code afterClaimId}, in id order.
+ * A page holds up to {@code count} claims with all of their rows, {@code count} is null for unpaged searches.
+ * The position is handed to the client as an opaque continuation token, together with the {@link #queryHash} of the
+ * search it was issued for, so the token cannot continue a search with other criteria.
+ *
+ * @param afterClaimId the id of the last claim of the previous page, null for the first page
+ * @param count the number of claims per page, null for all of them
+ * @param query the hash of the search the continuation token was issued for, null for the first page
+ */
+public record KeysetPage(Integer afterClaimId, Integer count, String query) {
+
+    public static final KeysetPage UNPAGED = new KeysetPage(null, null, null);
+    public static final String INVALID_CONTINUATION_MESSAGE = "Continuation token %s is not valid.";
+    public static final String CONTINUATION_QUERY_MISMATCH_MESSAGE =
+            "Continuation token was issued for a search with other criteria.";
+    private static final String TOKEN_PREFIX = "claim:";
+    private static final char TOKEN_SEPARATOR = ':';
+
+    /**
+     * @param count               the number of claims per page, null for all of them
+     * @param continuationToken   token of the previous page, null for the first page
+     * @return the page
+     * @throws IllegalArgumentException if the token was not created by {@link #continuationToken(int, String)}
+     */
+    public static KeysetPage of(Integer count, String continuationToken) {
+        if (count == null) {
+            return UNPAGED;
+        }
+        return continuationToken == null ? new KeysetPage(null, count, null) : decode(count, continuationToken);
+    }
+
+    public boolean isPaged() {
+        return count != null;
+    }
+
+    /**
+     * @param query the hash of the search this page is read for
+     * @return this page
+     * @throws IllegalArgumentException if the continuation token of this page was issued for another search
+     */
+    public KeysetPage checkQuery(String query) {
+        if (this.query != null && !this.query.equals(query)) {
+            throw new IllegalArgumentException(CONTINUATION_QUERY_MISMATCH_MESSAGE);
+        }
+        return this;
+    }
+
+    /**
+     * Rows are ordered by claim id and a paged query returns the rows of one claim more than the page size,
+     * so the client can be told whether there is a next page.
+     *
+     * @param rows    the rows returned for this page
+     * @param claimId the claim id of a row
+     * @return the number of leading rows that belong to this page
+     */
+    public <T> int pageEnd(List<T> rows, ToIntFunction<T> claimId) {
+        if (!isPaged()) {
+            return rows.size();
+        }
+        int claims = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (i == 0 || claimId.applyAsInt(rows.get(i)) != claimId.applyAsInt(rows.get(i - 1))) {
+                claims++;
+                if (claims > count) {
+                    return i;
+                }
+            }
+        }
+        return rows.size();
+    }
+
+    /**
+     * @param lastClaimId the id of the last claim of this page
+     * @param query the hash of the search, see {@link #queryHash}
+     * @return the token that continues the search after that claim
+     */
+    public static String continuationToken(int lastClaimId, String query) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TOKEN_PREFIX + lastClaimId + TOKEN_SEPARATOR + query).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param criteria the criteria of a search, without its paging
+     * @return the hash of the criteria, the same for equal criteria in every instance of the service
+     */
+    public static String queryHash(Object... criteria) {
+        CRC32 crc = new CRC32();
+        for (Object criterion : criteria) {
+            //dates by their instant, the text of Date depends on the time zone
+            String value = (criterion instanceof Date date) ? String.valueOf(date.getTime()) : String.valueOf(criterion);
+            //length prefixed, so criteria cannot run into each other
+            crc.update((value.length() + ":" + value).getBytes(StandardCharsets.UTF_8));
+        }
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * @param count the number of claims per page
+     * @param continuationToken the token
+     * @return the page after the last claim of the previous page, for the search of the token
+     * @throws IllegalArgumentException if the token was not created by {@link #continuationToken(int, String)}
+     */
+    private static KeysetPage decode(Integer count, String continuationToken) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.US_ASCII);
+            int separator = position.indexOf(TOKEN_SEPARATOR, TOKEN_PREFIX.length());
+            if (position.startsWith(TOKEN_PREFIX) && separator > 0 && separator < position.length() - 1) {
+                return new KeysetPage(Integer.parseInt(position.substring(TOKEN_PREFIX.length(), separator)), count,
+                        position.substring(separator + 1));
+            }
+        } catch (IllegalArgumentException e) {
+            //not base64 or not a number, reported below
+        }
+        throw new IllegalArgumentException(String.format(INVALID_CONTINUATION_MESSAGE, continuationToken));
+    }
+}
@@ -3,5 +3,13 @@ package org.hl7.davinci.pr.repositories;
 import org.hl7.davinci.pr.domain.Payer;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface PayerRepository extends JpaRepository<Payer, Integer> {
+
+    List<Payer> findByPayerIdentity(String payerIdentity);
+
+    List<Payer> findByPayerName(String payerName);
+
+    List<Payer> findByPayerIdentityAndPayerName(String payerIdentity, String payerName);
 }
@@ -0,0 +1,75 @@
+package org.hl7.davinci.pr.repositories;
+
+/**
+ * Case-insensitive matching of the PaymentNumber search value, chosen from the form of the value:
+ * <ul>
+ *     <li>{@code "A123"} in double quotes matches the payment number exactly</li>
+ *     <li>{@code A12*} with a trailing asterisk matches payment numbers starting with the value</li>
+ *     <li>anything else matches payment numbers containing the value</li>
+ * </ul>
+ * Exact and prefix matches can use the {@code lower(payment_number)} b-tree index, contains matches the trigram index.
+ * LIKE wildcards in the value are escaped, so they match themselves.
+ *
+ * @param mode how the value is matched
+ * @param value the lowercase value to match, without quotes or asterisk
+ */
+public record PaymentNumberMatch(Mode mode, String value) {
+
+    public enum Mode {
+        EXACT,
+        PREFIX,
+        CONTAINS
+    }
+
+    public static final char ESCAPE_CHAR = '\\';
+    private static final char WILD_CARD_CHAR = '%';
+    private static final char QUOTE_CHAR = '"';
+    private static final char PREFIX_CHAR = '*';
+
+    /**
+     * @param paymentNumber the PaymentNumber search value
+     * @return the match of the value
+     */
+    public static PaymentNumberMatch of(String paymentNumber) {
+        String value = paymentNumber.trim().toLowerCase();
+        if (value.length() >= 2 && value.charAt(0) == QUOTE_CHAR && value.charAt(value.length() - 1) == QUOTE_CHAR) {
+            return new PaymentNumberMatch(Mode.EXACT, value.substring(1, value.length() - 1));
+        }
+        if (!value.isEmpty() && value.charAt(value.length() - 1) == PREFIX_CHAR) {
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == PREFIX_CHAR) {
+                end--;
+            }
+            return new PaymentNumberMatch(Mode.PREFIX, value.substring(0, end));
+        }
+        return new PaymentNumberMatch(Mode.CONTAINS, value);
+    }
+
+    /**
+     * @return the value of the parameter the lowercase payment number is compared with, a LIKE pattern escaped with
+     * {@link #ESCAPE_CHAR} unless the match is exact
+     */
+    public String parameterValue() {
+        return switch (mode) {
+            case EXACT -> value;
+            case PREFIX -> escapeLike(value) + WILD_CARD_CHAR;
+            case CONTAINS -> WILD_CARD_CHAR + escapeLike(value) + WILD_CARD_CHAR;
+        };
+    }
+
+    /**
+     * @param value the value to search for
+     * @return the value with the LIKE wildcards and the escape character escaped
+     */
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == WILD_CARD_CHAR || c == '_' || c == ESCAPE_CHAR) {
+                escaped.append(ESCAPE_CHAR);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Records the JDBC statements of {@link QueryMetricsDataSource} by statement fingerprint, the SQL with its literals
+ * and IN lists replaced by placeholders, so statements of the same shape share their meters:
+ * <ul>
+ *     <li>{@code pr.db.query} timer histogram of the execution times, tagged with fingerprint, operation and outcome</li>
+ *     <li>{@code pr.db.query.rows} histogram of the rows written per statement</li>
+ *     <li>{@code pr.db.query.slow} counter of the statements slower than the slow query threshold</li>
+ * </ul>
+ * Only the sampled share of the statements is recorded in the histograms, slow statements are always counted and
+ * logged with their fingerprinted SQL, never with parameter values. The SQL of a fingerprint is logged once, when it
+ * is first seen. Statements beyond the maximum number of fingerprints share the fingerprint {@code other}.
+ */
+@Slf4j
+public class QueryMetrics {
+
+    static final String METRIC_QUERY = "pr.db.query";
+    static final String METRIC_ROWS = "pr.db.query.rows";
+    static final String METRIC_SLOW = "pr.db.query.slow";
+    static final String OTHER = "other";
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_ERROR = "error";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Duration MIN_EXPECTED_TIME = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED_TIME = Duration.ofSeconds(30);
+    private static final double MAX_EXPECTED_ROWS = 1_000_000;
+
+    /**
+     * The fingerprint of a statement and its meters
+     */
+    record Fingerprint(String id, String operation, String sql, Timer successTimer, Timer errorTimer,
+                       DistributionSummary rows, Counter slow) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final long slowQueryThresholdNanos;
+    private final int maxFingerprints;
+    // by the SQL as prepared, bounded by maxFingerprints
+    private final Map<String, Fingerprint> fingerprintsBySql = new ConcurrentHashMap<>();
+    private final Map<String, Fingerprint> fingerprintsById = new ConcurrentHashMap<>();
+    private final Fingerprint other;
+
+    /**
+     * @param meterRegistry the registry of the meters
+     * @param sampleRate share of the statements recorded in the histograms, from 0 to 1
+     * @param slowQueryThreshold statements taking longer are counted and logged as slow
+     * @param maxFingerprints fingerprints with meters of their own
+     */
+    public QueryMetrics(MeterRegistry meterRegistry, double sampleRate, Duration slowQueryThreshold, int maxFingerprints) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1, not " + sampleRate);
+        }
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+        this.maxFingerprints = maxFingerprints;
+        this.other = createFingerprint(OTHER, OTHER, OTHER);
+    }
+
+    /**
+     * @param sql the SQL of a statement
+     * @return the fingerprint of the statement
+     */
+    Fingerprint fingerprint(String sql) {
+        if (sql == null) {
+            return other;
+        }
+        Fingerprint fingerprint = fingerprintsBySql.get(sql);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        String normalizedSql = normalize(sql);
+        String id = id(normalizedSql);
+        fingerprint = fingerprintsById.get(id);
+        if (fingerprint == null) {
+            if (fingerprintsById.size() >= maxFingerprints) {
+                return other;
+            }
+            fingerprint = fingerprintsById.computeIfAbsent(id, key -> {
+                log.info("Query fingerprint {}: {}", key, normalizedSql);
+                return createFingerprint(key, operation(normalizedSql), normalizedSql);
+            });
+        }
+        if (fingerprintsBySql.size() < maxFingerprints) {
+            fingerprintsBySql.put(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return whether the next statement is recorded in the histograms
+     */
+    boolean sample() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the statement
+     * @param elapsedNanos execution time of the statement
+     * @param failed whether the statement threw
+     * @param sampled whether the statement is recorded in the histograms
+     */
+    void recordExecution(Fingerprint fingerprint, long elapsedNanos, boolean failed, boolean sampled) {
+        if (sampled) {
+            (failed ? fingerprint.errorTimer() : fingerprint.successTimer()).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        if (elapsedNanos > slowQueryThresholdNanos) {
+            fingerprint.slow().increment();
+            log.warn("Slow query {} took {} ms: {}", fingerprint.id(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), fingerprint.sql());
+        }
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a sampled statement
+     * @param rows rows written by the statement
+     */
+    void recordRows(Fingerprint fingerprint, long rows) {
+        fingerprint.rows().record(rows);
+    }
+
+    /**
+     * @param sql the SQL of a statement
+     * @return the SQL in lower case with its literals replaced by placeholders, IN lists by a single placeholder
+     * and whitespace collapsed
+     */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?)");
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+
+    private static String id(String normalizedSql) {
+        CRC32 crc = new CRC32();
+        crc.update(normalizedSql.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    private static String operation(String normalizedSql) {
+        int end = normalizedSql.indexOf(' ');
+        String keyword = end > 0 ? normalizedSql.substring(0, end) : normalizedSql;
+        return switch (keyword) {
+            case "select", "with", "insert", "update", "delete", "merge", "call" -> keyword;
+            default -> OTHER;
+        };
+    }
+
+    private Fingerprint createFingerprint(String id, String operation, String sql) {
+        return new Fingerprint(id, operation, sql,
+                timer(id, operation, OUTCOME_SUCCESS), timer(id, operation, OUTCOME_ERROR),
+                DistributionSummary.builder(METRIC_ROWS).tag("fingerprint", id).tag("operation", operation)
+                        .publishPercentileHistogram().minimumExpectedValue(1.0).maximumExpectedValue(MAX_EXPECTED_ROWS)
+                        .register(meterRegistry),
+                Counter.builder(METRIC_SLOW).tag("fingerprint", id).tag("operation", operation).register(meterRegistry));
+    }
+
+    private Timer timer(String id, String operation, String outcome) {
+        return Timer.builder(METRIC_QUERY).tag("fingerprint", id).tag("operation", operation).tag("outcome", outcome)
+                .publishPercentileHistogram().minimumExpectedValue(MIN_EXPECTED_TIME).maximumExpectedValue(MAX_EXPECTED_TIME)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,148 @@
+package org.hl7.davinci.pr.repositories;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Times the statements of the connections of the target data source and records the rows they write, see
+ * {@link QueryMetrics}. Connections and statements are wrapped in JDK proxies that pass every call on to the target,
+ * only the execute methods are timed. Result sets are not wrapped, so reading the rows of a query costs no proxy
+ * call per row; the rows a request reads are recorded by {@code pr.operation.rows} instead.
+ */
+public class QueryMetricsDataSource extends DelegatingDataSource {
+
+    private static final Class<?>[] CONNECTION_INTERFACES = {Connection.class};
+    private static final Class<?>[] STATEMENT_INTERFACES = {Statement.class};
+    private static final Class<?>[] PREPARED_STATEMENT_INTERFACES = {PreparedStatement.class};
+    private static final Class<?>[] CALLABLE_STATEMENT_INTERFACES = {CallableStatement.class};
+
+    private final QueryMetrics queryMetrics;
+
+    public QueryMetricsDataSource(DataSource targetDataSource, QueryMetrics queryMetrics) {
+        super(targetDataSource);
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), CONNECTION_INTERFACES,
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        //proxies are only equal to themselves, as the pools compare the connections they handed out
+        switch (method.getName()) {
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            default -> {
+            }
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryMetricsDataSource.invoke(proxy, target, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> wrapStatement((Statement) result, null, STATEMENT_INTERFACES);
+                case "prepareStatement" -> wrapStatement((Statement) result, (String) args[0], PREPARED_STATEMENT_INTERFACES);
+                case "prepareCall" -> wrapStatement((Statement) result, (String) args[0], CALLABLE_STATEMENT_INTERFACES);
+                default -> result;
+            };
+        }
+
+        private Statement wrapStatement(Statement statement, String sql, Class<?>[] interfaces) {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces,
+                    new StatementHandler(statement, sql));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        // SQL of a prepared statement, or of the last execute call of a plain statement
+        private String sql;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(proxy, method, args);
+            }
+            return QueryMetricsDataSource.invoke(proxy, target, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            if (args != null && args.length > 0 && args[0] instanceof String statementSql) {
+                sql = statementSql;
+            }
+            QueryMetrics.Fingerprint fingerprint = queryMetrics.fingerprint(sql);
+            boolean sampled = queryMetrics.sample();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = QueryMetricsDataSource.invoke(proxy, target, method, args);
+            } catch (Throwable e) {
+                queryMetrics.recordExecution(fingerprint, System.nanoTime() - start, true, sampled);
+                throw e;
+            }
+            queryMetrics.recordExecution(fingerprint, System.nanoTime() - start, false, sampled);
+            if (!sampled) {
+                return result;
+            }
+            //update counts, the result sets of queries are passed on as they are
+            if (result instanceof Integer rows) {
+                queryMetrics.recordRows(fingerprint, Math.max(0, rows));
+            } else if (result instanceof Long rows) {
+                queryMetrics.recordRows(fingerprint, Math.max(0, rows));
+            } else if (result instanceof int[] batchRows) {
+                long rows = 0;
+                for (int batchRow : batchRows) {
+                    rows += Math.max(0, batchRow);
+                }
+                queryMetrics.recordRows(fingerprint, rows);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions, e.g. the ones of {@link ClaimQueryDaoImpl} behind search and
+ * download, to the read replicas in turn and everything else to the primary.
+ * The transaction is only known once it has begun, so the data source has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which fetches the connection at the
+ * first statement.
+ * A replica that fails to give a connection is taken out of the rotation and its connection comes from the primary
+ * instead. The replicas are validated at a fixed interval and return to the rotation once they answer again,
+ * while no replica is healthy all connections come from the primary.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+    static final String METRIC_CONNECTIONS = "pr.datasource.connections";
+    static final String METRIC_FAILOVERS = "pr.datasource.failovers";
+    static final String METRIC_HEALTHY = "pr.datasource.replica.healthy";
+    private static final String REPLICA_PREFIX = "replica-";
+    private static final String TAG_TARGET = "target";
+    private static final String HEALTH_CHECK_THREAD_NAME = "replica-health-check";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+    private final List<String> replicaKeys;
+    private final Set<String> unhealthyReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Counter> connectionCounters = new HashMap<>();
+    private final Map<String, Counter> failoverCounters = new HashMap<>();
+    private final Duration healthCheckInterval;
+    private final int validationTimeoutSeconds;
+    private ScheduledExecutorService healthChecker;
+
+    /**
+     * @param primary the data source of the writes and of reads outside read-only transactions
+     * @param replicas the data sources of the read replicas, named replica-0, replica-1, ... in the metrics
+     * @param healthCheckInterval time between two validations of the replicas, zero disables them
+     * @param validationTimeout time a replica has to answer a validation
+     * @param meterRegistry registry of the connection, failover and health metrics, tagged with the target
+     */
+    public ReadReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration healthCheckInterval,
+                                        Duration validationTimeout, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.healthCheckInterval = healthCheckInterval;
+        this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.toSeconds());
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.put(REPLICA_PREFIX + i, replicas.get(i));
+        }
+        replicaKeys = new ArrayList<>(this.replicas.keySet());
+
+        connectionCounters.put(PRIMARY, Counter.builder(METRIC_CONNECTIONS).tag(TAG_TARGET, PRIMARY).register(meterRegistry));
+        for (String key : replicaKeys) {
+            connectionCounters.put(key, Counter.builder(METRIC_CONNECTIONS).tag(TAG_TARGET, key).register(meterRegistry));
+            failoverCounters.put(key, Counter.builder(METRIC_FAILOVERS).tag(TAG_TARGET, key).register(meterRegistry));
+            Gauge.builder(METRIC_HEALTHY, unhealthyReplicas, unhealthy -> unhealthy.contains(key) ? 0 : 1)
+                    .tag(TAG_TARGET, key).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Sets the targets before they are resolved, here rather than in the constructor, which should not call the
+     * overridable setters.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        Map<Object, Object> targets = new LinkedHashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        super.afterPropertiesSet();
+        if (!replicaKeys.isEmpty() && healthCheckInterval.isPositive()) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, HEALTH_CHECK_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, healthCheckInterval.toMillis(),
+                    healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return a healthy replica in turn inside read-only transactions, otherwise the primary
+     */
+    @Override
+    protected String determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int size = replicaKeys.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            String key = replicaKeys.get((start + i) % size);
+            if (!unhealthyReplicas.contains(key)) {
+                return key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionSupplier supplier) throws SQLException {
+        String key = determineCurrentLookupKey();
+        if (!PRIMARY.equals(key)) {
+            try {
+                Connection connection = supplier.get(replicas.get(key));
+                connectionCounters.get(key).increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Read replica {} is not available, reading from the primary until it answers again", key, e);
+                unhealthyReplicas.add(key);
+                failoverCounters.get(key).increment();
+            }
+        }
+        Connection connection = supplier.get(primary);
+        connectionCounters.get(PRIMARY).increment();
+        return connection;
+    }
+
+    /**
+     * Validates every replica and updates the rotation.
+     */
+    void checkReplicas() {
+        for (String key : replicaKeys) {
+            boolean healthy;
+            try (Connection connection = replicas.get(key).getConnection()) {
+                healthy = connection.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy && unhealthyReplicas.remove(key)) {
+                log.info("Read replica {} answers again", key);
+            } else if (!healthy && unhealthyReplicas.add(key)) {
+                log.warn("Read replica {} failed its validation, reading from the other targets", key);
+            }
+        }
+    }
+
+    /**
+     * @param key the key of a replica, replica-0, replica-1, ...
+     * @return whether the replica is in the rotation
+     */
+    public boolean isHealthy(String key) {
+        return replicas.containsKey(key) && !unhealthyReplicas.contains(key);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        //the pools are not beans of their own, so they are closed here
+        for (DataSource dataSource : getResolvedDataSources().values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,174 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of the payers and patients of the search results, so the search queries of
+ * {@link ClaimQueryDaoImpl} neither join the payer table to filter on it nor read the payer and patient columns
+ * of every row. Payers are cached by id and the ids of the payers matching a payer identity and name, patients by id.
+ * Entries expire after the time to live and each cache evicts its least recently used entries beyond its size.
+ * JPA writes of payers and patients invalidate them through {@link org.hl7.davinci.pr.domain.ReferenceDataListener},
+ * changes made outside of JPA, e.g. plain SQL scripts, are seen once the entries expire.
+ * The caches are metered like the caches of Spring cache managers, in cache.gets, cache.puts, cache.evictions and
+ * cache.size tagged with the cache name, and listed by the actuator caches endpoint through {@link #cacheManager()}.
+ */
+@Component
+public class ReferenceDataCache {
+
+    public static final String CACHE_MANAGER = "referenceData";
+    static final String PAYERS = "payers";
+    static final String PAYER_LOOKUPS = "payerLookups";
+    static final String PATIENTS = "patients";
+
+    private final PayerRepository payerRepository;
+    private final PatientRepository patientRepository;
+    private final ExpiringCache<Integer, Payer> payers;
+    private final ExpiringCache<PayerLookup, List<Integer>> payerLookups;
+    private final ExpiringCache<Integer, Patient> patients;
+
+    public ReferenceDataCache(PayerRepository payerRepository, PatientRepository patientRepository, MeterRegistry meterRegistry,
+                              @Value("${pr.db.reference-data.ttl:10m}") Duration ttl,
+                              @Value("${pr.db.reference-data.max-entries:10000}") int maxEntries) {
+        this.payerRepository = payerRepository;
+        this.patientRepository = patientRepository;
+        payers = new ExpiringCache<>(PAYERS, ttl.toNanos(), maxEntries);
+        payerLookups = new ExpiringCache<>(PAYER_LOOKUPS, ttl.toNanos(), maxEntries);
+        patients = new ExpiringCache<>(PATIENTS, ttl.toNanos(), maxEntries);
+        payers.bindTo(meterRegistry, CACHE_MANAGER);
+        payerLookups.bindTo(meterRegistry, CACHE_MANAGER);
+        patients.bindTo(meterRegistry, CACHE_MANAGER);
+    }
+
+    /**
+     * @param payerIdentity the payer identity to match, or null
+     * @param payerName the payer name to match, or null
+     * @return the ids of the payers matching both, null if neither is given
+     */
+    public List<Integer> payerIds(String payerIdentity, String payerName) {
+        if (payerIdentity == null && payerName == null) {
+            return null;
+        }
+        PayerLookup lookup = new PayerLookup(payerIdentity, payerName);
+        List<Integer> payerIds = payerLookups.get(lookup);
+        if (payerIds == null) {
+            long lookupGeneration = payerLookups.generation();
+            long payerGeneration = payers.generation();
+            List<Payer> found;
+            if (payerName == null) {
+                found = payerRepository.findByPayerIdentity(payerIdentity);
+            } else if (payerIdentity == null) {
+                found = payerRepository.findByPayerName(payerName);
+            } else {
+                found = payerRepository.findByPayerIdentityAndPayerName(payerIdentity, payerName);
+            }
+            payerIds = new ArrayList<>(found.size());
+            for (Payer payer : found) {
+                payerIds.add(payer.getId());
+                payers.put(payer.getId(), detach(payer), payerGeneration);
+            }
+            payerIds = List.copyOf(payerIds);
+            payerLookups.put(lookup, payerIds, lookupGeneration);
+        }
+        return payerIds;
+    }
+
+    /**
+     * @param ids the payer ids
+     * @return the payers found by id, detached and carrying their columns only
+     */
+    public Map<Integer, Payer> payers(Collection<Integer> ids) {
+        return readThrough(payers, ids, payerRepository::findAllById, Payer::getId, ReferenceDataCache::detach);
+    }
+
+    /**
+     * @param ids the patient ids
+     * @return the patients found by id, detached and carrying their columns only
+     */
+    public Map<Integer, Patient> patients(Collection<Integer> ids) {
+        return readThrough(patients, ids, patientRepository::findAllById, Patient::getId, ReferenceDataCache::detach);
+    }
+
+    /**
+     * Evicts a payer, and all payer lookups since the identity or name of the payer may have changed.
+     */
+    public void invalidatePayer(Integer id) {
+        payers.invalidate(id);
+        payerLookups.invalidateAll();
+    }
+
+    public void invalidatePatient(Integer id) {
+        patients.invalidate(id);
+    }
+
+    /**
+     * @return a cache manager of the payer, payer lookup and patient caches, to register as the
+     * {@value #CACHE_MANAGER} bean
+     */
+    public CacheManager cacheManager() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(payers.asSpringCache(), payerLookups.asSpringCache(), patients.asSpringCache()));
+        cacheManager.afterPropertiesSet();
+        return cacheManager;
+    }
+
+    /**
+     * Looks the ids up in the cache and loads the missing ones in one query.
+     */
+    private static <T> Map<Integer, T> readThrough(ExpiringCache<Integer, T> cache, Collection<Integer> ids,
+                                                   Function<List<Integer>, List<T>> load, Function<T, Integer> idOf,
+                                                   Function<T, T> detach) {
+        Map<Integer, T> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            T value = cache.get(id);
+            if (value != null) {
+                found.put(id, value);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = cache.generation();
+            for (T entity : load.apply(missing)) {
+                T value = detach.apply(entity);
+                cache.put(idOf.apply(value), value, generation);
+                found.put(idOf.apply(value), value);
+            }
+        }
+        return found;
+    }
+
+    private static Payer detach(Payer payer) {
+        return Payer.builder()
+                .id(payer.getId())
+                .payerIdentity(payer.getPayerIdentity())
+                .payerName(payer.getPayerName())
+                .build();
+    }
+
+    private static Patient detach(Patient patient) {
+        return Patient.builder()
+                .id(patient.getId())
+                .firstName(patient.getFirstName())
+                .lastName(patient.getLastName())
+                .dateOfBirth(patient.getDateOfBirth())
+                .build();
+    }
+
+    private record PayerLookup(String payerIdentity, String payerName) {
+    }
+}
@@ -0,0 +1,72 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * JPQL of the search queries of {@link ClaimQueryDaoImpl}, built once per plan key, the finder with the set of
+ * filters present. Queries with the same key share one JPQL string, so Hibernate translates it to SQL once and the
+ * PostgreSQL driver reuses the server-side prepared statement of the SQL on each connection.
+ * Lookups are counted in {@code pr.db.query.plans}, tagged with the finder and {@code hit} or {@code miss}.
+ * Keys beyond the maximum number of plans, e.g. of unusual batch searches, are built on every call.
+ */
+@Component
+public class SearchQueryPlanCache {
+
+    static final String METRIC_PLANS = "pr.db.query.plans";
+    static final String METRIC_SIZE = "pr.db.query.plans.size";
+    private static final String RESULT_HIT = "hit";
+    private static final String RESULT_MISS = "miss";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxPlans;
+    private final Map<String, String> plans = new ConcurrentHashMap<>();
+
+    public SearchQueryPlanCache(MeterRegistry meterRegistry, @Value("${pr.db.query-plans.max-plans:1000}") int maxPlans) {
+        this.meterRegistry = meterRegistry;
+        this.maxPlans = maxPlans;
+        Gauge.builder(METRIC_SIZE, plans, Map::size)
+                .description("JPQL search plans cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param finder the finder of the query
+     * @param key the plan key, which determines the JPQL
+     * @param jpql builds the JPQL of the key
+     * @return the JPQL of the key
+     */
+    String get(String finder, String key, Supplier<String> jpql) {
+        String plan = plans.get(key);
+        if (plan != null) {
+            count(finder, RESULT_HIT);
+            return plan;
+        }
+        count(finder, RESULT_MISS);
+        plan = jpql.get();
+        if (plans.size() < maxPlans) {
+            plans.putIfAbsent(key, plan);
+        }
+        return plan;
+    }
+
+    int size() {
+        return plans.size();
+    }
+
+    private void count(String finder, String result) {
+        Counter.builder(METRIC_PLANS)
+                .description("Lookups of JPQL search plans")
+                .tag("finder", finder)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,147 @@
+package org.hl7.davinci.pr.repositories.projection;
+
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+
+import java.util.Date;
+
+/**
+ * Read-only row of the search by claim and search by patient queries.
+ * Holds only the columns emitted in the search response, plus the primary keys of the joined tables.
+ * Any value other than the claim columns can be null, since the other tables are left joined.
+ */
+public record ClaimSearchRow(
+        Integer claimId,
+        String providerClaimId,
+        Date receivedDate,
+        String providerNpi,
+        String payerClaimId,
+        String subscriberPatientId,
+        Integer patientId,
+        String patientFirstName,
+        String patientLastName,
+        Date patientDateOfBirth,
+        Integer payerId,
+        String payerIdentity,
+        String payerName,
+        Integer paymentId,
+        String paymentNumber,
+        Date paymentIssueDate,
+        Float paymentAmount,
+        Integer remittanceId,
+        String remittanceAdviceId,
+        String remittanceAdviceType,
+        Date remittanceAdviceDate,
+        Integer remittanceAdviceFileSize) {
+
+    /**
+     * Row of the search queries, which select the ids of the patient and payer only.
+     * Their columns are filled in by {@link #withReferenceData}.
+     */
+    public ClaimSearchRow(Integer claimId, String providerClaimId, Date receivedDate, String providerNpi, String payerClaimId,
+                          String subscriberPatientId, Integer patientId, Integer payerId, Integer paymentId,
+                          String paymentNumber, Date paymentIssueDate, Float paymentAmount, Integer remittanceId,
+                          String remittanceAdviceId, String remittanceAdviceType, Date remittanceAdviceDate,
+                          Integer remittanceAdviceFileSize) {
+        this(claimId, providerClaimId, receivedDate, providerNpi, payerClaimId, subscriberPatientId,
+                patientId, null, null, null,
+                payerId, null, null,
+                paymentId, paymentNumber, paymentIssueDate, paymentAmount,
+                remittanceId, remittanceAdviceId, remittanceAdviceType, remittanceAdviceDate, remittanceAdviceFileSize);
+    }
+
+    /**
+     * Row of the search by patient query, which selects the columns of the patient it filters on and the id of the payer.
+     * The payer columns are filled in by {@link #withReferenceData}.
+     */
+    public ClaimSearchRow(Integer claimId, String providerClaimId, Date receivedDate, String providerNpi, String payerClaimId,
+                          String subscriberPatientId, Integer patientId, String patientFirstName, String patientLastName,
+                          Date patientDateOfBirth, Integer payerId, Integer paymentId, String paymentNumber,
+                          Date paymentIssueDate, Float paymentAmount, Integer remittanceId, String remittanceAdviceId,
+                          String remittanceAdviceType, Date remittanceAdviceDate, Integer remittanceAdviceFileSize) {
+        this(claimId, providerClaimId, receivedDate, providerNpi, payerClaimId, subscriberPatientId,
+                patientId, patientFirstName, patientLastName, patientDateOfBirth,
+                payerId, null, null,
+                paymentId, paymentNumber, paymentIssueDate, paymentAmount,
+                remittanceId, remittanceAdviceId, remittanceAdviceType, remittanceAdviceDate, remittanceAdviceFileSize);
+    }
+
+    /**
+     * @param patient the patient of the row, null if there is none
+     * @param payer the payer of the row, null if there is none
+     * @return a copy of this row with the columns of the patient and the payer
+     */
+    public ClaimSearchRow withReferenceData(Patient patient, Payer payer) {
+        return new ClaimSearchRow(claimId, providerClaimId, receivedDate, providerNpi, payerClaimId, subscriberPatientId,
+                patientId, (patient != null) ? patient.getFirstName() : null, (patient != null) ? patient.getLastName() : null,
+                (patient != null) ? patient.getDateOfBirth() : null,
+                payerId, (payer != null) ? payer.getPayerIdentity() : null, (payer != null) ? payer.getPayerName() : null,
+                paymentId, paymentNumber, paymentIssueDate, paymentAmount,
+                remittanceId, remittanceAdviceId, remittanceAdviceType, remittanceAdviceDate, remittanceAdviceFileSize);
+    }
+
+    /**
+     * @return a detached {@link ClaimQuery} carrying the selected columns only
+     */
+    public ClaimQuery toClaimQuery() {
+        return ClaimQuery.builder()
+                .id(claimId)
+                .providerClaimID(providerClaimId)
+                .receivedDate(receivedDate)
+                .providerNPI(providerNpi)
+                .payerClaimId(payerClaimId)
+                .subscriberPatientId(subscriberPatientId)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Patient} carrying the selected columns only
+     */
+    public Patient toPatient() {
+        return Patient.builder()
+                .id(patientId)
+                .firstName(patientFirstName)
+                .lastName(patientLastName)
+                .dateOfBirth(patientDateOfBirth)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Payer} carrying the selected columns only
+     */
+    public Payer toPayer() {
+        return Payer.builder()
+                .id(payerId)
+                .payerIdentity(payerIdentity)
+                .payerName(payerName)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Payment} carrying the selected columns only
+     */
+    public Payment toPayment() {
+        return Payment.builder()
+                .id(paymentId)
+                .paymentNumber(paymentNumber)
+                .payment_issue_dt(paymentIssueDate)
+                .amount(paymentAmount)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Remittance} carrying the selected columns only
+     */
+    public Remittance toRemittance() {
+        return Remittance.builder()
+                .id(remittanceId)
+                .remittanceAdviceId(remittanceAdviceId)
+                .remittanceAdviceType(remittanceAdviceType)
+                .remittanceAdviceDate(remittanceAdviceDate)
+                .remittanceAdviceFileSize(remittanceAdviceFileSize)
+                .build();
+    }
+}
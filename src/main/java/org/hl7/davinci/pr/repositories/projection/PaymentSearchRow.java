@@ -0,0 +1,88 @@
+package org.hl7.davinci.pr.repositories.projection;
+
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+
+import java.util.Date;
+
+/**
+ * Read-only row of the search by payment query.
+ * Holds only the columns emitted in the search response, plus the primary keys of the joined tables.
+ * Any value other than the claim id can be null, since the other tables are left joined.
+ */
+public record PaymentSearchRow(
+        Integer claimId,
+        Integer payerId,
+        String payerIdentity,
+        String payerName,
+        Integer paymentId,
+        String paymentNumber,
+        Date paymentIssueDate,
+        Float paymentAmount,
+        Integer remittanceId,
+        String remittanceAdviceId,
+        String remittanceAdviceType,
+        Date remittanceAdviceDate,
+        Integer remittanceAdviceFileSize) {
+
+    /**
+     * Row of the search query, which selects the id of the payer only.
+     * Its columns are filled in by {@link #withPayer}.
+     */
+    public PaymentSearchRow(Integer claimId, Integer payerId, Integer paymentId, String paymentNumber, Date paymentIssueDate,
+                            Float paymentAmount, Integer remittanceId, String remittanceAdviceId, String remittanceAdviceType,
+                            Date remittanceAdviceDate, Integer remittanceAdviceFileSize) {
+        this(claimId,
+                payerId, null, null,
+                paymentId, paymentNumber, paymentIssueDate, paymentAmount,
+                remittanceId, remittanceAdviceId, remittanceAdviceType, remittanceAdviceDate, remittanceAdviceFileSize);
+    }
+
+    /**
+     * @param payer the payer of the row, null if there is none
+     * @return a copy of this row with the columns of the payer
+     */
+    public PaymentSearchRow withPayer(Payer payer) {
+        return new PaymentSearchRow(claimId,
+                payerId, (payer != null) ? payer.getPayerIdentity() : null, (payer != null) ? payer.getPayerName() : null,
+                paymentId, paymentNumber, paymentIssueDate, paymentAmount,
+                remittanceId, remittanceAdviceId, remittanceAdviceType, remittanceAdviceDate, remittanceAdviceFileSize);
+    }
+
+    /**
+     * @return a detached {@link Payer} carrying the selected columns only
+     */
+    public Payer toPayer() {
+        return Payer.builder()
+                .id(payerId)
+                .payerIdentity(payerIdentity)
+                .payerName(payerName)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Payment} carrying the selected columns only
+     */
+    public Payment toPayment() {
+        return Payment.builder()
+                .id(paymentId)
+                .paymentNumber(paymentNumber)
+                .payment_issue_dt(paymentIssueDate)
+                .amount(paymentAmount)
+                .build();
+    }
+
+    /**
+     * @return a detached {@link Remittance} carrying the selected columns only
+     */
+    public Remittance toRemittance() {
+        return Remittance.builder()
+                .id(remittanceId)
+                .remittanceAdviceId(remittanceAdviceId)
+                .remittanceAdviceType(remittanceAdviceType)
+                .remittanceAdviceDate(remittanceAdviceDate)
+                .remittanceAdviceFileSize(remittanceAdviceFileSize)
+                .build();
+    }
+}
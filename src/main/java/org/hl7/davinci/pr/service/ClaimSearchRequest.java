@@ -0,0 +1,22 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.List;
+import org.hl7.davinci.pr.repositories.ClaimLookup;
+
+/**
+ * A validated $searchByClaim request.
+ *
+ * @param filters the filters shared by the searches
+ * @param claimLookups the claims, one per Claim parameter, a batch search if there are several
+ * @param patientId the PatientID, or null
+ */
+public record ClaimSearchRequest(SearchFilters filters, List<ClaimLookup> claimLookups, String patientId) {
+
+  /**
+   * @return the hash of the search criteria, see {@link org.hl7.davinci.pr.repositories.KeysetPage#queryHash}
+   */
+  public String queryHash() {
+    //the text of a ClaimLookup holds its components, none of them a date
+    return filters.queryHash(OperationMetrics.SEARCH_BY_CLAIM, claimLookups, patientId);
+  }
+}
@@ -0,0 +1,142 @@
+package org.hl7.davinci.pr.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool the remittance documents are queried and rendered on, so that rendering bursts
+ * do not take the servlet threads the search endpoints need.
+ * The queue is bounded and a task is rejected when it is full, which callers should answer with a retry later.
+ * With virtual threads enabled every task gets its own virtual thread, and semaphores apply the same thread and queue bounds.
+ */
+@Component
+public class DocumentRenderingExecutor implements DisposableBean {
+
+    static final String METRIC_EXECUTOR = "pr.download.rendering";
+    private static final String THREAD_NAME_PREFIX = "document-render-";
+    private static final int SHUTDOWN_AWAIT_SECONDS = 30;
+
+    //platform thread mode
+    private final ThreadPoolTaskExecutor executor;
+    //virtual thread mode
+    private final ExecutorService virtualExecutor;
+    private final Semaphore renderPermits;
+    private final Semaphore admissionPermits;
+    /**
+     * Seconds a client should wait before retrying a rejected request
+     */
+    @Getter
+    private final long retryAfterSeconds;
+
+    public DocumentRenderingExecutor(@Value("${pr.download.rendering.threads:0}") int threads,
+                                     @Value("${pr.download.rendering.queue-capacity:32}") int queueCapacity,
+                                     @Value("${pr.download.rendering.retry-after-seconds:5}") long retryAfterSeconds,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                     MeterRegistry meterRegistry) {
+        //rendering is CPU bound, one thread per core unless configured
+        int poolSize = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        this.retryAfterSeconds = retryAfterSeconds;
+        if (virtualThreads) {
+            executor = null;
+            virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 1).factory());
+            renderPermits = new Semaphore(poolSize);
+            admissionPermits = new Semaphore(poolSize + queueCapacity);
+            //the names of the ExecutorServiceMetrics gauges, so dashboards work in both modes
+            Gauge.builder("executor.active", renderPermits, permits -> poolSize - permits.availablePermits())
+                    .tag("name", METRIC_EXECUTOR).register(meterRegistry);
+            Gauge.builder("executor.queued", () -> Math.max(0, poolSize + queueCapacity - admissionPermits.availablePermits()
+                            - (poolSize - renderPermits.availablePermits())))
+                    .tag("name", METRIC_EXECUTOR).register(meterRegistry);
+            return;
+        }
+        virtualExecutor = null;
+        renderPermits = null;
+        admissionPermits = null;
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(SHUTDOWN_AWAIT_SECONDS);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), METRIC_EXECUTOR, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Queues the task.
+     *
+     * @param task the query and rendering to run
+     * @return a future completed with the result of the task
+     * @throws RejectedExecutionException if all threads are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        if (executor != null) {
+            return executor.submitCompletable(task);
+        }
+        if (!admissionPermits.tryAcquire()) {
+            throw new RejectedExecutionException("The document rendering queue is full");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            virtualExecutor.execute(() -> {
+                T result = null;
+                Throwable failure = null;
+                try {
+                    renderPermits.acquire();
+                    try {
+                        result = task.call();
+                    } finally {
+                        renderPermits.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    admissionPermits.release();
+                }
+                //completed after the permits are released, so a caller can submit again right away
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admissionPermits.release();
+            throw e;
+        }
+        return future;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            return;
+        }
+        virtualExecutor.shutdown();
+        if (!virtualExecutor.awaitTermination(SHUTDOWN_AWAIT_SECONDS, TimeUnit.SECONDS)) {
+            virtualExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.hl7.davinci.pr.service;
+
+import com.itextpdf.text.DocumentException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a gzip-compressed remittance document to the given stream without closing it.
+ */
+@FunctionalInterface
+public interface DocumentSource {
+
+    void writeTo(OutputStream outputStream) throws DocumentException, IOException;
+}
@@ -0,0 +1,11 @@
+package org.hl7.davinci.pr.service;
+
+/**
+ * A validated $downloadRemittance request.
+ *
+ * @param remittanceAdviceId the RemittanceAdviceIdentifier
+ * @param remittanceAdviceType the RemittanceAdviceType, PDF or 835, or null
+ */
+public record DownloadRequest(String remittanceAdviceId, String remittanceAdviceType) {
+
+}
@@ -1,24 +1,23 @@
 package org.hl7.davinci.pr.service;
 
-import com.imsweb.x12.LineBreak;
-import com.imsweb.x12.Loop;
-import com.imsweb.x12.Segment;
-import com.imsweb.x12.Separators;
-import com.imsweb.x12.reader.X12Reader;
-import com.imsweb.x12.writer.X12Writer;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.itextpdf.text.Element;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 import com.itextpdf.text.pdf.draw.LineSeparator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.Tuple;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.hl7.davinci.pr.api.utils.ApiConstants;
-import org.hl7.davinci.pr.api.utils.ApiUtils;
 import org.hl7.davinci.pr.api.utils.DataConstants;
+import org.hl7.davinci.pr.api.utils.DateFormats;
 import org.hl7.davinci.pr.api.utils.FhirUtils;
 import org.hl7.davinci.pr.domain.Patient;
 import org.hl7.davinci.pr.domain.*;
@@ -26,13 +25,19 @@ import org.hl7.davinci.pr.repositories.ClaimQueryDao;
 import org.hl7.fhir.r4.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -41,318 +46,183 @@ import java.util.zip.ZipOutputStream;
 @Service
 public class DownloadService {
 
+    private static final String REMITTANCE_DOCUMENT_ID_PREFIX = "remittance-document-";
+    private static final String REMITTANCE_DOCUMENT_PROFILE = "http://hl7.org/fhir/us/davinci-pr/StructureDefinition/remittanceAdviceDocument";
+    private static final String REMITTANCE_IDENTIFIER_EXTENSION = "http://hl7.org/fhir/us/davinci-pr/StructureDefinition/remittanceIdentifierExt";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final String METRIC_STAGE = "pr.download.stage";
+    static final String STAGE_QUERY = "query";
+    static final String STAGE_RENDER = "render";
+    static final String STAGE_COMPRESS = "compress";
+    static final String STAGE_ENCODE = "encode";
+
     @Autowired
     ClaimQueryDao claimQueryDao;
+    @Autowired
+    RemittanceDocumentCache documentCache;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    OperationMetrics operationMetrics;
     private final static Font normalFontBold = new Font(Font.FontFamily.TIMES_ROMAN, 10, Font.BOLD);
     private final static Font normalFont = new Font(Font.FontFamily.TIMES_ROMAN, 10, Font.NORMAL);
     private final static Font grayFont = new Font(Font.FontFamily.TIMES_ROMAN, 10, Font.NORMAL, BaseColor.LIGHT_GRAY);
 
     public Binary downloadDocument(String remittanceAdviceId, String remittanceType) throws DocumentException, IOException {
 
-        List<Tuple> searchResults = claimQueryDao.findByRemittance(remittanceAdviceId);
-        if (searchResults == null || searchResults.size() == 0) {
+        DocumentSource documentSource = prepareDocument(remittanceAdviceId, remittanceType);
+        if (documentSource == null) {
             return null;
         }
-        remittanceType = (remittanceType == null)? ApiConstants.REMITTANCE_ADVICE_TYPE_PDF:remittanceType;
+        remittanceType = resolveRemittanceType(remittanceType);
         Binary binaryResource = new Binary();
-        binaryResource.setId("remittance-document-" + FhirUtils.generateUniqueResourceID());
-        binaryResource.setMeta(FhirUtils.generateResourceMeta("http://hl7.org/fhir/us/davinci-pr/StructureDefinition/remittanceAdviceDocument"));
-        String applicationType = (remittanceType.equals(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF))?"pdf":"txt";
-        binaryResource.setContentType(String.format("application/%s+gzip", applicationType));
-
-        //the order of tuples is:
-        //  {@link ClaimQuery}, {@link org.hl7.davinci.pr.domain.Patient}, {@link org.hl7.davinci.pr.domain.Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
-        Tuple firstTuple = searchResults.get(0);
-        ClaimQuery claimQueryFirst = firstTuple.get(0, ClaimQuery.class);
-        Payer payerFirst = firstTuple.get(2, Payer.class);
-        Payment paymentFirst = firstTuple.get(3, Payment.class);
+        binaryResource.setId(REMITTANCE_DOCUMENT_ID_PREFIX + FhirUtils.generateUniqueResourceID());
+        binaryResource.setMeta(FhirUtils.generateResourceMeta(REMITTANCE_DOCUMENT_PROFILE));
+        binaryResource.setContentType(getContentType(remittanceType));
 
-        //build pdf by default
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        if (remittanceType.equals(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF)) {
-            baos = buildPdf(payerFirst, claimQueryFirst, paymentFirst, searchResults);
-        } else {
-            String writerResult = build835Text(paymentFirst, payerFirst, claimQueryFirst, searchResults);
-            //create zip file, convert to Base64 encoded string
-            byte[] uncompressedByteArray = writerResult.getBytes(); //uncompressed
-            baos = new ByteArrayOutputStream();
-            GzipParameters gzipParameters = new GzipParameters();
-            gzipParameters.setFilename("835-sample.txt");
-
-            try ( GzipCompressorOutputStream gzipOutputStream = new GzipCompressorOutputStream(baos, gzipParameters)) {
-                gzipOutputStream.write(uncompressedByteArray, 0, uncompressedByteArray.length);
-                gzipOutputStream.flush();
-                gzipOutputStream.close();
-            }
-        }
+        documentSource.writeTo(baos);
+        long encodeStart = System.nanoTime();
+        String encodedBase64String = Base64.getEncoder().encodeToString(baos.toByteArray());
         Base64BinaryType base64BinaryType = new Base64BinaryType();
-        if (baos != null) {
-            byte[] compressedByArray =  baos.toByteArray();
-            String encodedBase64String = Base64.getEncoder().encodeToString(compressedByArray);
-            log.debug("------encoded sting: \n" + encodedBase64String);
-            base64BinaryType = new Base64BinaryType();
-            base64BinaryType.setValueAsString(encodedBase64String);
-            base64BinaryType.addExtension("http://hl7.org/fhir/us/davinci-pr/StructureDefinition/remittanceIdentifierExt",
-                    new StringType(remittanceAdviceId));
-        }
+        base64BinaryType.setValueAsString(encodedBase64String);
+        base64BinaryType.addExtension(REMITTANCE_IDENTIFIER_EXTENSION, new StringType(remittanceAdviceId));
         binaryResource.setDataElement(base64BinaryType);
+        recordStage(STAGE_ENCODE, remittanceType, System.nanoTime() - encodeStart);
         return binaryResource;
     }
 
-    String build835Text(Payment paymentFirst, Payer payerFirst, ClaimQuery claimQueryFirst, List<Tuple> resultTuples) {
-        LineBreak lineBreak = LineBreak.CRLF;
-        Separators separators = new Separators();
-        separators.setLineBreak(lineBreak);
-
-        Loop isaLoop = new Loop(separators, "ISA_LOOP");
-
-        Segment segment = new Segment("ISA");
-        segment.addElement("01", "00");
-        segment.addElement("02", "          ");
-        segment.addElement("03", "00");
-        segment.addElement("04", "          ");
-        segment.addElement("05", "ZZ");
-        //          "SUBMITTERS.ID  "
-        segment.addElement("06", "200787505      ");
-        segment.addElement("07", "ZZ");
-        segment.addElement("08", "450525148      ");
-        segment.addElement("09", "240826");
-        segment.addElement("10", "0912");
-        segment.addElement("11", "^");
-        segment.addElement("12", "00501");
-        segment.addElement("13", "101925142");
-        segment.addElement("14", "0");
-        segment.addElement("15", "P");
-        segment.addElement("16", ":");
-        isaLoop.addSegment(segment);
-
-        Loop gsLoop = new Loop(separators, "GS_LOOP");
-        segment = new Segment("GS");
-        addElement(segment, "01", "HP");
-        addElement(segment, "02", "200787505");
-        addElement(segment, "03", "450525148");
-        addElement(segment, "04", "20240826");
-        addElement(segment, "05", "0912");
-        addElement(segment, "06", "101777856");
-        addElement(segment, "07", "X");
-        addElement(segment, "08", "005010X221A1");
-        //isaLoop.addSegment(segment);
-        gsLoop.addSegment(segment);
-        isaLoop.getLoops().add(gsLoop);
-
-        //ST loop
-        Loop stLoop = new Loop(separators, "ST_LOOP");
-        stLoop.addSegment(buildSegment(List.of("835", "0001"), new Segment("ST")));
-        gsLoop.getLoops().add(stLoop);
-
-        Loop headerLoop = new Loop(separators, "HEADER");
-        stLoop.getLoops().add(headerLoop);
-        Segment segmentBpr = new Segment("BPR");
-        addElement(segmentBpr, "01", "I");
-        addElement(segmentBpr, "02", String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, paymentFirst.getAmount()));
-        addElement(segmentBpr, "03", "C");
-        addElement(segmentBpr, "04", "ACH");
-        addElement(segmentBpr, "05", "CCP");
-        //Depository Financial Institution (DFI) Identification Number Qualifier
-        addElement(segmentBpr, "06", "01");
-        //Sender DFI Identifier
-        addElement(segmentBpr, "07", "123000848");
-        //Account Number Qualifier
-        addElement(segmentBpr, "08", "DA");
-        //Sender Bank Account Number
-        addElement(segmentBpr, "09", "1700020064");
-        //Payer Identifier
-        addElement(segmentBpr, "10", payerFirst.getPayerIdentity());
-        //Originating Company Supplemental Code
-        addElement(segmentBpr, "11", "");
-        //Dfi Id Number Qualifier 2-ABA transit routing number incl. check digits
-        addElement(segmentBpr, "12", "01");
-        //Receiver Or Provider Bank Id Number
-        addElement(segmentBpr, "13", "123000848");
-        //Account Number Qualifier
-        addElement(segmentBpr, "14", "DA");
-        //Receiver or Provider Account Number
-        addElement(segmentBpr, "15", "153911610365");
-        //check issue date
-        addElement(segmentBpr, "16", "20240816");
-        // txSetHeaderLoop.addSegment(segmentBpr);
-        headerLoop.addSegment(segmentBpr);
-
-        //TRN Segment part of the same Header loop
-        headerLoop.addSegment(buildSegment(List.of("1", "9155284235", payerFirst.getPayerIdentity()), new Segment("TRN")));
-
-        //Ref segment
-        headerLoop.addSegment(buildSegment(List.of("EV", "450525148"), new Segment("REF")));
-
-        //DTM segment
-        headerLoop.addSegment(buildSegment(List.of("405", DataConstants.dateFormatter835.format(claimQueryFirst.getDateOfService())), new Segment("DTM")));
-
-        //new loop 1000A
-        Loop payerIdentLoop = new Loop(separators, "1000A");
-        headerLoop.getLoops().add(payerIdentLoop);
-        payerIdentLoop.addSegment(buildSegment(List.of("PR", payerFirst.getPayerName()), new Segment("N1")));
-
-        //n3 segment - payer po box
-        payerIdentLoop.addSegment(buildSegment(List.of(DataConstants.FAKE_PAYER_ADDRESS_POBOX), new Segment("N3")));
-
-        //n4 - payer city, state, zipcode
-        payerIdentLoop.addSegment(
-                buildSegment(List.of(DataConstants.FAKE_PAYER_ADDRESS_CITY,
-                        DataConstants.FAKE_PAYER_ADDRESS_STATE,
-                        DataConstants.FAKE_PAYER_ADDRESS_ZIPCODE), new Segment("N4")));
-
-        //ref 1
-        payerIdentLoop.addSegment(buildSegment(List.of("2U", "TP021"), new Segment("REF")));
-
-        //ref 2
-        payerIdentLoop.addSegment(buildSegment(List.of("EO", "363917295"), new Segment("REF")));
-
-        //per1
-        payerIdentLoop.addSegment(buildSegment(List.of("CX", payerFirst.getPayerName(), "TE", "8008007885"), new Segment("PER")));
-
-        //per2
-        payerIdentLoop.addSegment(buildSegment(List.of("BL", payerFirst.getPayerName(), "TE", "8008007885"), new Segment("PER")));
-
-        //new loop1000B
-        Loop payeeIdentifierLoop = new Loop(separators, "1000B");
-        headerLoop.getLoops().add(payeeIdentifierLoop);
-
-        //payee N1 - Name, NPI
-        payeeIdentifierLoop.addSegment(buildSegment(List.of("PE", DataConstants.FAKE_PROVIDER_NAME, "XX", claimQueryFirst.getProviderNPI()), new Segment("N1")));
-
-        //payee n3 - PO Box
-        payeeIdentifierLoop.addSegment(buildSegment(List.of(DataConstants.FAKE_PROVIDER_ADDRESS_POBOX), new Segment("N3")));
-
-        //payee n4 - city, state, zipcode
-        payeeIdentifierLoop.addSegment(
-                buildSegment(Arrays.asList(DataConstants.FAKE_PROVIDER_ADDRESS_CITY,
-                        DataConstants.FAKE_PROVIDER_ADDRESS_STATE,
-                        DataConstants.FAKE_PROVIDER_ADDRESS_ZIPCODE), new Segment("N4")));
-
-        //payee ref1- additional payee id
-        payeeIdentifierLoop.addSegment(buildSegment(Arrays.asList("TJ", "123456789"), new Segment("REF")));
-
-        //payee ref2- state license num
-        payeeIdentifierLoop.addSegment(buildSegment(List.of("0B", "OS12165"), new Segment("REF")));
-
-        //loop to hold claims
-        Loop detailsLoop = new Loop(separators, "DETAIL");
-        stLoop.getLoops().add(detailsLoop);
-
-        Loop detailsLoop2000 = new Loop(separators, "2000");
-        detailsLoop.getLoops().add(detailsLoop2000);
-
-        detailsLoop2000.addSegment(buildSegment(List.of("1"), new Segment("LX")));
-
-        //repeat for all data results, per claim
-        float paymentHalf = 0F;
-        float totalPaymentAmount = 0F;
-        for (Tuple tuple : resultTuples) {
-
-            ClaimQuery claimQuery = tuple.get(0, ClaimQuery.class);
-            Patient patient = tuple.get(1, Patient.class);
-            Payer payer = tuple.get(2, Payer.class);
-            Payment payment = tuple.get(3, Payment.class);
-            totalPaymentAmount += payment.getAmount();
-            Remittance remittance = tuple.get(4, Remittance.class);
-            paymentHalf = payment.getAmount() / resultTuples.size();
-
-            //build claim
-            Loop claimInfoLoop2100 = new Loop(separators, "2100");
-            detailsLoop2000.getLoops().add(claimInfoLoop2100);
-
-            //CLP claim segment
-            claimInfoLoop2100.addSegment(buildSegment(List.of(claimQuery.getProviderClaimID(), "1", String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, claimQuery.getClaimChargeAmount()),
-                    String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, paymentHalf),
-                    "", "WC", claimQuery.getPayerClaimId(), "11", "1"), new Segment("CLP")));
-
-            //NM1 segment - patient info
-            claimInfoLoop2100.addSegment(buildSegment(List.of("QC", "1", patient.getLastName(), patient.getFirstName(), "", "", "", "34", "999999999"), new Segment("NM1")));
-
-            //NM1 segment - service provider info
-            claimInfoLoop2100.addSegment(buildSegment(List.of("82", "1", DataConstants.FAKE_PROVIDER_NAME, DataConstants.FAKE_PROVIDER_NAME, "", "", "", "XX", claimQuery.getProviderNPI()),
-                    new Segment("NM1")));
-
-            //ref segment 1
-            claimInfoLoop2100.addSegment(buildSegment(List.of("F8", "100184984695"), new Segment("REF")));
-
-            //ref segment 2
-            claimInfoLoop2100.addSegment(buildSegment(List.of("CE", "FL"), new Segment("REF")));
-
-            //date segment 1 - claim statement period start
-            claimInfoLoop2100.addSegment(buildSegment(List.of("232", DataConstants.dateFormatter835.format(claimQuery.getDateOfService())), new Segment("DTM")));
-
-            //date segment 2 - claim received date
-            claimInfoLoop2100.addSegment(buildSegment(List.of("050", DataConstants.dateFormatter835.format(claimQuery.getReceivedDate())), new Segment("DTM")));
-
-            //claim supplemental info
-            claimInfoLoop2100.addSegment(buildSegment(List.of("AU", "0.00"), new Segment("AMT")));
-
-            Loop servicePaymentLoop2110 = new Loop(separators, "2110");
-            claimInfoLoop2100.getLoops().add(servicePaymentLoop2110);
-
-            //service payment segment-composite element
-            Segment svcPaymSegment = new Segment("SVC");
-            svcPaymSegment.addCompositeElement("HC:", "HC:99214");
-            addElement(svcPaymSegment, "01-02", String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, claimQuery.getClaimChargeAmount()));
-            addElement(svcPaymSegment, "01-03", String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, paymentHalf));
-            servicePaymentLoop2110.addSegment(svcPaymSegment);
-
-            //service date segment
-            servicePaymentLoop2110.addSegment(buildSegment(List.of("472", DataConstants.dateFormatter835.format(claimQuery.getDateOfService())), new Segment("DTM")));
-
-            //service adjustment segment
-            servicePaymentLoop2110.addSegment(buildSegment(List.of("CO", "45", "0.00", "", "P24", "0.00"), new Segment("CAS")));
-
-            //services payment ref segment
-            servicePaymentLoop2110.addSegment(buildSegment(List.of("6R", "2196311P13648B62477"), new Segment("REF")));
-
-            //services payment amount
-            servicePaymentLoop2110.addSegment(buildSegment(List.of("B6", String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, payment.getAmount())), new Segment("AMT")));
+    /**
+     * Looks up the remittance and returns a source that renders its gzip-compressed document on demand,
+     * so callers can decide whether the 404 case applies before anything is written to the response.
+     * Documents rendered before are served from the {@link RemittanceDocumentCache} without querying the database.
+     *
+     * @return the document source or null if no remittance advice was found
+     */
+    public DocumentSource prepareDocument(String remittanceAdviceId, String remittanceType) throws IOException {
+        String resolvedType = resolveRemittanceType(remittanceType);
+        DocumentSource cachedDocument = documentCache.lookup(remittanceAdviceId, resolvedType);
+        if (cachedDocument != null) {
+            return cachedDocument;
+        }
+        //read before the query, an invalidation after it means the rows may be stale
+        long cacheGeneration = documentCache.currentGeneration();
+        long queryStart = System.nanoTime();
+        List<Tuple> searchResults = claimQueryDao.findByRemittance(remittanceAdviceId);
+        recordStage(STAGE_QUERY, resolvedType, System.nanoTime() - queryStart);
+        operationMetrics.recordRows(OperationMetrics.DOWNLOAD_REMITTANCE, (searchResults == null) ? 0 : searchResults.size());
+        if (searchResults == null || searchResults.isEmpty()) {
+            return null;
         }
+        return outputStream -> {
+            try (RemittanceDocumentCache.Entry cacheEntry = documentCache.newEntry(remittanceAdviceId, resolvedType, cacheGeneration, outputStream)) {
+                writeCompressedDocument(resolvedType, searchResults, cacheEntry);
+                cacheEntry.commit();
+            }
+        };
+    }
 
-        //SE segment - trasnaction set outside of claims loop
-        //services payment amount
-        Segment txSeSegment = new Segment("SE");
-        buildSegment(List.of("32", "0001"), txSeSegment);
-        stLoop.addSegment(txSeSegment);
+    /**
+     * Writes the Binary resource as FHIR JSON, streaming the rendered document through
+     * iText -> gzip -> Base64 directly into the output stream. The output stream is not closed.
+     * The encode stage timing includes writing to the client, since both happen in the same writes.
+     */
+    public void streamDocument(String remittanceAdviceId, String remittanceType, DocumentSource documentSource,
+                               OutputStream outputStream) throws DocumentException, IOException {
+        remittanceType = resolveRemittanceType(remittanceType);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(StreamUtils.nonClosing(outputStream), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("resourceType", "Binary");
+            generator.writeStringField("id", REMITTANCE_DOCUMENT_ID_PREFIX + FhirUtils.generateUniqueResourceID());
+            generator.writeObjectFieldStart("meta");
+            generator.writeArrayFieldStart("profile");
+            generator.writeString(REMITTANCE_DOCUMENT_PROFILE);
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeStringField("contentType", getContentType(remittanceType));
+
+            //open the data string and let the document pipeline write the Base64 text in place
+            generator.writeFieldName("data");
+            generator.writeRawValue("\"");
+            generator.flush();
+            StageTimingOutputStream base64OutputStream = new StageTimingOutputStream(Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream)));
+            try (base64OutputStream) {
+                documentSource.writeTo(base64OutputStream);
+            }
+            recordStage(STAGE_ENCODE, remittanceType, base64OutputStream.nanos());
+            generator.writeRaw('"');
+
+            generator.writeObjectFieldStart("_data");
+            generator.writeArrayFieldStart("extension");
+            generator.writeStartObject();
+            generator.writeStringField("url", REMITTANCE_IDENTIFIER_EXTENSION);
+            generator.writeStringField("valueString", remittanceAdviceId);
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
 
-        //GE segment
-        Segment geSegment = new Segment("GE");
-        buildSegment(List.of("1", "101777856"), geSegment);
-        gsLoop.addSegment(geSegment);
+    private void writeCompressedDocument(String remittanceType, List<Tuple> searchResults, OutputStream outputStream) throws DocumentException, IOException {
+        //the order of tuples is:
+        //  {@link ClaimQuery}, {@link org.hl7.davinci.pr.domain.Patient}, {@link org.hl7.davinci.pr.domain.Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
+        Tuple firstTuple = searchResults.get(0);
+        ClaimQuery claimQueryFirst = firstTuple.get(0, ClaimQuery.class);
+        Payer payerFirst = firstTuple.get(2, Payer.class);
+        Payment paymentFirst = firstTuple.get(3, Payment.class);
 
-        //add IEA segment
-        Segment ieaSegment = new Segment("IEA");
-        buildSegment(List.of("1", "101925142"), ieaSegment);
-        isaLoop.addSegment(ieaSegment);
+        boolean isPdf = remittanceType.equals(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF);
+        GzipParameters gzipParameters = new GzipParameters();
+        gzipParameters.setFilename(isPdf ? DataConstants.PDF_EOB_FILE_NAME : DataConstants.X12_835_FILE_NAME);
+        //rendering and compression run interleaved, the time spent in gzip minus the time spent after it is compression
+        long start = System.nanoTime();
+        StageTimingOutputStream compressedOutputStream = new StageTimingOutputStream(StreamUtils.nonClosing(outputStream));
+        StageTimingOutputStream gzipOutputStream = new StageTimingOutputStream(new GzipCompressorOutputStream(compressedOutputStream, gzipParameters));
+        //the caller owns the target stream, closing the gzip stream only writes the trailer
+        try (gzipOutputStream) {
+            //build pdf by default
+            if (isPdf) {
+                buildPdf(payerFirst, claimQueryFirst, paymentFirst, searchResults, gzipOutputStream);
+            } else {
+                Writer x12Writer = new BufferedWriter(new OutputStreamWriter(gzipOutputStream, StandardCharsets.UTF_8));
+                new X12835Encoder(x12Writer).encode(paymentFirst, payerFirst, claimQueryFirst, searchResults);
+                x12Writer.flush();
+            }
+        }
+        recordStage(STAGE_RENDER, remittanceType, System.nanoTime() - start - gzipOutputStream.nanos());
+        recordStage(STAGE_COMPRESS, remittanceType, gzipOutputStream.nanos() - compressedOutputStream.nanos());
+    }
 
-        X12Writer writer = new X12Writer(X12Reader.FileType.ANSI835_5010_X221, Collections.singletonList(isaLoop), separators);
-        String writerResult = writer.toX12String(lineBreak).trim();
+    private void recordStage(String stage, String remittanceType, long nanos) {
+        Timer.builder(METRIC_STAGE)
+                .description("Time spent in each stage of building a remittance document")
+                .tag("stage", stage)
+                .tag("type", remittanceType)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
 
-        // log.debug("----835 write result: \n" + writerResult);
-        return writerResult;
+    private static String resolveRemittanceType(String remittanceType) {
+        return (remittanceType == null)? ApiConstants.REMITTANCE_ADVICE_TYPE_PDF:remittanceType;
     }
 
-    private Segment buildSegment(List<String> values, Segment segment) {
-        int i = 1;
-        for (String value : values) {
-            String position = String.format("0%s", i);
-            addElement(segment, position, value);
-            i++;
-        }
-        return segment;
+    private static String getContentType(String remittanceType) {
+        String applicationType = (remittanceType.equals(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF))?"pdf":"txt";
+        return String.format("application/%s+gzip", applicationType);
     }
 
-    private void addElement(Segment segment, String elementNum, String data) {
-        segment.addElement(new com.imsweb.x12.Element(segment.getId() + elementNum, data));
+    String build835Text(Payment paymentFirst, Payer payerFirst, ClaimQuery claimQueryFirst, List<Tuple> resultTuples) throws IOException {
+        StringBuilder x12Builder = new StringBuilder();
+        new X12835Encoder(x12Builder).encode(paymentFirst, payerFirst, claimQueryFirst, resultTuples);
+        return x12Builder.toString();
     }
 
-    private ByteArrayOutputStream buildPdf(Payer payerFirst, ClaimQuery claimQueryFirst, Payment paymentFirst, List<Tuple> searchResults) throws DocumentException, IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ByteArrayOutputStream baos;
+    void buildPdf(Payer payerFirst, ClaimQuery claimQueryFirst, Payment paymentFirst, List<Tuple> searchResults, OutputStream outputStream) throws DocumentException {
         Document document = new Document(PageSize.LETTER, 1.00F, 0.75F, 0.75F, 0.75F);
-        PdfWriter writer = PdfWriter.getInstance(document, byteArrayOutputStream);
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        //the pdf is written into a pipeline owned by the caller
+        writer.setCloseStream(false);
 
         document.open();
         document.setMargins(40, 40, 40, 40);
@@ -435,7 +305,7 @@ public class DownloadService {
             cellsRow1.addAll(cellsRow3);
 
             //row4 - dates of services row
-            PdfPCell cell4_start = buildPdfPCellfromText(ApiUtils.dateFormatter.format(claimQuery.getDateOfService()),
+            PdfPCell cell4_start = buildPdfPCellfromText(DateFormats.DOCUMENT_DATE.format(claimQuery.getDateOfService()),
                     normalFont, 3);
             List<PdfPCell> cellsRow4_end = buildClaimsRow(normalFont, DataConstants.ZERO_DOLLARS, DataConstants.ZERO_DOLLARS, DataConstants.ZERO_DOLLARS,
                     DataConstants.ZERO_DOLLARS, DataConstants.ZERO_DOLLARS, DataConstants.ZERO_DOLLARS, DataConstants.ZERO_DOLLARS, DataConstants.CLAIM_RMK_VALUE);
@@ -469,23 +339,6 @@ public class DownloadService {
                 String.format(DataConstants.FLOAT_STRING_FORMAT_PDF, totalPaymentAmount));
         document.add(totalPaymentLine);
         document.close();
-
-        //create zip file, convert to Base64 encoded string
-        byte[] uncompressedByteArray = byteArrayOutputStream.toByteArray(); //uncompressed
-        baos = new ByteArrayOutputStream();
-        final GzipParameters gzipParameters = new GzipParameters();
-        gzipParameters.setFilename(DataConstants.PDF_EOB_FILE_NAME);
-        try ( GzipCompressorOutputStream gzipOutputStream = new GzipCompressorOutputStream(
-                baos, gzipParameters)) {
-            gzipOutputStream.write(uncompressedByteArray, 0, uncompressedByteArray.length);
-           // ZipEntry out = new ZipEntry(DataConstants.PDF_EOB_FILE_NAME);
-            //zos.putNextEntry(out);
-           // zos.write(uncompressedByteArray, 0, uncompressedByteArray.length);
-           // zos.closeEntry();
-            gzipOutputStream.flush();
-            gzipOutputStream.close();
-        }
-        return baos;
     }
 
     private static List buildClaimsRow(Font font, String... vals) {
@@ -518,7 +371,7 @@ public class DownloadService {
         //new row
         PdfPCell c13 = buildPdfPCellWithLabels(DataConstants.PDF_LABEL_PATIENT_ACCOUNT, claimQuery.getProviderClaimID());
         PdfPCell c14 = buildPdfPCellWithLabels(DataConstants.PDF_LABEL_PAYER_CLAIM, claimQuery.getPayerClaimId());
-        PdfPCell c15 = buildPdfPCellWithLabels(DataConstants.PDF_LABEL_PAY_DATE, ApiUtils.dateFormatter.format(payment.getPayment_issue_dt()));
+        PdfPCell c15 = buildPdfPCellWithLabels(DataConstants.PDF_LABEL_PAY_DATE, DateFormats.DOCUMENT_DATE.format(payment.getPayment_issue_dt()));
 
         List cells = List.of(c1, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15);
         for (Object cell : cells) {
@@ -0,0 +1,413 @@
+package org.hl7.davinci.pr.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.domain.ExportJob;
+import org.hl7.davinci.pr.domain.ExportJobStatus;
+import org.hl7.davinci.pr.repositories.ExportJobRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs the asynchronous exports of all payments and remittances of a TIN in a payment issue date range.
+ * A job streams the claim, payment and remittance rows with a JDBC cursor and writes them as gzipped NDJSON files,
+ * one JSON object per payment and line. Files end at claim boundaries and the job is checkpointed after each file,
+ * so jobs that were queued or running when the server stopped resume after the last completed file at startup.
+ */
+@Slf4j
+@Service
+public class ExportService implements DisposableBean {
+
+    /**
+     * Type of the output files in the export manifest
+     */
+    public static final String OUTPUT_TYPE = "PaymentRemittance";
+    static final String METRIC_EXECUTOR = "pr.export";
+    private static final String THREAD_NAME_PREFIX = "export-";
+    private static final String FILE_NAME_FORMAT = "part-%05d.ndjson.gz";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final int ERROR_MESSAGE_MAX_LENGTH = 2048;
+    private static final List<ExportJobStatus> UNFINISHED_STATUSES = List.of(ExportJobStatus.QUEUED, ExportJobStatus.RUNNING);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String EXPORT_FROM = " from claim_query c"
+            + " join payment pm on pm.claim_id = c.id"
+            + " left join payer py on py.id = c.payer_id"
+            + " left join remittance r on r.id = pm.remittance_id"
+            + " where c.provider_tin = ? and pm.payment_issue_dt between ? and ?";
+    private static final String COUNT_QUERY = "select count(*)" + EXPORT_FROM;
+    //ordered by claim, so the rows after a checkpoint are the ones of the claims after its last claim
+    private static final String EXPORT_QUERY = "select c.id as claim_id, c.provider_claimid, c.payer_claimid, c.provider_npi,"
+            + " c.subscriber_patient_id, c.dos_dt, c.claim_charge_amt, c.received_dt, py.payer_name, py.payer_identity,"
+            + " pm.payment_number, pm.amount, pm.payment_issue_dt, r.remittance_adviceid, r.remittance_advice_type,"
+            + " r.remittance_advice_dt, r.remittance_advice_file_size"
+            + EXPORT_FROM + " and c.id > ? order by c.id, pm.id";
+
+    private final ExportJobRepository exportJobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate checkpointTransaction;
+    private final ThreadPoolTaskExecutor executor;
+    private final Path directory;
+    private final int rowsPerFile;
+    /**
+     * Seconds a client should wait before polling the job status or retrying a rejected kick-off
+     */
+    @Getter
+    private final long retryAfterSeconds;
+    //jobs queued on or running on the executor
+    private final Set<String> scheduledJobs = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    public ExportService(ExportJobRepository exportJobRepository,
+                         DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${pr.export.directory:${java.io.tmpdir}/postable-remittance/export}") String directory,
+                         @Value("${pr.export.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                         @Value("${pr.export.queue-capacity:8}") int queueCapacity,
+                         @Value("${pr.export.fetch-size:1000}") int fetchSize,
+                         @Value("${pr.export.rows-per-file:100000}") int rowsPerFile,
+                         @Value("${pr.export.retry-after-seconds:10}") long retryAfterSeconds) {
+        this.exportJobRepository = exportJobRepository;
+        this.directory = Path.of(directory);
+        this.rowsPerFile = rowsPerFile;
+        this.retryAfterSeconds = retryAfterSeconds;
+        //rows are fetched in batches instead of being read into memory at once,
+        //PostgreSQL only keeps the cursor open inside a transaction
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        //checkpoints are committed while the read transaction still streams rows
+        checkpointTransaction = new TransactionTemplate(transactionManager);
+        checkpointTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        //unfinished jobs resume at the next start, shutdown does not wait for them
+        executor.setDaemon(true);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), METRIC_EXECUTOR, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Creates and queues an export job.
+     *
+     * @param tin the provider TIN of the claims
+     * @param since start of the payment issue date range
+     * @param until end of the payment issue date range, inclusive
+     * @param requestUrl the URL of the kick-off request
+     * @return the queued job
+     * @throws RejectedExecutionException if the export queue is full, the job is not kept
+     */
+    public ExportJob kickOff(String tin, java.util.Date since, java.util.Date until, String requestUrl) {
+        java.util.Date now = new java.util.Date();
+        ExportJob job = exportJobRepository.save(ExportJob.builder()
+                .id(UUID.randomUUID().toString())
+                .providerTin(tin)
+                .since(since)
+                .until(until)
+                .status(ExportJobStatus.QUEUED)
+                .requestUrl(requestUrl)
+                .createdDate(now)
+                .updatedDate(now)
+                .rowCount(0L)
+                .build());
+        try {
+            schedule(job.getId());
+        } catch (RejectedExecutionException e) {
+            exportJobRepository.deleteById(job.getId());
+            throw e;
+        }
+        log.info(String.format("Export job %s queued for payments issued from %s to %s", job.getId(), since, until));
+        return job;
+    }
+
+    /**
+     * @param jobId the id of the job
+     * @return the job, empty if it does not exist
+     */
+    public Optional<ExportJob> findJob(String jobId) {
+        return exportJobRepository.findById(jobId);
+    }
+
+    /**
+     * @param job the job
+     * @param fileIndex the index of the output file
+     * @return the path of the output file, which only exists once the file is completed
+     */
+    public Path getOutputFile(ExportJob job, int fileIndex) {
+        return directory.resolve(job.getId()).resolve(String.format(FILE_NAME_FORMAT, fileIndex));
+    }
+
+    /**
+     * Queues the jobs that are not completed and not on the executor yet, oldest first.
+     * Runs at startup to resume the jobs of the previous run, and after every job to pick up jobs that did not fit the queue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleWaitingJobs() {
+        for (ExportJob job : exportJobRepository.findByStatusInOrderByCreatedDate(UNFINISHED_STATUSES)) {
+            if (scheduledJobs.contains(job.getId())) {
+                continue;
+            }
+            try {
+                schedule(job.getId());
+                log.info(String.format("Export job %s scheduled to resume after %d rows", job.getId(), job.getRowCount()));
+            } catch (RejectedExecutionException e) {
+                //the remaining jobs are scheduled when a running job completes
+                return;
+            }
+        }
+    }
+
+    private void schedule(String jobId) {
+        if (!scheduledJobs.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runJob(jobId);
+                } finally {
+                    scheduledJobs.remove(jobId);
+                }
+                if (!stopping) {
+                    scheduleWaitingJobs();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scheduledJobs.remove(jobId);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the job, or resumes it after its last checkpoint.
+     *
+     * @param jobId the id of the job
+     */
+    void runJob(String jobId) {
+        ExportJob job = exportJobRepository.findById(jobId).orElse(null);
+        if (job == null || !UNFINISHED_STATUSES.contains(job.getStatus())) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ExportFileWriter writer = null;
+        try {
+            job.setStatus(ExportJobStatus.RUNNING);
+            if (job.getTotalCount() == null) {
+                job.setTotalCount(jdbcTemplate.queryForObject(COUNT_QUERY, Long.class, job.getProviderTin(),
+                        new Timestamp(job.getSince().getTime()), new Timestamp(job.getUntil().getTime())));
+            }
+            job = saveJob(job);
+
+            Files.createDirectories(directory.resolve(job.getId()));
+            writer = new ExportFileWriter(job);
+            ExportFileWriter rowHandler = writer;
+            ExportJob runningJob = job;
+            readTransaction.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_QUERY, rowHandler,
+                    runningJob.getProviderTin(), new Timestamp(runningJob.getSince().getTime()),
+                    new Timestamp(runningJob.getUntil().getTime()),
+                    (runningJob.getLastClaimId() == null) ? 0 : runningJob.getLastClaimId()));
+            writer.completeFile();
+
+            job = writer.job;
+            job.setStatus(ExportJobStatus.COMPLETED);
+            saveJob(job);
+            log.info(String.format("Export job %s completed with %d rows in %d files in %d ms", job.getId(),
+                    job.getRowCount(), job.getFileRowCounts().size(), System.currentTimeMillis() - start));
+        } catch (Exception e) {
+            if (writer != null) {
+                writer.abort();
+                job = writer.job;
+            }
+            if (stopping) {
+                //still running in the database, so it resumes at the next start
+                log.warn(String.format("Export job %s stopped by the shutdown after %d rows", job.getId(), job.getRowCount()));
+                return;
+            }
+            log.error(String.format("Export job %s failed", job.getId()), e);
+            job.setStatus(ExportJobStatus.FAILED);
+            String message = (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
+            job.setErrorMessage(message.substring(0, Math.min(message.length(), ERROR_MESSAGE_MAX_LENGTH)));
+            saveJob(job);
+        }
+    }
+
+    private ExportJob saveJob(ExportJob job) {
+        job.setUpdatedDate(new java.util.Date());
+        return checkpointTransaction.execute(status -> exportJobRepository.save(job));
+    }
+
+    @Override
+    public void destroy() {
+        stopping = true;
+        executor.shutdown();
+    }
+
+    /**
+     * Writes the streamed rows into the output files of a job and checkpoints the job after each completed file.
+     * A file is written under a temporary name and renamed when it is complete,
+     * so an interrupted file is overwritten when the job resumes.
+     */
+    private final class ExportFileWriter implements RowCallbackHandler {
+
+        private ExportJob job;
+        private JsonGenerator generator;
+        private Path tempFile;
+        private int fileRows;
+        private int claimId;
+
+        private ExportFileWriter(ExportJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (stopping) {
+                throw new IllegalStateException("The export has been stopped by the shutdown");
+            }
+            int rowClaimId = rs.getInt("claim_id");
+            try {
+                //a file only ends with the last payment of a claim, so a resumed job starts with the next claim
+                if (generator != null && fileRows >= rowsPerFile && rowClaimId != claimId) {
+                    completeFile();
+                }
+                if (generator == null) {
+                    openFile();
+                }
+                writeRow(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            claimId = rowClaimId;
+            fileRows++;
+        }
+
+        private void openFile() throws IOException {
+            tempFile = getOutputFile(job, job.getFileRowCounts().size()).resolveSibling(
+                    String.format(FILE_NAME_FORMAT, job.getFileRowCounts().size()) + TEMP_FILE_SUFFIX);
+            generator = JSON_FACTORY.createGenerator(new GZIPOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile), FILE_BUFFER_SIZE), FILE_BUFFER_SIZE), JsonEncoding.UTF8);
+            //one object per line instead of the default space between root values
+            generator.setRootValueSeparator(null);
+            fileRows = 0;
+        }
+
+        /**
+         * Closes the current file, if any, and checkpoints the job after its last claim.
+         */
+        private void completeFile() throws IOException {
+            if (generator == null) {
+                return;
+            }
+            int fileIndex = job.getFileRowCounts().size();
+            generator.close();
+            generator = null;
+            Files.move(tempFile, getOutputFile(job, fileIndex), StandardCopyOption.REPLACE_EXISTING);
+            job.getFileRowCounts().add(fileRows);
+            job.setRowCount(job.getRowCount() + fileRows);
+            job.setLastClaimId(claimId);
+            job = saveJob(job);
+        }
+
+        private void abort() {
+            if (generator != null) {
+                try {
+                    generator.close();
+                } catch (IOException e) {
+                    log.warn(String.format("Unable to close the export file %s", tempFile), e);
+                }
+                generator = null;
+            }
+        }
+
+        private void writeRow(ResultSet rs) throws IOException, SQLException {
+            generator.writeStartObject();
+            generator.writeStringField("type", OUTPUT_TYPE);
+            generator.writeStringField(ApiConstants.TIN, job.getProviderTin());
+            writeString(ApiConstants.PROVIDER_CLAIM_ID, rs.getString("provider_claimid"));
+            writeString(ApiConstants.PAYER_CLAIM_ID, rs.getString("payer_claimid"));
+            writeString(ApiConstants.PROVIDER_ID, rs.getString("provider_npi"));
+            writeString(ApiConstants.PATIENT_ID, rs.getString("subscriber_patient_id"));
+            writeDate(ApiConstants.DATE_OF_SERVICE, rs.getDate("dos_dt"));
+            writeAmount(ApiConstants.CLAIM_CHARGE_AMOUNT, rs.getDouble("claim_charge_amt"), rs.wasNull());
+            writeDate(ApiConstants.CLAIM_RECEIVED_DATE, rs.getDate("received_dt"));
+            writeString(ApiConstants.PAYER_NAME, rs.getString("payer_name"));
+            writeString(ApiConstants.PAYER_ID, rs.getString("payer_identity"));
+            writeString(ApiConstants.PAYMENT_NUMBER, rs.getString("payment_number"));
+            writeAmount(ApiConstants.PAYMENT_AMOUNT, rs.getDouble("amount"), rs.wasNull());
+            writeDate(ApiConstants.PAYMENT_ISSUE_DATE, rs.getDate("payment_issue_dt"));
+            writeString(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER, rs.getString("remittance_adviceid"));
+            writeString(ApiConstants.REMITTANCE_ADVICE_TYPE, rs.getString("remittance_advice_type"));
+            writeDate(ApiConstants.REMITTANCE_ADVICE_DATE, rs.getDate("remittance_advice_dt"));
+            int fileSize = rs.getInt("remittance_advice_file_size");
+            if (!rs.wasNull()) {
+                generator.writeNumberField(ApiConstants.REMITTANCE_ADVICE_FILE_SIZE, fileSize);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeString(String name, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+
+        //yyyy-MM-dd, the FHIR date format
+        private void writeDate(String name, Date value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value.toString());
+            }
+        }
+
+        private void writeAmount(String name, double value, boolean isNull) throws IOException {
+            if (!isNull) {
+                generator.writeNumberField(name, value);
+            }
+        }
+    }
+}
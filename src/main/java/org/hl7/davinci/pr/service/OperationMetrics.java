@@ -0,0 +1,133 @@
+package org.hl7.davinci.pr.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the FHIR $operations, tagged by operation:
+ * <ul>
+ *     <li>{@code pr.operation.requests} timer histogram of whole requests, also tagged with the outcome</li>
+ *     <li>{@code pr.operation.stage} timer of the parse, query, build and encode stages of a request</li>
+ *     <li>{@code pr.operation.rows} histogram of the rows a request read from the database</li>
+ *     <li>{@code pr.operation.results} histogram of the claims, or payments for $searchByPayment, a search response holds</li>
+ *     <li>{@code pr.operation.payload} histogram of the request and response bodies in bytes, tagged with the direction</li>
+ * </ul>
+ * docker-compose/grafana holds a dashboard of these metrics.
+ */
+@Component
+public class OperationMetrics {
+
+    static final String METRIC_REQUESTS = "pr.operation.requests";
+    static final String METRIC_STAGE = "pr.operation.stage";
+    static final String METRIC_ROWS = "pr.operation.rows";
+    static final String METRIC_RESULTS = "pr.operation.results";
+    static final String METRIC_PAYLOAD = "pr.operation.payload";
+    public static final String SEARCH_BY_CLAIM = "searchByClaim";
+    public static final String SEARCH_BY_PATIENT = "searchByPatient";
+    public static final String SEARCH_BY_PAYMENT = "searchByPayment";
+    public static final String DOWNLOAD_REMITTANCE = "downloadRemittance";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_QUERY = "query";
+    public static final String STAGE_BUILD = "build";
+    public static final String STAGE_ENCODE = "encode";
+    public static final String DIRECTION_REQUEST = "request";
+    public static final String DIRECTION_RESPONSE = "response";
+    private static final String OPERATION_PREFIX = "/$";
+    private static final Duration MIN_EXPECTED_TIME = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED_TIME = Duration.ofSeconds(60);
+    private static final double MAX_EXPECTED_ROWS = 100_000;
+    private static final double MAX_EXPECTED_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * How a request ended
+     */
+    public enum Outcome {
+        FOUND("found"),
+        NOT_FOUND("not_found"),
+        // the request failed validation
+        INVALID("invalid"),
+        // the request was valid but could not be answered
+        ERROR("error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    public OperationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param endpoint an endpoint path like {@code /$searchByClaim}
+     * @return the operation of the endpoint, or null if it is no $operation
+     */
+    public static String operation(String endpoint) {
+        return (endpoint != null && endpoint.startsWith(OPERATION_PREFIX)) ? endpoint.substring(OPERATION_PREFIX.length()) : null;
+    }
+
+    public void recordRequest(String operation, Outcome outcome, long nanos) {
+        Timer.builder(METRIC_REQUESTS)
+                .description("Time to answer an operation request")
+                .tag("operation", operation)
+                .tag("outcome", outcome.tag)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_TIME)
+                .maximumExpectedValue(MAX_EXPECTED_TIME)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStage(String operation, String stage, long nanos) {
+        Timer.builder(METRIC_STAGE)
+                .description("Time spent in each stage of an operation request")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRows(String operation, int rows) {
+        DistributionSummary.builder(METRIC_ROWS)
+                .description("Rows an operation request read from the database")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(MAX_EXPECTED_ROWS)
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    public void recordResults(String operation, int results) {
+        DistributionSummary.builder(METRIC_RESULTS)
+                .description("Claims, or payments for searchByPayment, in a search response")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(MAX_EXPECTED_ROWS)
+                .register(meterRegistry)
+                .record(results);
+    }
+
+    public void recordPayload(String operation, String direction, long bytes) {
+        DistributionSummary.builder(METRIC_PAYLOAD)
+                .description("Size of the request and response bodies of an operation")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(MAX_EXPECTED_BYTES)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+}
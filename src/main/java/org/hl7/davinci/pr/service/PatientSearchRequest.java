@@ -0,0 +1,24 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.Date;
+
+/**
+ * A validated $searchByPatient request.
+ *
+ * @param filters the filters shared by the searches
+ * @param patientId the PatientID of the Patient parameter
+ * @param dateOfBirth the DateOfBirth of the Patient parameter
+ * @param patientFirstName the PatientFirstName, or null
+ * @param patientLastName the PatientLastName, or null
+ */
+public record PatientSearchRequest(SearchFilters filters, String patientId, Date dateOfBirth, String patientFirstName,
+    String patientLastName) {
+
+  /**
+   * @return the hash of the search criteria, see {@link org.hl7.davinci.pr.repositories.KeysetPage#queryHash}
+   */
+  public String queryHash() {
+    return filters.queryHash(OperationMetrics.SEARCH_BY_PATIENT, patientId, dateOfBirth, patientFirstName,
+        patientLastName);
+  }
+}
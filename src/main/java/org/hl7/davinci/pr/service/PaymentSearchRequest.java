@@ -0,0 +1,25 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.Date;
+
+/**
+ * A validated $searchByPayment request.
+ *
+ * @param filters the filters shared by the searches
+ * @param paymentNumber the PaymentNumber, matched as described by {@link org.hl7.davinci.pr.repositories.PaymentNumberMatch}
+ * @param paymentIssueDateStart the start of the PaymentIssueDate period
+ * @param paymentIssueDateEnd the end of the PaymentIssueDate period
+ * @param paymentAmountLow the PaymentAmountLow, or null
+ * @param paymentAmountHigh the PaymentAmountHigh, or null
+ */
+public record PaymentSearchRequest(SearchFilters filters, String paymentNumber, Date paymentIssueDateStart,
+    Date paymentIssueDateEnd, Float paymentAmountLow, Float paymentAmountHigh) {
+
+  /**
+   * @return the hash of the search criteria, see {@link org.hl7.davinci.pr.repositories.KeysetPage#queryHash}
+   */
+  public String queryHash() {
+    return filters.queryHash(OperationMetrics.SEARCH_BY_PAYMENT, paymentNumber, paymentIssueDateStart,
+        paymentIssueDateEnd, paymentAmountLow, paymentAmountHigh);
+  }
+}
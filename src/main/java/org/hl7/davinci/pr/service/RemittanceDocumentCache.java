@@ -0,0 +1,476 @@
+package org.hl7.davinci.pr.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two tier cache of the rendered, gzip-compressed remittance documents keyed by remittance advice id and type.
+ * The memory tier and the disk tier are both bounded by total size and evict the least recently used entries.
+ * The disk tier is emptied at startup, the documents of a previous run may have been rendered from data that was
+ * changed since, e.g. by the SQL scripts run at startup.
+ */
+@Slf4j
+@Component
+public class RemittanceDocumentCache {
+
+    static final String METRIC_HITS = "pr.download.cache.hits";
+    static final String METRIC_MISSES = "pr.download.cache.misses";
+    static final String METRIC_EVICTIONS = "pr.download.cache.evictions";
+    static final String METRIC_SIZE = "pr.download.cache.size";
+    static final String TIER_MEMORY = "memory";
+    static final String TIER_DISK = "disk";
+    private static final String DISK_ENTRY_SUFFIX = ".gz";
+    private static final String DISK_TEMP_SUFFIX = ".tmp";
+    private static final List<String> REMITTANCE_TYPES = List.of(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, ApiConstants.REMITTANCE_ADVICE_TYPE_835);
+
+    private final boolean enabled;
+    private final long memoryMaxBytes;
+    private final long memoryMaxEntryBytes;
+    private final Path diskDirectory;
+    private final long diskMaxBytes;
+
+    //guards both entry maps, a lock rather than a monitor so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    //access ordered, so the first entry is always the least recently used one
+    private final LinkedHashMap<String, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75F, true);
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    //bumped on every invalidation so documents rendered from older data are not stored
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public RemittanceDocumentCache(@Value("${pr.download.cache.enabled:true}") boolean enabled,
+                                   @Value("${pr.download.cache.memory.max-bytes:67108864}") long memoryMaxBytes,
+                                   @Value("${pr.download.cache.memory.max-entry-bytes:4194304}") long memoryMaxEntryBytes,
+                                   @Value("${pr.download.cache.disk.directory:}") String diskDirectory,
+                                   @Value("${pr.download.cache.disk.max-bytes:1073741824}") long diskMaxBytes,
+                                   MeterRegistry meterRegistry) throws IOException {
+        this.enabled = enabled;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.memoryMaxEntryBytes = Math.min(memoryMaxEntryBytes, memoryMaxBytes);
+        this.diskDirectory = (enabled && StringUtils.isNotBlank(diskDirectory)) ? Paths.get(diskDirectory) : null;
+        this.diskMaxBytes = diskMaxBytes;
+
+        memoryHits = Counter.builder(METRIC_HITS).tag("tier", TIER_MEMORY).register(meterRegistry);
+        diskHits = Counter.builder(METRIC_HITS).tag("tier", TIER_DISK).register(meterRegistry);
+        misses = Counter.builder(METRIC_MISSES).register(meterRegistry);
+        memoryEvictions = Counter.builder(METRIC_EVICTIONS).tag("tier", TIER_MEMORY).register(meterRegistry);
+        diskEvictions = Counter.builder(METRIC_EVICTIONS).tag("tier", TIER_DISK).register(meterRegistry);
+        Gauge.builder(METRIC_SIZE, memoryBytes, AtomicLong::get).tag("tier", TIER_MEMORY).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder(METRIC_SIZE, diskBytes, AtomicLong::get).tag("tier", TIER_DISK).baseUnit("bytes").register(meterRegistry);
+
+        if (this.diskDirectory != null) {
+            clearDiskDirectory();
+        }
+    }
+
+    /**
+     * Looks up a cached document. A document served from the disk tier keeps its file open until it is written.
+     *
+     * @return a source writing the cached bytes or null on a cache miss
+     */
+    public DocumentSource lookup(String remittanceAdviceId, String remittanceType) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        String key = buildKey(remittanceAdviceId, remittanceType);
+        byte[] document;
+        lock.lock();
+        try {
+            document = memoryEntries.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (document != null) {
+            memoryHits.increment();
+            return outputStream -> outputStream.write(document);
+        }
+
+        if (diskDirectory != null) {
+            String fileName = buildFileName(key);
+            Long size = null;
+            InputStream diskDocument = null;
+            long readGeneration = 0;
+            lock.lock();
+            try {
+                readGeneration = generation.get();
+                size = diskEntries.get(fileName);
+                if (size != null) {
+                    //opened under the lock, so an eviction cannot delete the file before it is open
+                    diskDocument = Files.newInputStream(diskDirectory.resolve(fileName));
+                }
+            } catch (NoSuchFileException e) {
+                //deleted outside of the cache, render it again
+                removeFromDisk(fileName);
+            } finally {
+                lock.unlock();
+            }
+            if (diskDocument != null) {
+                diskHits.increment();
+                if (size <= memoryMaxEntryBytes) {
+                    //promote small documents back into the memory tier
+                    byte[] promoted;
+                    try (InputStream inputStream = diskDocument) {
+                        promoted = inputStream.readAllBytes();
+                    }
+                    putInMemory(key, promoted, readGeneration);
+                    return outputStream -> outputStream.write(promoted);
+                }
+                InputStream inputStream = diskDocument;
+                return outputStream -> {
+                    try (inputStream) {
+                        inputStream.transferTo(outputStream);
+                    }
+                };
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the current generation, to be read before the data of a document is queried and passed to
+     * {@link #newEntry}.
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Opens an entry that passes every byte through to the target stream and keeps a copy for the cache.
+     * The copy is only stored once {@link Entry#commit()} is called, closing an uncommitted entry discards it.
+     * It is not stored either if the cache was invalidated since {@code startGeneration} was read.
+     *
+     * @param startGeneration the {@link #currentGeneration()} read before the data of the document was queried
+     */
+    public Entry newEntry(String remittanceAdviceId, String remittanceType, long startGeneration, OutputStream target) {
+        return new Entry(buildKey(remittanceAdviceId, remittanceType), startGeneration, target);
+    }
+
+    /**
+     * Removes the documents of all types for the remittance advice from both tiers.
+     */
+    public void invalidate(String remittanceAdviceId) {
+        if (!enabled || remittanceAdviceId == null) {
+            return;
+        }
+        List<String> fileNames = new ArrayList<>();
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            for (String remittanceType : REMITTANCE_TYPES) {
+                String key = buildKey(remittanceAdviceId, remittanceType);
+                removeFromMemory(key);
+                String fileName = buildFileName(key);
+                if (removeFromDisk(fileName)) {
+                    fileNames.add(fileName);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        deleteFiles(fileNames);
+    }
+
+    /**
+     * Removes every document from both tiers.
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        List<String> fileNames;
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            memoryEntries.clear();
+            memoryBytes.set(0);
+            fileNames = new ArrayList<>(diskEntries.keySet());
+            diskEntries.clear();
+            diskBytes.set(0);
+        } finally {
+            lock.unlock();
+        }
+        deleteFiles(fileNames);
+    }
+
+    /**
+     * Stores the document unless the cache was invalidated since {@code startGeneration}. Checked under the lock,
+     * which an invalidation holds while it bumps the generation and removes the entries.
+     */
+    private void putInMemory(String key, byte[] document, long startGeneration) {
+        if (document.length > memoryMaxEntryBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (generation.get() != startGeneration) {
+                return;
+            }
+            removeFromMemory(key);
+            memoryEntries.put(key, document);
+            memoryBytes.addAndGet(document.length);
+            Iterator<Map.Entry<String, byte[]>> iterator = memoryEntries.entrySet().iterator();
+            while (memoryBytes.get() > memoryMaxBytes && iterator.hasNext()) {
+                memoryBytes.addAndGet(-iterator.next().getValue().length);
+                iterator.remove();
+                memoryEvictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putOnDisk(String key, Path tempFile, long size, long startGeneration) throws IOException {
+        String fileName = buildFileName(key);
+        List<String> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (generation.get() != startGeneration) {
+                Files.deleteIfExists(tempFile);
+                return;
+            }
+            //moved under the lock, so a lookup cannot open the file while it is replaced
+            Files.move(tempFile, diskDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            removeFromDisk(fileName);
+            diskEntries.put(fileName, size);
+            diskBytes.addAndGet(size);
+            Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+            while (diskBytes.get() > diskMaxBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                diskBytes.addAndGet(-eldest.getValue());
+                evicted.add(eldest.getKey());
+                iterator.remove();
+                diskEvictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        deleteFiles(evicted);
+    }
+
+    private void removeFromMemory(String key) {
+        byte[] removed = memoryEntries.remove(key);
+        if (removed != null) {
+            memoryBytes.addAndGet(-removed.length);
+        }
+    }
+
+    private boolean removeFromDisk(String fileName) {
+        Long removed = diskEntries.remove(fileName);
+        if (removed != null) {
+            diskBytes.addAndGet(-removed);
+            return true;
+        }
+        return false;
+    }
+
+    private void deleteFiles(List<String> fileNames) {
+        for (String fileName : fileNames) {
+            try {
+                Files.deleteIfExists(diskDirectory.resolve(fileName));
+            } catch (IOException e) {
+                log.warn(String.format("Could not delete cached remittance document %s", fileName), e);
+            }
+        }
+    }
+
+    private void clearDiskDirectory() throws IOException {
+        Files.createDirectories(diskDirectory);
+        int deleted = 0;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(diskDirectory)) {
+            for (Path path : directoryStream) {
+                String fileName = path.getFileName().toString();
+                //entries and temporary files of a previous run, other files are left alone
+                if (fileName.endsWith(DISK_ENTRY_SUFFIX) || fileName.endsWith(DISK_TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                    deleted++;
+                }
+            }
+        }
+        log.info(String.format("Deleted %d cached remittance documents from %s", deleted, diskDirectory));
+    }
+
+    private static String buildKey(String remittanceAdviceId, String remittanceType) {
+        return remittanceAdviceId + '\u0000' + remittanceType;
+    }
+
+    private static String buildFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + DISK_ENTRY_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Output stream writing through to the target while keeping the copies needed to cache the document.
+     */
+    public class Entry extends OutputStream {
+
+        private final String key;
+        private final OutputStream target;
+        private final long startGeneration;
+        private ByteArrayOutputStream memoryCopy;
+        private Path tempFile;
+        private OutputStream diskCopy;
+        private long size;
+        private boolean committed;
+
+        private Entry(String key, long startGeneration, OutputStream target) {
+            this.key = key;
+            this.startGeneration = startGeneration;
+            this.target = target;
+            if (!enabled) {
+                return;
+            }
+            memoryCopy = new ByteArrayOutputStream();
+            if (diskDirectory != null) {
+                try {
+                    tempFile = Files.createTempFile(diskDirectory, null, DISK_TEMP_SUFFIX);
+                    diskCopy = new BufferedOutputStream(Files.newOutputStream(tempFile));
+                } catch (IOException e) {
+                    log.warn("Could not open the disk cache entry, the document is only cached in memory", e);
+                    discardDiskCopy();
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            size++;
+            if (memoryCopy != null) {
+                memoryCopy.write(b);
+                trimMemoryCopy();
+            }
+            if (diskCopy != null) {
+                try {
+                    diskCopy.write(b);
+                } catch (IOException e) {
+                    log.warn("Could not write the disk cache entry", e);
+                    discardDiskCopy();
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            size += len;
+            if (memoryCopy != null) {
+                memoryCopy.write(b, off, len);
+                trimMemoryCopy();
+            }
+            if (diskCopy != null) {
+                try {
+                    diskCopy.write(b, off, len);
+                } catch (IOException e) {
+                    log.warn("Could not write the disk cache entry", e);
+                    discardDiskCopy();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * Stores the document, to be called once it has been written completely.
+         */
+        public void commit() throws IOException {
+            committed = true;
+            if (generation.get() != startGeneration) {
+                //the underlying data changed while the document was rendered
+                discardDiskCopy();
+                return;
+            }
+            if (memoryCopy != null) {
+                putInMemory(key, memoryCopy.toByteArray(), startGeneration);
+                memoryCopy = null;
+            }
+            if (diskCopy != null) {
+                try {
+                    diskCopy.close();
+                    diskCopy = null;
+                    putOnDisk(key, tempFile, size, startGeneration);
+                } catch (IOException e) {
+                    log.warn("Could not store the disk cache entry", e);
+                    discardDiskCopy();
+                }
+            }
+        }
+
+        /**
+         * Discards the copies of an uncommitted entry, the target stream is left open.
+         */
+        @Override
+        public void close() {
+            if (!committed) {
+                discardDiskCopy();
+            }
+            memoryCopy = null;
+        }
+
+        private void trimMemoryCopy() {
+            if (memoryCopy.size() > memoryMaxEntryBytes) {
+                //too large for the memory tier, only the disk tier can hold it
+                memoryCopy = null;
+            }
+        }
+
+        private void discardDiskCopy() {
+            try {
+                if (diskCopy != null) {
+                    diskCopy.close();
+                }
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete the disk cache entry", e);
+            }
+            diskCopy = null;
+            tempFile = null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.Date;
+import org.hl7.davinci.pr.repositories.KeysetPage;
+
+/**
+ * The filters and paging shared by the searches, read from a validated search request.
+ *
+ * @param tin the provider TIN
+ * @param dateOfServiceStart the start of the DateOfService period, or null
+ * @param dateOfServiceEnd the end of the DateOfService period, or null
+ * @param payerId the PayerID, or null
+ * @param payerName the PayerName, or null
+ * @param page the page of claims to return, {@link KeysetPage#UNPAGED} without _count
+ */
+public record SearchFilters(String tin, Date dateOfServiceStart, Date dateOfServiceEnd, String payerId,
+    String payerName, KeysetPage page) {
+
+  /**
+   * @param criteria the operation and the criteria of a search besides these filters
+   * @return the hash the continuation tokens of the search are tied to, the page is left out
+   */
+  String queryHash(Object... criteria) {
+    return KeysetPage.queryHash(tin, dateOfServiceStart, dateOfServiceEnd, payerId, payerName,
+        KeysetPage.queryHash(criteria));
+  }
+}
@@ -0,0 +1,63 @@
+package org.hl7.davinci.pr.service;
+
+import java.util.List;
+import org.hl7.davinci.pr.api.utils.ApiUtils;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.fhir.r4.model.Parameters;
+
+/**
+ * A page of search results, the distinct entities of the rows of the page.
+ * It is written to the response by {@link org.hl7.davinci.pr.api.utils.SearchResponseJsonWriter} without building
+ * the Parameters resource, {@link #toParameters()} builds the same resource with {@link ApiUtils}.
+ *
+ * @param byPayment true for a $searchByPayment result, which lists payments instead of claims
+ * @param tin the provider TIN
+ * @param claimQueries the claims, empty for a $searchByPayment result
+ * @param patients the patients, empty for a $searchByPayment result
+ * @param payers the payers
+ * @param payments the payments, paired with the claims in order
+ * @param remittances the remittances, paired with the payments in order
+ * @param nextLink the url of the next page, or null on the last page
+ */
+public record SearchResponse(boolean byPayment, String tin, List<ClaimQuery> claimQueries, List<Patient> patients,
+    List<Payer> payers, List<Payment> payments, List<Remittance> remittances, String nextLink) {
+
+  /**
+   * @param nextLink the url of the next page
+   * @return this result with the url of its next page replaced
+   */
+  public SearchResponse withNextLink(String nextLink) {
+    return new SearchResponse(byPayment, tin, claimQueries, patients, payers, payments, remittances, nextLink);
+  }
+
+  /**
+   * @return true if there are no results, every claim of a result has a payment
+   */
+  public boolean isEmpty() {
+    return payments.isEmpty();
+  }
+
+  /**
+   * @return the number of results, the payments of a $searchByPayment result and the claims of any other result
+   */
+  public int resultCount() {
+    return byPayment ? payments.size() : claimQueries.size();
+  }
+
+  /**
+   * @return the Parameters resource of the search response
+   */
+  public Parameters toParameters() {
+    Parameters responseResource = byPayment
+        ? ApiUtils.generateSearchByPaymentResponse(tin, payers, payments, remittances)
+        : ApiUtils.generateSearchByClaimOrPatientResponse(tin, claimQueries, patients, payers, payments, remittances);
+    if (nextLink != null) {
+      ApiUtils.addNextLink(responseResource, nextLink);
+    }
+    return responseResource;
+  }
+}
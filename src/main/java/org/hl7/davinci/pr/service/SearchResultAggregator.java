@@ -0,0 +1,190 @@
+package org.hl7.davinci.pr.service;
+
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the distinct claims, patients, payers, payments and remittances of the search rows in one pass.
+ * Every row holds the columns of all joined tables, so the same entity is repeated on many rows.
+ * Entities are identified by their primary key and built from the row the first time their key is seen,
+ * so each list keeps the order in which the rows first returned its entities,
+ * which is the order {@link org.hl7.davinci.pr.api.utils.ApiUtils} pairs claims with payments and remittances in.
+ * A null key (a left join without a match) counts as one entity.
+ */
+final class SearchResultAggregator {
+
+    private final List<ClaimQuery> claimQueries;
+    private final List<Patient> patients;
+    private final List<Payer> payers;
+    private final List<Payment> payments;
+    private final List<Remittance> remittances;
+
+    private SearchResultAggregator(int rowCount, boolean includeClaims) {
+        //claims, payments and remittances can be unique per row, payers and patients are usually shared by many rows
+        claimQueries = includeClaims ? new ArrayList<>(rowCount) : List.of();
+        patients = includeClaims ? new ArrayList<>() : List.of();
+        payers = new ArrayList<>();
+        payments = new ArrayList<>(rowCount);
+        remittances = new ArrayList<>(rowCount);
+    }
+
+    /**
+     * @param rows rows of the search by claim or search by patient query
+     * @return the distinct entities of the rows
+     */
+    static SearchResultAggregator ofClaimRows(List<ClaimSearchRow> rows) {
+        SearchResultAggregator aggregator = new SearchResultAggregator(rows.size(), true);
+        IntKeySet claimIds = new IntKeySet(rows.size());
+        IntKeySet patientIds = new IntKeySet(0);
+        IntKeySet payerIds = new IntKeySet(0);
+        IntKeySet paymentIds = new IntKeySet(rows.size());
+        IntKeySet remittanceIds = new IntKeySet(rows.size());
+        for (ClaimSearchRow row : rows) {
+            if (claimIds.add(row.claimId())) {
+                aggregator.claimQueries.add(row.toClaimQuery());
+            }
+            if (patientIds.add(row.patientId())) {
+                aggregator.patients.add(row.toPatient());
+            }
+            if (payerIds.add(row.payerId())) {
+                aggregator.payers.add(row.toPayer());
+            }
+            if (paymentIds.add(row.paymentId())) {
+                aggregator.payments.add(row.toPayment());
+            }
+            if (remittanceIds.add(row.remittanceId())) {
+                aggregator.remittances.add(row.toRemittance());
+            }
+        }
+        return aggregator;
+    }
+
+    /**
+     * @param rows rows of the search by payment query, they have no patient and no claim columns
+     * @return the distinct payers, payments and remittances of the rows
+     */
+    static SearchResultAggregator ofPaymentRows(List<PaymentSearchRow> rows) {
+        SearchResultAggregator aggregator = new SearchResultAggregator(rows.size(), false);
+        IntKeySet payerIds = new IntKeySet(0);
+        IntKeySet paymentIds = new IntKeySet(rows.size());
+        IntKeySet remittanceIds = new IntKeySet(rows.size());
+        for (PaymentSearchRow row : rows) {
+            if (payerIds.add(row.payerId())) {
+                aggregator.payers.add(row.toPayer());
+            }
+            if (paymentIds.add(row.paymentId())) {
+                aggregator.payments.add(row.toPayment());
+            }
+            if (remittanceIds.add(row.remittanceId())) {
+                aggregator.remittances.add(row.toRemittance());
+            }
+        }
+        return aggregator;
+    }
+
+    List<ClaimQuery> claimQueries() {
+        return claimQueries;
+    }
+
+    List<Patient> patients() {
+        return patients;
+    }
+
+    List<Payer> payers() {
+        return payers;
+    }
+
+    List<Payment> payments() {
+        return payments;
+    }
+
+    List<Remittance> remittances() {
+        return remittances;
+    }
+
+    /**
+     * Open addressing set of int keys with linear probing, so adding a key does not box it or allocate an entry.
+     */
+    static final class IntKeySet {
+
+        private static final int MIN_CAPACITY = 16;
+        private static final int MAX_PRESIZED_CAPACITY = 1 << 16;
+
+        private int[] keys;
+        private boolean[] used;
+        private int size;
+        private boolean containsNull;
+
+        /**
+         * @param expectedSize the expected number of keys, the set grows past it
+         */
+        IntKeySet(int expectedSize) {
+            int capacity = MIN_CAPACITY;
+            //at most half full, presized up to a bound since the keys are often far fewer than the rows
+            while (capacity < expectedSize * 2 && capacity < MAX_PRESIZED_CAPACITY) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            used = new boolean[capacity];
+        }
+
+        /**
+         * @param key the key, can be null
+         * @return true if the key was not in the set yet
+         */
+        boolean add(Integer key) {
+            if (key == null) {
+                boolean added = !containsNull;
+                containsNull = true;
+                return added;
+            }
+            int value = key;
+            int mask = keys.length - 1;
+            int slot = hash(value) & mask;
+            while (used[slot]) {
+                if (keys[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = value;
+            used[slot] = true;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    used[slot] = true;
+                }
+            }
+        }
+
+        //sequence ids would fill neighbouring slots, spread them over the table
+        private static int hash(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
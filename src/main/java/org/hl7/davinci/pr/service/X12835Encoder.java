@@ -0,0 +1,177 @@
+package org.hl7.davinci.pr.service;
+
+import jakarta.persistence.Tuple;
+import org.hl7.davinci.pr.api.utils.DataConstants;
+import org.hl7.davinci.pr.api.utils.DateFormats;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes an X12 835 5010 X221 remittance advice segment by segment to an {@link Appendable}
+ * while iterating the search results, without building an intermediate loop tree.
+ * Segments are separated by CRLF, the last segment is not followed by a line break.
+ */
+public class X12835Encoder {
+
+    private static final char ELEMENT_SEPARATOR = '*';
+    private static final char SEGMENT_TERMINATOR = '~';
+    private static final String LINE_BREAK = "\r\n";
+    private static final String INTERCHANGE_CONTROL_NUMBER = "101925142";
+    private static final String GROUP_CONTROL_NUMBER = "101777856";
+    private static final String TRANSACTION_SET_CONTROL_NUMBER = "0001";
+
+    private final Appendable out;
+    private boolean firstSegment = true;
+    //number of segments from ST to SE, both included
+    private int transactionSegmentCount;
+
+    public X12835Encoder(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the whole interchange for the search results.
+     *
+     * @param resultTuples the tuples of {@link ClaimQuery}, {@link Patient}, {@link Payer}, {@link Payment}, {@link org.hl7.davinci.pr.domain.Remittance}
+     */
+    public void encode(Payment paymentFirst, Payer payerFirst, ClaimQuery claimQueryFirst, List<Tuple> resultTuples) throws IOException {
+        segment("ISA").element("00").element("          ").element("00").element("          ")
+                //          "SUBMITTERS.ID  "
+                .element("ZZ").element("200787505      ").element("ZZ").element("450525148      ")
+                .element("240826").element("0912").element("^").element("00501").element(INTERCHANGE_CONTROL_NUMBER)
+                .element("0").element("P").element(":").end();
+        segment("GS").element("HP").element("200787505").element("450525148").element("20240826").element("0912")
+                .element(GROUP_CONTROL_NUMBER).element("X").element("005010X221A1").end();
+
+        transactionSegmentCount = 0;
+        segment("ST").element("835").element(TRANSACTION_SET_CONTROL_NUMBER).end();
+
+        //header
+        segment("BPR").element("I").element(paymentFirst.getAmount()).element("C").element("ACH").element("CCP")
+                //Depository Financial Institution (DFI) Identification Number Qualifier, Sender DFI Identifier
+                .element("01").element("123000848")
+                //Account Number Qualifier, Sender Bank Account Number
+                .element("DA").element("1700020064")
+                //Payer Identifier, Originating Company Supplemental Code
+                .element(payerFirst.getPayerIdentity()).element("")
+                //Dfi Id Number Qualifier 2-ABA transit routing number incl. check digits, Receiver Or Provider Bank Id Number
+                .element("01").element("123000848")
+                //Account Number Qualifier, Receiver or Provider Account Number
+                .element("DA").element("153911610365")
+                //check issue date
+                .element("20240816").end();
+        segment("TRN").element("1").element("9155284235").element(payerFirst.getPayerIdentity()).end();
+        segment("REF").element("EV").element("450525148").end();
+        segment("DTM").element("405").element(claimQueryFirst.getDateOfService()).end();
+
+        //loop 1000A - payer identification
+        segment("N1").element("PR").element(payerFirst.getPayerName()).end();
+        segment("N3").element(DataConstants.FAKE_PAYER_ADDRESS_POBOX).end();
+        segment("N4").element(DataConstants.FAKE_PAYER_ADDRESS_CITY).element(DataConstants.FAKE_PAYER_ADDRESS_STATE)
+                .element(DataConstants.FAKE_PAYER_ADDRESS_ZIPCODE).end();
+        segment("REF").element("2U").element("TP021").end();
+        segment("REF").element("EO").element("363917295").end();
+        segment("PER").element("CX").element(payerFirst.getPayerName()).element("TE").element("8008007885").end();
+        segment("PER").element("BL").element(payerFirst.getPayerName()).element("TE").element("8008007885").end();
+
+        //loop 1000B - payee identification
+        segment("N1").element("PE").element(DataConstants.FAKE_PROVIDER_NAME).element("XX").element(claimQueryFirst.getProviderNPI()).end();
+        segment("N3").element(DataConstants.FAKE_PROVIDER_ADDRESS_POBOX).end();
+        segment("N4").element(DataConstants.FAKE_PROVIDER_ADDRESS_CITY).element(DataConstants.FAKE_PROVIDER_ADDRESS_STATE)
+                .element(DataConstants.FAKE_PROVIDER_ADDRESS_ZIPCODE).end();
+        //additional payee id, state license number
+        segment("REF").element("TJ").element("123456789").end();
+        segment("REF").element("0B").element("OS12165").end();
+
+        //loop 2000 - claims
+        segment("LX").element("1").end();
+        int resultCount = resultTuples.size();
+        for (Tuple tuple : resultTuples) {
+            ClaimQuery claimQuery = tuple.get(0, ClaimQuery.class);
+            Patient patient = tuple.get(1, Patient.class);
+            Payment payment = tuple.get(3, Payment.class);
+            float paymentHalf = payment.getAmount() / resultCount;
+
+            //loop 2100 - claim payment information
+            segment("CLP").element(claimQuery.getProviderClaimID()).element("1").element(claimQuery.getClaimChargeAmount())
+                    .element(paymentHalf).element("").element("WC").element(claimQuery.getPayerClaimId()).element("11").element("1").end();
+            segment("NM1").element("QC").element("1").element(patient.getLastName()).element(patient.getFirstName())
+                    .element("").element("").element("").element("34").element("999999999").end();
+            segment("NM1").element("82").element("1").element(DataConstants.FAKE_PROVIDER_NAME).element(DataConstants.FAKE_PROVIDER_NAME)
+                    .element("").element("").element("").element("XX").element(claimQuery.getProviderNPI()).end();
+            segment("REF").element("F8").element("100184984695").end();
+            segment("REF").element("CE").element("FL").end();
+            //claim statement period start, claim received date
+            segment("DTM").element("232").element(claimQuery.getDateOfService()).end();
+            segment("DTM").element("050").element(claimQuery.getReceivedDate()).end();
+            segment("AMT").element("AU").element("0.00").end();
+
+            //loop 2110 - service payment information
+            segment("SVC").element("HC:99214").element(claimQuery.getClaimChargeAmount()).element(paymentHalf).end();
+            segment("DTM").element("472").element(claimQuery.getDateOfService()).end();
+            segment("CAS").element("CO").element("45").element("0.00").element("").element("P24").element("0.00").end();
+            segment("REF").element("6R").element("2196311P13648B62477").end();
+            segment("AMT").element("B6").element(payment.getAmount()).end();
+        }
+
+        segment("SE").element(Integer.toString(transactionSegmentCount + 1)).element(TRANSACTION_SET_CONTROL_NUMBER).end();
+        segment("GE").element("1").element(GROUP_CONTROL_NUMBER).end();
+        segment("IEA").element("1").element(INTERCHANGE_CONTROL_NUMBER).end();
+    }
+
+    private X12835Encoder segment(String segmentId) throws IOException {
+        if (!firstSegment) {
+            out.append(LINE_BREAK);
+        }
+        firstSegment = false;
+        out.append(segmentId);
+        return this;
+    }
+
+    private X12835Encoder element(String value) throws IOException {
+        out.append(ELEMENT_SEPARATOR);
+        if (value != null) {
+            out.append(value);
+        }
+        return this;
+    }
+
+    private X12835Encoder element(Date date) throws IOException {
+        return element(DateFormats.X12_DATE.format(date));
+    }
+
+    /**
+     * Appends the amount with two decimals, same as {@link DataConstants#FLOAT_STRING_FORMAT_TXT} but without a Formatter.
+     */
+    private X12835Encoder element(Float amount) throws IOException {
+        out.append(ELEMENT_SEPARATOR);
+        float value = (amount == null) ? Float.NaN : amount;
+        if (amount == null || !Float.isFinite(value) || Math.abs(value) >= 1.0E15F) {
+            out.append(String.format(DataConstants.FLOAT_STRING_FORMAT_TXT, amount));
+            return this;
+        }
+        //exact, a float has 24 significant bits so multiplying its double by 100 does not round
+        long cents = Math.round(Math.abs((double) value) * 100);
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.append('-');
+        }
+        out.append(Long.toString(cents / 100)).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(Long.toString(fraction));
+        return this;
+    }
+
+    private void end() throws IOException {
+        out.append(SEGMENT_TERMINATOR);
+        transactionSegmentCount++;
+    }
+}
@@ -0,0 +1,10 @@
+--keyset pages of the searches seek claim_query.id after the last claim of the previous page
+--TIN is filtered by every search, with the id as last column the page is read in index order
+CREATE INDEX claim_tin_id_idx ON claim_query (provider_tin, id);
+CREATE INDEX claim_tin_prov_claim_id_idx ON claim_query (provider_tin, provider_claimid, id);
+CREATE INDEX claim_tin_subscr_id_idx ON claim_query (provider_tin, subscriber_patient_id, id);
+--covered by claim_tin_id_idx
+DROP INDEX IF EXISTS claim_prov_tin_idx;
+
+--rows of the page's claims are joined to their payments in payment id order
+CREATE INDEX paymt_claim_id_idx ON payment (claim_id, id);
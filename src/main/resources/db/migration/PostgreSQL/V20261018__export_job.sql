@@ -0,0 +1,29 @@
+--asynchronous $export jobs, a job resumes after last_claim_id when the server restarts while it runs
+create table if not exists export_job
+(
+    id            varchar(36) not null,
+    provider_tin  varchar(255),
+    since_dt      timestamp(6),
+    until_dt      timestamp(6),
+    status        varchar(32),
+    request_url   varchar(2048),
+    created_dt    timestamp(6),
+    updated_dt    timestamp(6),
+    last_claim_id integer,
+    row_count     bigint,
+    total_count   bigint,
+    error_message varchar(2048),
+    primary key (id)
+);
+CREATE INDEX export_job_status_idx ON export_job (status, created_dt);
+
+--completed output files of a job, in the order they were written
+create table if not exists export_job_file
+(
+    job_id     varchar(36) not null,
+    file_index integer     not null,
+    row_count  integer,
+    primary key (job_id, file_index),
+    constraint export_file_job_fk
+        foreign key (job_id) references export_job
+);
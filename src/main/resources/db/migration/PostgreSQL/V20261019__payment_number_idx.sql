@@ -0,0 +1,6 @@
+--$searchByPayment matches lower(payment_number), exactly, by prefix or by containment
+--exact and prefix matches: text_pattern_ops lets LIKE 'abc%' use the b-tree whatever the collation
+CREATE INDEX IF NOT EXISTS paymt_number_lower_idx ON payment (lower(payment_number) text_pattern_ops);
+--contains matches: LIKE '%abc%' can only use a trigram index, values shorter than 3 characters still scan
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS paymt_number_trgm_idx ON payment USING gin (lower(payment_number) gin_trgm_ops);
@@ -0,0 +1,13 @@
+--composite indexes in the order of the ClaimQueryDaoImpl predicates, TIN first as every search filters on it
+--findByClaim: TIN and provider claim id use claim_tin_prov_claim_id_idx, payer claim id narrows the same TIN
+CREATE INDEX IF NOT EXISTS claim_tin_payer_claim_id_idx ON claim_query (provider_tin, payer_claimid);
+--findByPatient: TIN, subscriber patient id and date of service range
+CREATE INDEX IF NOT EXISTS claim_tin_subscr_dos_idx ON claim_query (provider_tin, subscriber_patient_id, dos_dt);
+--findByClaim and findByPayment with a date of service range only
+CREATE INDEX IF NOT EXISTS claim_tin_dos_idx ON claim_query (provider_tin, dos_dt);
+--findByPayment: payments issued in the range, the claim id to join their claims without reading the payment rows
+CREATE INDEX IF NOT EXISTS paymt_issue_dt_claim_idx ON payment (payment_issue_dt, claim_id);
+--findByRemittance: the remittance advice id is the only key of $downloadRemittance
+CREATE INDEX IF NOT EXISTS remit_advice_id_idx ON remittance (remittance_adviceid);
+--amount, the leading column, is only an optional range of findByPayment, the index is never used
+DROP INDEX IF EXISTS pmt_search_idx;
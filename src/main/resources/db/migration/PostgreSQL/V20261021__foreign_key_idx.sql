@@ -0,0 +1,10 @@
+--PostgreSQL does not index foreign keys, the joins of the SearchQuery queries run by ClaimQueryDaoImpl.findRows
+--and deletes of the referenced rows read them
+CREATE INDEX IF NOT EXISTS claim_patient_id_idx ON claim_query (patient_id);
+CREATE INDEX IF NOT EXISTS claim_payer_id_idx ON claim_query (payer_id);
+CREATE INDEX IF NOT EXISTS claim_provider_id_idx ON claim_query (provider_id);
+--payment.claim_id is the leading column of paymt_claim_id_idx
+CREATE INDEX IF NOT EXISTS paymt_remittance_id_idx ON payment (remittance_id);
+CREATE INDEX IF NOT EXISTS remit_claim_id_idx ON remittance (claim_id);
+CREATE INDEX IF NOT EXISTS subscr_patient_id_idx ON subscriber_patient (patient_id);
+CREATE INDEX IF NOT EXISTS subscr_payer_id_idx ON subscriber_patient (payer_id);
@@ -0,0 +1,4 @@
+--findByPatient is served by claim_tin_subscr_id_idx (provider_tin, subscriber_patient_id, id) of the keyset pages,
+--with the same leading columns. A patient has few claims per TIN, so the date of service range is checked on those
+--rows, and the id column keeps the page in index order, which the dos_dt column of this index does not
+DROP INDEX IF EXISTS claim_tin_subscr_dos_idx;
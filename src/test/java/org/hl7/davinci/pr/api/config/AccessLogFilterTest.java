@@ -0,0 +1,124 @@
+package org.hl7.davinci.pr.api.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+public class AccessLogFilterTest {
+
+  private static final String TIN = "123456789";
+  private static final String REQUEST_BODY = "{\"resourceType\":\"Parameters\"}";
+  private static final String RESPONSE_BODY = "{\"resourceType\":\"Parameters\",\"parameter\":[]}";
+
+  private final Logger accessLogger = (Logger) LoggerFactory.getLogger(AccessLogFilter.ACCESS_LOGGER);
+  private ListAppender<ILoggingEvent> appender;
+  private Level level;
+
+  @BeforeEach
+  void setup() {
+    appender = new ListAppender<>();
+    appender.start();
+    accessLogger.addAppender(appender);
+    level = accessLogger.getLevel();
+    accessLogger.setLevel(Level.INFO);
+  }
+
+  @AfterEach
+  void tearDown() {
+    accessLogger.detachAppender(appender);
+    accessLogger.setLevel(level);
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void request_loggedAsSummary() throws Exception {
+    AccessLogFilter filter = new AccessLogFilter(0, 2048, "key");
+    MockHttpServletRequest request = request();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, new MockFilterChain(new RespondingServlet()));
+
+    Assertions.assertEquals(1, appender.list.size());
+    String line = appender.list.get(0).getFormattedMessage();
+    Assertions.assertTrue(line.startsWith("method=POST endpoint=/$searchByClaim status=200 latencyMs="), line);
+    Assertions.assertTrue(line.contains("requestBytes=" + REQUEST_BODY.length()), line);
+    Assertions.assertTrue(line.contains("responseBytes=" + RESPONSE_BODY.length()), line);
+    Assertions.assertTrue(line.endsWith("tinHash=" + filter.hashTin(TIN) + " results=2"), line);
+    Assertions.assertFalse(line.contains(TIN), line);
+    Assertions.assertEquals(RESPONSE_BODY, response.getContentAsString());
+  }
+
+  @Test
+  void sampledRequest_loggedWithTruncatedPayloads() throws Exception {
+    AccessLogFilter filter = new AccessLogFilter(1.0, 10, "key");
+    MockHttpServletRequest request = request();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, new MockFilterChain(new RespondingServlet()));
+
+    String line = appender.list.get(0).getFormattedMessage();
+    Assertions.assertTrue(line.endsWith(" requestPayload=\"{\\\"resource\" responsePayload=\"{\\\"resource\""), line);
+    Assertions.assertEquals(RESPONSE_BODY, response.getContentAsString());
+  }
+
+  @Test
+  void disabledLogger_requestNotWrapped() throws Exception {
+    accessLogger.setLevel(Level.WARN);
+    AccessLogFilter filter = new AccessLogFilter(1.0, 2048, "");
+    MockHttpServletRequest request = request();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain chain = new MockFilterChain();
+
+    filter.doFilter(request, response, chain);
+
+    Assertions.assertSame(request, chain.getRequest());
+    Assertions.assertSame(response, chain.getResponse());
+    Assertions.assertTrue(appender.list.isEmpty());
+  }
+
+  @Test
+  void tinHash_stableForKey() throws Exception {
+    Assertions.assertEquals(new AccessLogFilter(0, 0, "key").hashTin(TIN), new AccessLogFilter(0, 0, "key").hashTin(TIN));
+    Assertions.assertNotEquals(new AccessLogFilter(0, 0, "key").hashTin(TIN), new AccessLogFilter(0, 0, "other").hashTin(TIN));
+    Assertions.assertEquals(16, new AccessLogFilter(0, 0, "").hashTin(TIN).length());
+  }
+
+  private static MockHttpServletRequest request() {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/$searchByClaim");
+    request.setContent(REQUEST_BODY.getBytes(StandardCharsets.UTF_8));
+    return request;
+  }
+
+  /**
+   * Reads the request, annotates it like the controllers and writes the response.
+   */
+  private static class RespondingServlet extends HttpServlet {
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+      req.getInputStream().readAllBytes();
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(req));
+      req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/$searchByClaim");
+      AccessLogFilter.annotate(TIN, 2);
+      resp.setStatus(HttpServletResponse.SC_OK);
+      resp.getOutputStream().write(RESPONSE_BODY.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package org.hl7.davinci.pr.api.controller;
+
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.service.DocumentRenderingExecutor;
+import org.hl7.davinci.pr.service.DocumentSource;
+import org.hl7.davinci.pr.service.DownloadService;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hl7.davinci.pr.api.controller.DownloadController.DOWNLOAD_REMITTANCE_ENDPOINT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "pr.download.streaming.enabled=true")
+class DownloadControllerStreamingTest extends ControllerBaseTest {
+
+    private static final String STREAMED_BINARY = "{\"resourceType\":\"Binary\"}";
+
+    @MockBean
+    DownloadService downloadService;
+
+    @SpyBean
+    DocumentRenderingExecutor renderingExecutor;
+
+    @Test
+    void testDownloadRemittance_streamed() throws Exception {
+        DocumentSource documentSource = outputStream -> {};
+        when(downloadService.prepareDocument(TestDataUtils.REMITTANCE_ADVICEID_1, null)).thenReturn(documentSource);
+        doAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write(STREAMED_BINARY.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(downloadService).streamDocument(eq(TestDataUtils.REMITTANCE_ADVICEID_1), any(), eq(documentSource), any());
+
+        performStreamedDownload(TestUtils.getSampleDownloadRemittanceRequiredOnly(TestDataUtils.REMITTANCE_ADVICEID_1))
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isOk(), // Expect HTTP 200 (OK)
+                        MockMvcResultMatchers.content().contentTypeCompatibleWith(ApiConstants.CONTENT_TYPE_APPLICATION_FHIR_JSON),
+                        MockMvcResultMatchers.header().string(HttpHeaders.LOCATION, DOWNLOAD_REMITTANCE_ENDPOINT),
+                        MockMvcResultMatchers.content().string(STREAMED_BINARY)
+                );
+    }
+
+    @Test
+    void testDownloadRemittance_notFound() throws Exception {
+        when(downloadService.prepareDocument(any(), any())).thenReturn(null);
+
+        MvcResult result = performStreamedDownload(TestUtils.getSampleDownloadRemittanceRequiredOnly(TestDataUtils.REMITTANCE_ADVICEID_1))
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isNotFound() // Expect HTTP 404 (NOT_FOUND)
+                ).andReturn();
+        Assertions.assertTrue(result.getResponse().getContentAsString().contains("OperationOutcome"));
+    }
+
+    @Test
+    void testDownloadRemittance_failureBeforeFirstByte() throws Exception {
+        when(downloadService.prepareDocument(any(), any())).thenReturn(outputStream -> {});
+        doAnswer(invocation -> {
+            //buffered, not sent yet
+            invocation.getArgument(3, OutputStream.class).write("partial document".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("Rendering failed");
+        }).when(downloadService).streamDocument(any(), any(), any(), any());
+
+        MvcResult result = performStreamedDownload(TestUtils.getSampleDownloadRemittanceRequiredOnly(TestDataUtils.REMITTANCE_ADVICEID_1))
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isInternalServerError() // Expect HTTP 500 (INTERNAL_SERVER_ERROR)
+                ).andReturn();
+        String json = result.getResponse().getContentAsString();
+        Assertions.assertTrue(json.contains("OperationOutcome") && json.contains("Rendering failed"));
+        Assertions.assertTrue(json.contains("\"exception\""));
+        Assertions.assertFalse(json.contains("partial document"));
+    }
+
+    @Test
+    void testDownloadRemittance_renderingQueueFull() throws Exception {
+        doThrow(new RejectedExecutionException()).when(renderingExecutor).submit(any());
+
+        MvcResult result = performStreamedDownload(TestUtils.getSampleDownloadRemittanceRequestBody(TestDataUtils.REMITTANCE_ADVICEID_1))
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isServiceUnavailable(), // Expect HTTP 503 (SERVICE_UNAVAILABLE)
+                        MockMvcResultMatchers.header().string(HttpHeaders.RETRY_AFTER, String.valueOf(renderingExecutor.getRetryAfterSeconds()))
+                ).andReturn();
+        Assertions.assertTrue(result.getResponse().getContentAsString().contains("retry later"));
+    }
+
+    /**
+     * Posts the request and dispatches again once the document has been streamed by the rendering task.
+     */
+    private ResultActions performStreamedDownload(String requestBody) throws Exception {
+        MvcResult asyncResult = mockMvc.perform(
+                        MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
+                                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                                .content(requestBody))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andDo(MockMvcResultHandlers.print());
+    }
+}
@@ -2,6 +2,7 @@ package org.hl7.davinci.pr.api.controller;
 
 import org.hl7.davinci.pr.api.utils.FhirUtils;
 import org.hl7.davinci.pr.api.utils.ValidationUtils;
+import org.hl7.davinci.pr.service.DocumentRenderingExecutor;
 import org.hl7.davinci.pr.service.DownloadService;
 import org.hl7.davinci.pr.utils.TestDataUtils;
 import org.hl7.davinci.pr.utils.TestUtils;
@@ -12,13 +13,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.hl7.davinci.pr.api.controller.DownloadController.DOWNLOAD_REMITTANCE_ENDPOINT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
@@ -27,6 +38,9 @@ class DownloadControllerTest extends ControllerBaseTest {
     @MockBean
     DownloadService downloadService;
 
+    @SpyBean
+    DocumentRenderingExecutor renderingExecutor;
+
 
     @Test
     void testDownloadRemittance_withAllParams() throws Exception {
@@ -38,11 +52,7 @@ class DownloadControllerTest extends ControllerBaseTest {
         String docRefStringResponse = FhirUtils.convertToJSON(binaryResource);
         when(downloadService.downloadDocument(TestDataUtils.REMITTANCE_ADVICEID_1, "PDF")).thenReturn(binaryResource);
 
-        MvcResult result = mockMvc.perform(
-                MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
-                                .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(requestBody))
-                .andDo(MockMvcResultHandlers.print())
+        MvcResult result = performDownload(requestBody)
                 .andExpectAll(
                         MockMvcResultMatchers.status().isOk(), // Expect HTTP 200 (OK)
                         MockMvcResultMatchers.content().string(docRefStringResponse)
@@ -58,11 +68,7 @@ class DownloadControllerTest extends ControllerBaseTest {
         String docRefStringResponse = FhirUtils.convertToJSON(binaryResource);
         when(downloadService.downloadDocument(TestDataUtils.REMITTANCE_ADVICEID_1, null)).thenReturn(binaryResource);
 
-        MvcResult result = mockMvc.perform(
-                        MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
-                                .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(requestBody))
-                .andDo(MockMvcResultHandlers.print())
+        MvcResult result = performDownload(requestBody)
                 .andExpectAll(
                         MockMvcResultMatchers.status().isOk(), // Expect HTTP 200 (OK)
                         MockMvcResultMatchers.content().string(docRefStringResponse)
@@ -73,11 +79,7 @@ class DownloadControllerTest extends ControllerBaseTest {
     void testDownloadRemittance_missingRequiredParams() throws Exception {
         String downloadRemittanceRequest = TestUtils.getSampleDownloadRemittanceNoRequired();
 
-       MvcResult result = mockMvc.perform(
-               MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
-                                .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(downloadRemittanceRequest))
-                .andDo(MockMvcResultHandlers.print())
+       MvcResult result = performDownload(downloadRemittanceRequest)
                 .andExpectAll(
                         MockMvcResultMatchers.status().isBadRequest() // Expect HTTP 400 (BAD_REQUEST)
                 ).andReturn();
@@ -89,11 +91,7 @@ class DownloadControllerTest extends ControllerBaseTest {
     void testDownloadRemittance_emptyIdParams() throws Exception {
         String downloadRemittanceRequest = TestUtils.getSampleDownloadRemittanceRequestBody("");
 
-        MvcResult result = mockMvc.perform(
-                MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
-                                .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(downloadRemittanceRequest))
-                .andDo(MockMvcResultHandlers.print())
+        MvcResult result = performDownload(downloadRemittanceRequest)
                 .andExpectAll(
                         MockMvcResultMatchers.status().isBadRequest() // Expect HTTP 400 (BAD_REQUEST)
                 ).andReturn();
@@ -105,11 +103,7 @@ class DownloadControllerTest extends ControllerBaseTest {
     void testDownloadRemittance_emptyPostBody() throws Exception {
         String downloadRemittanceRequest = "";
 
-        MvcResult result = mockMvc.perform(
-                        MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
-                                .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(downloadRemittanceRequest))
-                .andDo(MockMvcResultHandlers.print())
+        MvcResult result = performDownload(downloadRemittanceRequest)
                 .andExpectAll(
                         MockMvcResultMatchers.status().isBadRequest() // Expect HTTP 400 (BAD_REQUEST)
                 ).andReturn();
@@ -121,15 +115,57 @@ class DownloadControllerTest extends ControllerBaseTest {
     void testDownloadRemittance_missingRemitIdValue() throws Exception {
         String downloadRemittanceRequest = TestUtils.getSampleDownloadRemittanceRequestBody_missingIdValue();
 
+        MvcResult result = performDownload(downloadRemittanceRequest)
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isBadRequest() // Expect HTTP 400 (BAD_REQUEST)
+                ).andReturn();
+        String json = result.getResponse().getContentAsString();
+        Assertions.assertTrue(json.contains(FhirUtils.MALFORMED_BODY));
+    }
+
+    @Test
+    void testDownloadRemittance_renderingFailure() throws Exception {
+        when(downloadService.downloadDocument(any(), any())).thenThrow(new IOException("Rendering failed"));
+
+        MvcResult result = performDownload(TestUtils.getSampleDownloadRemittanceRequiredOnly(TestDataUtils.REMITTANCE_ADVICEID_1))
+                .andExpectAll(
+                        MockMvcResultMatchers.status().isInternalServerError() // Expect HTTP 500 (INTERNAL_SERVER_ERROR)
+                ).andReturn();
+        String json = result.getResponse().getContentAsString();
+        Assertions.assertTrue(json.contains("Rendering failed") && json.contains("\"exception\""));
+    }
+
+    @Test
+    void testDownloadRemittance_renderingQueueFull() throws Exception {
+        String requestBody = TestUtils.getSampleDownloadRemittanceRequestBody(TestDataUtils.REMITTANCE_ADVICEID_1);
+        doThrow(new RejectedExecutionException()).when(renderingExecutor).submit(any());
+
         MvcResult result = mockMvc.perform(
                         MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
                                 .contentType(MediaType.APPLICATION_JSON_VALUE)
-                                .content(downloadRemittanceRequest))
+                                .content(requestBody))
+                .andReturn();
+        result = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
                 .andDo(MockMvcResultHandlers.print())
                 .andExpectAll(
-                        MockMvcResultMatchers.status().isBadRequest() // Expect HTTP 400 (BAD_REQUEST)
+                        MockMvcResultMatchers.status().isServiceUnavailable(), // Expect HTTP 503 (SERVICE_UNAVAILABLE)
+                        MockMvcResultMatchers.header().string(HttpHeaders.RETRY_AFTER, String.valueOf(renderingExecutor.getRetryAfterSeconds()))
                 ).andReturn();
-        String json = result.getResponse().getContentAsString();
-        Assertions.assertTrue(json.contains(FhirUtils.MALFORMED_BODY));
+        verify(downloadService, never()).downloadDocument(any(), any());
+        Assertions.assertTrue(result.getResponse().getContentAsString().contains("retry later"));
+    }
+
+    /**
+     * Posts the request and dispatches again once the document has been rendered on the rendering executor.
+     */
+    private ResultActions performDownload(String requestBody) throws Exception {
+        MvcResult asyncResult = mockMvc.perform(
+                        MockMvcRequestBuilders.post(DOWNLOAD_REMITTANCE_ENDPOINT)
+                                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                                .content(requestBody))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andDo(MockMvcResultHandlers.print());
     }
 }
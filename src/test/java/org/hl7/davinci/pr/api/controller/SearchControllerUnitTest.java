@@ -4,13 +4,19 @@ import static org.hl7.davinci.pr.api.controller.SearchController.SEARCH_BY_CLAIM
 import static org.hl7.davinci.pr.api.controller.SearchController.SEARCH_BY_PATIENT_ENDPOINT;
 import static org.hl7.davinci.pr.api.controller.SearchController.SEARCH_BY_PAYMENT_ENDPOINT;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
 import org.hl7.davinci.pr.api.utils.FhirUtils;
+import org.hl7.davinci.pr.service.OperationMetrics;
+import org.hl7.davinci.pr.service.SearchResponse;
 import org.hl7.davinci.pr.service.SearchService;
 import org.hl7.davinci.pr.utils.TestUtils;
-import org.hl7.fhir.r4.model.Parameters;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -25,16 +31,39 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   @MockBean
   private SearchService searchService;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   @Test
   void testSearchByClaimEndpoint_withAllParams() throws Exception {
     String searchByClaimRequest = TestUtils.getSampleSearchByClaimRequestBody();
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByClaimRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(false);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
+
+    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(searchResponse);
+
+    this.mockMvc.perform(
+            MockMvcRequestBuilders.post(SEARCH_BY_CLAIM_ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(searchByClaimRequest))
+        .andDo(MockMvcResultHandlers.print())
+        .andExpectAll(
+            MockMvcResultMatchers.status().isOk(), // Expect HTTP 200 (OK)
+            MockMvcResultMatchers.content().string(expectedResponse)
+        );
+  }
+
+  @Test
+  void testSearchByClaimEndpoint_compactResponse() throws Exception {
+    String searchByClaimRequest = TestUtils.getSampleSearchByClaimRequestBody();
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(false);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters(), false);
 
-    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(
             MockMvcRequestBuilders.post(SEARCH_BY_CLAIM_ENDPOINT)
+                .param(ApiConstants.PRETTY, "false")
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(searchByClaimRequest))
         .andDo(MockMvcResultHandlers.print())
@@ -48,10 +77,10 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   void testSearchByClaimEndpoint_withRequiredParams() throws Exception {
     String searchByClaimRequest = TestUtils.getSearchByClaimRequestBodyRequiredOnly();
 
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByClaimRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(false);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
 
-    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_CLAIM_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -82,7 +111,7 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   void testSearchByClaimEndpoint_emptyResult() throws Exception {
     String searchByClaimRequest = TestUtils.getSearchByClaimRequestBodyRequiredOnly();
 
-    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(new Parameters());
+    Mockito.when(this.searchService.searchByClaim(ArgumentMatchers.any())).thenReturn(TestUtils.getEmptySearchResponse(false));
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_CLAIM_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -127,10 +156,10 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   @Test
   void testSearchByPatientEndpoint_withAllParams() throws Exception {
     String searchByClaimRequest = TestUtils.getSampleSearchByPatientRequestBody();
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByClaimRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(false);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
 
-    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(
             MockMvcRequestBuilders.post(SEARCH_BY_PATIENT_ENDPOINT)
@@ -147,10 +176,10 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   void testSearchByPatientEndpoint_withRequiredParams() throws Exception {
     String searchByClaimRequest = TestUtils.getSearchByPatientRequestBodyRequiredOnly();
 
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByClaimRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(false);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
 
-    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_PATIENT_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -181,7 +210,7 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   void testSearchByPatientEndpoint_emptyResult() throws Exception {
     String searchByClaimRequest = TestUtils.getSearchByPatientRequestBodyRequiredOnly();
 
-    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(new Parameters());
+    Mockito.when(this.searchService.searchByPatient(ArgumentMatchers.any())).thenReturn(TestUtils.getEmptySearchResponse(false));
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_PATIENT_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -226,10 +255,10 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   @Test
   void testSearchByPaymentEndpoint_withAllParams() throws Exception {
     String searchByPaymentRequest = TestUtils.getSampleSearchByPaymentRequestBody();
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByPaymentRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(true);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
 
-    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(
             MockMvcRequestBuilders.post(SEARCH_BY_PAYMENT_ENDPOINT)
@@ -242,13 +271,31 @@ class SearchControllerUnitTest extends ControllerBaseTest {
         );
   }
 
+  @Test
+  void testSearchByPaymentEndpoint_recordsPayments() throws Exception {
+    String searchByPaymentRequest = TestUtils.getSearchByPaymentRequestBodyRequiredOnly();
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(true);
+    DistributionSummary results = this.meterRegistry.summary("pr.operation.results", "operation", OperationMetrics.SEARCH_BY_PAYMENT);
+    double totalBefore = results.totalAmount();
+
+    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(searchResponse);
+
+    this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_PAYMENT_ENDPOINT)
+            .contentType(MediaType.APPLICATION_JSON_VALUE)
+            .content(searchByPaymentRequest))
+        .andExpect(MockMvcResultMatchers.status().isOk());
+
+    // A payment response has no claims, its results are the payments
+    Assertions.assertEquals(searchResponse.payments().size(), results.totalAmount() - totalBefore);
+  }
+
   @Test
   void testSearchByPaymentEndpoint_withRequiredParams() throws Exception {
     String searchByPaymentRequest = TestUtils.getSearchByPaymentRequestBodyRequiredOnly();
-    Parameters requestParameters = (Parameters) FhirUtils.parseResource(searchByPaymentRequest);
-    String expectedResponse = FhirUtils.convertToJSON(requestParameters);
+    SearchResponse searchResponse = TestUtils.getSampleSearchResponse(true);
+    String expectedResponse = FhirUtils.convertToJSON(searchResponse.toParameters());
 
-    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(requestParameters);
+    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(searchResponse);
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_PAYMENT_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -279,7 +326,7 @@ class SearchControllerUnitTest extends ControllerBaseTest {
   void testSearchByPaymentEndpoint_emptyResult() throws Exception {
     String searchByPaymentRequest = TestUtils.getSearchByPaymentRequestBodyRequiredOnly();
 
-    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(new Parameters());
+    Mockito.when(this.searchService.searchByPayment(ArgumentMatchers.any())).thenReturn(TestUtils.getEmptySearchResponse(true));
 
     this.mockMvc.perform(MockMvcRequestBuilders.post(SEARCH_BY_PAYMENT_ENDPOINT)
             .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -0,0 +1,79 @@
+package org.hl7.davinci.pr.api.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class DateFormatsTest {
+
+  private static final int THREADS = 64;
+  private static final int RENDERS_PER_THREAD = 20_000;
+  // more dates than cache slots, so slots are replaced while other threads read them
+  private static final int DATES = 4096;
+
+  @Test
+  void format_rendersPatternInZone() {
+    Date date = Date.from(LocalDate.of(2024, 2, 29).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+    assertEquals("2024-02-29", DateFormats.FHIR_DATE.format(date));
+    assertEquals("20240229", new DateFormats("yyyyMMdd", ZoneOffset.UTC).format(date));
+    assertEquals("2024-02-28", new DateFormats("yyyy-MM-dd", ZoneOffset.ofHours(-5)).format(date));
+  }
+
+  @Test
+  void format_hotDateCached() {
+    DateFormats dateFormats = new DateFormats("yyyy-MM-dd", ZoneOffset.UTC);
+    Date date = new Date(0);
+
+    assertSame(dateFormats.format(date), dateFormats.format(new Date(0)));
+  }
+
+  @Test
+  void format_concurrentRendersNotCorrupted() throws Exception {
+    DateFormats dateFormats = new DateFormats("yyyy-MM-dd", ZoneOffset.UTC);
+    LocalDate firstDate = LocalDate.of(2000, 1, 1);
+    Date[] dates = new Date[DATES];
+    String[] expected = new String[DATES];
+    for (int i = 0; i < DATES; i++) {
+      LocalDate localDate = firstDate.plusDays(i);
+      dates[i] = Date.from(localDate.atStartOfDay(ZoneOffset.UTC).toInstant());
+      expected[i] = localDate.toString();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int offset = t * 31;
+        results.add(executor.submit(() -> {
+          start.await();
+          int mismatches = 0;
+          for (int i = 0; i < RENDERS_PER_THREAD; i++) {
+            int index = (offset + i * 7) % DATES;
+            if (!expected[index].equals(dateFormats.format(dates[index]))) {
+              mismatches++;
+            }
+          }
+          return mismatches;
+        }));
+      }
+      start.countDown();
+      for (Future<Integer> result : results) {
+        assertEquals(0, result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.StringWriter;
 import org.hl7.davinci.pr.BaseTest;
 import org.hl7.fhir.r4.model.DateTimeType;
 import org.hl7.fhir.r4.model.OperationOutcome;
@@ -36,6 +37,25 @@ class FhirUtilsTest extends BaseTest {
     assertEquals(actualJson, expectedJson);
   }
 
+  @Test
+  void convertToJSON_compact() throws Exception {
+    OperationOutcome outcome = new OperationOutcome();
+    outcome.addIssue()
+        .setSeverity(IssueSeverity.ERROR)
+        .setCode(IssueType.INVALID)
+        .setDiagnostics("TestErrorDiagnostics");
+
+    String expectedJson = "{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"error\","
+        + "\"code\":\"invalid\",\"diagnostics\":\"TestErrorDiagnostics\"}]}";
+    assertEquals(expectedJson, FhirUtils.convertToJSON(outcome, false));
+
+    StringWriter writer = new StringWriter();
+    FhirUtils.writeJSON(outcome, false, writer);
+    assertEquals(expectedJson, writer.toString());
+    // the pooled parsers keep their own output mode
+    assertEquals(FhirUtils.convertToJSON(outcome), FhirUtils.convertToJSON(outcome, true));
+  }
+
   @Test
   void convertToJSON_ThrowsException() {
     OperationOutcome outcome = new OperationOutcome();
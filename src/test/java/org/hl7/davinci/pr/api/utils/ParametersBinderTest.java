@@ -0,0 +1,52 @@
+package org.hl7.davinci.pr.api.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.hl7.davinci.pr.BaseTest;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.hl7.fhir.r4.model.Parameters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ParametersBinderTest extends BaseTest {
+
+  @Test
+  void parse_sampleRequestsBoundLikeHapi() {
+    assertBoundLikeHapi(TestUtils.getSampleSearchByClaimRequestBody());
+    assertBoundLikeHapi(TestUtils.getSampleSearchByPatientRequestBody());
+    assertBoundLikeHapi(TestUtils.getSampleSearchByPaymentRequestBody());
+    assertBoundLikeHapi(TestUtils.getSampleDownloadRemittanceRequestBody("12345"));
+    assertBoundLikeHapi("""
+        {"resourceType": "Parameters", "parameter": [
+          {"name": "_count", "valueInteger": 10},
+          {"name": "PaymentAmount", "part": [{"name": "PaymentAmountLow", "valueMoney": {"value": 12.50, "currency": "USD"}}]}
+        ]}""");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "{\"resourceType\": \"Parameters\", \"id\": \"request\", \"parameter\": [{\"name\": \"TIN\", \"valueString\": \"123456789\"}]}",
+      "{\"resourceType\": \"Parameters\", \"parameter\": [{\"name\": \"TIN\", \"valueString\": \"\"}]}",
+      "{\"resourceType\": \"Parameters\", \"parameter\": [{\"name\": \"TIN\", \"valueBoolean\": true}]}",
+      "{\"parameter\": [{\"name\": \"TIN\", \"valueString\": \"123456789\"}], \"resourceType\": \"Parameters\"}"})
+  void parse_otherBodiesReadLikeHapi(String body) {
+    assertBoundLikeHapi(body);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "{", "{\"resourceType\": \"Parameters\", \"parameter\": [{\"name\": \"DateOfBirth\", \"valueDate\": \"2020-01-32\"}]}"})
+  void parse_malformedBody(String body) {
+    assertThrows(IllegalArgumentException.class, () -> ParametersBinder.parse(body));
+  }
+
+  @Test
+  void parse_otherResource() {
+    assertThrows(ClassCastException.class, () -> ParametersBinder.parse("{\"resourceType\": \"Patient\"}"));
+  }
+
+  private static void assertBoundLikeHapi(String body) {
+    assertEquals(FhirUtils.convertToJSON(FhirUtils.parseResource(body)), FhirUtils.convertToJSON(ParametersBinder.parse(body)));
+  }
+}
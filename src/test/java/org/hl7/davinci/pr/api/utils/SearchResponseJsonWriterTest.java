@@ -0,0 +1,117 @@
+package org.hl7.davinci.pr.api.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.hl7.davinci.pr.BaseTest;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.service.SearchResponse;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SearchResponseJsonWriterTest extends BaseTest {
+
+  private static final String NEXT_LINK = "http://localhost:8080/$searchByClaim?_count=2&_continuation=MTI";
+
+  @Test
+  void write_sampleResponsesLikeHapi() throws IOException {
+    assertWrittenLikeHapi(TestUtils.getSampleSearchResponse(false));
+    assertWrittenLikeHapi(TestUtils.getSampleSearchResponse(true));
+    assertWrittenLikeHapi(TestUtils.getSampleSearchResponse(false).withNextLink(NEXT_LINK));
+    assertWrittenLikeHapi(TestUtils.getSampleSearchResponse(true).withNextLink(NEXT_LINK));
+  }
+
+  @Test
+  void write_severalClaimsLikeHapi() throws IOException {
+    ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1);
+    ClaimQuery otherClaimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, null);
+    otherClaimQuery.setSubscriberPatientId(TestDataUtils.PATIENT_ID_1 + 2);
+    Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    Payment otherPayment = TestUtils.getSamplePayment(null);
+    otherPayment.setAmount(0.1f);
+    Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
+    Remittance otherRemittance = TestUtils.getSampleRemittance(null);
+    otherRemittance.setRemittanceAdviceType(ApiConstants.REMITTANCE_ADVICE_TYPE_835);
+
+    assertWrittenLikeHapi(new SearchResponse(false, TestDataUtils.PROVIDER_TIN_1,
+        List.of(claimQuery, otherClaimQuery),
+        List.of(TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1), TestUtils.getSamplePatient(null)),
+        List.of(TestUtils.getSamplePayer(null, null), TestUtils.getSamplePayer(null, null)),
+        List.of(payment, otherPayment), List.of(remittance), NEXT_LINK));
+    assertWrittenLikeHapi(new SearchResponse(true, TestDataUtils.PROVIDER_TIN_1, List.of(), List.of(),
+        List.of(TestUtils.getSamplePayer(null, null)), List.of(payment, otherPayment),
+        List.of(remittance, otherRemittance), null));
+  }
+
+  @Test
+  void write_nullFieldsLikeHapi() throws IOException {
+    ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1);
+    claimQuery.setProviderClaimID(null);
+    claimQuery.setProviderNPI(null);
+    claimQuery.setPayerClaimId(null);
+    claimQuery.setSubscriberPatientId(null);
+    Patient patient = TestUtils.getSamplePatient(null);
+    patient.setFirstName(null);
+    patient.setLastName(null);
+    Payer payer = Payer.builder().build();
+    Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    payment.setPaymentNumber(null);
+    Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
+    remittance.setRemittanceAdviceId(null);
+    remittance.setRemittanceAdviceType(null);
+    remittance.setRemittanceAdviceFileSize(null);
+
+    for (String nextLink : new String[] {null, NEXT_LINK}) {
+      assertWrittenLikeHapi(new SearchResponse(false, null, List.of(claimQuery), List.of(patient), List.of(payer),
+          List.of(payment), List.of(remittance), nextLink));
+      assertWrittenLikeHapi(new SearchResponse(true, null, List.of(), List.of(), List.of(payer),
+          List.of(payment), List.of(remittance), nextLink));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", " ", "quote \" slash / backslash \\", "tab\tnew line\n", "ünïcödé ✓ 😀", "<b>&amp;</b>"})
+  void write_textLikeHapi(String text) throws IOException {
+    ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(text, text);
+    claimQuery.setPayerClaimId(text);
+    Patient patient = TestUtils.getSamplePatient(text);
+    patient.setFirstName(text);
+    Payer payer = TestUtils.getSamplePayer(text, text);
+    Payment payment = TestUtils.getSamplePayment(text);
+    Remittance remittance = TestUtils.getSampleRemittance(text);
+
+    assertWrittenLikeHapi(new SearchResponse(false, text, List.of(claimQuery), List.of(patient), List.of(payer),
+        List.of(payment), List.of(remittance), null));
+    assertWrittenLikeHapi(new SearchResponse(true, text, List.of(), List.of(), List.of(payer),
+        List.of(payment), List.of(remittance), null));
+  }
+
+  @ParameterizedTest
+  @ValueSource(floats = {0f, 0.1f, 12.5f, 1234.56f, 1e7f, 99999999f, 1e-5f})
+  void write_amountLikeHapi(float amount) throws IOException {
+    SearchResponse response = TestUtils.getSampleSearchResponse(true);
+    response.payments().get(0).setAmount(amount);
+
+    assertWrittenLikeHapi(response);
+  }
+
+  private static void assertWrittenLikeHapi(SearchResponse response) throws IOException {
+    for (boolean prettyPrint : new boolean[] {true, false}) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      SearchResponseJsonWriter.write(response, prettyPrint, out);
+      // byte for byte, the converter writes the HAPI FHIR JSON as UTF-8 too
+      assertArrayEquals(FhirUtils.convertToJSON(response.toParameters(), prettyPrint).getBytes(StandardCharsets.UTF_8),
+          out.toByteArray());
+    }
+  }
+}
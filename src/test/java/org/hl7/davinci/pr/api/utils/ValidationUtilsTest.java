@@ -1,12 +1,17 @@
 package org.hl7.davinci.pr.api.utils;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.hl7.davinci.pr.BaseTest;
+import org.hl7.davinci.pr.repositories.KeysetPage;
+import org.hl7.davinci.pr.service.ClaimSearchRequest;
 import org.hl7.davinci.pr.utils.TestUtils;
+import org.hl7.fhir.r4.model.IntegerType;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.StringType;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -155,6 +160,15 @@ class ValidationUtilsTest extends BaseTest {
     assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaymentNumber(null));
   }
 
+  @Test
+  void validatePaymentNumber_emptyMatch() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaymentNumber("*"));
+    assertEquals(String.format(ValidationUtils.PAYMENT_NUMBER_EMPTY_MATCH_MESSAGE, "*"), e.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaymentNumber("\"\""));
+    assertDoesNotThrow(() -> ValidationUtils.validatePaymentNumber("\"1SD45V67D9\""));
+    assertDoesNotThrow(() -> ValidationUtils.validatePaymentNumber("1SD4*"));
+  }
+
   @Test
   void validatePaymentNumber_validAdviceId() {
     assertDoesNotThrow(() -> ValidationUtils.validatePaymentNumber("1SD45V67D9"));
@@ -274,6 +288,55 @@ class ValidationUtilsTest extends BaseTest {
         () -> ValidationUtils.validateSearchByClaimRequest(searchRequestParameters));
   }
 
+  @Test
+  void validateSearchByClaimRequest_batch() {
+    Parameters searchRequestParameters = (Parameters) FhirUtils.parseResource(TestUtils.getSampleSearchByClaimRequestBody());
+    searchRequestParameters.addParameter().setName(ApiConstants.CLAIM)
+        .addPart().setName(ApiConstants.PROVIDER_CLAIM_ID).setValue(new StringType("213"));
+    assertDoesNotThrow(() -> ValidationUtils.validateSearchByClaimRequest(searchRequestParameters));
+
+    // every Claim needs its ProviderClaimID
+    searchRequestParameters.addParameter().setName(ApiConstants.CLAIM)
+        .addPart().setName(ApiConstants.PAYER_CLAIM_ID).setValue(new StringType("214"));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> ValidationUtils.validateSearchByClaimRequest(searchRequestParameters));
+    assertEquals(ValidationUtils.PROVIDER_CLAIM_ID_REQUIRED_MESSAGE, e.getMessage());
+  }
+
+  @Test
+  void validateSearchByClaimRequest_tooManyClaims() {
+    Parameters searchRequestParameters = (Parameters) FhirUtils.parseResource(TestUtils.getSampleSearchByClaimRequestBody());
+    for (int i = 0; i < ApiConstants.SEARCH_MAX_CLAIMS; i++) {
+      searchRequestParameters.addParameter().setName(ApiConstants.CLAIM)
+          .addPart().setName(ApiConstants.PROVIDER_CLAIM_ID).setValue(new StringType("claim_" + i));
+    }
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> ValidationUtils.validateSearchByClaimRequest(searchRequestParameters));
+    assertEquals(String.format(ValidationUtils.CLAIM_LIMIT_MESSAGE, ApiConstants.SEARCH_MAX_CLAIMS + 1,
+        ApiConstants.SEARCH_MAX_CLAIMS), e.getMessage());
+  }
+
+  @Test
+  void validateSearchByClaimRequest_typedRequest() {
+    Parameters searchRequestParameters = (Parameters) FhirUtils.parseResource(TestUtils.getSampleSearchByClaimRequestBody());
+    ClaimSearchRequest searchRequest = ValidationUtils.validateSearchByClaimRequest(searchRequestParameters);
+    assertEquals("123456789", searchRequest.filters().tin());
+    assertEquals("123456", searchRequest.filters().payerId());
+    assertEquals("58965", searchRequest.patientId());
+    assertEquals(1, searchRequest.claimLookups().size());
+    assertEquals("212", searchRequest.claimLookups().get(0).providerClaimId());
+    assertEquals(34567f, searchRequest.claimLookups().get(0).claimChargeAmount());
+  }
+
+  @Test
+  void validateSearchByClaimRequest_allErrorsReported() {
+    Parameters searchRequestParameters = new Parameters();
+    searchRequestParameters.addParameter(ApiConstants.PATIENT_ID, new StringType("58965"));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> ValidationUtils.validateSearchByClaimRequest(searchRequestParameters));
+    assertEquals(ValidationUtils.TIN_REQUIRED_MESSAGE + " " + ValidationUtils.CLAIM_REQUIRED_MESSAGE, e.getMessage());
+  }
+
   @Test
   void validateSearchByClaimRequest_emptyParametersInput() {
     Parameters emptyParameters = new Parameters();
@@ -555,4 +618,56 @@ class ValidationUtilsTest extends BaseTest {
     assertThrows(IllegalArgumentException.class,
         () -> ValidationUtils.validateSearchByPaymentRequest(null));
   }
-}
\ No newline at end of file
+
+  @Test
+  void validatePaging_validParameters() {
+    Parameters parameters = new Parameters();
+    assertDoesNotThrow(() -> ValidationUtils.validatePaging(parameters));
+    parameters.addParameter(ApiConstants.COUNT, new IntegerType(50));
+    assertDoesNotThrow(() -> ValidationUtils.validatePaging(parameters));
+    parameters.addParameter(ApiConstants.CONTINUATION, new StringType(KeysetPage.continuationToken(10, KeysetPage.queryHash())));
+    assertDoesNotThrow(() -> ValidationUtils.validatePaging(parameters));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"0", "-1", "1001", "ten"})
+  void validatePaging_invalidCount(String count) {
+    Parameters parameters = new Parameters();
+    parameters.addParameter(ApiConstants.COUNT, new StringType(count));
+    assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaging(parameters));
+  }
+
+  @Test
+  void validatePaging_invalidContinuation() {
+    Parameters parameters = new Parameters();
+    parameters.addParameter(ApiConstants.CONTINUATION, new StringType(KeysetPage.continuationToken(10, KeysetPage.queryHash())));
+    assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaging(parameters));
+    parameters.addParameter(ApiConstants.COUNT, new IntegerType(50));
+    parameters.getParameter(ApiConstants.CONTINUATION).setValue(new StringType("not-a-token"));
+    assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validatePaging(parameters));
+  }
+
+  @Test
+  void validateExportRequest_valid() {
+    Parameters exportRequest = (Parameters) FhirUtils.parseResource(ApiConstants.EXPORT_EXAMPLE);
+    assertDoesNotThrow(() -> ValidationUtils.validateExportRequest(exportRequest));
+  }
+
+  @Test
+  void validateExportRequest_openPeriod() {
+    Parameters exportRequest = (Parameters) FhirUtils.parseResource(ApiConstants.EXPORT_EXAMPLE);
+    ((Period) exportRequest.getParameter(ApiConstants.PAYMENT_ISSUE_DATE).getValue()).setEnd(null);
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> ValidationUtils.validateExportRequest(exportRequest));
+    assertEquals(ValidationUtils.PAYMENT_ISSUE_DATE_PERIOD_MESSAGE, e.getMessage());
+  }
+
+  @Test
+  void validateExportRequest_missingTin() {
+    Parameters exportRequest = (Parameters) FhirUtils.parseResource(ApiConstants.EXPORT_EXAMPLE);
+    exportRequest.getParameter().removeIf(parameter -> ApiConstants.TIN.equals(parameter.getName()));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> ValidationUtils.validateExportRequest(exportRequest));
+    assertEquals(ValidationUtils.TIN_REQUIRED_MESSAGE, e.getMessage());
+  }
+}
@@ -1,18 +1,21 @@
 package org.hl7.davinci.pr.repositories;
 
 import jakarta.persistence.Tuple;
-import org.hibernate.Hibernate;
 import org.hl7.davinci.pr.BaseTest;
 import org.hl7.davinci.pr.domain.*;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
 import org.hl7.davinci.pr.utils.TestDataUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
 
 public class ClaimQueryDaoTest extends BaseTest {
 
@@ -40,6 +43,9 @@ public class ClaimQueryDaoTest extends BaseTest {
     @Autowired
     RemittanceRepository remittanceRepo;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setupData(){
         testDataUtils = TestDataUtils.builder().claimQueryRepo(claimQueryRepo).patientRepo(patientRepo).paymentRepo(paymentRepo).remittanceRepo(remittanceRepo).providerRepo(providerRepo).payerRepo(payerRepo).build();
@@ -54,10 +60,10 @@ public class ClaimQueryDaoTest extends BaseTest {
             Date startDos = TestDataUtils.dateFormatter.parse("2024-05-05");
             Date endDos = TestDataUtils.dateFormatter.parse("2024-07-05");
 
-            List<Tuple> result = claimQueryDao.findByClaim(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1,
+            List<ClaimSearchRow> result = claimQueryDao.findByClaim(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1,
                     startDos, endDos, TestDataUtils.PATIENT_ID_1,
                     TestDataUtils.PAYER_ID_VAL_1, null, TestDataUtils.PAYER_CLAIM_ID_1, TestDataUtils.PROVIDER_NPI_1,
-                    TestDataUtils.CLAIM_CHARGE_AMOUNT);
+                    TestDataUtils.CLAIM_CHARGE_AMOUNT, KeysetPage.UNPAGED);
             Assertions.assertEquals(1, result.size());
         } catch (ParseException e) {
             throw new RuntimeException(e);
@@ -72,47 +78,67 @@ public class ClaimQueryDaoTest extends BaseTest {
             Date startDos = TestDataUtils.dateFormatter.parse("2024-05-05");
             Date endDos = TestDataUtils.dateFormatter.parse("2024-07-05");
 
-            List<Tuple> result = claimQueryDao.findByClaim(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1,
+            List<ClaimSearchRow> result = claimQueryDao.findByClaim(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1,
                     startDos, endDos, TestDataUtils.PATIENT_ID_1,
                     TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1, TestDataUtils.PAYER_CLAIM_ID_1, TestDataUtils.PROVIDER_NPI_1,
-                    TestDataUtils.CLAIM_CHARGE_AMOUNT);
+                    TestDataUtils.CLAIM_CHARGE_AMOUNT, KeysetPage.UNPAGED);
             Assertions.assertEquals(1, result.size());
 
-            int expectedTupleSize = 5;
-            for (Tuple tuple : result) {
-                Assertions.assertEquals(expectedTupleSize, tuple.getElements().size());
-                ClaimQuery claimQuery = tuple.get(0, ClaimQuery.class);
-                Assertions.assertEquals(TestDataUtils.PROVIDER_TIN_1, claimQuery.getProviderTin());
-
-                Assertions.assertTrue(claimQuery.getDateOfService().getTime() >= startDos.getTime() && claimQuery.getDateOfService().getTime() <= endDos.getTime());
-
-                Assertions.assertEquals(Patient.class, tuple.get(1, Patient.class).getClass());
-                Patient patient = tuple.get(1, Patient.class);
-                Assertions.assertEquals(TestDataUtils.PATIENT_ID_1, claimQuery.getSubscriberPatientId());
-                Assertions.assertEquals(TestDataUtils.CLAIM_CHARGE_AMOUNT, claimQuery.getClaimChargeAmount());
-                Assertions.assertEquals(claimQuery.getPatient().getId(), patient.getId());
+            ClaimQuery claimQuery = claimQueryRepo.findAll().get(0);
+            for (ClaimSearchRow row : result) {
+                Assertions.assertEquals(claimQuery.getId(), row.claimId());
+                Assertions.assertEquals(TestDataUtils.PROVIDER_CLAIMID_1, row.providerClaimId());
+                Assertions.assertEquals(TestDataUtils.PROVIDER_NPI_1, row.providerNpi());
+                Assertions.assertEquals(TestDataUtils.PAYER_CLAIM_ID_1, row.payerClaimId());
+                Assertions.assertEquals(TestDataUtils.PATIENT_ID_1, row.subscriberPatientId());
+                Assertions.assertEquals(startDos, row.receivedDate());
+
+                Assertions.assertNotNull(row.patientId());
+                Assertions.assertEquals(TestDataUtils.PATIENT_FIRST_NAME_1, row.patientFirstName());
+                Assertions.assertEquals(TestDataUtils.PATIENT_LAST_NAME_1, row.patientLastName());
+
+                Assertions.assertEquals(TestDataUtils.PAYER_NAME_1, row.payerName());
+                Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, row.payerIdentity());
+
+                Assertions.assertNotNull(row.paymentId());
+                Assertions.assertEquals(TestDataUtils.PAYM_NUM_1, row.paymentNumber());
+                Assertions.assertEquals(TestDataUtils.PAYMENT_AMOUNT, row.paymentAmount());
+
+                Assertions.assertNotNull(row.remittanceId());
+                Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICEID_1, row.remittanceAdviceId());
+                Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICE_FILE_SIZE, row.remittanceAdviceFileSize());
+            }
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                Assertions.assertNotNull(tuple.get(2));
-                Assertions.assertEquals(Payer.class, tuple.get(2, Payer.class).getClass());
-                Payer payer = tuple.get(2, Payer.class);
-                Assertions.assertEquals(TestDataUtils.PAYER_NAME_1, payer.getPayerName());
-                Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, payer.getPayerIdentity());
+    //the cached payer lookups and payers are invalidated when a payer is saved
+    @Test
+    public void findClaimsTest_payerRenamed() {
+        try {
+            testDataUtils.allDataPopulated(true, true, true, true , true, true);
+            Assertions.assertEquals(1, findClaimsByPayerName(TestDataUtils.PAYER_NAME_1).size());
 
-                Assertions.assertNotNull(tuple.get(3));
-                Assertions.assertEquals(Payment.class, tuple.get(3, Payment.class).getClass());
-                Payment payment = tuple.get(3, Payment.class);
-                Assertions.assertEquals(claimQuery.getId(), payment.getClaimQuery().getId());
+            Payer payer = payerRepo.findAll().get(0);
+            payer.setPayerName(TestDataUtils.PAYER_NAME_1 + " renamed");
+            payerRepo.save(payer);
 
-                Assertions.assertNotNull(tuple.get(4));
-                Assertions.assertEquals(Remittance.class, tuple.get(4, Remittance.class).getClass());
-                Remittance remittance = tuple.get(4, Remittance.class);
-                Assertions.assertEquals(claimQuery.getId(), remittance.getClaimQuery().getId());
-            }
+            Assertions.assertEquals(0, findClaimsByPayerName(TestDataUtils.PAYER_NAME_1).size());
+            List<ClaimSearchRow> result = findClaimsByPayerName(TestDataUtils.PAYER_NAME_1 + " renamed");
+            Assertions.assertEquals(1, result.size());
+            Assertions.assertEquals(TestDataUtils.PAYER_NAME_1 + " renamed", result.get(0).payerName());
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private List<ClaimSearchRow> findClaimsByPayerName(String payerName) {
+        return claimQueryDao.findByClaim(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1,
+                null, null, TestDataUtils.PATIENT_ID_1,
+                null, payerName, null, null, null, KeysetPage.UNPAGED);
+    }
+
     @Test
     public void findRemittanceTest_allData() {
         try {
@@ -173,44 +199,57 @@ public class ClaimQueryDaoTest extends BaseTest {
 
             String searchStrWithWildChar = TestDataUtils.PAYMENT_NUM_SEARCH_STR ;
 
-            List<Tuple> result = this.claimQueryDao.findByPayment(TestDataUtils.PROVIDER_TIN_1, searchStrWithWildChar,
+            List<PaymentSearchRow> result = this.claimQueryDao.findByPayment(TestDataUtils.PROVIDER_TIN_1, searchStrWithWildChar,
                     paymentIssueDtStart, paymentIssueDtEnd,
                     startDos, endDos, TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1,
-                    TestDataUtils.PAYMENT_AMOUNT, TestDataUtils.PAYMENT_AMOUNT + 10);
+                    TestDataUtils.PAYMENT_AMOUNT, TestDataUtils.PAYMENT_AMOUNT + 10, KeysetPage.UNPAGED);
 
             Assertions.assertEquals(1, result.size());
 
-            int expectedTupleSize = 4;
-            for (Tuple tuple : result) {
-                Assertions.assertEquals(expectedTupleSize, tuple.getElements().size());
-                ClaimQuery claimQuery = tuple.get(0, ClaimQuery.class);
-                Assertions.assertEquals(TestDataUtils.PROVIDER_TIN_1, claimQuery.getProviderTin());
-                Assertions.assertTrue(claimQuery.getDateOfService().getTime() >= startDos.getTime() && claimQuery.getDateOfService().getTime() <= endDos.getTime());
+            for (PaymentSearchRow row : result) {
+                Assertions.assertNotNull(row.claimId());
 
-                Assertions.assertNotNull(tuple.get(1));
-                Assertions.assertEquals(Payer.class, tuple.get(1, Payer.class).getClass());
-                Payer payer =  tuple.get(1, Payer.class);
-                Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, payer.getPayerIdentity());
-                Assertions.assertEquals(TestDataUtils.PAYER_NAME_1, payer.getPayerName());
+                Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, row.payerIdentity());
+                Assertions.assertEquals(TestDataUtils.PAYER_NAME_1, row.payerName());
 
-                Assertions.assertNotNull(tuple.get(2));
-                Assertions.assertEquals(Payment.class, tuple.get(2, Payment.class).getClass());
-                Payment payment = tuple.get(2, Payment.class);
-                Assertions.assertEquals(claimQuery.getId(), payment.getClaimQuery().getId());
-                Assertions.assertTrue(payment.getPayment_issue_dt().getTime() >= paymentIssueDtStart.getTime() && payment.getPayment_issue_dt().getTime() <= paymentIssueDtEnd.getTime());
-                Assertions.assertTrue(payment.getPaymentNumber().indexOf(TestDataUtils.PAYMENT_NUM_SEARCH_STR) > -1 );
-                Assertions.assertTrue(payment.getAmount() >= TestDataUtils.PAYMENT_AMOUNT - 10 && payment.getAmount() <= TestDataUtils.PAYMENT_AMOUNT + 10);
+                Assertions.assertTrue(row.paymentIssueDate().getTime() >= paymentIssueDtStart.getTime() && row.paymentIssueDate().getTime() <= paymentIssueDtEnd.getTime());
+                Assertions.assertTrue(row.paymentNumber().indexOf(TestDataUtils.PAYMENT_NUM_SEARCH_STR) > -1 );
+                Assertions.assertTrue(row.paymentAmount() >= TestDataUtils.PAYMENT_AMOUNT - 10 && row.paymentAmount() <= TestDataUtils.PAYMENT_AMOUNT + 10);
 
-                Assertions.assertNotNull(tuple.get(3));
-                Assertions.assertEquals(Remittance.class, tuple.get(3, Remittance.class).getClass());
-                Remittance remittance = tuple.get(3, Remittance.class);
-                Assertions.assertEquals(claimQuery.getId(), remittance.getClaimQuery().getId());
+                Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICEID_1, row.remittanceAdviceId());
             }
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Test
+    public void findPaymentsTest_paymentNumberMatch() {
+        try {
+            testDataUtils.allDataPopulated(false, true, true, true, true, true);
+
+            Date paymentIssueDtStart = TestDataUtils.dateFormatter.parse("2024-05-10");
+            Date paymentIssueDtEnd = TestDataUtils.dateFormatter.parse("2024-07-05");
+            Function<String, List<PaymentSearchRow>> search = paymentNumber -> this.claimQueryDao.findByPayment(
+                    TestDataUtils.PROVIDER_TIN_1, paymentNumber, paymentIssueDtStart, paymentIssueDtEnd,
+                    null, null, null, null, null, null, KeysetPage.UNPAGED);
+
+            //exact
+            Assertions.assertEquals(1, search.apply("\"" + TestDataUtils.PAYM_NUM_1.toLowerCase() + "\"").size());
+            Assertions.assertEquals(0, search.apply("\"" + TestDataUtils.PAYMENT_NUM_SEARCH_STR + "\"").size());
+            //prefix
+            Assertions.assertEquals(1, search.apply(TestDataUtils.PAYMENT_NUM_SEARCH_STR + "*").size());
+            Assertions.assertEquals(0, search.apply("NUMBER_1*").size());
+            //contains
+            Assertions.assertEquals(1, search.apply("NUMBER_1").size());
+            //wildcards match themselves
+            Assertions.assertEquals(0, search.apply("PAYMENT%1").size());
+            Assertions.assertEquals(0, search.apply("PAYMENT_NUMBER__").size());
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     public void findPatientsTest_allData() {
         try {
@@ -219,40 +258,115 @@ public class ClaimQueryDaoTest extends BaseTest {
             Date startDos = TestDataUtils.dateFormatter.parse("2024-05-05");
             Date endDos = TestDataUtils.dateFormatter.parse("2024-07-05");
             Date expectedPatDob = TestDataUtils.dateFormatter.parse(TestDataUtils.PATIENT_DOB);
-            List<Tuple> result = this.claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, expectedPatDob, startDos, endDos, TestDataUtils.PATIENT_ID_1, TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1, TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1);
+            List<ClaimSearchRow> result = this.claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, expectedPatDob, startDos, endDos, TestDataUtils.PATIENT_ID_1, TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1, TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1, KeysetPage.UNPAGED);
 
             Assertions.assertEquals(1, result.size());
 
+            Patient patient = patientRepo.findAll().get(0);
+            for (ClaimSearchRow row : result) {
+                Assertions.assertEquals(TestDataUtils.PATIENT_ID_1, row.subscriberPatientId());
+                Assertions.assertEquals(patient.getId(), row.patientId());
+                Assertions.assertEquals(expectedPatDob, row.patientDateOfBirth());
 
-            int expectedTupleSize = 5;
-            for (Tuple tuple : result) {
-                Assertions.assertEquals(expectedTupleSize, tuple.getElements().size());
-                ClaimQuery claimQuery = tuple.get(0, ClaimQuery.class);
-                Assertions.assertEquals(TestDataUtils.PROVIDER_TIN_1, claimQuery.getProviderTin());
-                Assertions.assertTrue(claimQuery.getDateOfService().getTime() >= startDos.getTime() && claimQuery.getDateOfService().getTime() <= endDos.getTime());
+                Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, row.payerIdentity());
+                Assertions.assertEquals(TestDataUtils.PAYM_NUM_1, row.paymentNumber());
+                Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICEID_1, row.remittanceAdviceId());
+            }
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                Assertions.assertEquals(Patient.class, tuple.get(1, Patient.class).getClass());
-                Patient patient = tuple.get(1, Patient.class);
-                Hibernate.initialize(patient);
-                Assertions.assertEquals(TestDataUtils.PATIENT_ID_1, claimQuery.getSubscriberPatientId());
-                Assertions.assertEquals(claimQuery.getPatient().getId(), patient.getId());
-                Assertions.assertEquals(expectedPatDob, claimQuery.getPatient().getDateOfBirth());
-                Assertions.assertEquals(expectedPatDob, patient.getDateOfBirth());
+    //the patient columns the search by patient matched are shown, not the cached patient
+    @Test
+    public void findPatientsTest_patientChangedWithSql() {
+        try {
+            testDataUtils.allDataPopulated(true, true, true, true, true, true);
+            //caches the patient
+            Assertions.assertEquals(TestDataUtils.PATIENT_FIRST_NAME_1, findClaimsByPayerName(TestDataUtils.PAYER_NAME_1).get(0).patientFirstName());
 
-                Assertions.assertEquals(Payer.class, tuple.get(2, Payer.class).getClass());
+            jdbcTemplate.update("update patient set first_name = ?", TestDataUtils.PATIENT_FIRST_NAME_1 + " changed");
 
-                Assertions.assertEquals(Payment.class, tuple.get(3, Payment.class).getClass());
-                Payment payment = tuple.get(3, Payment.class);
-                Assertions.assertEquals(claimQuery.getId(), payment.getClaimQuery().getId());
+            Date patientDob = TestDataUtils.dateFormatter.parse(TestDataUtils.PATIENT_DOB);
+            List<ClaimSearchRow> result = this.claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, patientDob, null, null,
+                    TestDataUtils.PATIENT_ID_1, null, null, TestDataUtils.PATIENT_FIRST_NAME_1 + " changed", null, KeysetPage.UNPAGED);
+            Assertions.assertEquals(1, result.size());
+            Assertions.assertEquals(TestDataUtils.PATIENT_FIRST_NAME_1 + " changed", result.get(0).patientFirstName());
+            Assertions.assertEquals(TestDataUtils.PATIENT_LAST_NAME_1, result.get(0).patientLastName());
+            Assertions.assertEquals(TestDataUtils.PAYER_NAME_1, result.get(0).payerName());
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                Assertions.assertNotNull(tuple.get(4));
-                Assertions.assertEquals(Remittance.class, tuple.get(4, Remittance.class).getClass());
-                Remittance remittance = tuple.get(4, Remittance.class);
-                Assertions.assertEquals(claimQuery.getId(), remittance.getClaimQuery().getId());
+    @Test
+    public void findPatientsTest_keysetPages() {
+        try {
+            testDataUtils.allDataPopulated(true, true, true, true, true, true);
+            ClaimQuery firstClaim = claimQueryRepo.findAll().get(0);
+            Patient patient = patientRepo.findAll().get(0);
+            Payer payer = payerRepo.findAll().get(0);
+            for (int i = 0; i < 2; i++) {
+                claimQueryRepo.save(ClaimQuery.builder().providerTin(TestDataUtils.PROVIDER_TIN_1)
+                        .providerClaimID(TestDataUtils.PROVIDER_CLAIMID_1 + i).payerClaimId(TestDataUtils.PAYER_CLAIM_ID_1 + i)
+                        .subscriberPatientId(TestDataUtils.PATIENT_ID_1).dateOfService(firstClaim.getDateOfService())
+                        .patient(patient).payer(payer).build());
             }
+            Date patientDob = TestDataUtils.dateFormatter.parse(TestDataUtils.PATIENT_DOB);
+
+            KeysetPage firstPage = KeysetPage.of(2, null);
+            List<ClaimSearchRow> firstResult = this.claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, patientDob, null, null,
+                    TestDataUtils.PATIENT_ID_1, null, null, null, null, firstPage);
+            //two claims of the page and the first claim of the next page
+            Assertions.assertEquals(3, firstResult.stream().map(ClaimSearchRow::claimId).distinct().count());
+            int pageEnd = firstPage.pageEnd(firstResult, ClaimSearchRow::claimId);
+            Assertions.assertTrue(pageEnd < firstResult.size());
+            Integer lastClaimId = firstResult.get(pageEnd - 1).claimId();
+
+            KeysetPage secondPage = KeysetPage.of(2, KeysetPage.continuationToken(lastClaimId, KeysetPage.queryHash()));
+            List<ClaimSearchRow> secondResult = this.claimQueryDao.findByPatient(TestDataUtils.PROVIDER_TIN_1, patientDob, null, null,
+                    TestDataUtils.PATIENT_ID_1, null, null, null, null, secondPage);
+            Assertions.assertEquals(1, secondResult.stream().map(ClaimSearchRow::claimId).distinct().count());
+            Assertions.assertTrue(secondResult.get(0).claimId() > lastClaimId);
+            Assertions.assertEquals(secondResult.size(), secondPage.pageEnd(secondResult, ClaimSearchRow::claimId));
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Test
+    public void findClaimsTest_batch() {
+        try {
+            testDataUtils.allDataPopulated(true, true, true, true, true, true);
+            ClaimQuery firstClaim = claimQueryRepo.findAll().get(0);
+            for (int i = 0; i < 3; i++) {
+                claimQueryRepo.save(ClaimQuery.builder().providerTin(TestDataUtils.PROVIDER_TIN_1)
+                        .providerClaimID(TestDataUtils.PROVIDER_CLAIMID_1 + i).payerClaimId(TestDataUtils.PAYER_CLAIM_ID_1 + i)
+                        .subscriberPatientId(TestDataUtils.PATIENT_ID_1).dateOfService(firstClaim.getDateOfService())
+                        .patient(firstClaim.getPatient()).payer(firstClaim.getPayer()).build());
+            }
+
+            List<ClaimLookup> claimLookups = List.of(
+                    new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1, null, null, null),
+                    new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1 + 0, null, null, null),
+                    //filters of one claim do not apply to the others
+                    new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1 + 1, null, TestDataUtils.PAYER_CLAIM_ID_1 + 1, null),
+                    new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1 + 2, null, TestDataUtils.PAYER_CLAIM_ID_1, null),
+                    new ClaimLookup("unknown_claim", null, null, null));
+            List<ClaimSearchRow> result = claimQueryDao.findByClaims(TestDataUtils.PROVIDER_TIN_1, claimLookups,
+                    null, null, null, null, null, KeysetPage.UNPAGED);
+            Assertions.assertEquals(List.of(TestDataUtils.PROVIDER_CLAIMID_1, TestDataUtils.PROVIDER_CLAIMID_1 + 0, TestDataUtils.PROVIDER_CLAIMID_1 + 1),
+                    result.stream().map(ClaimSearchRow::providerClaimId).distinct().toList());
+
+            KeysetPage firstPage = KeysetPage.of(2, null);
+            List<ClaimSearchRow> pagedResult = claimQueryDao.findByClaims(TestDataUtils.PROVIDER_TIN_1, claimLookups,
+                    null, null, null, null, null, firstPage);
+            //the third claim found tells there is a next page
+            int pageEnd = firstPage.pageEnd(pagedResult, ClaimSearchRow::claimId);
+            Assertions.assertTrue(pageEnd < pagedResult.size());
+            Assertions.assertEquals(2, pagedResult.subList(0, pageEnd).stream().map(ClaimSearchRow::claimId).distinct().count());
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
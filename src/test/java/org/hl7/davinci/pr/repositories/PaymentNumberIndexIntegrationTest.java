@@ -0,0 +1,66 @@
+package org.hl7.davinci.pr.repositories;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Checks the plans of the PaymentNumber matches on a PostgreSQL database migrated by Flyway,
+ * the H2 test database has neither the indexes nor EXPLAIN plans to compare.
+ * Runs when the DB_* variables of the local setup are set, e.g. against the docker-compose database.
+ * Sequential scans are disabled, as the planner prefers them on small tables even when an index matches.
+ */
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+public class PaymentNumberIndexIntegrationTest {
+
+    private static final String TRIGRAM_INDEX = "paymt_number_trgm_idx";
+    private static final String LOWER_INDEX = "paymt_number_lower_idx";
+    private static final String SEQUENTIAL_SCAN = "Seq Scan on payment";
+
+    @Test
+    void exactMatch_usesIndex() throws SQLException {
+        String plan = explain("lower(payment_number) = 'payment_number_1'");
+        Assertions.assertTrue(plan.contains(LOWER_INDEX) || plan.contains(TRIGRAM_INDEX), plan);
+        Assertions.assertFalse(plan.contains(SEQUENTIAL_SCAN), plan);
+    }
+
+    @Test
+    void prefixMatch_usesIndex() throws SQLException {
+        String plan = explain("lower(payment_number) like 'payment\\_n%' escape '\\'");
+        Assertions.assertTrue(plan.contains(LOWER_INDEX) || plan.contains(TRIGRAM_INDEX), plan);
+        Assertions.assertFalse(plan.contains(SEQUENTIAL_SCAN), plan);
+    }
+
+    @Test
+    void containsMatch_usesTrigramIndex() throws SQLException {
+        String plan = explain("lower(payment_number) like '%number\\_1%' escape '\\'");
+        Assertions.assertTrue(plan.contains(TRIGRAM_INDEX), plan);
+        Assertions.assertFalse(plan.contains(SEQUENTIAL_SCAN), plan);
+    }
+
+    private static String explain(String paymentNumberPredicate) throws SQLException {
+        String url = String.format("jdbc:postgresql://%s:%s/%s?currentSchema=postable_remittance",
+                System.getenv("DB_HOST"), System.getenv("DB_PORT"), System.getenv("DB_NAME"));
+        try (Connection connection = DriverManager.getConnection(url, System.getenv("DB_USERNAME"), System.getenv("DB_PASSWORD"))) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("set local enable_seqscan = off");
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = statement.executeQuery("explain select id from payment where " + paymentNumberPredicate)) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            } finally {
+                connection.rollback();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.hl7.davinci.pr.repositories;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.UUID;
+
+public class PaymentNumberMatchTest {
+
+    private static final List<String> PAYMENT_NUMBERS = List.of("A123", "A1234", "XA123", "50%OFF", "50XOFF", "A_1",
+            "AB1", "C\\D", "CXD", "\"Q\"", "Q", "R*", "RS");
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:payment-number-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table payment (payment_number varchar(20))");
+        for (String paymentNumber : PAYMENT_NUMBERS) {
+            jdbcTemplate.update("insert into payment values (?)", paymentNumber);
+        }
+    }
+
+    @Test
+    void of_selectsModeFromForm() {
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.EXACT, "a123"), PaymentNumberMatch.of(" \"A123\" "));
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.PREFIX, "a123"), PaymentNumberMatch.of("A123*"));
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.PREFIX, "a123"), PaymentNumberMatch.of("A123**"));
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.CONTAINS, "a123"), PaymentNumberMatch.of("A123"));
+        //a quote on one side only and an asterisk inside the value are matched as they are
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.CONTAINS, "\"a123"), PaymentNumberMatch.of("\"A123"));
+        Assertions.assertEquals(new PaymentNumberMatch(PaymentNumberMatch.Mode.CONTAINS, "a*1"), PaymentNumberMatch.of("A*1"));
+    }
+
+    @Test
+    void parameterValue_escapesLikeWildcards() {
+        Assertions.assertEquals("%50\\%\\_off\\\\%", PaymentNumberMatch.of("50%_OFF\\").parameterValue());
+        Assertions.assertEquals("a\\_1%", PaymentNumberMatch.of("A_1*").parameterValue());
+        //exact matches are compared with =, nothing is escaped
+        Assertions.assertEquals("a_1", PaymentNumberMatch.of("\"A_1\"").parameterValue());
+    }
+
+    @Test
+    void matches_onH2() {
+        Assertions.assertEquals(List.of("A123"), find("\"a123\""));
+        Assertions.assertEquals(List.of("A123", "A1234"), find("A123*"));
+        Assertions.assertEquals(List.of("A123", "A1234", "XA123"), find("A123"));
+        Assertions.assertEquals(List.of("50%OFF"), find("50%"));
+        Assertions.assertEquals(List.of("A_1"), find("A_1"));
+        Assertions.assertEquals(List.of("C\\D"), find("C\\D"));
+    }
+
+    @Test
+    void quotesAndTrailingAsterisk_noLongerLiteral() {
+        //both used to be contains matches finding only "Q" and R*
+        Assertions.assertEquals(List.of("Q"), find("\"Q\""));
+        Assertions.assertEquals(List.of("R*", "RS"), find("R*"));
+    }
+
+    private List<String> find(String paymentNumber) {
+        PaymentNumberMatch match = PaymentNumberMatch.of(paymentNumber);
+        String predicate = match.mode() == PaymentNumberMatch.Mode.EXACT
+                ? "lower(payment_number) = ?"
+                : "lower(payment_number) like ? escape '" + PaymentNumberMatch.ESCAPE_CHAR + "'";
+        return jdbcTemplate.queryForList("select payment_number from payment where " + predicate + " order by payment_number",
+                String.class, match.parameterValue());
+    }
+}
@@ -0,0 +1,128 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.UUID;
+
+public class QueryMetricsDataSourceTest {
+
+    private static final String SELECT = "select name from item where id > ?";
+
+    private DataSource target;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        target = new DriverManagerDataSource("jdbc:h2:mem:query-metrics-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+        jdbcTemplate.execute("create table item (id int, name varchar(20))");
+        jdbcTemplate.update("insert into item values (1, 'a'), (2, 'b'), (3, 'c')");
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void statements_recordedByFingerprint() {
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, 1.0, Duration.ofMinutes(1), 100);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new QueryMetricsDataSource(target, queryMetrics));
+
+        Assertions.assertEquals(2, jdbcTemplate.queryForList(SELECT, String.class, 1).size());
+        Assertions.assertEquals(3, jdbcTemplate.queryForList(SELECT, String.class, 0).size());
+        Assertions.assertEquals(2, jdbcTemplate.update("update item set name = 'x' where id in (1, 2)"));
+
+        String selectFingerprint = queryMetrics.fingerprint(SELECT).id();
+        Timer selectTimer = meterRegistry.get(QueryMetrics.METRIC_QUERY).tag("fingerprint", selectFingerprint)
+                .tag("operation", "select").tag("outcome", "success").timer();
+        Assertions.assertEquals(2, selectTimer.count());
+        //result sets are not wrapped, only the rows written are counted
+        Assertions.assertEquals(0, meterRegistry.get(QueryMetrics.METRIC_ROWS).tag("fingerprint", selectFingerprint)
+                .summary().count());
+        //literals do not make fingerprints of their own
+        String updateFingerprint = queryMetrics.fingerprint("update item set name = 'y' where id in (3, 4, 5)").id();
+        Assertions.assertEquals(2, meterRegistry.get(QueryMetrics.METRIC_ROWS).tag("fingerprint", updateFingerprint)
+                .tag("operation", "update").summary().totalAmount());
+        Assertions.assertEquals(0, meterRegistry.get(QueryMetrics.METRIC_SLOW).tag("fingerprint", selectFingerprint)
+                .counter().count());
+    }
+
+    @Test
+    void failedStatement_recordedAsError() {
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, 1.0, Duration.ofMinutes(1), 100);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new QueryMetricsDataSource(target, queryMetrics));
+
+        Assertions.assertThrows(Exception.class, () -> jdbcTemplate.queryForList("select missing from item", String.class));
+
+        Assertions.assertEquals(1, meterRegistry.get(QueryMetrics.METRIC_QUERY)
+                .tag("fingerprint", queryMetrics.fingerprint("select missing from item").id()).tag("outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    void unsampledStatements_onlyCountedWhenSlow() {
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, 0.0, Duration.ZERO, 100);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new QueryMetricsDataSource(target, queryMetrics));
+
+        jdbcTemplate.queryForList(SELECT, String.class, 1);
+
+        String fingerprint = queryMetrics.fingerprint(SELECT).id();
+        Assertions.assertEquals(0, meterRegistry.get(QueryMetrics.METRIC_QUERY).tag("fingerprint", fingerprint)
+                .tag("outcome", "success").timer().count());
+        Assertions.assertEquals(0, meterRegistry.get(QueryMetrics.METRIC_ROWS).tag("fingerprint", fingerprint)
+                .summary().count());
+        Assertions.assertEquals(1, meterRegistry.get(QueryMetrics.METRIC_SLOW).tag("fingerprint", fingerprint)
+                .counter().count());
+    }
+
+    @Test
+    void fingerprintsBeyondMaximum_shareOther() {
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry, 1.0, Duration.ofMinutes(1), 1);
+
+        Assertions.assertNotEquals(QueryMetrics.OTHER, queryMetrics.fingerprint(SELECT).id());
+        Assertions.assertEquals(QueryMetrics.OTHER, queryMetrics.fingerprint("select id from item").id());
+    }
+
+    @Test
+    void resultSets_notWrapped() throws SQLException {
+        QueryMetricsDataSource dataSource = new QueryMetricsDataSource(target,
+                new QueryMetrics(meterRegistry, 1.0, Duration.ofMinutes(1), 100));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            statement.setInt(1, 0);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assertions.assertFalse(Proxy.isProxyClass(resultSet.getClass()));
+                Assertions.assertTrue(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    void connections_equalOnlyThemselves() throws SQLException {
+        QueryMetricsDataSource dataSource = new QueryMetricsDataSource(target,
+                new QueryMetrics(meterRegistry, 1.0, Duration.ofMinutes(1), 100));
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            Assertions.assertEquals(first, first);
+            Assertions.assertNotEquals(first, second);
+        }
+    }
+
+    @Test
+    void normalize() {
+        Assertions.assertEquals("select * from t where a = ? and b in (?) and c = ?",
+                QueryMetrics.normalize("SELECT *\n  FROM t WHERE a = 'it''s' AND b IN (1, 2,3) and c = ?"));
+        Assertions.assertEquals("select c1_0.id from claim_query c1_0 where c1_0.id in (?)",
+                QueryMetrics.normalize("select c1_0.id from claim_query c1_0 where c1_0.id in (?, ?, ?, ?)"));
+    }
+}
@@ -0,0 +1,150 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Routes between three in-memory H2 databases, each with a table naming its target.
+ */
+public class ReadReplicaRoutingDataSourceTest {
+
+    private MeterRegistry meterRegistry;
+    private StoppableDataSource firstReplica;
+    private StoppableDataSource secondReplica;
+    private ReadReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        DataSource primary = database(ReadReplicaRoutingDataSource.PRIMARY);
+        firstReplica = new StoppableDataSource(database("replica-0"));
+        secondReplica = new StoppableDataSource(database("replica-1"));
+        //health checks are run by the tests
+        routingDataSource = new ReadReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica), Duration.ZERO,
+                Duration.ofSeconds(1), meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        //known defaults, so the proxy does not take a connection to find them out
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.setTargetDataSource(routingDataSource);
+        dataSource.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        routingDataSource.destroy();
+    }
+
+    @Test
+    void readOnlyTransactions_useReplicasInTurn() {
+        double primaryConnections = connections(ReadReplicaRoutingDataSource.PRIMARY);
+
+        Assertions.assertEquals("replica-0", readTransaction.execute(status -> target()));
+        Assertions.assertEquals("replica-1", readTransaction.execute(status -> target()));
+        Assertions.assertEquals("replica-0", readTransaction.execute(status -> target()));
+
+        Assertions.assertEquals(ReadReplicaRoutingDataSource.PRIMARY, writeTransaction.execute(status -> target()));
+        Assertions.assertEquals(ReadReplicaRoutingDataSource.PRIMARY, target());
+
+        Assertions.assertEquals(2, connections("replica-0"));
+        Assertions.assertEquals(1, connections("replica-1"));
+        Assertions.assertEquals(primaryConnections + 2, connections(ReadReplicaRoutingDataSource.PRIMARY));
+    }
+
+    @Test
+    void unavailableReplica_isSkippedUntilItAnswers() {
+        firstReplica.stopped = true;
+
+        //the failed connection comes from the primary, afterwards the other replica takes all reads
+        Assertions.assertEquals(ReadReplicaRoutingDataSource.PRIMARY, readTransaction.execute(status -> target()));
+        Assertions.assertFalse(routingDataSource.isHealthy("replica-0"));
+        Assertions.assertEquals("replica-1", readTransaction.execute(status -> target()));
+        Assertions.assertEquals("replica-1", readTransaction.execute(status -> target()));
+        Assertions.assertEquals(1, meterRegistry.get(ReadReplicaRoutingDataSource.METRIC_FAILOVERS)
+                .tag("target", "replica-0").counter().count());
+
+        routingDataSource.checkReplicas();
+        Assertions.assertFalse(routingDataSource.isHealthy("replica-0"));
+        Assertions.assertEquals(0, meterRegistry.get(ReadReplicaRoutingDataSource.METRIC_HEALTHY)
+                .tag("target", "replica-0").gauge().value());
+
+        firstReplica.stopped = false;
+        routingDataSource.checkReplicas();
+        Assertions.assertTrue(routingDataSource.isHealthy("replica-0"));
+        List<String> targets = List.of(readTransaction.execute(status -> target()), readTransaction.execute(status -> target()));
+        Assertions.assertTrue(targets.contains("replica-0"), targets.toString());
+    }
+
+    @Test
+    void noHealthyReplica_readsFromPrimary() {
+        firstReplica.stopped = true;
+        secondReplica.stopped = true;
+        routingDataSource.checkReplicas();
+
+        Assertions.assertEquals(ReadReplicaRoutingDataSource.PRIMARY, readTransaction.execute(status -> target()));
+        Assertions.assertEquals(0, connections("replica-0") + connections("replica-1"));
+    }
+
+    private String target() {
+        return jdbcTemplate.queryForObject("select name from target", String.class);
+    }
+
+    private double connections(String target) {
+        return meterRegistry.get(ReadReplicaRoutingDataSource.METRIC_CONNECTIONS).tag("target", target).counter().count();
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table target (name varchar(20))");
+        jdbcTemplate.update("insert into target values (?)", name);
+        return dataSource;
+    }
+
+    /**
+     * A replica that can be taken down
+     */
+    private static class StoppableDataSource extends DelegatingDataSource {
+
+        private volatile boolean stopped;
+
+        StoppableDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (stopped) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
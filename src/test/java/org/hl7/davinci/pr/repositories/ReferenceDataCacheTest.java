@@ -0,0 +1,173 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReferenceDataCacheTest {
+
+    private static final String PAYER_IDENTITY = "P123";
+    private static final String PAYER_NAME = "Payer";
+
+    private PayerRepository payerRepository;
+    private PatientRepository patientRepository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        payerRepository = Mockito.mock(PayerRepository.class);
+        patientRepository = Mockito.mock(PatientRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(payerRepository.findByPayerIdentity(PAYER_IDENTITY)).thenReturn(List.of(payer(1, PAYER_NAME)));
+        when(payerRepository.findByPayerName(PAYER_NAME)).thenReturn(List.of(payer(1, PAYER_NAME), payer(2, PAYER_NAME)));
+        when(payerRepository.findAllById(List.of(1))).thenReturn(List.of(payer(1, PAYER_NAME)));
+        when(patientRepository.findAllById(List.of(1, 2))).thenReturn(List.of(patient(1), patient(2)));
+        when(patientRepository.findAllById(List.of(1))).thenReturn(List.of(patient(1)));
+    }
+
+    @Test
+    void patients_readThrough() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+
+        Map<Integer, Patient> patients = cache.patients(List.of(1, 2));
+        Assertions.assertEquals("First1", patients.get(1).getFirstName());
+        Assertions.assertEquals("First2", patients.get(2).getFirstName());
+        Assertions.assertEquals(patients.keySet(), cache.patients(List.of(2, 1)).keySet());
+
+        verify(patientRepository, times(1)).findAllById(any());
+        Assertions.assertEquals(2, gets(ReferenceDataCache.PATIENTS, "hit"));
+        Assertions.assertEquals(2, gets(ReferenceDataCache.PATIENTS, "miss"));
+        Assertions.assertEquals(2, meterRegistry.get("cache.size").tag("cache", ReferenceDataCache.PATIENTS).gauge().value());
+    }
+
+    @Test
+    void payerIds_cachedByLookup() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+
+        Assertions.assertEquals(List.of(1), cache.payerIds(PAYER_IDENTITY, null));
+        Assertions.assertEquals(List.of(1), cache.payerIds(PAYER_IDENTITY, null));
+        Assertions.assertEquals(List.of(1, 2), cache.payerIds(null, PAYER_NAME));
+        Assertions.assertEquals(PAYER_NAME, cache.payers(List.of(1, 2)).get(2).getPayerName());
+
+        verify(payerRepository, times(1)).findByPayerIdentity(PAYER_IDENTITY);
+        verify(payerRepository, times(1)).findByPayerName(PAYER_NAME);
+        verify(payerRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void payerIds_noFilter() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+
+        Assertions.assertNull(cache.payerIds(null, null));
+        Mockito.verifyNoInteractions(payerRepository);
+    }
+
+    @Test
+    void invalidatePayer_evictsPayerAndLookups() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+        cache.payerIds(PAYER_IDENTITY, null);
+
+        cache.invalidatePayer(1);
+        Assertions.assertEquals(PAYER_NAME, cache.payers(List.of(1)).get(1).getPayerName());
+        Assertions.assertEquals(List.of(1), cache.payerIds(PAYER_IDENTITY, null));
+
+        verify(payerRepository, times(1)).findAllById(List.of(1));
+        verify(payerRepository, times(2)).findByPayerIdentity(PAYER_IDENTITY);
+    }
+
+    @Test
+    void invalidatePatient_evictsPatient() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+        cache.patients(List.of(1));
+
+        cache.invalidatePatient(1);
+        cache.patients(List.of(1));
+
+        verify(patientRepository, times(2)).findAllById(List.of(1));
+    }
+
+    @Test
+    void patients_evictsLeastRecentlyUsed() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 1);
+
+        cache.patients(List.of(1, 2));
+        cache.patients(List.of(1));
+
+        verify(patientRepository, times(1)).findAllById(List.of(1));
+        Assertions.assertEquals(2, meterRegistry.get("cache.evictions").tag("cache", ReferenceDataCache.PATIENTS)
+                .functionCounter().count());
+    }
+
+    @Test
+    void patients_expire() {
+        ReferenceDataCache cache = cache(Duration.ZERO, 10);
+
+        cache.patients(List.of(1));
+        cache.patients(List.of(1));
+
+        verify(patientRepository, times(2)).findAllById(List.of(1));
+    }
+
+    @Test
+    void put_afterInvalidation_isNotStored() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>("test", Duration.ofMinutes(10).toNanos(), 10);
+        long generation = cache.generation();
+
+        cache.invalidate(1);
+        cache.put(1, "stale", generation);
+        Assertions.assertNull(cache.get(1));
+
+        cache.put(1, "fresh", cache.generation());
+        Assertions.assertEquals("fresh", cache.get(1));
+    }
+
+    @Test
+    void cacheManager_listsAndClearsCaches() {
+        ReferenceDataCache cache = cache(Duration.ofMinutes(10), 10);
+        CacheManager cacheManager = cache.cacheManager();
+        Assertions.assertEquals(Set.of(ReferenceDataCache.PAYERS, ReferenceDataCache.PAYER_LOOKUPS, ReferenceDataCache.PATIENTS),
+                Set.copyOf(cacheManager.getCacheNames()));
+        cache.patients(List.of(1));
+
+        cacheManager.getCache(ReferenceDataCache.PATIENTS).clear();
+        cache.patients(List.of(1));
+
+        verify(patientRepository, times(2)).findAllById(List.of(1));
+    }
+
+    private ReferenceDataCache cache(Duration ttl, int maxEntries) {
+        return new ReferenceDataCache(payerRepository, patientRepository, meterRegistry, ttl, maxEntries);
+    }
+
+    private double gets(String cacheName, String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", cacheName)
+                .tag("cache.manager", ReferenceDataCache.CACHE_MANAGER)
+                .tag("result", result)
+                .functionCounter().count();
+    }
+
+    private static Payer payer(int id, String payerName) {
+        return Payer.builder().id(id).payerIdentity(PAYER_IDENTITY).payerName(payerName).build();
+    }
+
+    private static Patient patient(int id) {
+        return Patient.builder().id(id).firstName("First" + id).lastName("Last" + id).build();
+    }
+}
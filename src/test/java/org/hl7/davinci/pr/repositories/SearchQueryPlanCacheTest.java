@@ -0,0 +1,58 @@
+package org.hl7.davinci.pr.repositories;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchQueryPlanCacheTest {
+
+    private static final String FINDER = "findByClaim";
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void plan_builtOncePerKey() {
+        SearchQueryPlanCache plans = new SearchQueryPlanCache(meterRegistry, 10);
+        AtomicInteger builds = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("select 1", plans.get(FINDER, "a", () -> "select " + builds.incrementAndGet()));
+        }
+        Assertions.assertEquals("select 2", plans.get(FINDER, "b", () -> "select " + builds.incrementAndGet()));
+
+        Assertions.assertEquals(2, builds.get());
+        Assertions.assertEquals(2, count("hit"));
+        Assertions.assertEquals(2, count("miss"));
+        Assertions.assertEquals(2, meterRegistry.get(SearchQueryPlanCache.METRIC_SIZE).gauge().value());
+    }
+
+    @Test
+    void plansBeyondMax_builtEachTime() {
+        SearchQueryPlanCache plans = new SearchQueryPlanCache(meterRegistry, 1);
+
+        plans.get(FINDER, "a", () -> "select a");
+        Assertions.assertEquals("select b", plans.get(FINDER, "b", () -> "select b"));
+        Assertions.assertEquals("select b", plans.get(FINDER, "b", () -> "select b"));
+
+        Assertions.assertEquals(1, plans.size());
+        Assertions.assertEquals(0, count("hit"));
+        Assertions.assertEquals(3, count("miss"));
+    }
+
+    private double count(String result) {
+        //the counter of a result is only registered once it is incremented
+        Counter counter = meterRegistry.find(SearchQueryPlanCache.METRIC_PLANS).tag("finder", FINDER).tag("result", result)
+                .counter();
+        return (counter == null) ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,74 @@
+package org.hl7.davinci.pr.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class DocumentRenderingExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DocumentRenderingExecutor executor;
+
+    private void createExecutor(boolean virtualThreads) {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new DocumentRenderingExecutor(1, 1, 7, virtualThreads, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.destroy();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void submit_runsOnRenderingThread(boolean virtualThreads) throws Exception {
+        createExecutor(virtualThreads);
+        Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(thread.getName().startsWith("document-render-"));
+        Assertions.assertEquals(virtualThreads, thread.isVirtual());
+        Assertions.assertEquals(7, executor.getRetryAfterSeconds());
+        Assertions.assertNotNull(meterRegistry.find("executor.queued").tag("name", DocumentRenderingExecutor.METRIC_EXECUTOR).gauge());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void submit_rejectsWhenQueueIsFull(boolean virtualThreads) throws Exception {
+        createExecutor(virtualThreads);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.submit(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = executor.submit(() -> 1);
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> 2));
+
+        release.countDown();
+        Assertions.assertTrue(running.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, queued.get(5, TimeUnit.SECONDS));
+        //the slots are free again
+        Assertions.assertEquals(3, executor.submit(() -> 3).get(5, TimeUnit.SECONDS));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void submit_completesExceptionallyWhenTaskFails(boolean virtualThreads) {
+        createExecutor(virtualThreads);
+        CompletableFuture<Object> failed = executor.submit(() -> {
+            throw new IllegalStateException("render failed");
+        });
+
+        Exception e = Assertions.assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
@@ -2,11 +2,15 @@ package org.hl7.davinci.pr.service;
 
 import com.ibm.icu.impl.Assert;
 import com.imsweb.x12.LineBreak;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.Tuple;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.hl7.davinci.pr.BaseTest;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.api.utils.FhirUtils;
 import org.hl7.davinci.pr.domain.ClaimQuery;
 import org.hl7.davinci.pr.domain.Payer;
 import org.hl7.davinci.pr.domain.Payment;
@@ -20,6 +24,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -48,6 +54,8 @@ public class DownloadServiceTest extends BaseTest {
     DownloadService downloadService;
     @Autowired
     ClaimQueryDao claimQueryDao;
+    @Autowired
+    MeterRegistry meterRegistry;
     private TestDataUtils testDataUtils;
 
     @BeforeEach
@@ -93,6 +101,38 @@ public class DownloadServiceTest extends BaseTest {
         }
     }
 
+    @Test
+    public void streamDocumentTest_pdf() throws Exception {
+        testDataUtils.allDataPopulated(true, true, true, true, true, true);
+        DocumentSource documentSource = downloadService.prepareDocument(
+                TestDataUtils.REMITTANCE_ADVICEID_1, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF);
+        Assertions.assertNotNull(documentSource);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        downloadService.streamDocument(TestDataUtils.REMITTANCE_ADVICEID_1, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF,
+                documentSource, outputStream);
+
+        //the streamed envelope has to be a valid Binary resource
+        Binary binary = (Binary) FhirUtils.parseResource(outputStream.toString(StandardCharsets.UTF_8));
+        Assertions.assertEquals("application/pdf+gzip", binary.getContentType());
+        Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICEID_1,
+                binary.getDataElement().getExtensionByUrl("http://hl7.org/fhir/us/davinci-pr/StructureDefinition/remittanceIdentifierExt").getValue().primitiveValue());
+        try (GzipCompressorInputStream gzipInputStream = new GzipCompressorInputStream(new ByteArrayInputStream(binary.getData()))) {
+            String document = new String(gzipInputStream.readAllBytes(), StandardCharsets.ISO_8859_1);
+            Assertions.assertTrue(document.startsWith("%PDF"));
+        }
+        //query, render and compress are skipped when an earlier test cached the document
+        Timer encodeTimer = meterRegistry.find(DownloadService.METRIC_STAGE)
+                .tags("stage", DownloadService.STAGE_ENCODE, "type", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF).timer();
+        Assertions.assertNotNull(encodeTimer);
+        Assertions.assertTrue(encodeTimer.count() > 0);
+    }
+
+    @Test
+    public void prepareDocumentTest_notFound() throws Exception {
+        Assertions.assertNull(downloadService.prepareDocument("unknown-remittance", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+    }
+
     @Test
     public void build835Text_test() {
         try {
@@ -0,0 +1,193 @@
+package org.hl7.davinci.pr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hl7.davinci.pr.BaseTest;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.ExportJob;
+import org.hl7.davinci.pr.domain.ExportJobStatus;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.ClaimQueryRepository;
+import org.hl7.davinci.pr.repositories.ExportJobRepository;
+import org.hl7.davinci.pr.repositories.PayerRepository;
+import org.hl7.davinci.pr.repositories.PaymentRepository;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+public class ExportServiceTest extends BaseTest {
+
+    private static final Path EXPORT_DIRECTORY = createTempDirectory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long AWAIT_MILLIS = 10_000;
+
+    @DynamicPropertySource
+    static void exportProperties(DynamicPropertyRegistry registry) {
+        registry.add("pr.export.directory", EXPORT_DIRECTORY::toString);
+        //small files, so the claims of a job are split over files
+        registry.add("pr.export.rows-per-file", () -> 2);
+        registry.add("pr.export.fetch-size", () -> 1);
+    }
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    ExportJobRepository exportJobRepo;
+
+    @Autowired
+    ClaimQueryRepository claimQueryRepo;
+
+    @Autowired
+    PayerRepository payerRepo;
+
+    @Autowired
+    PaymentRepository paymentRepo;
+
+    private String tin;
+    private List<ClaimQuery> claims;
+    private Date since;
+    private Date until;
+
+    //three claims of their own TIN: two payments, one payment with a remittance and one payment issued after the range
+    @BeforeEach
+    void setupData() throws ParseException {
+        tin = String.valueOf(ThreadLocalRandom.current().nextInt(100_000_000, 1_000_000_000));
+        since = TestDataUtils.dateFormatter.parse("2024-05-01");
+        until = TestDataUtils.dateFormatter.parse("2024-05-31");
+        Date issued = TestDataUtils.dateFormatter.parse(TestDataUtils.PAYMENT_ISSUE_DATE);
+        Payer payer = payerRepo.save(Payer.builder().payerName(TestDataUtils.PAYER_NAME_1).payerIdentity(TestDataUtils.PAYER_ID_VAL_1).build());
+        claims = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            claims.add(claimQueryRepo.save(ClaimQuery.builder().providerTin(tin)
+                    .providerClaimID(TestDataUtils.PROVIDER_CLAIMID_1 + i).payerClaimId(TestDataUtils.PAYER_CLAIM_ID_1 + i)
+                    .subscriberPatientId(TestDataUtils.PATIENT_ID_1).claimChargeAmount(TestDataUtils.CLAIM_CHARGE_AMOUNT)
+                    .payer(payer).build()));
+        }
+        //saved with its payment, which cascades to it
+        Remittance remittance = Remittance.builder().claimQuery(claims.get(1))
+                .remittanceAdviceId(TestDataUtils.REMITTANCE_ADVICEID_1).remittanceAdviceType(ApiConstants.REMITTANCE_ADVICE_TYPE_PDF)
+                .remittanceAdviceFileSize(TestDataUtils.REMITTANCE_ADVICE_FILE_SIZE).build();
+        paymentRepo.save(Payment.builder().claimQuery(claims.get(0)).paymentNumber(TestDataUtils.PAYM_NUM_1 + "a")
+                .amount(TestDataUtils.PAYMENT_AMOUNT).payment_issue_dt(issued).build());
+        paymentRepo.save(Payment.builder().claimQuery(claims.get(0)).paymentNumber(TestDataUtils.PAYM_NUM_1 + "b")
+                .amount(TestDataUtils.PAYMENT_AMOUNT).payment_issue_dt(issued).build());
+        paymentRepo.save(Payment.builder().claimQuery(claims.get(1)).paymentNumber(TestDataUtils.PAYM_NUM_1 + "c")
+                .amount(TestDataUtils.PAYMENT_AMOUNT).payment_issue_dt(issued).remittance(remittance).build());
+        paymentRepo.save(Payment.builder().claimQuery(claims.get(2)).paymentNumber(TestDataUtils.PAYM_NUM_1 + "d")
+                .amount(TestDataUtils.PAYMENT_AMOUNT).payment_issue_dt(TestDataUtils.dateFormatter.parse("2024-06-10")).build());
+    }
+
+    @Test
+    void kickOff_writesGzippedNdjsonFilesAtClaimBoundaries() throws Exception {
+        ExportJob job = exportService.kickOff(tin, since, until, "http://localhost/$export");
+
+        job = awaitCompletion(job.getId());
+        Assertions.assertEquals(3L, job.getTotalCount());
+        Assertions.assertEquals(3L, job.getRowCount());
+        //both payments of the first claim stay in the first file
+        Assertions.assertEquals(List.of(2, 1), job.getFileRowCounts());
+        Assertions.assertEquals(claims.get(1).getId(), job.getLastClaimId());
+
+        List<JsonNode> firstFile = readFile(exportService.getOutputFile(job, 0));
+        Assertions.assertEquals(2, firstFile.size());
+        Assertions.assertEquals(ExportService.OUTPUT_TYPE, firstFile.get(0).get("type").asText());
+        Assertions.assertEquals(tin, firstFile.get(0).get(ApiConstants.TIN).asText());
+        Assertions.assertEquals(TestDataUtils.PROVIDER_CLAIMID_1 + 0, firstFile.get(0).get(ApiConstants.PROVIDER_CLAIM_ID).asText());
+        Assertions.assertEquals(TestDataUtils.PAYM_NUM_1 + "a", firstFile.get(0).get(ApiConstants.PAYMENT_NUMBER).asText());
+        Assertions.assertEquals(TestDataUtils.PAYMENT_ISSUE_DATE, firstFile.get(0).get(ApiConstants.PAYMENT_ISSUE_DATE).asText());
+        Assertions.assertEquals(TestDataUtils.PAYER_ID_VAL_1, firstFile.get(0).get(ApiConstants.PAYER_ID).asText());
+        Assertions.assertFalse(firstFile.get(0).has(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER));
+        Assertions.assertEquals(TestDataUtils.PAYM_NUM_1 + "b", firstFile.get(1).get(ApiConstants.PAYMENT_NUMBER).asText());
+
+        List<JsonNode> secondFile = readFile(exportService.getOutputFile(job, 1));
+        Assertions.assertEquals(1, secondFile.size());
+        Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICEID_1, secondFile.get(0).get(ApiConstants.REMITTANCE_ADVICE_IDENTIFIER).asText());
+        Assertions.assertEquals(TestDataUtils.REMITTANCE_ADVICE_FILE_SIZE, secondFile.get(0).get(ApiConstants.REMITTANCE_ADVICE_FILE_SIZE).asInt());
+    }
+
+    @Test
+    void scheduleWaitingJobs_resumesAfterLastCompletedFile() throws Exception {
+        //a job stopped by a restart after its first file
+        Date now = new Date();
+        ExportJob stoppedJob = ExportJob.builder().id(UUID.randomUUID().toString()).providerTin(tin).since(since).until(until)
+                .status(ExportJobStatus.RUNNING).requestUrl("http://localhost/$export").createdDate(now).updatedDate(now)
+                .lastClaimId(claims.get(0).getId()).rowCount(2L).totalCount(3L).build();
+        stoppedJob.getFileRowCounts().add(2);
+        exportJobRepo.save(stoppedJob);
+
+        exportService.scheduleWaitingJobs();
+
+        ExportJob job = awaitCompletion(stoppedJob.getId());
+        Assertions.assertEquals(List.of(2, 1), job.getFileRowCounts());
+        Assertions.assertEquals(3L, job.getRowCount());
+        Assertions.assertFalse(Files.exists(exportService.getOutputFile(job, 0)));
+        List<JsonNode> secondFile = readFile(exportService.getOutputFile(job, 1));
+        Assertions.assertEquals(1, secondFile.size());
+        Assertions.assertEquals(TestDataUtils.PROVIDER_CLAIMID_1 + 1, secondFile.get(0).get(ApiConstants.PROVIDER_CLAIM_ID).asText());
+    }
+
+    @Test
+    void kickOff_noRows() throws Exception {
+        ExportJob job = exportService.kickOff(tin, TestDataUtils.dateFormatter.parse("2020-01-01"),
+                TestDataUtils.dateFormatter.parse("2020-01-31"), "http://localhost/$export");
+
+        job = awaitCompletion(job.getId());
+        Assertions.assertEquals(0L, job.getRowCount());
+        Assertions.assertTrue(job.getFileRowCounts().isEmpty());
+    }
+
+    private ExportJob awaitCompletion(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        ExportJob job = exportJobRepo.findById(jobId).orElseThrow();
+        while (job.getStatus() != ExportJobStatus.COMPLETED && System.currentTimeMillis() < deadline) {
+            Assertions.assertNotEquals(ExportJobStatus.FAILED, job.getStatus(), job.getErrorMessage());
+            Thread.sleep(20);
+            job = exportJobRepo.findById(jobId).orElseThrow();
+        }
+        Assertions.assertEquals(ExportJobStatus.COMPLETED, job.getStatus());
+        return job;
+    }
+
+    private static List<JsonNode> readFile(Path file) throws IOException {
+        List<JsonNode> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rows.add(OBJECT_MAPPER.readTree(line));
+            }
+        }
+        return rows;
+    }
+
+    private static Path createTempDirectory() {
+        try {
+            return Files.createTempDirectory("export-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.hl7.davinci.pr.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+class RemittanceDocumentCacheTest {
+
+    private static final String REMITTANCE_ADVICE_ID = "A123456BCD";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void lookup_missThenMemoryHit() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 1024, 1024, "", 0, meterRegistry);
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        store(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[]{1, 2, 3}, target);
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, target.toByteArray());
+
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, read(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835));
+        Assertions.assertEquals(1, counter(RemittanceDocumentCache.METRIC_HITS, RemittanceDocumentCache.TIER_MEMORY));
+        Assertions.assertEquals(2, meterRegistry.get(RemittanceDocumentCache.METRIC_MISSES).counter().count());
+    }
+
+    @Test
+    void uncommittedEntry_isNotStored() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 1024, 1024, cacheDirectory.toString(), 1024, meterRegistry);
+        try (RemittanceDocumentCache.Entry entry = cache.newEntry(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF,
+                cache.currentGeneration(), new ByteArrayOutputStream())) {
+            entry.write(new byte[]{1, 2, 3});
+        }
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void memoryTier_evictsLeastRecentlyUsed() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 8, 8, "", 0, meterRegistry);
+        store(cache, "first", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[4], new ByteArrayOutputStream());
+        store(cache, "second", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[4], new ByteArrayOutputStream());
+        //touch the first entry, so the second one is the eldest
+        Assertions.assertNotNull(cache.lookup("first", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        store(cache, "third", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[4], new ByteArrayOutputStream());
+
+        Assertions.assertNotNull(cache.lookup("first", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        Assertions.assertNull(cache.lookup("second", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        Assertions.assertNotNull(cache.lookup("third", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        Assertions.assertEquals(1, counter(RemittanceDocumentCache.METRIC_EVICTIONS, RemittanceDocumentCache.TIER_MEMORY));
+    }
+
+    @Test
+    void diskTier_servesLargeDocumentsAndIsClearedOnRestart() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 8, 4, cacheDirectory.toString(), 1024, meterRegistry);
+        byte[] document = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        store(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835, document, new ByteArrayOutputStream());
+
+        //too large for the memory tier
+        Assertions.assertArrayEquals(document, read(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835));
+        Assertions.assertEquals(1, counter(RemittanceDocumentCache.METRIC_HITS, RemittanceDocumentCache.TIER_DISK));
+
+        //the data may have been reloaded before the restart
+        RemittanceDocumentCache restartedCache = new RemittanceDocumentCache(true, 8, 4, cacheDirectory.toString(), 1024, new SimpleMeterRegistry());
+        Assertions.assertNull(restartedCache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835));
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void diskTier_deletedFile_isMiss() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 8, 4, cacheDirectory.toString(), 1024, meterRegistry);
+        store(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835, new byte[10], new ByteArrayOutputStream());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835));
+        Assertions.assertEquals(1, meterRegistry.get(RemittanceDocumentCache.METRIC_MISSES).counter().count());
+    }
+
+    @Test
+    void invalidate_removesAllTypesFromBothTiers() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 1024, 1024, cacheDirectory.toString(), 1024, meterRegistry);
+        store(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[]{1}, new ByteArrayOutputStream());
+        store(cache, REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835, new byte[]{2}, new ByteArrayOutputStream());
+        store(cache, "other", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF, new byte[]{3}, new ByteArrayOutputStream());
+
+        cache.invalidate(REMITTANCE_ADVICE_ID);
+
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_835));
+        Assertions.assertNotNull(cache.lookup("other", ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+    }
+
+    @Test
+    void invalidate_duringRender_skipsCommit() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 1024, 1024, "", 0, meterRegistry);
+        try (RemittanceDocumentCache.Entry entry = cache.newEntry(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF,
+                cache.currentGeneration(), new ByteArrayOutputStream())) {
+            entry.write(new byte[]{1, 2, 3});
+            cache.invalidate(REMITTANCE_ADVICE_ID);
+            entry.commit();
+        }
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+    }
+
+    @Test
+    void invalidate_afterQuery_skipsCommit() throws Exception {
+        RemittanceDocumentCache cache = new RemittanceDocumentCache(true, 1024, 1024, cacheDirectory.toString(), 1024, meterRegistry);
+        long queryGeneration = cache.currentGeneration();
+        //invalidated after the rows were read, before rendering started
+        cache.invalidate(REMITTANCE_ADVICE_ID);
+        try (RemittanceDocumentCache.Entry entry = cache.newEntry(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF,
+                queryGeneration, new ByteArrayOutputStream())) {
+            entry.write(new byte[]{1, 2, 3});
+            entry.commit();
+        }
+        Assertions.assertNull(cache.lookup(REMITTANCE_ADVICE_ID, ApiConstants.REMITTANCE_ADVICE_TYPE_PDF));
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    private static void store(RemittanceDocumentCache cache, String remittanceAdviceId, String remittanceType, byte[] document,
+                              ByteArrayOutputStream target) throws Exception {
+        try (RemittanceDocumentCache.Entry entry = cache.newEntry(remittanceAdviceId, remittanceType, cache.currentGeneration(), target)) {
+            entry.write(document);
+            entry.commit();
+        }
+    }
+
+    private static byte[] read(RemittanceDocumentCache cache, String remittanceAdviceId, String remittanceType) throws Exception {
+        DocumentSource documentSource = cache.lookup(remittanceAdviceId, remittanceType);
+        Assertions.assertNotNull(documentSource);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        documentSource.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private double counter(String name, String tier) {
+        return meterRegistry.get(name).tag("tier", tier).counter().count();
+    }
+}
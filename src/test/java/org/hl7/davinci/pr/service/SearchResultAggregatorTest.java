@@ -0,0 +1,123 @@
+package org.hl7.davinci.pr.service;
+
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SearchResultAggregatorTest {
+
+    @Test
+    void ofClaimRows_keepsFirstSeenOrderByPrimaryKey() {
+        Patient patient = patient(7);
+        Payer firstPayer = payer(2);
+        Payer secondPayer = payer(1);
+        List<ClaimSearchRow> rows = List.of(
+                row(claim(30), patient, firstPayer, payment(300), remittance(3000)),
+                row(claim(10), patient, secondPayer, payment(100), remittance(1000)),
+                //second payment of the first claim
+                row(claim(30), patient, firstPayer, payment(301), remittance(3000)),
+                row(claim(20), patient, firstPayer, payment(200), remittance(2000)));
+
+        SearchResultAggregator aggregator = SearchResultAggregator.ofClaimRows(rows);
+
+        Assertions.assertEquals(List.of(30, 10, 20), aggregator.claimQueries().stream().map(ClaimQuery::getId).toList());
+        Assertions.assertEquals(List.of(7), aggregator.patients().stream().map(Patient::getId).toList());
+        Assertions.assertEquals(List.of(2, 1), aggregator.payers().stream().map(Payer::getId).toList());
+        Assertions.assertEquals(List.of(300, 100, 301, 200), aggregator.payments().stream().map(Payment::getId).toList());
+        Assertions.assertEquals(List.of(3000, 1000, 2000), aggregator.remittances().stream().map(Remittance::getId).toList());
+    }
+
+    @Test
+    void ofClaimRows_nullKeyIsOneEntity() {
+        ClaimQuery claimQuery = claim(1);
+        Patient patient = patient(1);
+        Payer payer = payer(1);
+        List<ClaimSearchRow> rows = List.of(
+                row(claimQuery, patient, payer, payment(null), remittance(null)),
+                row(claimQuery, patient, payer, payment(null), remittance(null)));
+
+        SearchResultAggregator aggregator = SearchResultAggregator.ofClaimRows(rows);
+
+        Assertions.assertEquals(1, aggregator.claimQueries().size());
+        Assertions.assertEquals(1, aggregator.payments().size());
+        Assertions.assertNull(aggregator.payments().get(0).getId());
+        Assertions.assertEquals(1, aggregator.remittances().size());
+    }
+
+    @Test
+    void ofPaymentRows_collectsPayersPaymentsAndRemittances() {
+        Payer payer = payer(1);
+        List<PaymentSearchRow> rows = List.of(
+                TestUtils.generateSampleFindByPaymentDaoRow(claim(1), payer, payment(10), remittance(100)),
+                TestUtils.generateSampleFindByPaymentDaoRow(claim(2), payer, payment(10), remittance(100)));
+
+        SearchResultAggregator aggregator = SearchResultAggregator.ofPaymentRows(rows);
+
+        Assertions.assertTrue(aggregator.claimQueries().isEmpty());
+        Assertions.assertTrue(aggregator.patients().isEmpty());
+        Assertions.assertEquals(1, aggregator.payers().size());
+        Assertions.assertEquals(1, aggregator.payments().size());
+        Assertions.assertEquals(1, aggregator.remittances().size());
+    }
+
+    @Test
+    void intKeySet_growsPastExpectedSize() {
+        SearchResultAggregator.IntKeySet keySet = new SearchResultAggregator.IntKeySet(0);
+        List<Integer> added = new ArrayList<>();
+        for (int key = -5000; key < 5000; key += 3) {
+            Assertions.assertTrue(keySet.add(key));
+            added.add(key);
+        }
+        for (Integer key : added) {
+            Assertions.assertFalse(keySet.add(key));
+        }
+        Assertions.assertTrue(keySet.add(null));
+        Assertions.assertFalse(keySet.add(null));
+        Assertions.assertTrue(keySet.add(Integer.MIN_VALUE));
+    }
+
+    private static ClaimSearchRow row(ClaimQuery claimQuery, Patient patient, Payer payer, Payment payment, Remittance remittance) {
+        return TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery, patient, payer, payment, remittance);
+    }
+
+    private static ClaimQuery claim(Integer id) {
+        ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1 + id);
+        claimQuery.setId(id);
+        return claimQuery;
+    }
+
+    private static Patient patient(Integer id) {
+        Patient patient = TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1);
+        patient.setId(id);
+        return patient;
+    }
+
+    private static Payer payer(Integer id) {
+        Payer payer = TestUtils.getSamplePayer(TestDataUtils.PAYER_ID_VAL_1 + id, TestDataUtils.PAYER_NAME_1);
+        payer.setId(id);
+        return payer;
+    }
+
+    private static Payment payment(Integer id) {
+        Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1 + id);
+        payment.setId(id);
+        return payment;
+    }
+
+    private static Remittance remittance(Integer id) {
+        Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1 + id);
+        remittance.setId(id);
+        return remittance;
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import org.hl7.davinci.pr.BaseTest;
 import org.hl7.davinci.pr.api.utils.ApiConstants;
 import org.hl7.davinci.pr.api.utils.ApiUtils;
+import org.hl7.davinci.pr.api.utils.ValidationUtils;
 import org.hl7.davinci.pr.domain.ClaimQuery;
 import org.hl7.davinci.pr.domain.Patient;
 import org.hl7.davinci.pr.domain.Payer;
@@ -80,7 +81,8 @@ class SearchServiceIntegrationTest extends BaseTest {
         List.of(claimQuery), List.of(patient), List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByClaim(requestResource);
+    Parameters actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(TestDataUtils.PROVIDER_TIN_1,
@@ -102,7 +104,7 @@ class SearchServiceIntegrationTest extends BaseTest {
         String.valueOf(TestDataUtils.CLAIM_CHARGE_AMOUNT), TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
 
     // Act
-    Parameters actualResult = searchService.searchByClaim(requestResource);
+    SearchResponse actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -126,7 +128,8 @@ class SearchServiceIntegrationTest extends BaseTest {
         List.of(claimQuery), List.of(patient), List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByPatient(requestResource);
+    Parameters actualResult = searchService.searchByPatient(ValidationUtils.validateSearchByPatientRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(TestDataUtils.PROVIDER_TIN_1,
@@ -148,7 +151,7 @@ class SearchServiceIntegrationTest extends BaseTest {
         TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1);
 
     // Act
-    Parameters actualResult = searchService.searchByPatient(requestResource);
+    SearchResponse actualResult = searchService.searchByPatient(ValidationUtils.validateSearchByPatientRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -169,7 +172,8 @@ class SearchServiceIntegrationTest extends BaseTest {
         List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByPayment(requestResource);
+    Parameters actualResult = searchService.searchByPayment(ValidationUtils.validateSearchByPaymentRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(TestDataUtils.PROVIDER_TIN_1,
@@ -192,7 +196,7 @@ class SearchServiceIntegrationTest extends BaseTest {
         TestDataUtils.PAYM_NUM_1);
 
     // Act
-    Parameters actualResult = searchService.searchByPayment(requestResource);
+    SearchResponse actualResult = searchService.searchByPayment(ValidationUtils.validateSearchByPaymentRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -1,27 +1,40 @@
 package org.hl7.davinci.pr.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import jakarta.persistence.Tuple;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import org.hl7.davinci.pr.api.utils.ApiConstants;
 import org.hl7.davinci.pr.api.utils.ApiUtils;
+import org.hl7.davinci.pr.api.utils.ValidationUtils;
 import org.hl7.davinci.pr.domain.ClaimQuery;
 import org.hl7.davinci.pr.domain.Patient;
 import org.hl7.davinci.pr.domain.Payer;
 import org.hl7.davinci.pr.domain.Payment;
 import org.hl7.davinci.pr.domain.Remittance;
+import org.hl7.davinci.pr.repositories.ClaimLookup;
 import org.hl7.davinci.pr.repositories.ClaimQueryDao;
+import org.hl7.davinci.pr.repositories.KeysetPage;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
 import org.hl7.davinci.pr.utils.TestDataUtils;
 import org.hl7.davinci.pr.utils.TestUtils;
+import org.hl7.fhir.r4.model.IntegerType;
 import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
+import org.hl7.fhir.r4.model.StringType;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,13 +49,15 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 class SearchServiceUnitTest {
 
   private SearchService searchService;
+  private SimpleMeterRegistry meterRegistry;
 
   @Mock
   private ClaimQueryDao claimQueryDao;
 
   @BeforeEach
   void setup() {
-    searchService = new SearchService(claimQueryDao);
+    meterRegistry = new SimpleMeterRegistry();
+    searchService = new SearchService(claimQueryDao, new OperationMetrics(meterRegistry));
   }
 
   @AfterEach
@@ -69,17 +84,18 @@ class SearchServiceUnitTest {
     Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
     Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
 
-    List<Tuple> daoResult = List.of(
-        TestUtils.generateSampleFindByClaimOrPatientDaoTuple(claimQuery, patient, payer, payment, remittance));
+    List<ClaimSearchRow> daoResult = List.of(
+        TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery, patient, payer, payment, remittance));
 
     when(claimQueryDao.findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(),
-        any())).thenReturn(daoResult);
+        any(), any())).thenReturn(daoResult);
 
     Parameters expectedResult = ApiUtils.generateSearchByClaimOrPatientResponse(TestDataUtils.PROVIDER_TIN_1,
         List.of(claimQuery), List.of(patient), List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByClaim(requestResource);
+    Parameters actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(expectedResult.getParameter(ApiConstants.TIN).getValue().toString(),
@@ -90,6 +106,134 @@ class SearchServiceUnitTest {
         .equalsDeep(actualResult.getParameter(ApiConstants.PATIENT)));
     assertTrue(expectedResult.getParameter(ApiConstants.CLAIM)
         .equalsDeep(actualResult.getParameter(ApiConstants.CLAIM)));
+    assertEquals(1, meterRegistry.get(OperationMetrics.METRIC_ROWS).tag("operation", OperationMetrics.SEARCH_BY_CLAIM)
+        .summary().totalAmount());
+    assertEquals(1, meterRegistry.get(OperationMetrics.METRIC_STAGE).tag("operation", OperationMetrics.SEARCH_BY_CLAIM)
+        .tag("stage", OperationMetrics.STAGE_QUERY).timer().count());
+    assertEquals(1, meterRegistry.get(OperationMetrics.METRIC_STAGE).tag("operation", OperationMetrics.SEARCH_BY_CLAIM)
+        .tag("stage", OperationMetrics.STAGE_BUILD).timer().count());
+  }
+
+  @Test
+  void searchByClaim_paged() {
+    Parameters requestResource = ApiUtils.generateSearchByClaimRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        null, null, null, TestDataUtils.PROVIDER_CLAIMID_1, null, null, null, null, null);
+    requestResource.addParameter(ApiConstants.COUNT, new IntegerType(2));
+
+    Patient patient = TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1);
+    Payer payer = TestUtils.getSamplePayer(TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
+    Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
+    // The DAO returns the claims of the page and the first claim of the next page
+    List<ClaimSearchRow> daoResult = new ArrayList<>();
+    for (int claimId = 1; claimId <= 3; claimId++) {
+      ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1,
+          TestDataUtils.PROVIDER_CLAIMID_1);
+      claimQuery.setId(claimId);
+      claimQuery.setPayerClaimId(TestDataUtils.PAYER_CLAIM_ID_1 + claimId);
+      daoResult.add(TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery, patient, payer, payment, remittance));
+    }
+
+    when(claimQueryDao.findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+        any(), eq(new KeysetPage(null, 2, null)))).thenReturn(daoResult);
+
+    // Act
+    ClaimSearchRequest request = ValidationUtils.validateSearchByClaimRequest(requestResource);
+    Parameters actualResult = searchService.searchByClaim(request).toParameters();
+
+    // Assert
+    assertEquals(2, actualResult.getParameter().stream()
+        .filter(parameter -> ApiConstants.CLAIM.equals(parameter.getName())).count());
+    ParametersParameterComponent link = actualResult.getParameter(ApiConstants.LINK);
+    assertEquals(ApiConstants.LINK_RELATION_NEXT, link.getPart().get(0).getValue().primitiveValue());
+    assertEquals("?_count=2&_continuation=" + KeysetPage.continuationToken(2, request.queryHash()),
+        link.getPart().get(1).getValue().primitiveValue());
+  }
+
+  @Test
+  void searchByClaim_batch() {
+    Parameters requestResource = ApiUtils.generateSearchByClaimRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        null, null, null, TestDataUtils.PROVIDER_CLAIMID_1, null, null, null, null, null);
+    ParametersParameterComponent secondClaim = requestResource.addParameter().setName(ApiConstants.CLAIM);
+    secondClaim.addPart().setName(ApiConstants.PROVIDER_CLAIM_ID).setValue(new StringType(TestDataUtils.PROVIDER_CLAIMID_1 + 2));
+    secondClaim.addPart().setName(ApiConstants.PAYER_CLAIM_ID).setValue(new StringType(TestDataUtils.PAYER_CLAIM_ID_1));
+
+    Patient patient = TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1);
+    Payer payer = TestUtils.getSamplePayer(TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
+    Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
+    List<ClaimSearchRow> daoResult = new ArrayList<>();
+    for (int claimId = 1; claimId <= 2; claimId++) {
+      ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1,
+          TestDataUtils.PROVIDER_CLAIMID_1 + claimId);
+      claimQuery.setId(claimId);
+      daoResult.add(TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery, patient, payer, payment, remittance));
+    }
+
+    List<ClaimLookup> expectedLookups = List.of(
+        new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1, null, null, null),
+        new ClaimLookup(TestDataUtils.PROVIDER_CLAIMID_1 + 2, null, TestDataUtils.PAYER_CLAIM_ID_1, null));
+    when(claimQueryDao.findByClaims(eq(TestDataUtils.PROVIDER_TIN_1), eq(expectedLookups), any(), any(), any(), any(),
+        any(), eq(KeysetPage.UNPAGED))).thenReturn(daoResult);
+
+    // Act
+    Parameters actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource))
+        .toParameters();
+
+    // Assert
+    assertEquals(2, actualResult.getParameter().stream()
+        .filter(parameter -> ApiConstants.CLAIM.equals(parameter.getName())).count());
+    verify(claimQueryDao, never()).findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void searchByClaim_lastPage() {
+    Parameters requestResource = ApiUtils.generateSearchByClaimRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        null, null, null, TestDataUtils.PROVIDER_CLAIMID_1, null, null, null, null, null);
+    requestResource.addParameter(ApiConstants.COUNT, new IntegerType(2));
+    String query = ValidationUtils.validateSearchByClaimRequest(requestResource).queryHash();
+    requestResource.addParameter(ApiConstants.CONTINUATION, new StringType(KeysetPage.continuationToken(2, query)));
+
+    ClaimQuery claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1,
+        TestDataUtils.PROVIDER_CLAIMID_1);
+    claimQuery.setId(3);
+    List<ClaimSearchRow> daoResult = List.of(TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery,
+        TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1),
+        TestUtils.getSamplePayer(TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1),
+        TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1),
+        TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1)));
+
+    when(claimQueryDao.findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+        any(), eq(new KeysetPage(2, 2, query)))).thenReturn(daoResult);
+
+    // Act
+    Parameters actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource))
+        .toParameters();
+
+    // Assert
+    assertTrue(actualResult.hasParameter(ApiConstants.CLAIM));
+    assertFalse(actualResult.hasParameter(ApiConstants.LINK));
+  }
+
+  @Test
+  void searchByClaim_continuationOfOtherSearch() {
+    Parameters requestResource = ApiUtils.generateSearchByClaimRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        null, null, null, TestDataUtils.PROVIDER_CLAIMID_1, null, null, null, null, null);
+    requestResource.addParameter(ApiConstants.COUNT, new IntegerType(2));
+    // The token of the same search for another claim
+    Parameters otherRequestResource = ApiUtils.generateSearchByClaimRequestResource(TestDataUtils.PROVIDER_TIN_1,
+        null, null, null, TestDataUtils.PROVIDER_CLAIMID_1 + 1, null, null, null, null, null);
+    otherRequestResource.addParameter(ApiConstants.COUNT, new IntegerType(2));
+    String otherQuery = ValidationUtils.validateSearchByClaimRequest(otherRequestResource).queryHash();
+    requestResource.addParameter(ApiConstants.CONTINUATION, new StringType(KeysetPage.continuationToken(2, otherQuery)));
+    ClaimSearchRequest request = ValidationUtils.validateSearchByClaimRequest(requestResource);
+
+    // Act
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> searchService.searchByClaim(request));
+
+    // Assert
+    assertEquals(KeysetPage.CONTINUATION_QUERY_MISMATCH_MESSAGE, e.getMessage());
+    verify(claimQueryDao, never()).findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
   }
 
   @Test
@@ -100,10 +244,10 @@ class SearchServiceUnitTest {
         String.valueOf(TestDataUtils.CLAIM_CHARGE_AMOUNT), TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
 
     when(claimQueryDao.findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(),
-        any())).thenReturn(List.of());
+        any(), any())).thenReturn(List.of());
 
     // Act
-    Parameters actualResult = searchService.searchByClaim(requestResource);
+    SearchResponse actualResult = searchService.searchByClaim(ValidationUtils.validateSearchByClaimRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -116,11 +260,12 @@ class SearchServiceUnitTest {
         String.valueOf(TestDataUtils.CLAIM_CHARGE_AMOUNT), TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
 
     when(claimQueryDao.findByClaim(any(), any(), any(), any(), any(), any(), any(), any(), any(),
-        any())).thenThrow(
+        any(), any())).thenThrow(
         new DataAccessResourceFailureException("Test searchByClaim DataAccessResourceFailureException"));
 
     // Act & Assert
-    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByClaim(requestResource));
+    ClaimSearchRequest searchRequest = ValidationUtils.validateSearchByClaimRequest(requestResource);
+    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByClaim(searchRequest));
   }
 
   @Test
@@ -137,17 +282,18 @@ class SearchServiceUnitTest {
     Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
     Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
 
-    List<Tuple> daoResult = List.of(
-        TestUtils.generateSampleFindByClaimOrPatientDaoTuple(claimQuery, patient, payer, payment, remittance));
+    List<ClaimSearchRow> daoResult = List.of(
+        TestUtils.generateSampleFindByClaimOrPatientDaoRow(claimQuery, patient, payer, payment, remittance));
 
-    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(daoResult);
 
     Parameters expectedResult = ApiUtils.generateSearchByClaimOrPatientResponse(TestDataUtils.PROVIDER_TIN_1,
         List.of(claimQuery), List.of(patient), List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByPatient(requestResource);
+    Parameters actualResult = searchService.searchByPatient(ValidationUtils.validateSearchByPatientRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(expectedResult.getParameter(ApiConstants.TIN).getValue().toString(),
@@ -167,11 +313,11 @@ class SearchServiceUnitTest {
         TestDataUtils.PAYER_NAME_1, TestDataUtils.PATIENT_ID_1, TestDataUtils.PATIENT_DOB,
         TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1);
 
-    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(List.of());
 
     // Act
-    Parameters actualResult = searchService.searchByPatient(requestResource);
+    SearchResponse actualResult = searchService.searchByPatient(ValidationUtils.validateSearchByPatientRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -183,11 +329,12 @@ class SearchServiceUnitTest {
         TestDataUtils.PAYER_NAME_1, TestDataUtils.PATIENT_ID_1, TestDataUtils.PATIENT_DOB,
         TestDataUtils.PATIENT_FIRST_NAME_1, TestDataUtils.PATIENT_LAST_NAME_1);
 
-    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPatient(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenThrow(new DataAccessResourceFailureException("Test searchByPatient DataAccessResourceFailureException"));
 
     // Act & Assert
-    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByPatient(requestResource));
+    PatientSearchRequest searchRequest = ValidationUtils.validateSearchByPatientRequest(requestResource);
+    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByPatient(searchRequest));
   }
 
   @Test
@@ -204,17 +351,18 @@ class SearchServiceUnitTest {
     Payment payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
     Remittance remittance = TestUtils.getSampleRemittance(TestDataUtils.REMITTANCE_ADVICEID_1);
 
-    List<Tuple> daoResult = List.of(
-        TestUtils.generateSampleFindByPaymentDaoTuple(claimQuery, payer, payment, remittance));
+    List<PaymentSearchRow> daoResult = List.of(
+        TestUtils.generateSampleFindByPaymentDaoRow(claimQuery, payer, payment, remittance));
 
-    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(daoResult);
 
     Parameters expectedResult = ApiUtils.generateSearchByPaymentResponse(TestDataUtils.PROVIDER_TIN_1,
         List.of(payer), List.of(payment), List.of(remittance));
 
     // Act
-    Parameters actualResult = searchService.searchByPayment(requestResource);
+    Parameters actualResult = searchService.searchByPayment(ValidationUtils.validateSearchByPaymentRequest(requestResource))
+        .toParameters();
 
     // Assert
     assertEquals(expectedResult.getParameter(ApiConstants.TIN).getValue().toString(),
@@ -238,11 +386,11 @@ class SearchServiceUnitTest {
         Float.toString(TestDataUtils.PAYMENT_AMOUNT), Float.toString(TestDataUtils.PAYMENT_AMOUNT_HIGH),
         TestDataUtils.PAYM_NUM_1);
 
-    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenReturn(List.of());
 
     // Act
-    Parameters actualResult = searchService.searchByPayment(requestResource);
+    SearchResponse actualResult = searchService.searchByPayment(ValidationUtils.validateSearchByPaymentRequest(requestResource));
     // Assert
     assertNull(actualResult);
   }
@@ -255,11 +403,12 @@ class SearchServiceUnitTest {
         Float.toString(TestDataUtils.PAYMENT_AMOUNT), Float.toString(TestDataUtils.PAYMENT_AMOUNT_HIGH),
         TestDataUtils.PAYM_NUM_1);
 
-    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+    when(claimQueryDao.findByPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
         .thenThrow(new DataAccessResourceFailureException("Test searchByPayment DataAccessResourceFailureException"));
 
     // Act & Assert
-    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByPayment(requestResource));
+    PaymentSearchRequest searchRequest = ValidationUtils.validateSearchByPaymentRequest(requestResource);
+    assertThrows(DataAccessResourceFailureException.class, () -> searchService.searchByPayment(searchRequest));
   }
 
 }
\ No newline at end of file
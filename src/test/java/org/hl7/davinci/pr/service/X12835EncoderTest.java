@@ -0,0 +1,65 @@
+package org.hl7.davinci.pr.service;
+
+import jakarta.persistence.Tuple;
+import org.apache.commons.io.IOUtils;
+import org.hl7.davinci.pr.domain.ClaimQuery;
+import org.hl7.davinci.pr.domain.Patient;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.domain.Payment;
+import org.hl7.davinci.pr.utils.TestDataUtils;
+import org.hl7.davinci.pr.utils.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+class X12835EncoderTest {
+
+    private ClaimQuery claimQuery;
+    private Patient patient;
+    private Payer payer;
+    private Payment payment;
+
+    @BeforeEach
+    void setup() throws Exception {
+        Date dateOfService = TestDataUtils.dateFormatter.parse(TestDataUtils.DATE_OF_SERVICE);
+        claimQuery = TestUtils.getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1);
+        claimQuery.setDateOfService(dateOfService);
+        claimQuery.setClaimChargeAmount(TestDataUtils.CLAIM_CHARGE_AMOUNT);
+        patient = TestUtils.getSamplePatient(TestDataUtils.PATIENT_ID_1);
+        payer = TestUtils.getSamplePayer(TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
+        payment = TestUtils.getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    }
+
+    @Test
+    void encode_matchesGoldenFileByteForByte() throws Exception {
+        String expected = IOUtils.toString(this.getClass().getResourceAsStream("/835-sample.txt"), StandardCharsets.UTF_8)
+                .replace("\r\n", "\n").replace("\n", "\r\n");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+            new X12835Encoder(writer).encode(payment, payer, claimQuery, List.of(tuple()));
+        }
+        Assertions.assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), outputStream.toByteArray());
+    }
+
+    @Test
+    void encode_countsTransactionSegmentsPerClaim() throws Exception {
+        StringBuilder x12 = new StringBuilder();
+        new X12835Encoder(x12).encode(payment, payer, claimQuery, List.of(tuple(), tuple()));
+
+        //18 header segments, 13 per claim and SE itself
+        Assertions.assertTrue(x12.toString().contains("\r\nSE*45*0001~\r\n"));
+        Assertions.assertTrue(x12.toString().contains("\r\nCLP*provider_claimid_1*1*100.00*50.00**WC*"));
+    }
+
+    private Tuple tuple() {
+        return TestUtils.generateSampleFindByClaimOrPatientDaoTuple(claimQuery, patient, payer, payment, payment.getRemittance());
+    }
+}
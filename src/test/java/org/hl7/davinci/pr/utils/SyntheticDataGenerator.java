@@ -0,0 +1,453 @@
+package org.hl7.davinci.pr.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.davinci.pr.api.utils.ApiConstants;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a large dataset of patients, payers, providers, subscriber patients, claims, payments and remittances
+ * from a {@link SyntheticDataSpec} and loads it through JDBC, with COPY on PostgreSQL and multi-row inserts elsewhere.
+ * The rows of a claim only depend on the seed and the claim index, so the same spec always makes the same rows and
+ * {@link #claim(int)} gives the search values of any claim without reading the database.
+ * The claims per TIN follow a Zipf distribution, TIN index 0 has the most claims. Every TIN has one provider and
+ * patients of its own, every patient has one subscriber patient with a payer. Payment numbers are shared by the
+ * payments of a payer issued on the same day, as with bulk EFT payments.
+ * Rows get explicit ids after the existing ones and the identity columns are restarted after the load, so the
+ * dataset can be added to a database in use, e.g. the one of the JMH suite or of a load test.
+ */
+@Slf4j
+public class SyntheticDataGenerator {
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael",
+            "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas"};
+    private static final LocalDate EARLIEST_DATE_OF_BIRTH = LocalDate.of(1940, 1, 1);
+    private static final long FIRST_TIN = 900_000_000L;
+    private static final long FIRST_NPI = 1_000_000_000L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long PATIENT_SALT = 0x5DEECE66DL;
+    private static final DateTimeFormatter PAYMENT_DATE_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int ROWS_PER_INSERT = 100;
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private static final String[] PATIENT_COLUMNS = {"id", "first_name", "last_name", "date_of_birth"};
+    private static final String[] PAYER_COLUMNS = {"id", "payer_name", "payer_identity"};
+    private static final String[] PROVIDER_COLUMNS = {"id", "tin", "provider_npi"};
+    private static final String[] SUBSCRIBER_PATIENT_COLUMNS = {"id", "patient_id", "payer_id", "subscriber_patient_id"};
+    private static final String[] CLAIM_COLUMNS = {"id", "patient_id", "payer_id", "provider_id", "received_dt",
+            "dcn_icn", "payer_claimid", "provider_claimid", "provider_npi", "provider_tin", "subscriber_patient_id",
+            "dos_dt", "claim_charge_amt"};
+    private static final String[] REMITTANCE_COLUMNS = {"id", "claim_id", "remittance_adviceid",
+            "remittance_advice_type", "remittance_advice_dt", "remittance_advice_file_size"};
+    private static final String[] PAYMENT_COLUMNS = {"id", "claim_id", "payment_number", "amount", "payment_issue_dt",
+            "remittance_id"};
+
+    /**
+     * A generated remittance advice
+     */
+    public record RemittanceRow(String remittanceAdviceId, String remittanceAdviceType, int fileSize) {
+    }
+
+    /**
+     * A generated payment, the remittance is null for payments without remittance advice
+     */
+    public record PaymentRow(String paymentNumber, float amount, LocalDate issueDate, RemittanceRow remittance) {
+    }
+
+    /**
+     * A generated claim with its payments
+     */
+    public record ClaimRow(int index, int tinIndex, int patientIndex, int payerIndex, String providerTin,
+                           String providerNpi, String providerClaimId, String payerClaimId, String dcnIcn,
+                           String subscriberPatientId, LocalDate dateOfService, LocalDate receivedDate,
+                           float chargeAmount, List<PaymentRow> payments) {
+    }
+
+    /**
+     * Rows loaded by {@link #load(DataSource)}
+     */
+    public record LoadResult(long patients, long payers, long providers, long claims, long payments,
+                             long remittances, long millis) {
+    }
+
+    private final SyntheticDataSpec spec;
+    // cumulative share of the claims of the TINs, for the Zipf distribution
+    private final double[] tinCumulativeShares;
+    // first patient index and number of patients of the TINs
+    private final int[] tinFirstPatients;
+    private final int[] tinPatientCounts;
+
+    public SyntheticDataGenerator(SyntheticDataSpec spec) {
+        if (spec.getClaims() < 1 || spec.getTins() < 1 || spec.getPayers() < 1 || spec.getDays() < 1) {
+            throw new IllegalArgumentException("The spec needs at least one claim, TIN, payer and day");
+        }
+        if (spec.getPatients() < spec.getTins()) {
+            throw new IllegalArgumentException("The spec needs at least one patient per TIN");
+        }
+        this.spec = spec;
+        int tins = spec.getTins();
+        double[] weights = new double[tins];
+        double totalWeight = 0;
+        for (int t = 0; t < tins; t++) {
+            weights[t] = 1.0 / Math.pow(t + 1, spec.getTinSkew());
+            totalWeight += weights[t];
+        }
+        tinCumulativeShares = new double[tins];
+        tinFirstPatients = new int[tins];
+        tinPatientCounts = new int[tins];
+        double cumulativeWeight = 0;
+        int firstPatient = 0;
+        for (int t = 0; t < tins; t++) {
+            cumulativeWeight += weights[t];
+            tinCumulativeShares[t] = cumulativeWeight / totalWeight;
+            // every TIN keeps one patient, the rest is shared out by weight
+            int patients = 1 + (int) ((spec.getPatients() - tins) * weights[t] / totalWeight);
+            tinFirstPatients[t] = firstPatient;
+            tinPatientCounts[t] = patients;
+            firstPatient += patients;
+        }
+        tinCumulativeShares[tins - 1] = 1.0;
+    }
+
+    public SyntheticDataSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * @return the number of patients, at most the patients of the spec as the shares are rounded down
+     */
+    public int patientCount() {
+        return tinFirstPatients[spec.getTins() - 1] + tinPatientCounts[spec.getTins() - 1];
+    }
+
+    /**
+     * @param tinIndex the TIN index, 0 has the most claims
+     * @return the TIN
+     */
+    public String tin(int tinIndex) {
+        return String.valueOf(FIRST_TIN + tinIndex);
+    }
+
+    /**
+     * @param patientIndex the patient index
+     * @return the subscriber patient id of the patient
+     */
+    public String subscriberPatientId(int patientIndex) {
+        return spec.getPrefix() + "-SUB-" + patientIndex;
+    }
+
+    /**
+     * @param claimIndex the claim index, from 0 to the claims of the spec
+     * @return the claim, the same for the same spec and index
+     */
+    public ClaimRow claim(int claimIndex) {
+        SplittableRandom random = random(claimIndex);
+        int tinIndex = Arrays.binarySearch(tinCumulativeShares, random.nextDouble());
+        tinIndex = tinIndex >= 0 ? tinIndex : -tinIndex - 1;
+        int patientIndex = tinFirstPatients[tinIndex] + random.nextInt(tinPatientCounts[tinIndex]);
+        int payerIndex = payerIndex(patientIndex);
+        LocalDate dateOfService = spec.getStartDate().plusDays(random.nextInt(spec.getDays()));
+        LocalDate receivedDate = dateOfService.plusDays(1 + random.nextInt(30));
+        float chargeAmount = (5_000 + random.nextInt(500_000)) / 100f;
+        List<PaymentRow> payments = new ArrayList<>(2);
+        if (random.nextDouble() < spec.getPaidRatio()) {
+            int paymentCount = random.nextDouble() < spec.getSplitPaymentRatio() ? 2 : 1;
+            for (int p = 0; p < paymentCount; p++) {
+                LocalDate issueDate = receivedDate.plusDays(7 + random.nextInt(39));
+                float amount = Math.round(chargeAmount * (40 + random.nextInt(61)) / paymentCount) / 100f;
+                RemittanceRow remittance = null;
+                if (random.nextDouble() < spec.getRemittanceRatio()) {
+                    remittance = new RemittanceRow(spec.getPrefix() + "-RA-" + claimIndex + "-" + p,
+                            random.nextBoolean() ? ApiConstants.REMITTANCE_ADVICE_TYPE_PDF : ApiConstants.REMITTANCE_ADVICE_TYPE_835,
+                            2_048 + random.nextInt(200_000));
+                }
+                payments.add(new PaymentRow(paymentNumber(payerIndex, issueDate), amount, issueDate, remittance));
+            }
+        }
+        return new ClaimRow(claimIndex, tinIndex, patientIndex, payerIndex, tin(tinIndex), String.valueOf(FIRST_NPI + tinIndex),
+                spec.getPrefix() + "-PCN-" + claimIndex, spec.getPrefix() + "-ICN-" + claimIndex,
+                spec.getPrefix() + "-DCN-" + claimIndex, subscriberPatientId(patientIndex), dateOfService, receivedDate,
+                chargeAmount, payments);
+    }
+
+    /**
+     * Loads the dataset in one transaction.
+     *
+     * @param dataSource the database, migrated by Flyway or created by Hibernate
+     * @return the rows loaded
+     * @throws SQLException when the load fails, nothing is loaded then
+     */
+    public LoadResult load(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return load(connection);
+        }
+    }
+
+    /**
+     * Loads the dataset in one transaction of the connection.
+     *
+     * @param connection the connection to the database, migrated by Flyway or created by Hibernate
+     * @return the rows loaded
+     * @throws SQLException when the load fails, nothing is loaded then
+     */
+    public LoadResult load(Connection connection) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            LoadResult result = load(connection, start);
+            connection.commit();
+            log.info("Loaded synthetic dataset {}", result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private LoadResult load(Connection connection, long start) throws SQLException {
+        boolean copy = POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName());
+        int firstPatientId = nextId(connection, "patient");
+        int firstPayerId = nextId(connection, "payer");
+        int firstProviderId = nextId(connection, "provider");
+        int firstSubscriberPatientId = nextId(connection, "subscriber_patient");
+        int firstClaimId = nextId(connection, "claim_query");
+        int firstRemittanceId = nextId(connection, "remittance");
+        int firstPaymentId = nextId(connection, "payment");
+        int patients = patientCount();
+
+        try (RowSink sink = sink(connection, copy, "patient", PATIENT_COLUMNS)) {
+            for (int p = 0; p < patients; p++) {
+                SplittableRandom random = new SplittableRandom(spec.getSeed() ^ (p * GOLDEN_GAMMA + PATIENT_SALT));
+                sink.add(firstPatientId + p, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                        LAST_NAMES[random.nextInt(LAST_NAMES.length)], EARLIEST_DATE_OF_BIRTH.plusDays(random.nextInt(25_000)));
+            }
+        }
+        try (RowSink sink = sink(connection, copy, "payer", PAYER_COLUMNS)) {
+            for (int p = 0; p < spec.getPayers(); p++) {
+                sink.add(firstPayerId + p, spec.getPrefix() + " Payer " + p, spec.getPrefix() + "-PAYER-" + p);
+            }
+        }
+        try (RowSink sink = sink(connection, copy, "provider", PROVIDER_COLUMNS)) {
+            for (int t = 0; t < spec.getTins(); t++) {
+                sink.add(firstProviderId + t, tin(t), String.valueOf(FIRST_NPI + t));
+            }
+        }
+        try (RowSink sink = sink(connection, copy, "subscriber_patient", SUBSCRIBER_PATIENT_COLUMNS)) {
+            for (int p = 0; p < patients; p++) {
+                sink.add(firstSubscriberPatientId + p, firstPatientId + p, firstPayerId + payerIndex(p), subscriberPatientId(p));
+            }
+        }
+        try (RowSink sink = sink(connection, copy, "claim_query", CLAIM_COLUMNS)) {
+            for (int c = 0; c < spec.getClaims(); c++) {
+                ClaimRow claim = claim(c);
+                sink.add(firstClaimId + c, firstPatientId + claim.patientIndex(), firstPayerId + claim.payerIndex(),
+                        firstProviderId + claim.tinIndex(), claim.receivedDate(), claim.dcnIcn(), claim.payerClaimId(),
+                        claim.providerClaimId(), claim.providerNpi(), claim.providerTin(), claim.subscriberPatientId(),
+                        claim.dateOfService(), claim.chargeAmount());
+            }
+        }
+        // the claims are generated again for each table, so each COPY streams on its own
+        int remittances = 0;
+        try (RowSink sink = sink(connection, copy, "remittance", REMITTANCE_COLUMNS)) {
+            for (int c = 0; c < spec.getClaims(); c++) {
+                for (PaymentRow payment : claim(c).payments()) {
+                    RemittanceRow remittance = payment.remittance();
+                    if (remittance != null) {
+                        sink.add(firstRemittanceId + remittances++, firstClaimId + c, remittance.remittanceAdviceId(),
+                                remittance.remittanceAdviceType(), payment.issueDate(), remittance.fileSize());
+                    }
+                }
+            }
+        }
+        int payments = 0;
+        int remittanceIndex = 0;
+        try (RowSink sink = sink(connection, copy, "payment", PAYMENT_COLUMNS)) {
+            for (int c = 0; c < spec.getClaims(); c++) {
+                for (PaymentRow payment : claim(c).payments()) {
+                    Integer remittanceId = payment.remittance() != null ? firstRemittanceId + remittanceIndex++ : null;
+                    sink.add(firstPaymentId + payments++, firstClaimId + c, payment.paymentNumber(), payment.amount(),
+                            payment.issueDate(), remittanceId);
+                }
+            }
+        }
+        for (String table : List.of("patient", "payer", "provider", "subscriber_patient", "claim_query", "remittance", "payment")) {
+            restartIdentity(connection, copy, table);
+        }
+        return new LoadResult(patients, spec.getPayers(), spec.getTins(), spec.getClaims(), payments, remittances,
+                System.currentTimeMillis() - start);
+    }
+
+    private int payerIndex(int patientIndex) {
+        return patientIndex % spec.getPayers();
+    }
+
+    private String paymentNumber(int payerIndex, LocalDate issueDate) {
+        return spec.getPrefix() + "-EFT-" + payerIndex + "-" + PAYMENT_DATE_FORMATTER.format(issueDate);
+    }
+
+    private SplittableRandom random(int claimIndex) {
+        return new SplittableRandom(spec.getSeed() + claimIndex * GOLDEN_GAMMA);
+    }
+
+    private static int nextId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select coalesce(max(id), 0) + 1 from " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void restartIdentity(Connection connection, boolean postgres, String table) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (postgres) {
+                statement.execute("select setval(pg_get_serial_sequence('" + table + "', 'id'), (select max(id) from " + table + "))");
+            } else {
+                statement.execute("alter table " + table + " alter column id restart with " + nextId(connection, table));
+            }
+        }
+    }
+
+    private static RowSink sink(Connection connection, boolean copy, String table, String[] columns) throws SQLException {
+        return copy ? new CopySink(connection, table, columns) : new InsertSink(connection, table, columns);
+    }
+
+    /**
+     * Writes the rows of one table
+     */
+    private interface RowSink extends AutoCloseable {
+
+        void add(Object... values) throws SQLException;
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    /**
+     * Streams the rows to a COPY FROM STDIN in CSV format
+     */
+    private static class CopySink implements RowSink {
+
+        private final Writer writer;
+
+        CopySink(Connection connection, String table, String[] columns) throws SQLException {
+            PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                    "copy " + table + " (" + String.join(", ", columns) + ") from stdin with (format csv)", COPY_BUFFER_SIZE);
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+        }
+
+        @Override
+        public void add(Object... values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    Object value = values[i];
+                    // an unquoted empty value is NULL in CSV
+                    if (value instanceof String text) {
+                        writer.write('"');
+                        writer.write(text.replace("\"", "\"\""));
+                        writer.write('"');
+                    } else if (value != null) {
+                        writer.write(value.toString());
+                    }
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                // ends the COPY
+                writer.close();
+            } catch (IOException e) {
+                throw new SQLException("COPY failed", e);
+            }
+        }
+    }
+
+    /**
+     * Inserts the rows with multi-row inserts of {@link #ROWS_PER_INSERT} rows
+     */
+    private static class InsertSink implements RowSink {
+
+        private final Connection connection;
+        private final String table;
+        private final String[] columns;
+        private final PreparedStatement fullInsert;
+        private final List<Object[]> rows = new ArrayList<>(ROWS_PER_INSERT);
+
+        InsertSink(Connection connection, String table, String[] columns) throws SQLException {
+            this.connection = connection;
+            this.table = table;
+            this.columns = columns;
+            this.fullInsert = connection.prepareStatement(insert(ROWS_PER_INSERT));
+        }
+
+        @Override
+        public void add(Object... values) throws SQLException {
+            rows.add(values);
+            if (rows.size() == ROWS_PER_INSERT) {
+                execute(fullInsert);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (fullInsert) {
+                if (!rows.isEmpty()) {
+                    try (PreparedStatement lastInsert = connection.prepareStatement(insert(rows.size()))) {
+                        execute(lastInsert);
+                    }
+                }
+            }
+        }
+
+        private void execute(PreparedStatement statement) throws SQLException {
+            int parameter = 1;
+            for (Object[] row : rows) {
+                for (Object value : row) {
+                    statement.setObject(parameter++, value instanceof LocalDate date ? Date.valueOf(date) : value);
+                }
+            }
+            statement.executeUpdate();
+            rows.clear();
+        }
+
+        private String insert(int rowCount) {
+            String placeholders = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+            return "insert into " + table + " (" + String.join(", ", columns) + ") values "
+                    + String.join(", ", Collections.nCopies(rowCount, placeholders));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.hl7.davinci.pr.utils;
+
+import org.hl7.davinci.pr.BaseTest;
+import org.hl7.davinci.pr.domain.Payer;
+import org.hl7.davinci.pr.repositories.ClaimQueryDao;
+import org.hl7.davinci.pr.repositories.KeysetPage;
+import org.hl7.davinci.pr.repositories.PayerRepository;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SyntheticDataGeneratorTest extends BaseTest {
+
+    // in foreign key order, for the cleanup
+    private static final List<String> TABLES = List.of("payment", "remittance", "claim_query", "subscriber_patient",
+            "provider", "payer", "patient");
+    private static final SyntheticDataSpec SPEC = SyntheticDataSpec.builder().prefix("SYNTEST").claims(2_000).tins(20)
+            .patients(200).payers(5).build();
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ClaimQueryDao claimQueryDao;
+
+    @Autowired
+    PayerRepository payerRepo;
+
+    private final Map<String, Integer> maxIdsBefore = new LinkedHashMap<>();
+
+    @BeforeEach
+    void rememberIds() {
+        for (String table : TABLES) {
+            maxIdsBefore.put(table, jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Integer.class));
+        }
+    }
+
+    //the other tests share the database, so the loaded rows are removed again
+    @AfterEach
+    void removeLoadedRows() {
+        maxIdsBefore.forEach((table, maxId) -> jdbcTemplate.update("delete from " + table + " where id > ?", maxId));
+    }
+
+    @Test
+    void load_insertsConsistentRows() throws SQLException {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(SPEC);
+
+        SyntheticDataGenerator.LoadResult result = generator.load(dataSource);
+
+        Assertions.assertEquals(2_000, result.claims());
+        Assertions.assertEquals(generator.patientCount(), result.patients());
+        Assertions.assertTrue(generator.patientCount() <= 200);
+        Assertions.assertEquals(2_000, count("select count(*) from claim_query where provider_claimid like 'SYNTEST-PCN-%'"));
+        Assertions.assertEquals(result.payments(), count("select count(*) from payment where payment_number like 'SYNTEST-EFT-%'"));
+        Assertions.assertEquals(result.remittances(), count("select count(*) from remittance where remittance_adviceid like 'SYNTEST-RA-%'"));
+        Assertions.assertTrue(result.payments() > result.remittances());
+        //remittances belong to the claim of their payment, claims to the provider and patient of their subscriber
+        Assertions.assertEquals(0, count("select count(*) from payment p join remittance r on r.id = p.remittance_id"
+                + " where p.payment_number like 'SYNTEST-%' and p.claim_id <> r.claim_id"));
+        Assertions.assertEquals(0, count("select count(*) from claim_query c join provider pr on pr.id = c.provider_id"
+                + " join subscriber_patient s on s.subscriber_patient_id = c.subscriber_patient_id"
+                + " where c.provider_claimid like 'SYNTEST-%' and (pr.tin <> c.provider_tin or s.patient_id <> c.patient_id"
+                + " or s.payer_id <> c.payer_id)"));
+        //skewed claims per TIN
+        Assertions.assertTrue(count("select count(*) from claim_query where provider_tin = '" + generator.tin(0) + "'")
+                > 3 * count("select count(*) from claim_query where provider_tin = '" + generator.tin(19) + "'"));
+
+        //the identity columns continue after the loaded rows
+        Payer payer = payerRepo.save(Payer.builder().payerName("after load").build());
+        Assertions.assertTrue(payer.getId() > maxIdsBefore.get("payer") + SPEC.getPayers());
+    }
+
+    @Test
+    void claim_isFoundBySearch() throws SQLException {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(SPEC);
+        generator.load(dataSource);
+
+        //the rows of a claim only depend on the spec
+        SyntheticDataGenerator.ClaimRow claim = new SyntheticDataGenerator(SPEC).claim(1_234);
+        Assertions.assertEquals(generator.claim(1_234), claim);
+
+        List<ClaimSearchRow> rows = claimQueryDao.findByClaim(claim.providerTin(), claim.providerClaimId(),
+                Date.valueOf(claim.dateOfService()), Date.valueOf(claim.dateOfService()), claim.subscriberPatientId(),
+                null, null, null, null, null, KeysetPage.UNPAGED);
+        Assertions.assertEquals(Math.max(1, claim.payments().size()), rows.size());
+        Assertions.assertEquals(claim.payerClaimId(), rows.get(0).payerClaimId());
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
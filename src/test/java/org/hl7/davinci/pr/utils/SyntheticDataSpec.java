@@ -0,0 +1,75 @@
+package org.hl7.davinci.pr.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Cardinalities and distributions of the rows made by {@link SyntheticDataGenerator}.
+ * The same spec and seed always produce the same rows.
+ */
+@Getter
+@Builder
+public class SyntheticDataSpec {
+
+    /**
+     * Prefix of the generated identifiers, so the rows can be told apart from other data
+     */
+    @Builder.Default
+    private final String prefix = "SYN";
+
+    @Builder.Default
+    private final long seed = 42L;
+
+    @Builder.Default
+    private final int claims = 10_000;
+
+    @Builder.Default
+    private final int tins = 100;
+
+    /**
+     * Zipf exponent of the claims per TIN, 0 spreads them evenly, around 1 gives a few very large providers
+     */
+    @Builder.Default
+    private final double tinSkew = 1.0;
+
+    /**
+     * Number of patients, shared out to the TINs in proportion to their claims
+     */
+    @Builder.Default
+    private final int patients = 2_500;
+
+    @Builder.Default
+    private final int payers = 20;
+
+    /**
+     * Share of the claims with at least one payment
+     */
+    @Builder.Default
+    private final double paidRatio = 0.9;
+
+    /**
+     * Share of the paid claims paid in two payments
+     */
+    @Builder.Default
+    private final double splitPaymentRatio = 0.1;
+
+    /**
+     * Share of the payments with a remittance advice
+     */
+    @Builder.Default
+    private final double remittanceRatio = 0.95;
+
+    /**
+     * First date of service
+     */
+    @Builder.Default
+    private final LocalDate startDate = LocalDate.of(2022, 1, 1);
+
+    /**
+     * Days the dates of service are spread over
+     */
+    @Builder.Default
+    private final int days = 1095;
+}
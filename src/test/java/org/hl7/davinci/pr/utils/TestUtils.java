@@ -19,6 +19,9 @@ import org.hl7.davinci.pr.domain.Payer;
 import org.hl7.davinci.pr.domain.Payment;
 import org.hl7.davinci.pr.domain.Remittance;
 import org.hl7.davinci.pr.domain.SubscriberPatient;
+import org.hl7.davinci.pr.repositories.projection.ClaimSearchRow;
+import org.hl7.davinci.pr.repositories.projection.PaymentSearchRow;
+import org.hl7.davinci.pr.service.SearchResponse;
 
 import static org.hl7.davinci.pr.utils.TestDataUtils.REMITTANCE_ADVICEID_1;
 
@@ -454,6 +457,22 @@ public class TestUtils {
         .build();
   }
 
+  public SearchResponse getSampleSearchResponse(boolean byPayment) {
+    ClaimQuery claimQuery = getSampleClaimQuery(TestDataUtils.PROVIDER_TIN_1, TestDataUtils.PROVIDER_CLAIMID_1);
+    Patient patient = getSamplePatient(TestDataUtils.PATIENT_ID_1);
+    Payer payer = getSamplePayer(TestDataUtils.PAYER_ID_VAL_1, TestDataUtils.PAYER_NAME_1);
+    Payment payment = getSamplePayment(TestDataUtils.PAYM_NUM_1);
+    Remittance remittance = getSampleRemittance(REMITTANCE_ADVICEID_1);
+    return new SearchResponse(byPayment, TestDataUtils.PROVIDER_TIN_1,
+        byPayment ? List.of() : List.of(claimQuery), byPayment ? List.of() : List.of(patient),
+        List.of(payer), List.of(payment), List.of(remittance), null);
+  }
+
+  public SearchResponse getEmptySearchResponse(boolean byPayment) {
+    return new SearchResponse(byPayment, TestDataUtils.PROVIDER_TIN_1, List.of(), List.of(), List.of(), List.of(),
+        List.of(), null);
+  }
+
   public Tuple generateSampleFindByClaimOrPatientDaoTuple(ClaimQuery claimQuery, Patient patient, Payer payer,
       Payment payment, Remittance remittance) {
     return new TupleImpl(
@@ -461,10 +480,23 @@ public class TestUtils {
         List.of(claimQuery, patient, payer, payment, remittance).toArray());
   }
 
-  public Tuple generateSampleFindByPaymentDaoTuple(ClaimQuery claimQuery, Payer payer, Payment payment,
+  public ClaimSearchRow generateSampleFindByClaimOrPatientDaoRow(ClaimQuery claimQuery, Patient patient, Payer payer,
+      Payment payment, Remittance remittance) {
+    return new ClaimSearchRow(claimQuery.getId(), claimQuery.getProviderClaimID(), claimQuery.getReceivedDate(),
+        claimQuery.getProviderNPI(), claimQuery.getPayerClaimId(), claimQuery.getSubscriberPatientId(),
+        patient.getId(), patient.getFirstName(), patient.getLastName(), patient.getDateOfBirth(),
+        payer.getId(), payer.getPayerIdentity(), payer.getPayerName(),
+        payment.getId(), payment.getPaymentNumber(), payment.getPayment_issue_dt(), payment.getAmount(),
+        remittance.getId(), remittance.getRemittanceAdviceId(), remittance.getRemittanceAdviceType(),
+        remittance.getRemittanceAdviceDate(), remittance.getRemittanceAdviceFileSize());
+  }
+
+  public PaymentSearchRow generateSampleFindByPaymentDaoRow(ClaimQuery claimQuery, Payer payer, Payment payment,
       Remittance remittance) {
-    return new TupleImpl(
-        new TupleMetadata(null, null),
-        List.of(claimQuery, payer, payment, remittance).toArray());
+    return new PaymentSearchRow(claimQuery.getId(),
+        payer.getId(), payer.getPayerIdentity(), payer.getPayerName(),
+        payment.getId(), payment.getPaymentNumber(), payment.getPayment_issue_dt(), payment.getAmount(),
+        remittance.getId(), remittance.getRemittanceAdviceId(), remittance.getRemittanceAdviceType(),
+        remittance.getRemittanceAdviceDate(), remittance.getRemittanceAdviceFileSize());
   }
 }